@@ -104,6 +104,24 @@ CREATE TABLE `tb_error_log`  (
   PRIMARY KEY (`id` DESC) USING BTREE
 ) ENGINE = InnoDB AUTO_INCREMENT = 2475 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci ROW_FORMAT = Dynamic;
 
+-- ----------------------------
+-- Table structure for tb_file_hash
+-- ----------------------------
+DROP TABLE IF EXISTS `tb_file_hash`;
+CREATE TABLE `tb_file_hash`  (
+  `id` bigint NOT NULL AUTO_INCREMENT,
+  `path_hash` char(32) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NOT NULL COMMENT '文件路径MD5',
+  `file_path` varchar(1024) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NOT NULL COMMENT '文件绝对路径',
+  `file_size` bigint NOT NULL COMMENT '文件大小',
+  `last_modified` bigint NOT NULL COMMENT '索引时文件修改时间(毫秒)',
+  `sha256` char(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NOT NULL COMMENT '文件SHA-256',
+  `sample_hash` char(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NOT NULL COMMENT '抽样块哈希摘要',
+  `indexed_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`) USING BTREE,
+  UNIQUE INDEX `uk_path_hash`(`path_hash` ASC) USING BTREE,
+  INDEX `idx_sha256_size`(`sha256` ASC, `file_size` ASC) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '文件内容哈希索引' ROW_FORMAT = Dynamic;
+
 -- ----------------------------
 -- Table structure for tb_permissions
 -- ----------------------------
@@ -183,6 +201,8 @@ CREATE TABLE `transcode_jobs`  (
   `error_message` text CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL COMMENT '错误信息',
   `retry_count` int NULL DEFAULT 0 COMMENT '重试次数',
   `is_immediate` tinyint(1) NULL DEFAULT 0 COMMENT '是否立即观看',
+  `abr` tinyint(1) NULL DEFAULT 0 COMMENT '是否生成自适应码率HLS',
+  `renditions` text CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL COMMENT '各清晰度档位及进度(JSON)',
   `created_at` timestamp NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `updated_at` timestamp NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
   `completed_at` timestamp NULL DEFAULT NULL COMMENT '完成时间',
@@ -0,0 +1,18 @@
+-- 数据库迁移脚本：新增文件内容哈希索引表（秒传去重）
+
+CREATE TABLE IF NOT EXISTS `tb_file_hash`  (
+  `id` bigint NOT NULL AUTO_INCREMENT,
+  `path_hash` char(32) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NOT NULL COMMENT '文件路径MD5',
+  `file_path` varchar(1024) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NOT NULL COMMENT '文件绝对路径',
+  `file_size` bigint NOT NULL COMMENT '文件大小',
+  `last_modified` bigint NOT NULL COMMENT '索引时文件修改时间(毫秒)',
+  `sha256` char(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NOT NULL COMMENT '文件SHA-256',
+  `sample_hash` char(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NOT NULL COMMENT '抽样块哈希摘要',
+  `indexed_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`) USING BTREE,
+  UNIQUE INDEX `uk_path_hash`(`path_hash` ASC) USING BTREE,
+  INDEX `idx_sha256_size`(`sha256` ASC, `file_size` ASC) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '文件内容哈希索引' ROW_FORMAT = Dynamic;
+
+-- 验证迁移结果
+-- SELECT COUNT(*) FROM tb_file_hash;
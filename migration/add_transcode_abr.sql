@@ -0,0 +1,8 @@
+-- 数据库迁移脚本：转码任务新增自适应码率（多清晰度 HLS）字段
+
+ALTER TABLE `transcode_jobs`
+  ADD COLUMN `abr` tinyint(1) NULL DEFAULT 0 COMMENT '是否生成自适应码率HLS' AFTER `is_immediate`,
+  ADD COLUMN `renditions` text CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL COMMENT '各清晰度档位及进度(JSON)' AFTER `abr`;
+
+-- 验证迁移结果
+-- SHOW COLUMNS FROM transcode_jobs LIKE 'abr';
@@ -0,0 +1,204 @@
+package cn.programcx.foxnaserver.api.file;
+
+import cn.programcx.foxnaserver.annotation.CheckFilePermission;
+import cn.programcx.foxnaserver.dto.file.UploadSession;
+import cn.programcx.foxnaserver.exception.NoPermissionException;
+import cn.programcx.foxnaserver.service.file.ChunkUploadService;
+import cn.programcx.foxnaserver.service.file.InstantUploadService;
+import cn.programcx.foxnaserver.service.io.IoBandwidthScheduler;
+import cn.programcx.foxnaserver.service.log.ErrorLogService;
+import cn.programcx.foxnaserver.util.JwtUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/file/upload")
+@Tag(name = "ChunkUpload", description = "分块断点续传上传相关接口")
+@ApiResponse(responseCode = "403", description = "没有相关权限")
+public class ChunkUploadController {
+
+    private static final long DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    @Autowired
+    private ChunkUploadService chunkUploadService;
+
+    @Autowired
+    private InstantUploadService instantUploadService;
+
+    @Autowired
+    private ErrorLogService errorLogService;
+
+    @Autowired
+    private IoBandwidthScheduler ioBandwidthScheduler;
+
+    @Operation(
+            summary = "创建上传会话",
+            description = "预分配临时文件并返回上传 ID，之后可并行上传各分块"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "创建成功"),
+            @ApiResponse(responseCode = "400", description = "参数不正确"),
+            @ApiResponse(responseCode = "409", description = "目标文件已存在")
+    })
+    @CheckFilePermission(type = "Write", paramFields = {"path"})
+    @PostMapping("/create")
+    public ResponseEntity<?> create(@RequestParam("path") String path,
+                                    @RequestParam("size") long size,
+                                    @RequestParam(value = "chunkSize", required = false) Long chunkSize,
+                                    @RequestParam(value = "sha256", required = false) String sha256,
+                                    @RequestParam(value = "overwrite", defaultValue = "false") boolean overwrite,
+                                    HttpServletRequest request) {
+        try {
+            UploadSession session = chunkUploadService.create(JwtUtil.getCurrentUuid(), path, size,
+                    chunkSize == null ? DEFAULT_CHUNK_SIZE : chunkSize, sha256, overwrite);
+            return ResponseEntity.ok(Map.of("status", "success", "session", session));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("status", "failed", "message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("status", "failed", "message", e.getMessage()));
+        } catch (IOException e) {
+            errorLogService.insertErrorLog(request, e, "创建上传会话失败，目标路径：" + path + "，" + e.getMessage());
+            log.error("[{}]创建上传会话失败，目标路径: {}, 错误信息: {}", JwtUtil.getCurrentUuid(), path, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("status", "failed", "message", "创建上传会话失败！", "error", e.getMessage()));
+        }
+    }
+
+    @Operation(
+            summary = "秒传",
+            description = "上传前提交文件 SHA-256（可附带抽样块哈希：8 个等距位置各 64KB 的 SHA-256，小文件为整个文件一块），"
+                    + "若服务器已有内容相同且当前用户可读的文件，则直接在目标路径生成文件；instant=false 时请走分块上传"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "处理成功，instant 表示是否命中"),
+            @ApiResponse(responseCode = "400", description = "参数不正确"),
+            @ApiResponse(responseCode = "409", description = "目标文件已存在")
+    })
+    @CheckFilePermission(type = "Write", paramFields = {"path"})
+    @PostMapping("/instant")
+    public ResponseEntity<?> instant(@RequestParam("path") String path,
+                                     @RequestParam("size") long size,
+                                     @RequestParam("sha256") String sha256,
+                                     @RequestParam(value = "sampleHashes", required = false) List<String> sampleHashes,
+                                     @RequestParam(value = "overwrite", defaultValue = "false") boolean overwrite,
+                                     HttpServletRequest request) {
+        try {
+            return ResponseEntity.ok(instantUploadService.tryInstant(JwtUtil.getCurrentUuid(), path, size, sha256, sampleHashes, overwrite));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("status", "failed", "message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("status", "failed", "message", e.getMessage()));
+        } catch (IOException e) {
+            errorLogService.insertErrorLog(request, e, "秒传失败，目标路径：" + path + "，" + e.getMessage());
+            log.error("[{}]秒传失败，目标路径: {}, 错误信息: {}", JwtUtil.getCurrentUuid(), path, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("status", "failed", "message", "秒传失败！", "error", e.getMessage()));
+        }
+    }
+
+    @Operation(
+            summary = "上传分块",
+            description = "请求体为分块原始字节，可选请求头 X-Chunk-Sha256 用于校验；同一分块可重复上传"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "分块已写入"),
+            @ApiResponse(responseCode = "400", description = "分块序号、大小或校验值不正确"),
+            @ApiResponse(responseCode = "404", description = "上传会话不存在或已过期")
+    })
+    @PutMapping("/{uploadId}/chunks/{index}")
+    public ResponseEntity<?> putChunk(@PathVariable String uploadId,
+                                      @PathVariable int index,
+                                      @RequestHeader(value = "X-Chunk-Sha256", required = false) String chunkSha256,
+                                      HttpServletRequest request) throws NoPermissionException {
+        try {
+            long written = chunkUploadService.writeChunk(JwtUtil.getCurrentUuid(), uploadId, index, chunkSha256,
+                    ioBandwidthScheduler.throttle(request.getInputStream(), JwtUtil.getCurrentUuid(), IoBandwidthScheduler.IoClass.BULK));
+            return ResponseEntity.ok(Map.of("status", "success", "index", index, "size", written));
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("status", "failed", "message", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("status", "failed", "message", e.getMessage()));
+        } catch (IOException e) {
+            errorLogService.insertErrorLog(request, e, "写入上传分块失败，会话：" + uploadId + "，分块：" + index + "，" + e.getMessage());
+            log.error("[{}]写入上传分块失败，会话: {}, 分块: {}, 错误信息: {}", JwtUtil.getCurrentUuid(), uploadId, index, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("status", "failed", "message", "写入分块失败！", "error", e.getMessage()));
+        }
+    }
+
+    @Operation(
+            summary = "查询上传进度",
+            description = "返回会话信息、缺失分块数与前 1000 个缺失的分块序号，用于断点续传"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "查询成功"),
+            @ApiResponse(responseCode = "404", description = "上传会话不存在或已过期")
+    })
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<?> status(@PathVariable String uploadId) throws NoPermissionException {
+        try {
+            Map<String, Object> status = chunkUploadService.status(JwtUtil.getCurrentUuid(), uploadId);
+            return ResponseEntity.ok(status);
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("status", "failed", "message", e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("status", "failed", "message", e.getMessage()));
+        }
+    }
+
+    @Operation(
+            summary = "提交上传",
+            description = "校验全部分块与整个文件的 SHA-256 后原子重命名为目标文件"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "上传完成"),
+            @ApiResponse(responseCode = "404", description = "上传会话不存在或已过期"),
+            @ApiResponse(responseCode = "409", description = "分块缺失、校验失败或目标文件已存在")
+    })
+    @PostMapping("/{uploadId}/commit")
+    public ResponseEntity<?> commit(@PathVariable String uploadId,
+                                    @RequestParam(value = "sha256", required = false) String sha256,
+                                    HttpServletRequest request) throws NoPermissionException {
+        try {
+            Path target = chunkUploadService.commit(JwtUtil.getCurrentUuid(), uploadId, sha256);
+            return ResponseEntity.ok(Map.of("status", "success", "message", "文件上传成功！", "path", target.toString()));
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("status", "failed", "message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("status", "failed", "message", e.getMessage()));
+        } catch (IOException e) {
+            errorLogService.insertErrorLog(request, e, "提交上传失败，会话：" + uploadId + "，" + e.getMessage());
+            log.error("[{}]提交上传失败，会话: {}, 错误信息: {}", JwtUtil.getCurrentUuid(), uploadId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("status", "failed", "message", "提交上传失败！", "error", e.getMessage()));
+        }
+    }
+
+    @Operation(
+            summary = "取消上传",
+            description = "删除临时文件与上传会话"
+    )
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<?> abort(@PathVariable String uploadId, HttpServletRequest request) throws NoPermissionException {
+        try {
+            chunkUploadService.abort(JwtUtil.getCurrentUuid(), uploadId);
+            return ResponseEntity.ok(Map.of("status", "success"));
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("status", "failed", "message", e.getMessage()));
+        } catch (IOException e) {
+            errorLogService.insertErrorLog(request, e, "取消上传失败，会话：" + uploadId + "，" + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("status", "failed", "message", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package cn.programcx.foxnaserver.api.file;
+
+import cn.programcx.foxnaserver.annotation.CheckFilePermission;
+import cn.programcx.foxnaserver.service.file.DeltaSyncService;
+import cn.programcx.foxnaserver.service.io.IoBandwidthScheduler;
+import cn.programcx.foxnaserver.service.log.ErrorLogService;
+import cn.programcx.foxnaserver.util.JwtUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/file/delta")
+@Tag(name = "DeltaSync", description = "增量同步（rsync 算法）相关接口")
+@ApiResponse(responseCode = "403", description = "没有相关权限")
+public class DeltaSyncController {
+
+    @Autowired
+    private DeltaSyncService deltaSyncService;
+
+    @Autowired
+    private ErrorLogService errorLogService;
+
+    @Autowired
+    private IoBandwidthScheduler ioBandwidthScheduler;
+
+    @Operation(
+            summary = "获取文件签名",
+            description = "返回二进制签名：文件大小、修改时间、块大小以及每块的 rsync 弱校验和与 SHA-256 前 16 字节，格式见 DeltaSyncService；"
+                    + "blockSize 省略时按文件大小自动选择"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "返回签名"),
+            @ApiResponse(responseCode = "404", description = "文件不存在")
+    })
+    @CheckFilePermission(type = "Read", paramFields = {"path"})
+    @GetMapping("/signature")
+    public ResponseEntity<?> signature(@RequestParam("path") String path,
+                                       @RequestParam(value = "blockSize", defaultValue = "0") int blockSize,
+                                       HttpServletRequest request) {
+        try {
+            byte[] signature = deltaSyncService.signature(Paths.get(path), blockSize);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).body(signature);
+        } catch (NoSuchFileException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("status", "failed", "message", "文件不存在！"));
+        } catch (IOException e) {
+            errorLogService.insertErrorLog(request, e, "计算文件签名失败，路径：" + path + "，" + e.getMessage());
+            log.error("[{}]计算文件签名失败，路径: {}, 错误信息: {}", JwtUtil.getCurrentUuid(), path, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("status", "failed", "message", "计算签名失败！"));
+        }
+    }
+
+    @Operation(
+            summary = "应用增量补丁",
+            description = "请求体为二进制补丁（引用服务器已有的块 + 新数据），服务器在临时文件中重建后校验 SHA-256 并原子替换目标文件；"
+                    + "基准文件在获取签名后被修改时返回 409，需要重新获取签名"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "同步成功"),
+            @ApiResponse(responseCode = "400", description = "补丁格式不正确"),
+            @ApiResponse(responseCode = "409", description = "基准文件已变化或结果校验失败")
+    })
+    @CheckFilePermission(type = "Write", paramFields = {"path"})
+    @PostMapping("/apply")
+    public ResponseEntity<?> apply(@RequestParam("path") String path, HttpServletRequest request) {
+        Path target = Paths.get(path);
+        try {
+            String sha256 = deltaSyncService.apply(JwtUtil.getCurrentUuid(), target,
+                    ioBandwidthScheduler.throttle(request.getInputStream(), JwtUtil.getCurrentUuid(), IoBandwidthScheduler.IoClass.BULK));
+            return ResponseEntity.ok(Map.of("status", "success", "path", path, "sha256", sha256));
+        } catch (IllegalArgumentException | EOFException e) {
+            return ResponseEntity.badRequest().body(Map.of("status", "failed", "message",
+                    e instanceof EOFException ? "补丁不完整" : e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("status", "failed", "message", e.getMessage()));
+        } catch (IOException e) {
+            errorLogService.insertErrorLog(request, e, "应用增量补丁失败，路径：" + path + "，" + e.getMessage());
+            log.error("[{}]应用增量补丁失败，路径: {}, 错误信息: {}", JwtUtil.getCurrentUuid(), path, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("status", "failed", "message", "增量同步失败！"));
+        }
+    }
+}
@@ -2,20 +2,34 @@ package cn.programcx.foxnaserver.api.file;
 
 import cn.programcx.foxnaserver.annotation.CheckFilePermission;
 
+import cn.programcx.foxnaserver.dto.file.CursorPageResponse;
+import cn.programcx.foxnaserver.dto.file.DirEntry;
 import cn.programcx.foxnaserver.dto.file.FileInfo;
 import cn.programcx.foxnaserver.dto.file.PageResponse;
+import cn.programcx.foxnaserver.service.file.DirectoryListingService;
+import cn.programcx.foxnaserver.service.file.DirectorySizeService;
+import cn.programcx.foxnaserver.service.file.DirectorySnapshotCache;
+import cn.programcx.foxnaserver.service.file.DirectoryTreeService;
 import cn.programcx.foxnaserver.util.JwtUtil;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 
 @Slf4j
@@ -24,6 +38,18 @@ import java.util.*;
 @Tag(name = "FileDirInfo", description = "文件目录信息相关接口")
 public class FileDirInfoController {
 
+    @Autowired
+    private DirectoryListingService directoryListingService;
+
+    @Autowired
+    private DirectorySnapshotCache directorySnapshotCache;
+
+    @Autowired
+    private DirectorySizeService directorySizeService;
+
+    @Autowired
+    private DirectoryTreeService directoryTreeService;
+
     @Operation(
             summary = "获取目录列表",
             description = "获取指定目录下的文件和子目录列表，支持分页和排序"
@@ -36,67 +62,33 @@ public class FileDirInfoController {
                                                           @RequestParam(defaultValue = "200") int pageSize,
                                                           @RequestParam(value = "sortBy", defaultValue = "name") String sortBy,
                                                           @RequestParam(value = "order", defaultValue = "asc") String order) {
-        File dir = new File(path);
+        Path dir = Paths.get(path);
 
-        if (!dir.exists()) {
+        if (!Files.exists(dir)) {
             return ResponseEntity.notFound().build();
         }
-        if (!dir.isDirectory()) {
+        if (!Files.isDirectory(dir) || page < 1 || pageSize < 1) {
             return ResponseEntity.badRequest().build();
         }
 
-        File[] files = dir.listFiles();
-        if (files == null || files.length == 0) {
-            PageResponse<FileInfo> emptyPage = new PageResponse<>();
-            emptyPage.setList(Collections.emptyList());
-            emptyPage.setTotal(0);
-            emptyPage.setFrom(0);
-            emptyPage.setTo(0);
-            emptyPage.setPage(page);
-            emptyPage.setPageSize(pageSize);
-            emptyPage.setTotalPage(0);
-            return ResponseEntity.ok(emptyPage);
-        }
-
-        List<FileInfo> list = new ArrayList<>();
-        for (File file : files) {
-            FileInfo info = FileInfo.of(file);
-            list.add(info);
+        long offset = (long) (page - 1) * pageSize;
+        DirectoryListingService.ListingResult result;
+        try {
+            result = directoryListingService.listPage(dir, sortBy, order, offset, pageSize);
+        } catch (IOException e) {
+            log.error("[{}]获取目录列表失败: {}, {}", JwtUtil.getCurrentUuid(), path, e.getMessage());
+            return ResponseEntity.status(500).build();
         }
 
-        // 排序逻辑不变
-        if (sortBy != null && !sortBy.isEmpty()) {
-            boolean asc = "asc".equalsIgnoreCase(order);
-            list.sort((f1, f2) -> {
-                int typeCmp = compareFileType(f1.getType(), f2.getType());
-                if (typeCmp != 0) return typeCmp;
-
-                Object o1 = getFieldValue(f1, sortBy);
-                Object o2 = getFieldValue(f2, sortBy);
-
-                if (o1 == null && o2 == null) return 0;
-                if (o1 == null) return asc ? -1 : 1;
-                if (o2 == null) return asc ? 1 : -1;
-
-                int cmp;
-                if (o1 instanceof String && o2 instanceof String) {
-                    cmp = ((String) o1).compareToIgnoreCase((String) o2);
-                } else if (o1 instanceof Number && o2 instanceof Number) {
-                    cmp = Long.compare(((Number) o1).longValue(), ((Number) o2).longValue());
-                } else if (o1 instanceof Comparable && o2 instanceof Comparable) {
-                    cmp = ((Comparable) o1).compareTo(o2);
-                } else {
-                    cmp = o1.toString().compareTo(o2.toString());
-                }
-                return asc ? cmp : -cmp;
-            });
+        // 只有当前页才转换为 FileInfo
+        List<FileInfo> pageList = new ArrayList<>(result.getEntries().size());
+        for (DirEntry entry : result.getEntries()) {
+            pageList.add(FileInfo.of(entry));
         }
 
-        int total = list.size();
-        int from = Math.min((page - 1) * pageSize, total);
-        int to = Math.min(from + pageSize, total);
-
-        List<FileInfo> pageList = list.subList(from, to);
+        long total = result.getTotal();
+        long from = Math.min(offset, total);
+        long to = Math.min(from + pageSize, total);
 
         PageResponse<FileInfo> pageResponse = new PageResponse<>();
         pageResponse.setList(pageList);
@@ -105,7 +97,7 @@ public class FileDirInfoController {
         pageResponse.setTo(to);
         pageResponse.setPage(page);
         pageResponse.setPageSize(pageSize);
-        pageResponse.setTotalPage(total / pageSize + (total % pageSize == 0 ? 0 : 1));
+        pageResponse.setTotalPage((int) (total / pageSize + (total % pageSize == 0 ? 0 : 1)));
 
         log.info("[{}]获取目录列表成功: {}, 页码: {}, 每页大小: {}, 排序字段: {}, 排序方式: {}, 本页实际个数：{}",
                 JwtUtil.getCurrentUuid(), path, page, pageSize, sortBy, order, pageList.size());
@@ -113,26 +105,80 @@ public class FileDirInfoController {
         return ResponseEntity.ok(pageResponse);
     }
 
+    @Operation(
+            summary = "按游标获取目录列表",
+            description = "获取指定目录下的文件和子目录列表，使用上一页返回的 nextCursor 翻页，翻页代价与页码无关"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "成功获取目录列表"),
+            @ApiResponse(responseCode = "400", description = "路径不是目录或游标无效"),
+            @ApiResponse(responseCode = "404", description = "目录不存在")
+    })
+    @CheckFilePermission(type = "Read", paramFields = {"path"})
+    @GetMapping("/getListByCursor")
+    public ResponseEntity<CursorPageResponse<FileInfo>> getListByCursor(@RequestParam("path") String path,
+                                                                        @RequestParam(value = "cursor", required = false) String cursor,
+                                                                        @RequestParam(defaultValue = "200") int pageSize,
+                                                                        @RequestParam(value = "sortBy", defaultValue = "name") String sortBy,
+                                                                        @RequestParam(value = "order", defaultValue = "asc") String order) {
+        Path dir = Paths.get(path);
+
+        if (!Files.exists(dir)) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!Files.isDirectory(dir) || pageSize < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        DirectoryListingService.ListingResult result;
+        try {
+            result = directoryListingService.listAfter(dir, sortBy, order, cursor, pageSize);
+        } catch (IllegalArgumentException e) {
+            log.warn("[{}]目录列表游标无效: {}, {}", JwtUtil.getCurrentUuid(), path, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IOException e) {
+            log.error("[{}]获取目录列表失败: {}, {}", JwtUtil.getCurrentUuid(), path, e.getMessage());
+            return ResponseEntity.status(500).build();
+        }
+
+        List<DirEntry> entries = result.getEntries();
+        List<FileInfo> pageList = new ArrayList<>(entries.size());
+        for (DirEntry entry : entries) {
+            pageList.add(FileInfo.of(entry));
+        }
+
+        CursorPageResponse<FileInfo> response = new CursorPageResponse<>();
+        response.setList(pageList);
+        response.setTotal(result.getTotal());
+        response.setPageSize(pageSize);
+        response.setHasMore(result.isHasMore());
+        if (result.isHasMore() && !entries.isEmpty()) {
+            response.setNextCursor(directoryListingService.encodeCursor(sortBy, order, entries.get(entries.size() - 1)));
+        }
+
+        log.info("[{}]按游标获取目录列表成功: {}, 每页大小: {}, 排序字段: {}, 排序方式: {}, 本页实际个数：{}",
+                JwtUtil.getCurrentUuid(), path, pageSize, sortBy, order, pageList.size());
+
+        return ResponseEntity.ok(response);
+    }
+
 
     @GetMapping("/dir-list")
     public ResponseEntity<?> listDirectories(@RequestParam(value = "path") String path) {
         try {
             List<Map<String,String>> directories = new ArrayList<>();
 
-            File dir = new File(path);
-            if (!dir.exists() || !dir.isDirectory()) {
+            Path dir = Paths.get(path);
+            if (!Files.isDirectory(dir)) {
                 return ResponseEntity.badRequest().body("指定路径不存在或不是目录");
             }
 
-            File[] files = dir.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isDirectory()) {
-                        Map<String,String> map = new HashMap<>();
-                        map.put("name",file.getName());
-                        map.put("path",file.getPath().replace(File.separatorChar,'/'));
-                        directories.add(map);
-                    }
+            for (DirEntry entry : directorySnapshotCache.get(dir).getEntries()) {
+                if (entry.isDirectory()) {
+                    Map<String,String> map = new HashMap<>();
+                    map.put("name", entry.getName());
+                    map.put("path", entry.getPath().toString().replace(File.separatorChar,'/'));
+                    directories.add(map);
                 }
             }
             return ResponseEntity.ok(directories);
@@ -142,36 +188,72 @@ public class FileDirInfoController {
         }
     }
 
+    @Operation(
+            summary = "获取目录树",
+            description = "一次返回指定目录下 depth 层以内的所有子目录（每个节点带 parent 与子目录数 childCount），"
+                    + "同层并行读取，JSON 边遍历边输出；depth 超过服务器上限时按上限处理，节点数超过上限时 truncated=true"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "开始输出目录树"),
+            @ApiResponse(responseCode = "400", description = "路径不是目录")
+    })
+    @CheckFilePermission(type = "Read", paramFields = {"path"})
+    @GetMapping("/tree")
+    public ResponseEntity<StreamingResponseBody> tree(@RequestParam("path") String path,
+                                                      @RequestParam(value = "depth", defaultValue = "2") int depth) {
+        Path dir = Paths.get(path);
+        if (!Files.isDirectory(dir)) {
+            return ResponseEntity.badRequest().build();
+        }
 
-    private int compareFileType(String type1, String type2) {
-        if (type1 == null && type2 == null) return 0;
-        if (type1 == null) return 1;  // 空的排后面
-        if (type2 == null) return -1;
-
-        if (type1.equalsIgnoreCase(type2)) return 0;
-        if ("directory".equalsIgnoreCase(type1)) return -1;
-        if ("directory".equalsIgnoreCase(type2)) return 1;
-        return type1.compareToIgnoreCase(type2);
+        int limitedDepth = directoryTreeService.clampDepth(depth);
+        log.info("[{}]获取目录树: {}, 深度: {}", JwtUtil.getCurrentUuid(), path, limitedDepth);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> directoryTreeService.writeTree(dir, limitedDepth, out));
     }
 
-    /**
-     * 通过反射获取FileInfo的字段值
-     */
-    private Object getFieldValue(FileInfo fileInfo, String fieldName) {
-        switch (fieldName) {
-            case "name":
-                return fileInfo.getName();
-            case "path":
-                return fileInfo.getPath();
-            case "size":
-                return fileInfo.getSize();
-            case "lastModified":
-                return fileInfo.getLastModified();
-            case "type":
-                return fileInfo.getType();
-            default:
-                return null;
+    @Operation(
+            summary = "获取目录大小",
+            description = "返回后台统计的目录递归大小与文件数；尚未统计时触发后台统计并返回 computing=true，稍后再查询"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "成功获取目录大小"),
+            @ApiResponse(responseCode = "400", description = "路径不是目录")
+    })
+    @CheckFilePermission(type = "Read", paramFields = {"path"})
+    @GetMapping("/dirSize")
+    public ResponseEntity<?> dirSize(@RequestParam("path") String path) {
+        Path dir = Paths.get(path);
+        if (!Files.isDirectory(dir)) {
+            return ResponseEntity.badRequest().body(Map.of("status", "failed", "message", "指定路径不存在或不是目录"));
         }
+
+        DirectorySizeService.DirSize size = directorySizeService.get(dir);
+        Map<String, Object> resultMap = new HashMap<>();
+        resultMap.put("status", "success");
+        resultMap.put("path", path);
+        if (size == null) {
+            directorySizeService.requestCompute(dir);
+            resultMap.put("computing", true);
+            log.info("[{}]目录大小尚未统计，已提交后台统计: {}", JwtUtil.getCurrentUuid(), path);
+            return ResponseEntity.ok(resultMap);
+        }
+        resultMap.put("computing", false);
+        resultMap.put("size", size.bytes());
+        resultMap.put("fileCount", size.files());
+        resultMap.put("computedAt", size.computedAt());
+        return ResponseEntity.ok(resultMap);
+    }
+
+    @Operation(
+            summary = "获取目录缓存统计",
+            description = "返回目录快照缓存的命中、未命中、淘汰、失效次数以及占用的估算内存，用于调整缓存容量"
+    )
+    @ApiResponse(responseCode = "200", description = "成功获取缓存统计")
+    @GetMapping("/cache-stats")
+    public ResponseEntity<Map<String, Object>> cacheStats() {
+        return ResponseEntity.ok(directorySnapshotCache.getStats());
     }
 
 }
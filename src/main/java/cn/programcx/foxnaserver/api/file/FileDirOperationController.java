@@ -2,10 +2,16 @@ package cn.programcx.foxnaserver.api.file;
 
 import cn.programcx.foxnaserver.annotation.CheckFilePermission;
 import cn.programcx.foxnaserver.entity.Resource;
+import cn.programcx.foxnaserver.event.FileChangeEvent;
 import cn.programcx.foxnaserver.mapper.ResourceMapper;
+import cn.programcx.foxnaserver.service.file.FileDownloadService;
+import cn.programcx.foxnaserver.service.file.FileOperationJob;
+import cn.programcx.foxnaserver.service.file.FileOperationService;
+import cn.programcx.foxnaserver.service.file.FilePermissionService;
+import cn.programcx.foxnaserver.service.file.ZipStreamService;
+import cn.programcx.foxnaserver.service.io.IoBandwidthScheduler;
 import cn.programcx.foxnaserver.service.log.ErrorLogService;
 import cn.programcx.foxnaserver.util.JwtUtil;
-import cn.programcx.foxnaserver.util.LimitedInputStream;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -15,22 +21,22 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.io.*;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 @Slf4j
 @RestController
@@ -42,10 +48,22 @@ public class FileDirOperationController {
     private ErrorLogService errorLogService;
     @Autowired
     private ResourceMapper resourceMapper;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private FileDownloadService fileDownloadService;
+    @Autowired
+    private ZipStreamService zipStreamService;
+    @Autowired
+    private FilePermissionService filePermissionService;
+    @Autowired
+    private FileOperationService fileOperationService;
+    @Autowired
+    private IoBandwidthScheduler ioBandwidthScheduler;
 
     @Operation(
             summary = "删除文件或目录",
-            description = "删除指定的文件或目录，支持批量删除"
+            description = "删除指定的文件或目录，支持批量删除；默认移入所在授权目录的回收站，无法移入的条目记为失败，permanent=true 时彻底删除"
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "成功删除文件或目录",
@@ -57,60 +75,25 @@ public class FileDirOperationController {
     })
     @CheckFilePermission(type = "Write", bodyFields = {"paths"})
     @DeleteMapping("delete")
-    public ResponseEntity<?> delete(@RequestBody List<String> paths, HttpServletRequest request) {
+    public ResponseEntity<?> delete(@RequestBody List<String> paths,
+                                    @RequestParam(value = "permanent", defaultValue = "false") boolean permanent,
+                                    HttpServletRequest request) {
         Map<String, Object> resultMap = new HashMap<>();
 
-        List<Map<String, Object>> failedPaths = new ArrayList<>();
-
-        for (String path : paths) {
-            File dir = new File(path);
-
-            if (!dir.exists()) {
-                addFailedPath(failedPaths, path, "路径不存在");
-                continue;
-            }
-
-            if (dir.isDirectory()) {
-                Path pathDel = Paths.get(path);
-                try {
-                    Files.walkFileTree(pathDel, new SimpleFileVisitor<>() {
-                        @Override
-                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
-                                throws IOException {
-                            Files.delete(file);
-                            return FileVisitResult.CONTINUE;
-                        }
-
-                        @Override
-                        public FileVisitResult postVisitDirectory(Path dir, IOException exc)
-                                throws IOException {
-                            Files.delete(dir);
-                            removeResourcePathName(dir.toAbsolutePath().toString()); // 删除资源路径
-                            return FileVisitResult.CONTINUE;
-                        }
-                    });
-                } catch (IOException e) {
-                    errorLogService.insertErrorLog(request, e, "遍历目录 " + pathDel + "失败！" + e.getMessage());
-                    addFailedPath(failedPaths, path, e.getMessage());
-                }
-            } else {
-                if (!dir.delete()) {
-
-                    errorLogService.insertErrorLog(request, new Exception("删除文件 " + path + " 失败！"), "删除文件 " + path + " 失败！");
-
-                    addFailedPath(failedPaths, path, "文件删除失败");
-                }
-            }
-        }
+        // 与后台任务共用同一引擎，在请求线程上同步执行，不排在其他用户的后台任务之后
+        FileOperationJob job = fileOperationService.deleteNow(JwtUtil.getCurrentUuid(), paths, permanent);
+        List<Map<String, Object>> failedPaths = job.getFailedPaths();
 
         if (!failedPaths.isEmpty()) {
+            errorLogService.insertErrorLog(request, new IOException("删除文件或目录失败"), "删除文件或目录失败：" + failedPaths);
+
             resultMap.put("status", "failed");
-            resultMap.put("successCount", paths.size() - failedPaths.size());
-            resultMap.put("failedCount", failedPaths.size());
+            resultMap.put("successCount", paths.size() - job.getFailedCount());
+            resultMap.put("failedCount", job.getFailedCount());
             resultMap.put("totalCount", paths.size());
             resultMap.put("failedPaths", failedPaths);
 
-            log.error("[{}]删除文件或目录失败，路径数量: {}, 失败数量:{}, 请求的目录数组：{}, 出现错误的目录：{}，", JwtUtil.getCurrentUuid(), paths.size(), failedPaths.size(), paths, failedPaths);
+            log.error("[{}]删除文件或目录失败，路径数量: {}, 失败数量:{}, 请求的目录数组：{}, 出现错误的目录：{}，", JwtUtil.getCurrentUuid(), paths.size(), job.getFailedCount(), paths, failedPaths);
             return new ResponseEntity<>(resultMap, HttpStatus.INTERNAL_SERVER_ERROR);
         }
 
@@ -123,68 +106,36 @@ public class FileDirOperationController {
 
     @Operation(
             summary = "下载文件或文件夹",
-            description = "下载指定路径的文件或文件夹，文件夹会自动打包为ZIP"
+            description = "下载指定路径的文件或文件夹，文件夹会以流式ZIP返回；compress=false 时整个ZIP为STORED模式，长度固定，支持断点续传"
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "成功下载文件或ZIP包"),
-            @ApiResponse(responseCode = "206", description = "部分内容响应，支持断点续传（仅文件）"),
+            @ApiResponse(responseCode = "206", description = "部分内容响应，支持断点续传与多段 Range（仅文件）"),
+            @ApiResponse(responseCode = "304", description = "文件未修改（If-None-Match / If-Modified-Since）"),
             @ApiResponse(responseCode = "404", description = "文件或文件夹未找到")
     })
     @CheckFilePermission(type = "Read", paramFields = {"path"})
     @GetMapping("get")
-    public ResponseEntity<?> get(@RequestHeader(required = false,value = "Range") String Range,@RequestParam("path") String path,@RequestParam(value = "inline",required = false) boolean isInline, HttpServletRequest request) throws IOException {
+    public Object get(@RequestParam("path") String path,
+                                 @RequestParam(value = "inline",required = false) boolean isInline,
+                                 @RequestParam(value = "compress", defaultValue = "true") boolean compress,
+                                 HttpServletRequest request, HttpServletResponse response) throws IOException {
         File file = new File(path);
         if (!file.exists()) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
         if (file.isDirectory()) {
-            return downloadDirectory(path, request);
-        }
-
-        long fileLength = file.length();
-        long start = 0;
-        long end = fileLength - 1;
-
-        if (Range != null && Range.startsWith("bytes=")) {
-            String[] ranges = Range.substring(6).split("-");
-            try {
-                start = Long.parseLong(ranges[0]);
-                if (ranges.length > 1 && !ranges[1].isEmpty()) {
-                    end = Long.parseLong(ranges[1]);
-                }
-            } catch (NumberFormatException ignored) {
-            }
-        }
-
-        if (start > end || end >= fileLength) {
-            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
-                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + fileLength)
-                    .build();
+            return downloadDirectory(path, compress, request, response);
         }
 
-        long contentLength = end - start + 1;
-        InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
-        inputStream.skip(start);
+        // 条件请求、Range、sendfile 由下载服务处理；需要拷贝的内容在异步执行器中写出，请求线程立即释放
+        StreamingResponseBody body = fileDownloadService.serve(file.toPath(), isInline, request, response);
 
-        InputStreamResource resource = new InputStreamResource(new LimitedInputStream(inputStream, contentLength));
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-        headers.setContentLength(contentLength);
-        if(isInline){
-            headers.set(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + URLEncoder.encode(file.getName(), "UTF-8").replaceAll("\\+", "%20") + "\"");
-        }else {
-            headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + URLEncoder.encode(file.getName(), "UTF-8").replaceAll("\\+", "%20") + "\"");
-        }
-        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
-        headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + fileLength);
-
-        log.info("[{}]下载文件：{}, Range: {}, 起始字节: {}, 结束字节: {}, 文件长度: {}", JwtUtil.getCurrentUuid(), path, Range, start, end, fileLength);
-
-        return new ResponseEntity<>(resource, headers, Range == null ? HttpStatus.OK : HttpStatus.PARTIAL_CONTENT);
+        log.info("[{}]下载文件：{}, Range: {}, 响应状态: {}, 文件长度: {}", JwtUtil.getCurrentUuid(), path, request.getHeader(HttpHeaders.RANGE), response.getStatus(), file.length());
+        return body;
     }
 
-    private ResponseEntity<?> downloadDirectory(String path, HttpServletRequest request) {
+    private Object downloadDirectory(String path, boolean compress, HttpServletRequest request, HttpServletResponse response) {
         File folder = new File(path);
         if (!folder.exists()) {
             log.warn("[{}]下载文件夹失败，路径不存在: {}", JwtUtil.getCurrentUuid(), path);
@@ -195,53 +146,80 @@ public class FileDirOperationController {
             return ResponseEntity.badRequest().body(Map.of("status", "failed", "message", "路径不是文件夹"));
         }
 
-        String zipFileName = folder.getName() + ".zip";
+        ZipStreamService.ArchivePlan plan;
         try {
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            try (ZipOutputStream zipOut = new ZipOutputStream(byteArrayOutputStream)) {
-                zipFolder(folder.toPath(), folder.getName(), zipOut);
-            }
-            byte[] zipBytes = byteArrayOutputStream.toByteArray();
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-            headers.setContentLength(zipBytes.length);
-            headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + URLEncoder.encode(zipFileName, "UTF-8").replaceAll("\\+", "%20") + "\"");
-
-            log.info("[{}]下载文件夹成功: {}, 大小: {} bytes", JwtUtil.getCurrentUuid(), path, zipBytes.length);
-
-            return new ResponseEntity<>(zipBytes, headers, HttpStatus.OK);
+            plan = zipStreamService.plan(folder.toPath(), compress);
         } catch (IOException e) {
             errorLogService.insertErrorLog(request, e, "打包文件夹 " + path + " 失败：" + e.getMessage());
             log.error("[{}]下载文件夹失败: {}, 错误: {}", JwtUtil.getCurrentUuid(), path, e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("status", "failed", "message", "打包文件夹失败"));
         }
-    }
 
-    private void zipFolder(Path sourcePath, String entryName, ZipOutputStream zipOut) throws IOException {
-        File file = sourcePath.toFile();
-        if (file.isHidden()) {
-            return;
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + URLEncoder.encode(plan.getFileName(), StandardCharsets.UTF_8).replaceAll("\\+", "%20") + "\"");
+        headers.setETag(plan.getEtag());
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && ifNoneMatch.contains(plan.getEtag())) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
         }
-        if (file.isDirectory()) {
-            File[] children = file.listFiles();
-            if (children != null) {
-                for (File child : children) {
-                    zipFolder(child.toPath(), entryName + "/" + child.getName(), zipOut);
-                }
-            }
-        } else {
-            ZipEntry zipEntry = new ZipEntry(entryName);
-            zipOut.putNextEntry(zipEntry);
-            byte[] buffer = new byte[8192];
-            try (FileInputStream fis = new FileInputStream(file)) {
-                int len;
-                while ((len = fis.read(buffer)) > 0) {
-                    zipOut.write(buffer, 0, len);
+
+        long start = 0;
+        long length = plan.getLength();
+        HttpStatus status = HttpStatus.OK;
+        if (plan.isLengthKnown()) {
+            // 纯 STORED 归档布局确定、长度已知，可以断点续传
+            headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+            String range = request.getHeader(HttpHeaders.RANGE);
+            String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+            if (range != null && range.startsWith("bytes=") && !range.contains(",")
+                    && (ifRange == null || ifRange.equals(plan.getEtag()))) {
+                String[] parts = range.substring(6).split("-", -1);
+                try {
+                    long end = plan.getLength() - 1;
+                    if (parts[0].isEmpty()) {
+                        start = Math.max(0, plan.getLength() - Long.parseLong(parts[1]));
+                    } else {
+                        start = Long.parseLong(parts[0]);
+                        if (parts.length > 1 && !parts[1].isEmpty()) {
+                            end = Math.min(end, Long.parseLong(parts[1]));
+                        }
+                    }
+                    if (start > end || start >= plan.getLength()) {
+                        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + plan.getLength())
+                                .build();
+                    }
+                    length = end - start + 1;
+                    status = HttpStatus.PARTIAL_CONTENT;
+                    headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + plan.getLength());
+                } catch (NumberFormatException ignored) {
+                    start = 0;
                 }
             }
-            zipOut.closeEntry();
+            headers.setContentLength(length);
         }
+
+        long skip = start;
+        long limit = plan.isLengthKnown() ? length : Long.MAX_VALUE;
+        // 响应体在异步线程中写出，限速键需要在请求线程中取得
+        String ioKey = IoBandwidthScheduler.keyOf(request);
+        StreamingResponseBody body = outputStream -> {
+            try {
+                zipStreamService.write(plan, skip, limit,
+                        ioBandwidthScheduler.throttle(outputStream, ioKey, IoBandwidthScheduler.IoClass.BULK));
+                log.info("[{}]下载文件夹成功: {}, 条目数: {}, 起始字节: {}", JwtUtil.getCurrentUuid(), path, plan.getItems().size(), skip);
+            } catch (IOException e) {
+                // 多数情况下是客户端中断了下载
+                log.warn("[{}]下载文件夹中断: {}, 错误: {}", JwtUtil.getCurrentUuid(), path, e.getMessage());
+                throw e;
+            }
+        };
+        // 返回值声明为 Object 时 MVC 只能识别直接返回的 StreamingResponseBody，状态码与响应头直接写入 response
+        response.setStatus(status.value());
+        headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        return body;
     }
 
 
@@ -257,56 +235,33 @@ public class FileDirOperationController {
     @CheckFilePermission(type = "Write", bodyFields = {"pathsList"}, bodyMapKeyNames = {"oldPath", "newPath"})
     public ResponseEntity<?> move(@RequestBody List<Map<String, String>> pathsList, HttpServletRequest request) {
         Map<String, Object> resultMap = new HashMap<>();
-        List<Map<String, Object>> failedPaths = new ArrayList<>();
-        int successCount = 0;
 
-        for (Map<String, String> pathMap : pathsList) {
-            String oldPath = pathMap.get("oldPath");
-            String newPath = pathMap.get("newPath");
-
-            if (oldPath == null || newPath == null) {
-                addFailedPath(failedPaths, "", "oldPath 或 newPath 不能为空！");
-                continue;
-            }
-
-            Path sourcePath = Paths.get(oldPath);
-            Path targetPath = Paths.get(newPath);
-
-            if (!Files.exists(sourcePath)) {
-                addFailedPath(failedPaths, List.of(oldPath, newPath), "源文件不存在！");
-                continue;
-            }
-
-            try {
-                if (Files.isRegularFile(sourcePath)) {
-                    // 是普通文件
-                    Files.move(sourcePath, targetPath);
-                } else {
-                    // 是目录
-                    copyDirectory(sourcePath, targetPath, failedPaths, request);
-                    deleteDirectoryRecursively(sourcePath, request);
-                    removeResourcePathName(oldPath); // 删除资源路径
-                }
-                successCount++;
-            } catch (IOException e) {
-                errorLogService.insertErrorLog(request, e, "移动 " + sourcePath + " 到" + targetPath + " 失败：" + e.getMessage());
-                addFailedPath(failedPaths, List.of(oldPath, newPath), "移动失败：" + e.getMessage());
-            }
+        FileOperationJob job;
+        try {
+            job = fileOperationService.moveNow(JwtUtil.getCurrentUuid(), pathsList);
+        } catch (IllegalArgumentException e) {
+            resultMap.put("status", "failed");
+            resultMap.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(resultMap);
         }
+        List<Map<String, Object>> failedPaths = job.getFailedPaths();
+        int successCount = pathsList.size() - job.getFailedCount();
 
         if (!failedPaths.isEmpty()) {
+            errorLogService.insertErrorLog(request, new IOException("移动文件或目录失败"), "移动文件或目录失败：" + failedPaths);
+
             resultMap.put("status", "failed");
             resultMap.put("successCount", successCount);
-            resultMap.put("failedCount", pathsList.size() - successCount);
+            resultMap.put("failedCount", job.getFailedCount());
             resultMap.put("failedPaths", failedPaths);
-            log.error("[{}]移动文件或目录失败，路径数量: {}, 成功数量: {}, 失败数量: {}, 目录数组：{}", JwtUtil.getCurrentUuid(), pathsList.size(), successCount, failedPaths.size(), pathsList);
+            log.error("[{}]移动文件或目录失败，路径数量: {}, 成功数量: {}, 失败数量: {}, 目录数组：{}", JwtUtil.getCurrentUuid(), pathsList.size(), successCount, job.getFailedCount(), pathsList);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(resultMap);
         }
 
         resultMap.put("status", "success");
         resultMap.put("totalMoved", successCount);
 
-        log.info("[{}]移动文件或目录成功，路径数量: {}, 成功数量: {}, 失败数量: {}, 目录数组：{}", JwtUtil.getCurrentUuid(), pathsList.size(), successCount, failedPaths.size(), pathsList);
+        log.info("[{}]移动文件或目录成功，路径数量: {}, 成功数量: {}, 失败数量: {}, 目录数组：{}", JwtUtil.getCurrentUuid(), pathsList.size(), successCount, 0, pathsList);
         return ResponseEntity.ok(resultMap);
     }
 
@@ -323,50 +278,31 @@ public class FileDirOperationController {
     @PostMapping("copy")
     public ResponseEntity<?> copy(@RequestBody List<Map<String, String>> pathsList, HttpServletRequest request) {
         Map<String, Object> resultMap = new HashMap<>();
-        List<Map<String, Object>> failedPaths = new ArrayList<>();
-        int successCount = 0;
-
-
-        for (Map<String, String> pathMap : pathsList) {
-
-            String oldPath = pathMap.get("oldPath");
-            String newPath = pathMap.get("newPath");
-            Path sourcePath = Paths.get(oldPath);
-            Path targetPath = Paths.get(newPath);
-
-            if (!Files.exists(sourcePath)) {
-                errorLogService.insertErrorLog(request, new FileNotFoundException("源文件不存在！"), "源文件 " + sourcePath + " 不存在！");
-                addFailedPath(failedPaths, List.of(oldPath, newPath), "源文件不存在！");
-                continue;
-            }
-
-            try {
-                if (Files.isRegularFile(sourcePath)) {
-
-                    Files.copy(sourcePath, targetPath);
-
-                } else {
-                    copyDirectory(sourcePath, targetPath, failedPaths, request);
-                }
-                successCount++;
-            } catch (IOException e) {
-                errorLogService.insertErrorLog(request, e, "复制 " + sourcePath + " 到 " + targetPath + " 失败：" + e.getMessage());
-                addFailedPath(failedPaths, List.of(oldPath, newPath), "复制失败：" + e.getMessage());
-            }
-
 
+        FileOperationJob job;
+        try {
+            job = fileOperationService.copyNow(JwtUtil.getCurrentUuid(), pathsList);
+        } catch (IllegalArgumentException e) {
+            resultMap.put("status", "failed");
+            resultMap.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(resultMap);
         }
+        List<Map<String, Object>> failedPaths = job.getFailedPaths();
+        int successCount = pathsList.size() - job.getFailedCount();
+
         if (!failedPaths.isEmpty()) {
+            errorLogService.insertErrorLog(request, new IOException("复制文件或目录失败"), "复制文件或目录失败：" + failedPaths);
+
             resultMap.put("status", "failed");
             resultMap.put("totalCount", pathsList.size());
-            resultMap.put("failedCount", pathsList.size() - successCount);
+            resultMap.put("failedCount", job.getFailedCount());
             resultMap.put("failedPaths", failedPaths);
 
-            log.error("[{}]复制文件或目录失败，路径数量: {}, 成功数量: {}, 失败数量: {}, 目录数组：{}", JwtUtil.getCurrentUuid(), pathsList.size(), successCount, failedPaths.size(), pathsList);
+            log.error("[{}]复制文件或目录失败，路径数量: {}, 成功数量: {}, 失败数量: {}, 目录数组：{}", JwtUtil.getCurrentUuid(), pathsList.size(), successCount, job.getFailedCount(), pathsList);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(resultMap);
         }
 
-        log.info("[{}]复制文件或目录成功，路径数量: {}, 成功数量: {}, 失败数量: {}, 目录数组：{}", JwtUtil.getCurrentUuid(), pathsList.size(), successCount, failedPaths.size(), pathsList);
+        log.info("[{}]复制文件或目录成功，路径数量: {}, 成功数量: {}, 失败数量: {}, 目录数组：{}", JwtUtil.getCurrentUuid(), pathsList.size(), successCount, 0, pathsList);
         resultMap.put("status", "success");
         resultMap.put("totalCopied", successCount);
         return ResponseEntity.ok(resultMap);
@@ -409,6 +345,7 @@ public class FileDirOperationController {
 
         // 更新资源路径
         modifyResourcePathName(path, newName);
+        publishChange(List.of(path, new File(parent, newName).getPath()));
 
         log.info("[{}]重命名文件或目录成功，路径: {}, 新名称: {}", JwtUtil.getCurrentUuid(), path, newName);
         resultMap.put("status", "success");
@@ -439,7 +376,8 @@ public class FileDirOperationController {
 
         try {
             File destFile = new File(targetPath.toString());
-            InputStream inputStream = file.getInputStream();
+            InputStream inputStream = ioBandwidthScheduler.throttle(file.getInputStream(),
+                    JwtUtil.getCurrentUuid(), IoBandwidthScheduler.IoClass.BULK);
             OutputStream outputStream = new FileOutputStream(destFile);
 
             byte[] buffer = new byte[8192];
@@ -455,6 +393,7 @@ public class FileDirOperationController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("status", "failed", "message", "文件上传失败！", "error", e.getMessage()));
         }
 
+        publishChange(List.of(targetPath.toString()));
         log.info("[{}]上传文件成功，文件名: {}, 目标路径: {}", JwtUtil.getCurrentUuid(), file.getOriginalFilename(), targetPath.toString());
         return ResponseEntity.ok(Map.of("status", "success", "message", "文件上传成功！", "fileName", file.getOriginalFilename(), "path", targetPath.toString()));
 
@@ -487,6 +426,7 @@ public class FileDirOperationController {
 
         try {
             Files.createDirectories(dirPath);
+            publishChange(List.of(path));
             log.info("[{}]创建目录成功，路径: {}", JwtUtil.getCurrentUuid(), path);
             resultMap.put("status", "success");
             resultMap.put("message", "目录创建成功！");
@@ -500,58 +440,8 @@ public class FileDirOperationController {
         }
     }
 
-    private void copyDirectory(Path sourcePath, Path targetPath, List<Map<String, Object>> failedList, HttpServletRequest request) {
-        if (targetPath.startsWith(sourcePath)) {
-            addFailedPath(failedList, List.of(sourcePath.toAbsolutePath().toString(), targetPath.toAbsolutePath().toString()), "不能将目录复制到其自身或子目录中");
-            errorLogService.insertErrorLog(request, new IOException("不能将目录复制到其自身或子目录中"), "复制目录" + sourcePath + "到" + targetPath + "失败：不能将目录复制到其自身或子目录中");
-            return;
-        }
-        try {
-            Files.walk(sourcePath).forEach(src -> {
-                try {
-                    Path relative = sourcePath.relativize(src);
-                    Path dest = targetPath.resolve(relative);
-
-                    if (Files.isDirectory(src)) {
-                        Files.createDirectories(dest);
-                    } else {
-                        Files.copy(src, dest);
-                    }
-                } catch (IOException e) {
-                    errorLogService.insertErrorLog(request, e, "复制文件" + sourcePath + "到" + targetPath + "失败:" + e.getMessage());
-
-                    addFailedPath(failedList, List.of(sourcePath.toAbsolutePath().toString(), targetPath.toAbsolutePath().toString()), "复制失败：" + e.getMessage());
-                }
-            });
-        } catch (IOException e) {
-            errorLogService.insertErrorLog(request, e, "复制文件：遍历目录" + sourcePath + "失败:" + e.getMessage());
-            addFailedPath(failedList, List.of(sourcePath, targetPath), "复制失败：" + e.getMessage());
-        }
-    }
-
-
-    private void deleteDirectoryRecursively(Path path, HttpServletRequest request) {
-        try {
-            Files.walk(path)
-                    .sorted(Comparator.reverseOrder()) // 先删子文件
-                    .forEach(p -> {
-                        try {
-                            Files.delete(p);
-                        } catch (IOException e) {
-                            log.error("[{}]删除目录失败，路径: {}, 错误信息: {}", JwtUtil.getCurrentUuid(), p, e.getMessage());
-                            errorLogService.insertErrorLog(request, e, "删除目录" + path + "时" + "删除文件" + p + "失败：" + e.getMessage());
-                        }
-                    });
-        } catch (IOException e) {
-            log.error("[{}]遍历目录失败，路径: {}, 错误信息: {}", JwtUtil.getCurrentUuid(), path, e.getMessage());
-        }
-    }
-
-    private void addFailedPath(List<Map<String, Object>> failedPaths, Object path, String error) {
-        Map<String, Object> map = new HashMap<>();
-        map.put("path", path);
-        map.put("error", error);
-        failedPaths.add(map);
+    private void publishChange(List<String> paths) {
+        eventPublisher.publishEvent(new FileChangeEvent(this, paths));
     }
 
     private void modifyResourcePathName(String path, String newName) {
@@ -566,6 +456,9 @@ public class FileDirOperationController {
             resource.setFolderName(newPath);
             resourceMapper.updateById(resource);
         }
+        if (!resources.isEmpty()) {
+            filePermissionService.invalidateAll();
+        }
 
         log.info("[{}]更新资源路径成功，旧路径: {}, 新路径: {}", JwtUtil.getCurrentUuid(), path, newName);
         if (resources.isEmpty()) {
@@ -573,15 +466,4 @@ public class FileDirOperationController {
         }
 
     }
-
-    private void removeResourcePathName(String path) {
-        LambdaQueryWrapper<Resource> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(Resource::getFolderName, path.replace(File.separator, "/"));
-
-        List<Resource> resources = resourceMapper.selectList(queryWrapper);
-
-        for (Resource resource : resources) {
-            resourceMapper.deleteById(resource.getResourceId());
-        }
-    }
 }
@@ -0,0 +1,132 @@
+package cn.programcx.foxnaserver.api.file;
+
+import cn.programcx.foxnaserver.annotation.CheckFilePermission;
+import cn.programcx.foxnaserver.dto.file.FileOperationStatus;
+import cn.programcx.foxnaserver.service.file.FileOperationJob;
+import cn.programcx.foxnaserver.service.file.FileOperationService;
+import cn.programcx.foxnaserver.util.JwtUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/file/jobs")
+@Tag(name = "FileOperationJob", description = "后台复制/移动/删除任务相关接口")
+@ApiResponse(responseCode = "403", description = "没有相关权限")
+public class FileOperationJobController {
+
+    @Autowired
+    private FileOperationService fileOperationService;
+
+    @Operation(
+            summary = "提交复制任务",
+            description = "后台复制文件或目录，立即返回任务 ID，可通过任务接口查询进度或取消"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "任务已提交"),
+            @ApiResponse(responseCode = "400", description = "参数不正确")
+    })
+    @CheckFilePermission(type = "Write", bodyFields = {"pathsList"}, bodyMapKeyNames = {"oldPath", "newPath"})
+    @PostMapping("/copy")
+    public ResponseEntity<?> copy(@RequestBody List<Map<String, String>> pathsList) {
+        try {
+            FileOperationJob job = fileOperationService.submitCopy(JwtUtil.getCurrentUuid(), pathsList);
+            return accepted(job);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("status", "failed", "message", e.getMessage()));
+        }
+    }
+
+    @Operation(
+            summary = "提交移动任务",
+            description = "后台移动文件或目录；同一文件系统内为原子重命名，跨文件系统时复制后删除源"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "任务已提交"),
+            @ApiResponse(responseCode = "400", description = "参数不正确")
+    })
+    @CheckFilePermission(type = "Write", bodyFields = {"pathsList"}, bodyMapKeyNames = {"oldPath", "newPath"})
+    @PostMapping("/move")
+    public ResponseEntity<?> move(@RequestBody List<Map<String, String>> pathsList) {
+        try {
+            FileOperationJob job = fileOperationService.submitMove(JwtUtil.getCurrentUuid(), pathsList);
+            return accepted(job);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("status", "failed", "message", e.getMessage()));
+        }
+    }
+
+    @Operation(
+            summary = "提交删除任务",
+            description = "后台删除文件或目录，默认移入回收站，无法移入的条目记为失败；permanent=true 时彻底删除"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "任务已提交")
+    })
+    @CheckFilePermission(type = "Write", bodyFields = {"paths"})
+    @PostMapping("/delete")
+    public ResponseEntity<?> delete(@RequestBody List<String> paths,
+                                    @RequestParam(value = "permanent", defaultValue = "false") boolean permanent) {
+        FileOperationJob job = fileOperationService.submitDelete(JwtUtil.getCurrentUuid(), paths, permanent);
+        return accepted(job);
+    }
+
+    @Operation(
+            summary = "列出任务",
+            description = "列出当前用户的后台文件操作任务，已结束的任务保留一段时间后清除"
+    )
+    @GetMapping
+    public ResponseEntity<?> list() {
+        List<FileOperationStatus> jobs = fileOperationService.listJobs(JwtUtil.getCurrentUuid()).stream()
+                .map(FileOperationJob::toStatus)
+                .toList();
+        return ResponseEntity.ok(Map.of("status", "success", "jobs", jobs));
+    }
+
+    @Operation(
+            summary = "查询任务进度",
+            description = "返回文件数、字节数、吞吐量、预计剩余时间与失败列表"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "查询成功"),
+            @ApiResponse(responseCode = "404", description = "任务不存在")
+    })
+    @GetMapping("/{jobId}")
+    public ResponseEntity<?> status(@PathVariable("jobId") String jobId) {
+        FileOperationJob job = fileOperationService.getJob(JwtUtil.getCurrentUuid(), jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("status", "failed", "message", "任务不存在！"));
+        }
+        return ResponseEntity.ok(Map.of("status", "success", "job", job.toStatus()));
+    }
+
+    @Operation(
+            summary = "取消任务",
+            description = "取消排队中或执行中的任务，已完成的部分不会回滚"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "已取消"),
+            @ApiResponse(responseCode = "404", description = "任务不存在")
+    })
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<?> cancel(@PathVariable("jobId") String jobId) {
+        if (!fileOperationService.cancel(JwtUtil.getCurrentUuid(), jobId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("status", "failed", "message", "任务不存在！"));
+        }
+        return ResponseEntity.ok(Map.of("status", "success", "message", "任务已取消"));
+    }
+
+    private ResponseEntity<?> accepted(FileOperationJob job) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("status", "success", "jobId", job.getJobId()));
+    }
+}
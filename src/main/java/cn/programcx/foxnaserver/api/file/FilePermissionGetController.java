@@ -1,8 +1,10 @@
 package cn.programcx.foxnaserver.api.file;
 
 import cn.programcx.foxnaserver.dto.file.AuthedDir;
+import cn.programcx.foxnaserver.dto.file.PermissionCheckRequest;
 import cn.programcx.foxnaserver.entity.Resource;
 import cn.programcx.foxnaserver.mapper.ResourceMapper;
+import cn.programcx.foxnaserver.service.file.FilePermissionService;
 import cn.programcx.foxnaserver.util.JwtUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import io.swagger.v3.oas.annotations.Operation;
@@ -12,9 +14,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
 import java.util.*;
 
 @Slf4j
@@ -25,6 +30,9 @@ public class FilePermissionGetController {
     @Autowired
     private ResourceMapper mapper;
 
+    @Autowired
+    private FilePermissionService filePermissionService;
+
     @GetMapping("/getAuthedDirs")
     @Operation(
             summary = "获取已授权目录列表",
@@ -60,4 +68,31 @@ public class FilePermissionGetController {
         log.info("[{}]获取已授权目录列表成功！", JwtUtil.getCurrentUuid());
         return ResponseEntity.ok(authedDirs);
     }
+
+    @PostMapping("/check")
+    @Operation(
+            summary = "批量检查路径权限",
+            description = "一次返回多个路径在各权限类型下是否允许，供界面预先判断选中的条目可执行哪些操作"
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "路径 → 权限类型 → 是否允许"
+    )
+    public ResponseEntity<?> check(@RequestBody PermissionCheckRequest request) throws IOException {
+        List<String> paths = request.getPaths() == null ? List.of() : request.getPaths();
+        List<String> types = request.getTypes() == null || request.getTypes().isEmpty()
+                ? List.of("Read", "Write") : request.getTypes();
+        String uuid = JwtUtil.getCurrentUuid();
+
+        Map<String, Map<String, Boolean>> result = new LinkedHashMap<>();
+        for (String path : paths) {
+            result.put(path, new LinkedHashMap<>());
+        }
+        for (String type : types) {
+            Map<String, Boolean> allowed = filePermissionService.checkBatch(uuid, paths, type);
+            allowed.forEach((path, ok) -> result.get(path).put(type, ok));
+        }
+
+        return ResponseEntity.ok(Map.of("status", "success", "results", result));
+    }
 }
@@ -0,0 +1,93 @@
+package cn.programcx.foxnaserver.api.file;
+
+import cn.programcx.foxnaserver.dto.file.FileSearchQuery;
+import cn.programcx.foxnaserver.service.file.FileSearchService;
+import cn.programcx.foxnaserver.service.log.ErrorLogService;
+import cn.programcx.foxnaserver.util.JwtUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/file/search")
+@Tag(name = "FileSearch", description = "文件搜索相关接口")
+public class FileSearchController {
+
+    @Autowired
+    private FileSearchService fileSearchService;
+
+    @Autowired
+    private ErrorLogService errorLogService;
+
+    @Operation(
+            summary = "搜索文件",
+            description = "在当前用户有读权限的目录中按文件名关键字、前缀、扩展名、类别、大小范围、修改时间搜索；"
+                    + "索引由后台增量维护，truncated=true 表示还有更多结果，可缩小条件或增大 limit"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "搜索成功"),
+            @ApiResponse(responseCode = "400", description = "参数不正确")
+    })
+    @GetMapping
+    public ResponseEntity<?> search(@RequestParam(value = "keyword", required = false) String keyword,
+                                    @RequestParam(value = "prefix", required = false) String prefix,
+                                    @RequestParam(value = "ext", required = false) String ext,
+                                    @RequestParam(value = "category", required = false) String category,
+                                    @RequestParam(value = "type", required = false) String type,
+                                    @RequestParam(value = "minSize", required = false) Long minSize,
+                                    @RequestParam(value = "maxSize", required = false) Long maxSize,
+                                    @RequestParam(value = "modifiedAfter", required = false) Long modifiedAfter,
+                                    @RequestParam(value = "modifiedBefore", required = false) Long modifiedBefore,
+                                    @RequestParam(value = "path", required = false) String path,
+                                    @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                    HttpServletRequest request) {
+        if (limit < 1 || limit > FileSearchService.MAX_LIMIT
+                || (minSize != null && maxSize != null && minSize > maxSize)) {
+            return ResponseEntity.badRequest().body(Map.of("status", "failed", "message", "搜索参数不正确！"));
+        }
+
+        FileSearchQuery query = new FileSearchQuery();
+        query.setKeyword(keyword);
+        query.setPrefix(prefix);
+        query.setExt(ext);
+        query.setCategory(category);
+        query.setType(type);
+        query.setMinSize(minSize);
+        query.setMaxSize(maxSize);
+        query.setModifiedAfter(modifiedAfter);
+        query.setModifiedBefore(modifiedBefore);
+        query.setPath(path);
+        query.setLimit(limit);
+
+        long start = System.currentTimeMillis();
+        try {
+            FileSearchService.SearchResult result = fileSearchService.search(JwtUtil.getCurrentUuid(), query);
+            Map<String, Object> resultMap = new HashMap<>();
+            resultMap.put("status", "success");
+            resultMap.put("results", result.results());
+            resultMap.put("truncated", result.truncated());
+            resultMap.put("took", System.currentTimeMillis() - start);
+            log.info("[{}]搜索文件成功: {}, 结果数: {}, 耗时: {} ms", JwtUtil.getCurrentUuid(), query, result.results().size(), System.currentTimeMillis() - start);
+            return ResponseEntity.ok(resultMap);
+        } catch (IOException e) {
+            errorLogService.insertErrorLog(request, e, "搜索文件失败：" + e.getMessage());
+            log.error("[{}]搜索文件失败: {}, {}", JwtUtil.getCurrentUuid(), query, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("status", "failed", "message", "搜索失败！"));
+        }
+    }
+}
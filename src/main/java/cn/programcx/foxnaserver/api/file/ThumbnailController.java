@@ -0,0 +1,232 @@
+package cn.programcx.foxnaserver.api.file;
+
+import cn.programcx.foxnaserver.annotation.CheckFilePermission;
+import cn.programcx.foxnaserver.dto.file.ThumbnailBatchRequest;
+import cn.programcx.foxnaserver.service.file.FilePermissionService;
+import cn.programcx.foxnaserver.service.media.ThumbnailService;
+import cn.programcx.foxnaserver.util.JwtUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/file/thumbnail")
+@Tag(name = "Thumbnail", description = "缩略图相关接口")
+public class ThumbnailController {
+
+    // 单张缩略图最多等待生成的时间
+    private static final long SINGLE_WAIT_MS = 10_000;
+    private static final long MAX_BATCH_WAIT_MS = 5_000;
+    private static final int MAX_BATCH_SIZE = 500;
+
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    @Autowired
+    private FilePermissionService filePermissionService;
+
+    @Operation(
+            summary = "获取缩略图",
+            description = "返回图片或视频的 JPEG 缩略图，未缓存时以高优先级生成并最多等待 10 秒；"
+                    + "超时返回 202，客户端稍后重试即可命中缓存"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "返回缩略图"),
+            @ApiResponse(responseCode = "202", description = "正在生成"),
+            @ApiResponse(responseCode = "304", description = "缩略图未变化"),
+            @ApiResponse(responseCode = "400", description = "参数不正确"),
+            @ApiResponse(responseCode = "415", description = "不支持的文件类型"),
+            @ApiResponse(responseCode = "503", description = "生成队列已满")
+    })
+    @CheckFilePermission(type = "Read", paramFields = {"path"})
+    @GetMapping
+    public ResponseEntity<?> thumbnail(@RequestParam("path") String path,
+                                       @RequestParam(value = "size", defaultValue = "small") String size,
+                                       @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        ThumbnailService.Size thumbSize;
+        try {
+            thumbSize = ThumbnailService.Size.of(size);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("status", "failed", "message", "不支持的缩略图尺寸！"));
+        }
+        Path file = Paths.get(path);
+        if (!Files.isRegularFile(file)) {
+            return ResponseEntity.badRequest().body(Map.of("status", "failed", "message", "文件不存在！"));
+        }
+        if (!thumbnailService.isSupported(path)) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body(Map.of("status", "failed", "message", "该文件类型不支持缩略图！"));
+        }
+
+        try {
+            String etag = etag(file, thumbSize);
+            if (etag.equals(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            byte[] data = thumbnailService.get(file, thumbSize, ThumbnailService.Priority.HIGH)
+                    .get(SINGLE_WAIT_MS, TimeUnit.MILLISECONDS);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_JPEG)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.maxAge(1, TimeUnit.DAYS).cachePrivate())
+                    .body(data);
+        } catch (TimeoutException e) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("status", "pending", "message", "缩略图正在生成，请稍后重试"));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("status", "failed", "message", "缩略图队列已满，请稍后重试"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("status", "failed", "message", "请求被中断"));
+        } catch (IOException | ExecutionException e) {
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RejectedExecutionException) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("status", "failed", "message", "缩略图队列已满，请稍后重试"));
+            }
+            log.warn("[{}]生成缩略图失败: {}, {}", JwtUtil.getCurrentUuid(), path, cause.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("status", "failed", "message", "生成缩略图失败！"));
+        }
+    }
+
+    @Operation(
+            summary = "批量获取缩略图",
+            description = "一次请求获取一屏网格的缩略图：已缓存的直接以 Base64 返回，其余进入生成队列，"
+                    + "visible 中的路径优先生成，其余作为预取；可通过 waitMs 等待一小段时间，未完成的标记为 pending"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "返回每个路径的状态"),
+            @ApiResponse(responseCode = "400", description = "参数不正确")
+    })
+    @PostMapping("/batch")
+    public ResponseEntity<?> batch(@RequestBody ThumbnailBatchRequest request) {
+        List<String> paths = request.getPaths();
+        if (paths == null || paths.isEmpty() || paths.size() > MAX_BATCH_SIZE || request.getWaitMs() < 0) {
+            return ResponseEntity.badRequest().body(Map.of("status", "failed", "message", "请求参数不正确！"));
+        }
+        ThumbnailService.Size thumbSize;
+        try {
+            thumbSize = ThumbnailService.Size.of(request.getSize());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("status", "failed", "message", "不支持的缩略图尺寸！"));
+        }
+
+        String uuid = JwtUtil.getCurrentUuid();
+        Map<String, Boolean> allowed;
+        try {
+            allowed = filePermissionService.checkBatch(uuid, paths, "Read");
+        } catch (IOException e) {
+            log.error("[{}]批量检查缩略图权限失败: {}", uuid, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("status", "failed", "message", "权限检查失败！"));
+        }
+        Set<String> visible = request.getVisible() == null ? Set.of() : new HashSet<>(request.getVisible());
+
+        Map<String, Map<String, Object>> items = new LinkedHashMap<>();
+        Map<String, CompletableFuture<byte[]>> pending = new LinkedHashMap<>();
+        for (String path : allowed.keySet()) {
+            if (!allowed.get(path)) {
+                items.put(path, item("denied"));
+                continue;
+            }
+            if (!thumbnailService.isSupported(path)) {
+                items.put(path, item("unsupported"));
+                continue;
+            }
+            ThumbnailService.Priority priority = visible.contains(path)
+                    ? ThumbnailService.Priority.HIGH : ThumbnailService.Priority.LOW;
+            try {
+                CompletableFuture<byte[]> future = thumbnailService.get(Paths.get(path), thumbSize, priority);
+                if (future.isDone() && !future.isCompletedExceptionally()) {
+                    items.put(path, ready(future.join()));
+                } else {
+                    items.put(path, item("pending"));
+                    pending.put(path, future);
+                }
+            } catch (IOException e) {
+                items.put(path, item("failed"));
+            }
+        }
+
+        long waitMs = Math.min(request.getWaitMs(), MAX_BATCH_WAIT_MS);
+        if (waitMs > 0 && !pending.isEmpty()) {
+            try {
+                CompletableFuture.allOf(pending.values().toArray(new CompletableFuture[0]))
+                        .get(waitMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                // 逐个检查结果，未完成的保持 pending
+            }
+        }
+        List<String> failed = new ArrayList<>();
+        for (Map.Entry<String, CompletableFuture<byte[]>> entry : pending.entrySet()) {
+            CompletableFuture<byte[]> future = entry.getValue();
+            if (!future.isDone()) {
+                continue;
+            }
+            if (future.isCompletedExceptionally()) {
+                failed.add(entry.getKey());
+                items.put(entry.getKey(), item("failed"));
+            } else {
+                items.put(entry.getKey(), ready(future.join()));
+            }
+        }
+        if (!failed.isEmpty()) {
+            log.debug("[{}]部分缩略图生成失败: {}", uuid, failed);
+        }
+
+        Map<String, Object> resultMap = new HashMap<>();
+        resultMap.put("status", "success");
+        resultMap.put("size", thumbSize.name().toLowerCase());
+        resultMap.put("items", items);
+        return ResponseEntity.ok(resultMap);
+    }
+
+    private static Map<String, Object> item(String status) {
+        return Map.of("status", status);
+    }
+
+    private static Map<String, Object> ready(byte[] data) {
+        return Map.of("status", "ready", "data", Base64.getEncoder().encodeToString(data));
+    }
+
+    /**
+     * 缩略图内容只取决于文件的修改时间、大小与尺寸
+     */
+    private static String etag(Path file, ThumbnailService.Size size) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        return "\"" + Long.toHexString(attrs.lastModifiedTime().toMillis()) + "-"
+                + Long.toHexString(attrs.size()) + "-" + size.name().toLowerCase() + "\"";
+    }
+}
@@ -0,0 +1,148 @@
+package cn.programcx.foxnaserver.api.file;
+
+import cn.programcx.foxnaserver.service.file.FilePermissionService;
+import cn.programcx.foxnaserver.service.file.TrashService;
+import cn.programcx.foxnaserver.util.JwtUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/file/trash")
+@Tag(name = "Trash", description = "回收站相关接口")
+public class TrashController {
+
+    @Autowired
+    private TrashService trashService;
+
+    @Autowired
+    private FilePermissionService filePermissionService;
+
+    @Operation(
+            summary = "列出回收站",
+            description = "列出当前用户对原路径有写权限的回收站条目，按删除时间倒序"
+    )
+    @ApiResponse(responseCode = "200", description = "成功获取回收站条目")
+    @GetMapping
+    public ResponseEntity<?> list() throws IOException {
+        String uuid = JwtUtil.getCurrentUuid();
+        List<TrashService.TrashEntry> entries = trashService.list();
+        Map<String, Boolean> allowed = filePermissionService.checkBatch(uuid,
+                entries.stream().map(TrashService.TrashEntry::originalPath).toList(), "Write");
+
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (TrashService.TrashEntry entry : entries) {
+            if (Boolean.TRUE.equals(allowed.get(entry.originalPath()))) {
+                items.add(toMap(entry));
+            }
+        }
+        return ResponseEntity.ok(Map.of("status", "success", "items", items));
+    }
+
+    @Operation(
+            summary = "还原回收站条目",
+            description = "把条目重命名回原路径，原路径已存在时该条目还原失败"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "全部还原成功"),
+            @ApiResponse(responseCode = "500", description = "部分条目还原失败")
+    })
+    @PostMapping("/restore")
+    public ResponseEntity<?> restore(@RequestBody List<String> ids) throws IOException {
+        String uuid = JwtUtil.getCurrentUuid();
+        Map<String, TrashService.TrashEntry> entries = findAllowed(uuid, ids);
+
+        Map<String, String> failed = new LinkedHashMap<>();
+        for (String id : ids) {
+            TrashService.TrashEntry entry = entries.get(id);
+            if (entry == null) {
+                failed.put(id, "条目不存在或没有权限");
+                continue;
+            }
+            try {
+                trashService.restore(entry);
+            } catch (FileAlreadyExistsException e) {
+                failed.put(id, "原路径已存在");
+            } catch (IOException e) {
+                failed.put(id, "还原失败：" + e.getMessage());
+            }
+        }
+
+        Map<String, Object> resultMap = new HashMap<>();
+        resultMap.put("successCount", ids.size() - failed.size());
+        resultMap.put("failedCount", failed.size());
+        resultMap.put("failed", failed);
+        if (!failed.isEmpty()) {
+            resultMap.put("status", "failed");
+            log.warn("[{}]还原回收站条目部分失败: {}", uuid, failed);
+            return new ResponseEntity<>(resultMap, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        resultMap.put("status", "success");
+        log.info("[{}]还原回收站条目成功: {}", uuid, ids);
+        return ResponseEntity.ok(resultMap);
+    }
+
+    @Operation(
+            summary = "彻底删除回收站条目",
+            description = "条目在后台按磁盘 IO 限制逐步删除，接口立即返回"
+    )
+    @ApiResponse(responseCode = "202", description = "已提交删除")
+    @DeleteMapping
+    public ResponseEntity<?> purge(@RequestBody List<String> ids) throws IOException {
+        String uuid = JwtUtil.getCurrentUuid();
+        Map<String, TrashService.TrashEntry> entries = findAllowed(uuid, ids);
+        entries.values().forEach(trashService::purge);
+        log.info("[{}]彻底删除回收站条目: {}", uuid, entries.keySet());
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(Map.of("status", "success", "purged", entries.size()));
+    }
+
+    /**
+     * 查找条目并只保留对原路径有写权限的
+     */
+    private Map<String, TrashService.TrashEntry> findAllowed(String uuid, List<String> ids) throws IOException {
+        Map<String, TrashService.TrashEntry> entries = new LinkedHashMap<>();
+        for (String id : ids) {
+            TrashService.TrashEntry entry = trashService.find(id);
+            if (entry != null) {
+                entries.put(id, entry);
+            }
+        }
+        Map<String, Boolean> allowed = filePermissionService.checkBatch(uuid,
+                entries.values().stream().map(TrashService.TrashEntry::originalPath).toList(), "Write");
+        entries.values().removeIf(entry -> !Boolean.TRUE.equals(allowed.get(entry.originalPath())));
+        return entries;
+    }
+
+    private static Map<String, Object> toMap(TrashService.TrashEntry entry) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", entry.id());
+        map.put("originalPath", entry.originalPath());
+        map.put("name", entry.name());
+        map.put("directory", entry.directory());
+        map.put("size", entry.size());
+        map.put("deletedAt", entry.deletedAt());
+        map.put("deletedBy", entry.deletedBy());
+        return map;
+    }
+}
@@ -7,7 +7,8 @@ import cn.programcx.foxnaserver.dto.media.MediaInfoDTO;
 import cn.programcx.foxnaserver.dto.media.SubtitleJobStatus;
 import cn.programcx.foxnaserver.dto.media.SubtitleTranscodeTask;
 import cn.programcx.foxnaserver.entity.TranscodeJob;
-import cn.programcx.foxnaserver.mapper.ResourceMapper;
+import cn.programcx.foxnaserver.service.file.FilePermissionService;
+import cn.programcx.foxnaserver.service.io.IoBandwidthScheduler;
 import cn.programcx.foxnaserver.service.media.DecodeMediaService;
 import cn.programcx.foxnaserver.service.media.MediaTokenService;
 import cn.programcx.foxnaserver.service.media.RangeMediaService;
@@ -18,6 +19,7 @@ import cn.programcx.foxnaserver.util.JwtUtil;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
@@ -29,6 +31,7 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -65,7 +68,7 @@ public class MediaServiceController {
     private TranscodeJobService transcodeJobService;
     
     @Autowired
-    private ResourceMapper resourceMapper;
+    private FilePermissionService filePermissionService;
 
     @Autowired
     private  RabbitTemplate rabbitTemplate;
@@ -121,11 +124,12 @@ public class MediaServiceController {
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "500", description = "处理视频流时发生错误")
     })
     @GetMapping("/video-stream")
-    public ResponseEntity<?> getVideoStream(@RequestParam("path") String path,
+    public Object getVideoStream(@RequestParam("path") String path,
                                             @RequestParam(value = "token", required = true) String token,
                                             @RequestHeader(value = "Range", required = false) String rangeHeader,
                                             @RequestParam(value = "soundTrackIndex", required = false) Integer soundTrackIndex,
                                             @RequestParam(value = "videoTrackIndex", required = false) Integer videoTrackIndex,
+                                            HttpServletRequest request,
                                             HttpServletResponse response) {
         if (!mediaTokenService.validateToken(token, path)) {
             return ResponseEntity.status(401).body("无效的访问Token，无法访问指定文件的媒体流。");
@@ -158,8 +162,12 @@ public class MediaServiceController {
             response.setHeader("Accept-Ranges", "bytes");
             response.setHeader("Content-Length", String.valueOf(contentLength));
             response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + fileLength);
-            rangeMediaService.getRangeMediaData(start, end, file, response.getOutputStream());
-            return ResponseEntity.status(HttpServletResponse.SC_PARTIAL_CONTENT).build();
+            // 响应体在 MVC 异步执行器中写出，长时间播放不占用 Tomcat 请求线程；状态码与响应头已写入 response
+            long rangeStart = start;
+            long rangeEnd = end;
+            String ioKey = IoBandwidthScheduler.keyOf(request);
+            StreamingResponseBody body = out -> rangeMediaService.getRangeMediaData(rangeStart, rangeEnd, file, out, ioKey);
+            return body;
         } catch (Exception e) {
             log.error("处理视频流时发生错误: {}", e.getMessage());
             return ResponseEntity.status(500).body("处理视频流时发生错误： " + e.getMessage());
@@ -312,7 +320,7 @@ public class MediaServiceController {
             req.getAudioTrackIndex(),
             req.getSubtitleTrackIndex(),
             req.isImmediate(),
-            fingerprint, req.getExpireSecs()
+            fingerprint, req.getExpireSecs(), req.isAbr()
         );
 
         boolean isReused = !job.getJobId().equals(req.getFingerprint()) && 
@@ -372,10 +380,11 @@ public class MediaServiceController {
 
     // 获取分片（支持Range请求，拖动进度条关键）
     @GetMapping("/stream/{jobId}/{filename:.+}")
-    public ResponseEntity<Resource> getSegment(
+    public ResponseEntity<StreamingResponseBody> getSegment(
             @PathVariable String jobId,
             @PathVariable String filename,
-            @RequestHeader(value = "Range", required = false) String range) throws IOException {
+            @RequestHeader(value = "Range", required = false) String range,
+            HttpServletRequest request) throws IOException {
 
         Path file = Path.of(tempDir, jobId, filename);
         if (!Files.exists(file)) {
@@ -383,7 +392,9 @@ public class MediaServiceController {
         }
 
         long fileSize = Files.size(file);
-        Resource resource = new InputStreamResource(Files.newInputStream(file));
+        String ioKey = IoBandwidthScheduler.keyOf(request);
+        // ABR 模式下各清晰度的子播放列表（stream_*.m3u8）也经由此接口获取
+        String contentType = filename.endsWith(".m3u8") ? "application/x-mpegURL" : "video/mp2t";
 
         // 处理HTTP 206 Partial Content
         if (range != null && range.startsWith("bytes=")) {
@@ -394,25 +405,20 @@ public class MediaServiceController {
 
             long length = end - start + 1;
 
-            // 使用 FileChannel 精确读取指定范围的字节，避免 BoundedInputStream 的大小限制
-            byte[] data = new byte[(int) length];
-            try (var raf = new java.io.RandomAccessFile(file.toFile(), "r")) {
-                raf.seek(start);
-                raf.readFully(data);
-            }
-
+            // 分片在 MVC 异步执行器中按位置读取写出，不再整段读入内存，也不占用 Tomcat 请求线程
             return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
-                    .header("Content-Type", "video/mp2t")
+                    .header("Content-Type", contentType)
                     .header("Content-Length", String.valueOf(length))
                     .header("Content-Range", "bytes " + start + "-" + end + "/" + fileSize)
                     .header("Accept-Ranges", "bytes")
-                    .body(new InputStreamResource(new java.io.ByteArrayInputStream(data)));
+                    .body(out -> rangeMediaService.getRangeMediaData(start, end, file.toFile(), out, ioKey));
         }
 
         return ResponseEntity.ok()
-                .header("Content-Type", "video/mp2t")
+                .header("Content-Type", contentType)
+                .header("Content-Length", String.valueOf(fileSize))
                 .header("Accept-Ranges", "bytes")
-                .body(resource);
+                .body(out -> rangeMediaService.getRangeMediaData(0, fileSize - 1, file.toFile(), out, ioKey));
     }
 
     /*===================================以下是字幕转码部分===============================*/
@@ -525,38 +531,12 @@ public class MediaServiceController {
      * @return 是否有权限
      */
     private boolean checkFilePermission(String path, String type) {
-        String uuid = JwtUtil.getCurrentUuid();
-        if (uuid == null || uuid.isEmpty()) {
-            return false;
-        }
-        
         try {
-            java.nio.file.Path normalizedPath = java.nio.file.Path.of(path).normalize();
-            
-            // 检查路径注入
-            if (normalizedPath.toString().contains("..")) {
-                return false;
-            }
-            
-            // 查询用户资源权限
-            com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper<cn.programcx.foxnaserver.entity.Resource> queryWrapper = 
-                new com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper<>();
-            queryWrapper.eq(cn.programcx.foxnaserver.entity.Resource::getOwnerUuid, uuid)
-                       .eq(cn.programcx.foxnaserver.entity.Resource::getPermissionType, type);
-            java.util.List<cn.programcx.foxnaserver.entity.Resource> resources = resourceMapper.selectList(queryWrapper);
-            
-            // 检查路径是否在允许的资源目录下
-            for (cn.programcx.foxnaserver.entity.Resource resource : resources) {
-                java.nio.file.Path allowedPath = java.nio.file.Path.of(resource.getFolderName()).normalize();
-                if (normalizedPath.startsWith(allowedPath)) {
-                    return true;
-                }
-            }
+            return filePermissionService.hasPermission(JwtUtil.getCurrentUuid(), path, type);
         } catch (Exception e) {
             log.error("检查文件权限时出错: {}", e.getMessage());
+            return false;
         }
-        
-        return false;
     }
 }
 
@@ -568,6 +548,7 @@ class TranscodeRequest {
     private boolean immediate = false; // true=立即观看（高优先级）
     private String fingerprint; // 可选，如果前端已计算指纹可直接传入
     private Long expireSecs = 86400L; // 缓存过期时间，默认24小时
+    private boolean abr = false; // true=生成多清晰度自适应码率 HLS
 }
 
 @Data
@@ -0,0 +1,159 @@
+package cn.programcx.foxnaserver.api.media;
+
+import cn.programcx.foxnaserver.service.file.FilePermissionService;
+import cn.programcx.foxnaserver.service.io.IoBandwidthScheduler;
+import cn.programcx.foxnaserver.service.media.OnDemandHlsService;
+import cn.programcx.foxnaserver.service.media.RangeMediaService;
+import cn.programcx.foxnaserver.util.JwtUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 按需 HLS 播放（边播边转）
+ * <p>
+ * 先创建会话获得播放列表地址，播放列表与分片地址只凭会话 ID 访问，与 /stream/{jobId} 一致
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/file/media/ondemand")
+@Tag(name = "OnDemandHlsController", description = "按需 HLS 转码播放接口")
+public class OnDemandHlsController {
+
+    @Autowired
+    private OnDemandHlsService onDemandHlsService;
+
+    @Autowired
+    private RangeMediaService rangeMediaService;
+
+    @Autowired
+    private FilePermissionService filePermissionService;
+
+    @Operation(
+            summary = "创建按需 HLS 播放会话",
+            description = "探测视频后立即返回完整的播放列表地址，分片在播放器请求时才转码，无需等待整片转码完成"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "创建成功，返回会话 ID 与播放列表地址"),
+            @ApiResponse(responseCode = "403", description = "没有权限访问该文件"),
+            @ApiResponse(responseCode = "404", description = "文件不存在"),
+            @ApiResponse(responseCode = "503", description = "播放会话数已达上限")
+    })
+    @PostMapping("/session")
+    public ResponseEntity<?> createSession(@RequestBody OnDemandSessionRequest req) {
+        String uuid = JwtUtil.getCurrentUuid();
+        if (uuid == null || uuid.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("status", "failed", "message", "未登录或登录已过期"));
+        }
+        if (!hasReadPermission(uuid, req.getPath())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("status", "failed", "message", "没有权限访问该文件"));
+        }
+        try {
+            String sessionId = onDemandHlsService.createSession(uuid, req.getPath(), req.getAudioTrackIndex());
+            return ResponseEntity.ok(Map.of(
+                    "status", "success",
+                    "sessionId", sessionId,
+                    "playlist", "/api/file/media/ondemand/" + sessionId + "/playlist.m3u8"
+            ));
+        } catch (NoSuchFileException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("status", "failed", "message", "文件不存在！"));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("status", "failed", "message", e.getMessage()));
+        } catch (IOException e) {
+            log.error("[{}]创建按需 HLS 会话失败，路径: {}, 错误信息: {}", uuid, req.getPath(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("status", "failed", "message", "创建播放会话失败！"));
+        }
+    }
+
+    @Operation(summary = "获取播放列表", description = "完整的 VOD 播放列表，包含全部分片")
+    @GetMapping("/{sessionId}/playlist.m3u8")
+    public ResponseEntity<String> playlist(@PathVariable String sessionId) {
+        String playlist = onDemandHlsService.playlist(sessionId);
+        if (playlist == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .header("Content-Type", "application/x-mpegURL")
+                .header("Cache-Control", "no-cache")
+                .body(playlist);
+    }
+
+    @Operation(summary = "获取分片", description = "分片尚未生成时等待转码完成；请求位置超出当前转码范围时从该位置重新开始转码")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "返回分片"),
+            @ApiResponse(responseCode = "404", description = "会话或分片不存在"),
+            @ApiResponse(responseCode = "503", description = "分片生成超时或失败，可稍后重试")
+    })
+    @GetMapping("/{sessionId}/{index:\\d+}.ts")
+    public ResponseEntity<StreamingResponseBody> segment(@PathVariable String sessionId,
+                                                         @PathVariable int index,
+                                                         HttpServletRequest request) {
+        Path file;
+        try {
+            file = onDemandHlsService.awaitSegment(sessionId, index);
+            if (file == null) {
+                return ResponseEntity.notFound().build();
+            }
+        } catch (TimeoutException | IOException e) {
+            log.warn("按需 HLS 会话 [{}] 分片 {} 获取失败：{}", sessionId, index, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+
+        long fileSize;
+        try {
+            fileSize = Files.size(file);
+        } catch (IOException e) {
+            // 会话在等待期间被关闭，分片已删除
+            return ResponseEntity.notFound().build();
+        }
+        String ioKey = IoBandwidthScheduler.keyOf(request);
+        return ResponseEntity.ok()
+                .header("Content-Type", "video/mp2t")
+                .header("Content-Length", String.valueOf(fileSize))
+                .body(out -> rangeMediaService.getRangeMediaData(0, fileSize - 1, file.toFile(), out, ioKey));
+    }
+
+    @Operation(summary = "关闭播放会话", description = "终止转码进程并删除已生成的分片")
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<?> closeSession(@PathVariable String sessionId) {
+        String uuid = JwtUtil.getCurrentUuid();
+        if (uuid == null || !onDemandHlsService.closeSession(sessionId, uuid)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("status", "failed", "message", "会话不存在"));
+        }
+        return ResponseEntity.ok(Map.of("status", "success", "message", "会话已关闭"));
+    }
+
+    private boolean hasReadPermission(String uuid, String path) {
+        try {
+            return filePermissionService.hasPermission(uuid, path, "Read");
+        } catch (Exception e) {
+            log.error("检查文件权限时出错: {}", e.getMessage());
+            return false;
+        }
+    }
+}
+
+@Data
+class OnDemandSessionRequest {
+    private String path;
+    private int audioTrackIndex = 0;
+}
@@ -74,7 +74,7 @@ public class TranscodeJobController {
                 request.getAudioTrackIndex(),
                 request.getSubtitleTrackIndex(),
                 request.isImmediate(),
-                fingerprint, request.getExpireSecs()
+                fingerprint, request.getExpireSecs(), request.isAbr()
             );
             
             return Result.success(job);
@@ -338,6 +338,7 @@ public class TranscodeJobController {
         private boolean immediate = false;
         private String fingerprint; // 可选
         private Long expireSecs = 86400L; // 缓存过期时间，默认24小时
+        private boolean abr = false; // 是否生成多清晰度自适应码率 HLS
     }
 
     @Data
@@ -0,0 +1,45 @@
+package cn.programcx.foxnaserver.api.monitor;
+
+import cn.programcx.foxnaserver.service.io.IoBandwidthScheduler;
+import cn.programcx.foxnaserver.util.JwtUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/monitor")
+@Tag(name = "IoStats", description = "文件传输带宽统计接口")
+public class IoStatsController {
+
+    // 可以查看其他用户统计的权限（用户管理）
+    private static final String ALL_USERS_AUTHORITY = "USER";
+
+    @Autowired
+    private IoBandwidthScheduler ioBandwidthScheduler;
+
+    @Operation(
+            summary = "获取传输带宽统计",
+            description = "返回全局与用户最近几秒的读写吞吐量（字节/秒）、累计字节数以及当前限速配置；"
+                    + "拥有用户管理权限时返回所有用户（含仅凭媒体令牌访问的客户端），否则只返回当前用户"
+    )
+    @ApiResponse(responseCode = "200", description = "成功获取统计")
+    @GetMapping("/io")
+    public ResponseEntity<?> ioStats() {
+        return ResponseEntity.ok(ioBandwidthScheduler.stats(canViewAllUsers(), JwtUtil.getCurrentUuid()));
+    }
+
+    private static boolean canViewAllUsers() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .anyMatch(ALL_USERS_AUTHORITY::equals);
+    }
+}
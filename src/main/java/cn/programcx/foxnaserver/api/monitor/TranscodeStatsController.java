@@ -0,0 +1,44 @@
+package cn.programcx.foxnaserver.api.monitor;
+
+import cn.programcx.foxnaserver.service.media.TranscodeNodeService;
+import cn.programcx.foxnaserver.service.media.TranscodeScheduler;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/monitor")
+@Tag(name = "TranscodeStats", description = "转码调度统计接口")
+public class TranscodeStatsController {
+
+    @Autowired
+    private TranscodeScheduler transcodeScheduler;
+
+    @Autowired
+    private TranscodeNodeService transcodeNodeService;
+
+    @Operation(
+            summary = "获取转码调度状态",
+            description = "返回槽位容量与占用、各开销类别的排队数、运行中的 FFmpeg 任务以及当前 CPU 使用率与是否限流"
+    )
+    @ApiResponse(responseCode = "200", description = "成功获取统计")
+    @GetMapping("/transcode")
+    public ResponseEntity<?> transcodeStats() {
+        return ResponseEntity.ok(transcodeScheduler.stats());
+    }
+
+    @Operation(
+            summary = "获取转码节点列表",
+            description = "返回心跳未过期的转码节点（服务节点与工作节点）的容量、占用、排队数与 CPU 使用率"
+    )
+    @ApiResponse(responseCode = "200", description = "成功获取节点列表")
+    @GetMapping("/transcode/nodes")
+    public ResponseEntity<?> transcodeNodes() {
+        return ResponseEntity.ok(transcodeNodeService.liveNodes());
+    }
+}
@@ -0,0 +1,92 @@
+package cn.programcx.foxnaserver.api.worker;
+
+import cn.programcx.foxnaserver.service.media.TranscodeNodeService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 接收转码工作节点上传的转码结果（app.worker.publish=upload），写入本节点的转码缓存目录
+ * <p>
+ * 工作节点没有用户身份，使用与工作节点共享的令牌（app.worker.token）认证；未配置令牌时接口不可用
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/worker/transcode")
+@Tag(name = "TranscodeWorkerController", description = "转码工作节点回传接口")
+public class TranscodeWorkerController {
+
+    private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z0-9_.-]+");
+    private static final Pattern JOB_ID_PATTERN = Pattern.compile("[A-Za-z0-9-]*");
+
+    @Autowired
+    private TranscodeNodeService transcodeNodeService;
+
+    @Value("${app.worker.token:}")
+    private String token;
+
+    @Operation(
+            summary = "上传转码结果文件",
+            description = "请求体为文件内容，写入缓存目录下的 jobId 子目录（jobId 为空时为缓存目录本身），先写临时文件再原子替换"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "写入成功"),
+            @ApiResponse(responseCode = "400", description = "文件名或任务 ID 不合法"),
+            @ApiResponse(responseCode = "403", description = "令牌错误"),
+            @ApiResponse(responseCode = "404", description = "未配置工作节点令牌")
+    })
+    @PutMapping("/files")
+    public ResponseEntity<?> putFile(@RequestParam(defaultValue = "") String jobId,
+                                     @RequestParam String name,
+                                     @RequestHeader(value = "X-Worker-Token", required = false) String workerToken,
+                                     HttpServletRequest request) {
+        if (token == null || token.isBlank()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        if (workerToken == null || !MessageDigest.isEqual(
+                token.getBytes(StandardCharsets.UTF_8), workerToken.getBytes(StandardCharsets.UTF_8))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("status", "failed", "message", "令牌错误"));
+        }
+        // 只允许单层文件名，防止写到缓存目录之外
+        if (!NAME_PATTERN.matcher(name).matches() || name.startsWith(".")
+                || !JOB_ID_PATTERN.matcher(jobId).matches()) {
+            return ResponseEntity.badRequest().body(Map.of("status", "failed", "message", "文件名或任务 ID 不合法"));
+        }
+
+        Path dir = jobId.isEmpty() ? transcodeNodeService.getOutputDir() : transcodeNodeService.getOutputDir().resolve(jobId);
+        Path target = dir.resolve(name);
+        Path tmp = dir.resolve(name + ".upload.tmp");
+        try (InputStream in = request.getInputStream()) {
+            Files.createDirectories(dir);
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            // 播放器读取播放列表时不会读到写了一半的文件
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return ResponseEntity.ok(Map.of("status", "success"));
+        } catch (IOException e) {
+            log.error("接收转码结果 [{}/{}] 失败：{}", jobId, name, e.getMessage());
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+            }
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("status", "failed", "message", "写入失败"));
+        }
+    }
+}
@@ -1,11 +1,9 @@
 package cn.programcx.foxnaserver.aspect;
 
 import cn.programcx.foxnaserver.annotation.CheckFilePermission;
-import cn.programcx.foxnaserver.entity.Resource;
 import cn.programcx.foxnaserver.exception.NoPermissionException;
-import cn.programcx.foxnaserver.mapper.ResourceMapper;
+import cn.programcx.foxnaserver.service.file.FilePermissionService;
 import cn.programcx.foxnaserver.util.JwtUtil;
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
@@ -17,10 +15,7 @@ import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
 import jakarta.servlet.http.HttpServletRequest;
-import java.io.IOException;
 import java.lang.reflect.Method;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
@@ -30,7 +25,7 @@ import java.util.Map;
 @Component
 public class PermissionAspect {
     @Autowired
-    private ResourceMapper resourceMapper;
+    private FilePermissionService filePermissionService;
 
     /**
      * 定义切入点，匹配所有使用 @CheckFilePermission 注解的方法
@@ -139,64 +134,21 @@ public class PermissionAspect {
             }
         }
 
-        // 检查权限
+        // 检查权限：整批路径一次评估，共享规范化结果与祖先目录的符号链接检查
+        List<String> normalizedPaths = new ArrayList<>(pathToCheck.size());
         for (String path : pathToCheck) {
             String normalizedPath = Paths.get(path).normalize().toString();
             if (normalizedPath.isEmpty()) continue;
-            String methodType = checkFilePermission.type();
-            String uuid = JwtUtil.getCurrentUuid();
-
-            if (!hasPermission(uuid, normalizedPath, methodType)) {
-                throw new NoPermissionException("没有权限操作或访问路径: " + normalizedPath);
-            }
-        }
-
-        return joinPoint.proceed();
-    }
-
-    /**
-     * 检查用户是否有访问指定目录的权限
-     *
-     * @param uuid  用户名
-     * @param directory 目录路径
-     * @param method    权限类型（如 "Read", "Write", "Delete"）
-     * @return 是否有权限
-     * @throws IOException 如果路径处理出错
-     */
-
-    private boolean hasPermission(String uuid, String directory, String method) throws IOException {
-        LambdaQueryWrapper<Resource> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(Resource::getOwnerUuid, uuid).eq(Resource::getPermissionType, method);
-        List<Resource> resources = resourceMapper.selectList(queryWrapper);
-
-        Path normalizedPath = Paths.get(directory).normalize();
-
-        if (normalizedPath.toString().contains("..")) {
-            return false;
-        }
-
-        if (containsSymlink(normalizedPath)) {
-            return false;
+            normalizedPaths.add(normalizedPath);
         }
 
-        for (Resource resource : resources) {
-            Path allowedPath = Paths.get(resource.getFolderName()).normalize();
-            if (normalizedPath.startsWith(allowedPath)) {
-                return true;
+        Map<String, Boolean> allowed = filePermissionService.checkBatch(JwtUtil.getCurrentUuid(), normalizedPaths, checkFilePermission.type());
+        for (Map.Entry<String, Boolean> entry : allowed.entrySet()) {
+            if (!entry.getValue()) {
+                throw new NoPermissionException("没有权限操作或访问路径: " + entry.getKey());
             }
         }
-        return false;
-    }
-
 
-    public boolean containsSymlink(Path path) throws IOException {
-        Path current = path;
-        while (current != null) {
-            if (Files.isSymbolicLink(current)) {
-                return true;
-            }
-            current = current.getParent();
-        }
-        return false;
+        return joinPoint.proceed();
     }
 }
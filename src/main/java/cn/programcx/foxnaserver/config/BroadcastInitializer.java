@@ -5,6 +5,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
 /**
@@ -12,6 +13,7 @@ import org.springframework.stereotype.Component;
  * 系统启动时执行必要的初始化工作
  */
 @Component
+@Profile("!worker")
 @RequiredArgsConstructor
 @Slf4j
 public class BroadcastInitializer implements ApplicationRunner {
@@ -6,12 +6,14 @@ import cn.programcx.foxnaserver.service.scheduler.DDNSJobSchedulerService;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 
 @Slf4j
 @Component
+@Profile("!worker")
 @RequiredArgsConstructor
 public class DDNSJobInitializer {
     private final AccessTaskMapper accessTaskMapper;
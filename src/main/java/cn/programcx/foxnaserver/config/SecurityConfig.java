@@ -8,6 +8,7 @@ import cn.programcx.foxnaserver.security.qq.QQOAuth2AccessTokenResponseClient;
 import cn.programcx.foxnaserver.security.qq.QQOAuth2UserService;
 import cn.programcx.foxnaserver.service.user.UserDetailService;
 import cn.programcx.foxnaserver.util.JwtUtil;
+import jakarta.servlet.DispatcherType;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -155,6 +156,8 @@ public class SecurityConfig {
                 .and()
                 .addFilterBefore(jwtAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class)
                 .authorizeHttpRequests(authorize -> authorize
+                        // 流式响应（StreamingResponseBody）结束后的异步分派已在首次请求时完成鉴权
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/api/oauth2/**").permitAll()
                         .requestMatchers("/ws/overview/**").permitAll()
@@ -166,8 +169,10 @@ public class SecurityConfig {
                         .requestMatchers("/swagger-ui/**").permitAll()
                         .requestMatchers("/api-docs/**").permitAll()
                         .requestMatchers("/api/login/oauth2/**").permitAll()
+                        .requestMatchers("/api/worker/**").permitAll()
                         .requestMatchers("/api/file/media/validate").hasAuthority("FILE")
                         .requestMatchers("/api/file/media/metadata").hasAuthority("FILE")
+                        .requestMatchers("/api/file/media/ondemand/session").hasAuthority("FILE")
                         .requestMatchers("/api/file/media/**").permitAll()
                         .requestMatchers("/api/file/**").hasAuthority("FILE")
                         .requestMatchers("/api/stream/**").hasAuthority("STREAM")
@@ -0,0 +1,46 @@
+package cn.programcx.foxnaserver.config;
+
+import cn.programcx.foxnaserver.service.media.TranscodeNodeService;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 运行转码消费者的节点的专属队列
+ * <p>
+ * 提交任务时按各节点心跳中的空闲槽位把任务直接投递到这里；节点宕机或长时间繁忙时，
+ * 消息超时后经死信转回共享的优先级队列，由其他节点消费
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.media.transcode.local-consumers", havingValue = "true", matchIfMissing = true)
+public class TranscodeNodeConfig {
+
+    // 路由到节点的任务在节点队列中最长等待时间（毫秒）
+    @Value("${app.media.transcode.route-ttl-ms:120000}")
+    private int routeTtlMs;
+
+    @Bean
+    public Queue transcodeNodeQueue(TranscodeNodeService transcodeNodeService) {
+        return QueueBuilder.durable("transcode.node." + transcodeNodeService.getNodeId())
+                .withArgument("x-max-priority", 10)
+                .withArgument("x-message-ttl", routeTtlMs)
+                .withArgument("x-dead-letter-exchange", TranscodeRabbitMQConfig.EXCHANGE_TRANSCODE)
+                .withArgument("x-dead-letter-routing-key", "task.priority")
+                .withArgument("x-expires", 24 * 60 * 60 * 1000) // 节点下线一天后删除队列
+                .build();
+    }
+
+    @Bean
+    public Binding bindingTranscodeNode(@Qualifier("transcodeExchange") DirectExchange transcodeExchange,
+                                        TranscodeNodeService transcodeNodeService) {
+        return BindingBuilder.bind(transcodeNodeQueue(transcodeNodeService)).to(transcodeExchange)
+                .with(TranscodeNodeService.NODE_ROUTING_PREFIX + transcodeNodeService.getNodeId());
+    }
+}
@@ -0,0 +1,55 @@
+package cn.programcx.foxnaserver.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.concurrent.Executors;
+
+/**
+ * 虚拟线程模式（app.threads.virtual=true 时启用）
+ * <p>
+ * 当前 Spring Boot 版本（3.0）没有 spring.threads.virtual.enabled，这里手动替换：
+ * <ul>
+ *     <li>Tomcat 请求处理线程池：每个请求一个虚拟线程，慢客户端不再占满固定大小的线程池</li>
+ *     <li>applicationTaskExecutor：Spring MVC 异步请求（StreamingResponseBody 等）与 @Async 使用的执行器</li>
+ *     <li>taskScheduler：@Scheduled 任务在虚拟线程上执行，长时间的扫描类任务阻塞时不占用平台线程</li>
+ * </ul>
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "app.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        log.info("Tomcat 请求处理使用虚拟线程");
+        return protocolHandler -> protocolHandler.setExecutor(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("foxnas-http-", 0).factory()));
+    }
+
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("foxnas-async-", 0).factory()));
+    }
+
+    @Bean(name = "taskScheduler")
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${app.threads.scheduling-pool-size:4}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        // 定时器本身仍需固定数量的调度线程，这些线程改为虚拟线程
+        scheduler.setPoolSize(Math.max(1, poolSize));
+        scheduler.setThreadFactory(Thread.ofVirtual().name("foxnas-scheduling-", 0).factory());
+        scheduler.setWaitForTasksToCompleteOnShutdown(false);
+        return scheduler;
+    }
+}
@@ -6,6 +6,7 @@ import cn.programcx.foxnaserver.service.media.VideoFingerprintService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
@@ -16,6 +17,7 @@ import java.util.Comparator;
 @Slf4j
 // 清理任务监听
 @Component
+@Profile("!worker")
 @RequiredArgsConstructor
 public class CleanupConsumer {
 
@@ -4,6 +4,8 @@ import cn.programcx.foxnaserver.config.TranscodeRabbitMQConfig;
 import cn.programcx.foxnaserver.dto.media.SubtitleJobStatus;
 import cn.programcx.foxnaserver.dto.media.SubtitleTranscodeTask;
 import cn.programcx.foxnaserver.service.media.HLSTranscodeService;
+import cn.programcx.foxnaserver.service.media.SegmentPublisher;
+import cn.programcx.foxnaserver.service.media.TranscodeNodeService;
 import com.rabbitmq.client.Channel;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -32,18 +34,24 @@ public class SubtitleTranscodeConsumer {
     private final HLSTranscodeService transcodeService;
     private final RedisTemplate<String, Object> redisTemplate;
     private final RabbitTemplate rabbitTemplate;
+    private final TranscodeNodeService transcodeNodeService;
+    private final SegmentPublisher segmentPublisher;
 
     private static final String TEMP_DIR = System.getProperty("user.dir") +
             File.separator + "temp" +
             java.io.File.separator + "foxnas" +
             java.io.File.separator + "transcode";
 
+    public static final String LISTENER_SUBTITLE = "subtitleTranscode";
+
     /**
-     * 监听字幕转码队列
+     * 监听字幕转码队列，并发数由 TranscodeListenerScaleJob 动态调整
      */
-    @RabbitListener(queues = TranscodeRabbitMQConfig.QUEUE_SUBTITLE,
-            concurrency = "3",
-            ackMode = "MANUAL")
+    @RabbitListener(id = LISTENER_SUBTITLE,
+            queues = TranscodeRabbitMQConfig.QUEUE_SUBTITLE,
+            concurrency = "1",
+            ackMode = "MANUAL",
+            autoStartup = "${app.media.transcode.local-consumers:true}")
     public void onSubtitleTask(SubtitleTranscodeTask task, Message msg, Channel channel) throws IOException {
         long tag = msg.getMessageProperties().getDeliveryTag();
         String jobId = task.getJobId();
@@ -54,13 +62,21 @@ public class SubtitleTranscodeConsumer {
 
             updateStatus(jobId, SubtitleJobStatus.State.PROCESSING, 0, null, null);
 
-            // 执行字幕提取和转换
-            Path vttPath = transcodeService.extractSubtitleToVtt(task);
+            // 执行字幕提取和转换：源路径与输出路径换成本节点的路径，消息重试时仍使用原任务
+            SubtitleTranscodeTask localTask = SubtitleTranscodeTask.builder()
+                    .jobId(jobId)
+                    .videoPath(transcodeNodeService.toLocalPath(task.getVideoPath()))
+                    .subtitleTrackIndex(task.getSubtitleTrackIndex())
+                    .outputPath(transcodeNodeService.toLocalOutput(task.getOutputPath()).toString())
+                    .retryCount(task.getRetryCount())
+                    .build();
+            Path vttPath = transcodeService.extractSubtitleToVtt(localTask);
 
             // 验证文件是否成功生成
             if (!Files.exists(vttPath) || Files.size(vttPath) < 10) {
                 throw new RuntimeException("字幕文件生成失败或为空");
             }
+            segmentPublisher.publishFile(null, vttPath);
 
             // 构建访问URL
             String vttUrl = "/api/file/media/subtitle/" + jobId;
@@ -72,7 +88,7 @@ public class SubtitleTranscodeConsumer {
             rabbitTemplate.convertAndSend(
                     TranscodeRabbitMQConfig.EXCHANGE_DELAY,
                     "task.delay",
-                    new SubtitleCleanupTask(jobId, vttPath.toString())
+                    new SubtitleCleanupTask(jobId, task.getOutputPath())
             );
 
             channel.basicAck(tag, false);
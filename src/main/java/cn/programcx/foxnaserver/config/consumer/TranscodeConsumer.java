@@ -7,7 +7,9 @@ import cn.programcx.foxnaserver.dto.media.TranscodeTask;
 import cn.programcx.foxnaserver.entity.TranscodeJob;
 import cn.programcx.foxnaserver.mapper.TranscodeJobMapper;
 import cn.programcx.foxnaserver.service.media.HLSTranscodeService;
+import cn.programcx.foxnaserver.service.media.SegmentPublisher;
 import cn.programcx.foxnaserver.service.media.TranscodeJobService;
+import cn.programcx.foxnaserver.service.media.TranscodeNodeService;
 import cn.programcx.foxnaserver.service.media.VideoFingerprintService;
 import com.rabbitmq.client.Channel;
 import lombok.RequiredArgsConstructor;
@@ -32,24 +34,37 @@ public class TranscodeConsumer {
     private final VideoFingerprintService fingerprintService;
     private final TranscodeJobService transcodeJobService;
     private final TranscodeJobMapper transcodeJobMapper;
-
-    // 监听普通队列
-    @RabbitListener(queues = TranscodeRabbitMQConfig.QUEUE_NORMAL,
-            concurrency = "2",
-            ackMode = "MANUAL")
+    private final TranscodeNodeService transcodeNodeService;
+    private final SegmentPublisher segmentPublisher;
+
+    public static final String LISTENER_NORMAL = "transcodeNormal";
+    public static final String LISTENER_PRIORITY = "transcodePriority";
+
+    // 监听普通队列；并发数由 TranscodeListenerScaleJob 按调度器空闲槽位动态调整
+    // local-consumers=false 时本节点只提交任务，转码全部交给工作节点
+    @RabbitListener(id = LISTENER_NORMAL,
+            queues = TranscodeRabbitMQConfig.QUEUE_NORMAL,
+            concurrency = "1",
+            ackMode = "MANUAL",
+            autoStartup = "${app.media.transcode.local-consumers:true}")
     public void onNormal(TranscodeTask task, Message msg, Channel channel) throws IOException {
-        process(task, msg, channel, false);
+        process(task, msg, channel, false, false);
     }
 
     // 监听高优先级队列
-    @RabbitListener(queues = TranscodeRabbitMQConfig.QUEUE_PRIORITY,
-            concurrency = "2",
-            ackMode = "MANUAL")
+    @RabbitListener(id = LISTENER_PRIORITY,
+            queues = TranscodeRabbitMQConfig.QUEUE_PRIORITY,
+            concurrency = "1",
+            ackMode = "MANUAL",
+            autoStartup = "${app.media.transcode.local-consumers:true}")
     public void onPriority(TranscodeTask task, Message msg, Channel channel) throws IOException {
-        process(task, msg, channel, true);
+        process(task, msg, channel, true, false);
     }
 
-    private void process(TranscodeTask task, Message msg, Channel channel, boolean isPriority) throws IOException {
+    /**
+     * @param routed 消息来自节点专属队列，其死信会转回共享队列，彻底失败时需直接投递到死信交换机
+     */
+    void process(TranscodeTask task, Message msg, Channel channel, boolean isPriority, boolean routed) throws IOException {
         long tag = msg.getMessageProperties().getDeliveryTag();
         String jobId = task.getJobId();
 
@@ -66,8 +81,17 @@ public class TranscodeConsumer {
             transcodeJobService.updateProcessing(jobId);
             updateRedisStatus(jobId, JobStatus.State.PROCESSING, 0, null);
 
-            // 执行转码
-            transcodeService.transcode(task, 60 * 60);
+            // 执行转码：源路径换成本节点可访问的路径，消息重试时仍使用原路径
+            String sourcePath = task.getVideoPath();
+            segmentPublisher.start(jobId);
+            try {
+                task.setVideoPath(transcodeNodeService.toLocalPath(sourcePath));
+                transcodeService.transcode(task, 60 * 60);
+                segmentPublisher.finish(jobId);
+            } finally {
+                task.setVideoPath(sourcePath);
+                segmentPublisher.stop(jobId);
+            }
 
             String hlsPath = "/api/file/media/stream/" + jobId + "/playlist.m3u8";
 
@@ -125,7 +149,12 @@ public class TranscodeConsumer {
                 // 彻底失败，更新为FAILED并进入死信队列
                 transcodeJobService.updateFailed(jobId, e.getMessage());
                 updateRedisStatus(jobId, JobStatus.State.FAILED, 0, e.getMessage());
-                channel.basicNack(tag, false, false); // requeue=false
+                if (routed) {
+                    rabbitTemplate.convertAndSend(TranscodeRabbitMQConfig.EXCHANGE_DLX, "task.failed", task);
+                    channel.basicAck(tag, false);
+                } else {
+                    channel.basicNack(tag, false, false); // requeue=false
+                }
             }
         }
     }
@@ -0,0 +1,35 @@
+package cn.programcx.foxnaserver.config.consumer;
+
+import cn.programcx.foxnaserver.dto.media.TranscodeTask;
+import com.rabbitmq.client.Channel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * 节点专属队列的消费者：处理按空闲槽位路由到本节点的转码任务，处理流程与共享队列相同
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "app.media.transcode.local-consumers", havingValue = "true", matchIfMissing = true)
+public class TranscodeNodeConsumer {
+
+    private final TranscodeConsumer transcodeConsumer;
+
+    public static final String LISTENER_NODE = "transcodeNode";
+
+    // 并发数由 TranscodeListenerScaleJob 按调度器空闲槽位动态调整
+    @RabbitListener(id = LISTENER_NODE,
+            queues = "#{transcodeNodeQueue.name}",
+            concurrency = "1",
+            ackMode = "MANUAL")
+    public void onRouted(TranscodeTask task, Message msg, Channel channel) throws IOException {
+        transcodeConsumer.process(task, msg, channel, task.isImmediate(), true);
+    }
+}
@@ -0,0 +1,25 @@
+package cn.programcx.foxnaserver.dto.file;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Schema(description = "游标分页响应数据格式")
+public class CursorPageResponse<T> {
+    @Schema(description = "总记录数")
+    private long total;
+
+    @Schema(description = "每页大小")
+    private int pageSize;
+
+    @Schema(description = "下一页游标，为空表示没有更多数据")
+    private String nextCursor;
+
+    @Schema(description = "是否还有更多数据")
+    private boolean hasMore;
+
+    @Schema(description = "数据列表")
+    private List<T> list;
+}
@@ -0,0 +1,36 @@
+package cn.programcx.foxnaserver.dto.file;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.file.Path;
+
+/**
+ * 目录项的轻量快照（一次 BasicFileAttributes 读取的结果）
+ * 列表排序、分页都在该对象上进行，只有最终返回的那一页才会转换为 {@link FileInfo}
+ */
+@Getter
+@AllArgsConstructor
+public class DirEntry {
+
+    private final Path path;
+
+    private final String name;
+
+    private final boolean directory;
+
+    private final long size;
+
+    private final long lastModified;
+
+    // 是否为符号链接；directory、size 等描述的是链接目标
+    private final boolean symlink;
+
+    public DirEntry(Path path, String name, boolean directory, long size, long lastModified) {
+        this(path, name, directory, size, lastModified, false);
+    }
+
+    public String getType() {
+        return directory ? "directory" : "file";
+    }
+}
@@ -8,6 +8,15 @@ import org.apache.tika.mime.MimeTypeException;
 import org.apache.tika.mime.MimeTypes;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
@@ -125,61 +134,140 @@ public class FileInfo {
             Map.entry("xz", "application/x-xz")
     );
 
+    /**
+     * 扩展名解析出的内容类型，不可变，可在多个 FileInfo 之间共享
+     */
+    private record ContentType(String mime, String category, boolean canPlay, boolean needTranscode) {
+    }
+
+    private static final ContentType DIRECTORY = new ContentType("inode/directory", "directory", false, false);
+
+    // 扩展名 → 内容类型，启动时由 EXT_TO_MIME 一次性计算
+    private static final Map<String, ContentType> EXT_TABLE = buildExtTable();
+
+    // 不在 EXT_TABLE 中的扩展名（或无扩展名文件名）经 Tika 解析后的结果缓存
+    private static final int UNKNOWN_CACHE_SIZE = 4096;
+    private static final Map<String, ContentType> UNKNOWN_CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ContentType> eldest) {
+                    return size() > UNKNOWN_CACHE_SIZE;
+                }
+            });
+
     public static FileInfo of(File file) {
-        FileInfo info = new FileInfo();
-        String name = file.getName();
-        info.setName(name);
-        info.setPath(file.getPath().replace(File.separatorChar, '/'));
-        info.setSize(file.length());
-        info.setLastModified(file.lastModified());
-        info.setType(file.isDirectory() ? "directory" : "file");
-
-        // 目录直接返回
-        if (file.isDirectory()) {
-            info.setMime("inode/directory");
-            info.setCategory("directory");
-            info.setCanPlay(false);
-            info.setNeedTranscode(false);
+        Path path = file.toPath();
+        try {
+            return of(path, Files.readAttributes(path, BasicFileAttributes.class));
+        } catch (IOException e) {
+            // 与 File#length / File#lastModified 一致：不存在或不可访问时为 0
+            FileInfo info = new FileInfo();
+            info.setName(file.getName());
+            info.setPath(file.getPath().replace(File.separatorChar, '/'));
+            info.setType("file");
+            fillContentType(info, file.getName(), false);
             return info;
         }
+    }
 
-        // 提取扩展名（小写，不带点）
+    /**
+     * 由一次读取的文件属性构建，不再单独 stat
+     */
+    public static FileInfo of(Path path, BasicFileAttributes attrs) {
+        FileInfo info = new FileInfo();
+        Path fileName = path.getFileName();
+        String name = fileName == null ? path.toString() : fileName.toString();
+        info.setName(name);
+        info.setPath(path.toString().replace(File.separatorChar, '/'));
+        info.setSize(attrs.size());
+        info.setLastModified(attrs.lastModifiedTime().toMillis());
+        info.setType(attrs.isDirectory() ? "directory" : "file");
+        fillContentType(info, name, attrs.isDirectory());
+        return info;
+    }
+
+    /**
+     * 读取一次属性（跟随符号链接，与 File 的行为一致）后构建
+     */
+    public static FileInfo of(Path path) throws IOException {
+        return of(path, Files.readAttributes(path, BasicFileAttributes.class));
+    }
+
+    /**
+     * 由目录列表引擎已读取的属性构建，不再重复 stat
+     */
+    public static FileInfo of(DirEntry entry) {
+        FileInfo info = new FileInfo();
+        info.setName(entry.getName());
+        info.setPath(entry.getPath().toString().replace(File.separatorChar, '/'));
+        info.setSize(entry.getSize());
+        info.setLastModified(entry.getLastModified());
+        info.setType(entry.getType());
+        fillContentType(info, entry.getName(), entry.isDirectory());
+        return info;
+    }
+
+    /**
+     * 按文件名判断类别（不访问文件系统）
+     */
+    public static String categoryOf(String name) {
+        return resolveContentType(name).category();
+    }
+
+    private static void fillContentType(FileInfo info, String name, boolean directory) {
+        ContentType contentType = directory ? DIRECTORY : resolveContentType(name);
+        info.setMime(contentType.mime());
+        info.setCategory(contentType.category());
+        info.setCanPlay(contentType.canPlay());
+        info.setNeedTranscode(contentType.needTranscode());
+    }
+
+    private static ContentType resolveContentType(String name) {
+        // 提取扩展名（小写，不带点）；已是小写时 toLowerCase 不会新建字符串
         String ext = "";
-        int lastDot = name.lastIndexOf(".");
+        int lastDot = name.lastIndexOf('.');
         if (lastDot != -1 && lastDot < name.length() - 1) {
-            ext = name.substring(lastDot + 1).toLowerCase();
+            ext = name.substring(lastDot + 1).toLowerCase(Locale.ROOT);
+        }
+
+        ContentType known = EXT_TABLE.get(ext);
+        if (known != null) {
+            return known;
+        }
+
+        // 无扩展名时 Tika 按完整文件名判断，缓存键需区分
+        String key = ext.isEmpty() ? "/" + name : ext;
+        ContentType cached = UNKNOWN_CACHE.get(key);
+        if (cached == null) {
+            cached = toContentType(detectMime(ext, name), ext);
+            UNKNOWN_CACHE.put(key, cached);
         }
+        return cached;
+    }
 
-        // 检测 MIME 类型
-        String mime = detectMime(ext, name);
+    private static Map<String, ContentType> buildExtTable() {
+        Map<String, ContentType> table = new HashMap<>();
+        for (Map.Entry<String, String> entry : EXT_TO_MIME.entrySet()) {
+            table.put(entry.getKey(), toContentType(entry.getValue(), entry.getKey()));
+        }
+        return Map.copyOf(table);
+    }
 
+    private static ContentType toContentType(String mime, String ext) {
         // 分类
         String category = classify(mime, ext);
 
         // 判断是否可直接播放
-        boolean canPlay = NATIVE_TYPES.contains(mime.toLowerCase());
+        boolean canPlay = NATIVE_TYPES.contains(mime.toLowerCase(Locale.ROOT));
 
         // 只有视频不能播放时才需要转码
         boolean needTranscode = category.equals("video") && !canPlay;
 
-        info.setMime(mime);
-        info.setCategory(category);
-        info.setCanPlay(canPlay);
-        info.setNeedTranscode(needTranscode);
-
-        log.debug("FileInfo: name={}, mime={}, cat={}, canPlay={}",
-                name, mime, category, canPlay);
-
-        return info;
+        return new ContentType(mime.intern(), category, canPlay, needTranscode);
     }
 
     private static String detectMime(String ext, String fullName) {
-        // 第1层：手动兜底表（最可靠）
-        if (!ext.isEmpty() && EXT_TO_MIME.containsKey(ext)) {
-            return EXT_TO_MIME.get(ext);
-        }
-
-        // 第2层：Tika 带点号扩展名
+        // 第1层：Tika 带点号扩展名（常用类型已在 EXT_TABLE 中命中）
         if (!ext.isEmpty()) {
             try {
                 MimeType mimeType = TIKA.forName("." + ext);
@@ -190,7 +278,7 @@ public class FileInfo {
             }
         }
 
-        // 第3层：Tika 完整文件名
+        // 第2层：Tika 完整文件名
         try {
             MimeType mimeType = TIKA.forName(fullName);
             if (mimeType != null) {
@@ -0,0 +1,56 @@
+package cn.programcx.foxnaserver.dto.file;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Schema(description = "后台文件操作任务状态")
+public class FileOperationStatus {
+    @Schema(description = "任务 ID")
+    private String jobId;
+
+    @Schema(description = "操作类型", allowableValues = {"COPY", "MOVE", "DELETE", "PURGE"})
+    private String type;
+
+    @Schema(description = "任务状态", allowableValues = {"PENDING", "SCANNING", "RUNNING", "COMPLETED", "FAILED", "CANCELLED"})
+    private String state;
+
+    @Schema(description = "顶层条目数量")
+    private int totalItems;
+
+    @Schema(description = "需要处理的文件总数")
+    private long totalFiles;
+
+    @Schema(description = "需要处理的字节总数")
+    private long totalBytes;
+
+    @Schema(description = "已处理文件数")
+    private long filesDone;
+
+    @Schema(description = "已处理字节数")
+    private long bytesDone;
+
+    @Schema(description = "吞吐量（字节/秒；删除任务为文件/秒）")
+    private long throughput;
+
+    @Schema(description = "预计剩余时间（秒），无法估算时为 -1")
+    private long etaSeconds;
+
+    @Schema(description = "失败的顶层条目数量")
+    private int failedCount;
+
+    @Schema(description = "失败的路径及原因")
+    private List<Map<String, Object>> failedPaths;
+
+    @Schema(description = "附加信息")
+    private String message;
+
+    @Schema(description = "创建时间（毫秒时间戳）")
+    private long createdAt;
+
+    @Schema(description = "结束时间（毫秒时间戳），未结束时为 0")
+    private long finishedAt;
+}
@@ -0,0 +1,41 @@
+package cn.programcx.foxnaserver.dto.file;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "文件搜索条件，各条件之间为且的关系")
+public class FileSearchQuery {
+    @Schema(description = "文件名包含的关键字（不区分大小写）")
+    private String keyword;
+
+    @Schema(description = "文件名前缀（不区分大小写）")
+    private String prefix;
+
+    @Schema(description = "扩展名，如 mp4 或 .mp4")
+    private String ext;
+
+    @Schema(description = "类别：video、audio、image、doc、archive、code、other")
+    private String category;
+
+    @Schema(description = "类型，directory 或 file")
+    private String type;
+
+    @Schema(description = "最小大小（字节）")
+    private Long minSize;
+
+    @Schema(description = "最大大小（字节）")
+    private Long maxSize;
+
+    @Schema(description = "最早修改时间（毫秒时间戳）")
+    private Long modifiedAfter;
+
+    @Schema(description = "最晚修改时间（毫秒时间戳）")
+    private Long modifiedBefore;
+
+    @Schema(description = "只在该目录下搜索")
+    private String path;
+
+    @Schema(description = "最多返回的条目数")
+    private int limit = 100;
+}
@@ -0,0 +1,16 @@
+package cn.programcx.foxnaserver.dto.file;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Schema(description = "批量权限检查请求")
+public class PermissionCheckRequest {
+    @Schema(description = "要检查的路径列表")
+    private List<String> paths;
+
+    @Schema(description = "要检查的权限类型，默认 Read 和 Write", example = "[\"Read\", \"Write\"]")
+    private List<String> types;
+}
@@ -0,0 +1,22 @@
+package cn.programcx.foxnaserver.dto.file;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Schema(description = "批量获取缩略图请求")
+public class ThumbnailBatchRequest {
+    @Schema(description = "文件路径列表（一屏网格中的所有文件）")
+    private List<String> paths;
+
+    @Schema(description = "尺寸：small、medium、large，默认 small")
+    private String size;
+
+    @Schema(description = "当前可见的文件路径，优先生成；未列出的按预取处理")
+    private List<String> visible;
+
+    @Schema(description = "最多等待生成的毫秒数，0 表示只返回已缓存的结果，最大 5000")
+    private long waitMs;
+}
@@ -0,0 +1,38 @@
+package cn.programcx.foxnaserver.dto.file;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "分块上传会话")
+public class UploadSession {
+    @Schema(description = "上传会话 ID")
+    private String uploadId;
+
+    @Schema(description = "会话所属用户 UUID")
+    private String ownerUuid;
+
+    @Schema(description = "上传完成后的目标路径")
+    private String targetPath;
+
+    @Schema(description = "接收分块的临时文件路径（与目标位于同一目录）")
+    private String tempPath;
+
+    @Schema(description = "文件总大小（字节）")
+    private long fileSize;
+
+    @Schema(description = "分块大小（字节），最后一块可以更小")
+    private long chunkSize;
+
+    @Schema(description = "分块总数")
+    private int totalChunks;
+
+    @Schema(description = "整个文件的 SHA-256（十六进制），提交时校验")
+    private String fileSha256;
+
+    @Schema(description = "目标已存在时是否覆盖")
+    private boolean overwrite;
+
+    @Schema(description = "创建时间（时间戳）")
+    private long createdAt;
+}
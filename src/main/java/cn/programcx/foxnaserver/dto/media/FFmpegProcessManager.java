@@ -1,7 +1,9 @@
 package cn.programcx.foxnaserver.dto.media;
 
 import cn.programcx.foxnaserver.callback.TranscodeCallback;
+import cn.programcx.foxnaserver.service.media.TranscodeScheduler;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.*;
@@ -23,13 +25,12 @@ public class FFmpegProcessManager {
             File.separator + "foxnas" +
             File.separator + "transcode";
 
-    // 控制并发转码数量（根据R7 8845HS性能，2个并发比较合适）
-    private final Semaphore semaphore = new Semaphore(2);
+    // 并发数由调度器按 CPU 核数、任务开销与实时负载控制
+    @Autowired
+    private TranscodeScheduler transcodeScheduler;
 
-    // 线程池用于执行FFmpeg进程（命名线程便于调试）
-    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
-            2, 2, 0L, TimeUnit.MILLISECONDS,
-            new LinkedBlockingQueue<>(10),
+    // 线程池用于执行FFmpeg进程（命名线程便于调试），线程数受调度器槽位约束，不再设固定上限与队列
+    private final ExecutorService executor = Executors.newCachedThreadPool(
             new ThreadFactory() {
                 private final AtomicInteger counter = new AtomicInteger(0);
 
@@ -53,19 +54,23 @@ public class FFmpegProcessManager {
 
     }
 
+    public void execute(List<String> command, String jobId, long timeoutSeconds, long totalMills, TranscodeCallback callback) throws Exception {
+        execute(command, jobId, timeoutSeconds, totalMills, false, callback);
+    }
+
     /**
      * 阻塞式执行FFmpeg命令
-     * 调用线程会阻塞直到FFmpeg完成、超时或异常
+     * 调用线程会阻塞直到FFmpeg完成、超时或异常；槽位不足时先排队等待，排队时间不计入超时
      *
      * @param command        FFmpeg命令参数列表
      * @param timeoutSeconds 最大执行时间（秒）
+     * @param priority       立即观看的任务优先获得槽位
      * @throws Exception 执行失败、超时或退出码非0时抛出
      */
-    public void execute(List<String> command, String jobId, long timeoutSeconds, long totalMills, TranscodeCallback callback) throws Exception {
-        // 1. 获取信号量（控制并发数，最多等待30秒）
-        if (!semaphore.tryAcquire(30, TimeUnit.SECONDS)) {
-            throw new RuntimeException("转码服务器繁忙，当前有 " + semaphore.getQueueLength() + " 个任务排队");
-        }
+    public void execute(List<String> command, String jobId, long timeoutSeconds, long totalMills,
+                        boolean priority, TranscodeCallback callback) throws Exception {
+        // 1. 按开销类别获取槽位（控制并发数）
+        TranscodeScheduler.Slot slot = transcodeScheduler.acquire(jobId, TranscodeScheduler.CostClass.of(command), priority);
 
         Future<?> future = null;
         try {
@@ -183,8 +188,8 @@ public class FFmpegProcessManager {
             }
 
         } finally {
-            // 8. 释放信号量（无论成功与否）
-            semaphore.release();
+            // 8. 释放槽位（无论成功与否）
+            slot.close();
         }
     }
 
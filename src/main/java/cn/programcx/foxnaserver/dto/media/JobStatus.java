@@ -3,6 +3,7 @@ package cn.programcx.foxnaserver.dto.media;
 import lombok.Data;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 public class JobStatus {
@@ -33,4 +34,7 @@ public class JobStatus {
     private int currentStage;
 
     private String message;
+
+    // 自适应码率模式下各清晰度档位的进度，单码率模式为 null
+    private List<RenditionStatus> renditions;
 }
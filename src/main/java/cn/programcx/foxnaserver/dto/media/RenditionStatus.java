@@ -0,0 +1,28 @@
+package cn.programcx.foxnaserver.dto.media;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 自适应码率（ABR）转码中单个清晰度档位的状态
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RenditionStatus {
+    // 档位名称，如 src、1080p、720p，对应 stream_{name}.m3u8
+    private String name;
+
+    // 输出高度（像素）
+    private int height;
+
+    // 目标视频码率（kbps），直接复制时为源码率估计值
+    private int bitrateKbps;
+
+    // 是否直接复制源视频流（不重新编码）
+    private boolean copy;
+
+    // 该档位已输出的时长占总时长的百分比 0-100
+    private double progress;
+}
@@ -35,6 +35,9 @@ public class TranscodeTask implements Serializable {
 
     // 视频文件指纹（用于缓存判断）
     private String fingerprint;
+
+    // 是否生成自适应码率（多清晰度）HLS
+    private boolean abr;
 }
 
 
@@ -0,0 +1,59 @@
+package cn.programcx.foxnaserver.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 文件内容哈希索引实体（用于秒传去重）
+ */
+@Data
+@TableName("tb_file_hash")
+public class FileHash {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 文件路径的 MD5，用于唯一索引（路径本身过长，不适合直接建唯一索引）
+     */
+    @TableField("path_hash")
+    private String pathHash;
+
+    /**
+     * 文件绝对路径
+     */
+    @TableField("file_path")
+    private String filePath;
+
+    /**
+     * 文件大小（字节）
+     */
+    @TableField("file_size")
+    private Long fileSize;
+
+    /**
+     * 计算哈希时文件的最后修改时间（毫秒），与大小一起判断索引是否过期
+     */
+    @TableField("last_modified")
+    private Long lastModified;
+
+    /**
+     * 整个文件的 SHA-256
+     */
+    @TableField("sha256")
+    private String sha256;
+
+    /**
+     * 抽样块哈希摘要，见 FileHashService#computeSampleHashes
+     */
+    @TableField("sample_hash")
+    private String sampleHash;
+
+    /**
+     * 索引时间
+     */
+    @TableField("indexed_at")
+    private LocalDateTime indexedAt;
+}
@@ -111,6 +111,18 @@ public class TranscodeJob {
     @TableField("is_immediate")
     private Boolean immediate;
 
+    /**
+     * 是否生成自适应码率（多清晰度）HLS
+     */
+    @TableField("abr")
+    private Boolean abr;
+
+    /**
+     * 各清晰度档位及进度（JSON 数组），单码率任务为空
+     */
+    @TableField("renditions")
+    private String renditions;
+
     /**
      * 创建时间
      */
@@ -0,0 +1,22 @@
+package cn.programcx.foxnaserver.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.util.List;
+
+/**
+ * 文件系统变更事件
+ * 由文件操作接口在增删改之后发布，供目录缓存等组件精确失效
+ */
+@Getter
+public class FileChangeEvent extends ApplicationEvent {
+
+    // 发生变更的路径（文件或目录），其父目录同样视为已变更
+    private final List<String> paths;
+
+    public FileChangeEvent(Object source, List<String> paths) {
+        super(source);
+        this.paths = paths;
+    }
+}
@@ -1,9 +1,7 @@
 package cn.programcx.foxnaserver.interceptor;
 
-import cn.programcx.foxnaserver.entity.Resource;
-import cn.programcx.foxnaserver.mapper.ResourceMapper;
+import cn.programcx.foxnaserver.service.file.FilePermissionService;
 import cn.programcx.foxnaserver.util.JwtUtil;
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
@@ -12,40 +10,14 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.List;
 
 @Component
 public class DirectoryPermissionInterceptor implements HandlerInterceptor {
     @Autowired
-    ResourceMapper resourceMapper;
-
+    private FilePermissionService filePermissionService;
 
     private boolean hasPermission(String userUuid, String directory, String method) throws IOException {
-        LambdaQueryWrapper<Resource> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(Resource::getOwnerUuid, userUuid).eq(Resource::getPermissionType, method);
-        List<Resource> resources = resourceMapper.selectList(queryWrapper);
-
-        String normalizedPath = Paths.get(directory).normalize().toString();
-
-        String raw = directory.replace("\\", "/");
-        if (raw.contains("../")) {
-            return false;
-        }
-
-        if(containsSymlink(Paths.get(raw))){
-            return false;
-        }
-
-        for (Resource resource : resources) {
-            String allowedPath = Paths.get(resource.getFolderName()).normalize().toString();
-            if (normalizedPath.startsWith(allowedPath)) {
-                return true;
-            }
-        }
-        return false;
+        return filePermissionService.hasPermission(userUuid, directory, method);
     }
 
 
@@ -95,15 +67,4 @@ public class DirectoryPermissionInterceptor implements HandlerInterceptor {
         return true;
 
     }
-
-    public boolean containsSymlink(Path path) throws IOException {
-        Path current = path;
-        while (current != null) {
-            if (Files.isSymbolicLink(current)) {
-                return true;
-            }
-            current = current.getParent();
-        }
-        return false;
-    }
 }
@@ -7,6 +7,7 @@ import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.scheduling.quartz.QuartzJobBean;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
 
@@ -20,6 +21,7 @@ import java.util.Properties;
 
 @Slf4j
 @Component
+@Profile("!worker")
 public class BroadcastJob extends QuartzJobBean {
 
     /**
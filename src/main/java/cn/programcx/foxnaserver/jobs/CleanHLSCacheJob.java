@@ -7,12 +7,14 @@ import cn.programcx.foxnaserver.mapper.TranscodeJobMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 
 @Slf4j
 @Component
+@Profile("!worker")
 public class CleanHLSCacheJob{
 
     @Autowired
@@ -0,0 +1,45 @@
+package cn.programcx.foxnaserver.jobs;
+
+import cn.programcx.foxnaserver.service.file.DirectorySizeService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * 目录大小统计：启动后统计尚无结果的授权根目录，每天全量校正一次（外部修改不会产生变更事件），并定期写盘
+ */
+@Slf4j
+@Component
+@Profile("!worker")
+public class DirectorySizeJob {
+
+    @Autowired
+    private DirectorySizeService directorySizeService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initial() {
+        try {
+            directorySizeService.computeAll(true);
+        } catch (Exception e) {
+            log.error("目录大小统计失败", e);
+        }
+    }
+
+    @Scheduled(cron = "${app.file.dir-size.rescan-cron:0 0 4 * * ?}")
+    public void rescan() {
+        try {
+            directorySizeService.computeAll(false);
+        } catch (Exception e) {
+            log.error("目录大小统计失败", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.file.dir-size.save-interval-ms:300000}")
+    public void save() {
+        directorySizeService.saveIfDirty();
+    }
+}
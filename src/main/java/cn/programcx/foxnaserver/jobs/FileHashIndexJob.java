@@ -0,0 +1,37 @@
+package cn.programcx.foxnaserver.jobs;
+
+import cn.programcx.foxnaserver.service.file.FileHashService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * 后台增量构建文件内容哈希索引（秒传使用）
+ */
+@Slf4j
+@Component
+@Profile("!worker")
+public class FileHashIndexJob {
+
+    @Autowired
+    private FileHashService fileHashService;
+
+    @Value("${app.file.dedup.enabled:true}")
+    private boolean enabled;
+
+    @Scheduled(initialDelayString = "${app.file.dedup.index-initial-delay-ms:60000}",
+            fixedDelayString = "${app.file.dedup.index-interval-ms:3600000}")
+    public void scheduled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            fileHashService.indexAll();
+        } catch (Exception e) {
+            log.error("文件哈希索引任务执行失败", e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package cn.programcx.foxnaserver.jobs;
+
+import cn.programcx.foxnaserver.service.file.FileSearchService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * 后台增量重扫授权根目录，维护文件搜索索引
+ */
+@Slf4j
+@Component
+@Profile("!worker")
+public class FileSearchIndexJob {
+
+    @Autowired
+    private FileSearchService fileSearchService;
+
+    @Value("${app.file.search.enabled:true}")
+    private boolean enabled;
+
+    @Scheduled(initialDelayString = "${app.file.search.index-initial-delay-ms:30000}",
+            fixedDelayString = "${app.file.search.index-interval-ms:3600000}")
+    public void scheduled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            fileSearchService.reindexAll();
+        } catch (Exception e) {
+            log.error("搜索索引任务执行失败", e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package cn.programcx.foxnaserver.jobs;
+
+import cn.programcx.foxnaserver.service.media.OnDemandHlsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定期关闭空闲的按需 HLS 播放会话
+ */
+@Slf4j
+@Component
+@Profile("!worker")
+public class OnDemandHlsCleanupJob {
+
+    @Autowired
+    private OnDemandHlsService onDemandHlsService;
+
+    @Scheduled(fixedDelayString = "${app.media.ondemand.sweep-interval-ms:30000}")
+    public void sweep() {
+        try {
+            onDemandHlsService.expireIdle();
+        } catch (Exception e) {
+            log.error("按需 HLS 会话清理失败", e);
+        }
+    }
+}
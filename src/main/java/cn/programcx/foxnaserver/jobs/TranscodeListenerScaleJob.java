@@ -0,0 +1,58 @@
+package cn.programcx.foxnaserver.jobs;
+
+import cn.programcx.foxnaserver.config.consumer.SubtitleTranscodeConsumer;
+import cn.programcx.foxnaserver.config.consumer.TranscodeConsumer;
+import cn.programcx.foxnaserver.config.consumer.TranscodeNodeConsumer;
+import cn.programcx.foxnaserver.service.media.TranscodeScheduler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按转码调度器的空闲槽位与 CPU 负载调整转码队列的消费者数量：
+ * 有空闲槽位时多取消息，CPU 繁忙或槽位占满时不再从队列中取出更多任务
+ */
+@Slf4j
+@Component
+public class TranscodeListenerScaleJob {
+
+    @Autowired
+    private TranscodeScheduler transcodeScheduler;
+
+    @Autowired
+    private RabbitListenerEndpointRegistry rabbitListenerEndpointRegistry;
+
+    // 每个转码队列的消费者上限，0 表示 CPU 核数
+    @Value("${app.media.transcode.max-consumers:0}")
+    private int maxConsumers;
+
+    @Scheduled(fixedDelayString = "${app.media.transcode.scale-interval-ms:5000}")
+    public void scale() {
+        try {
+            int max = maxConsumers > 0 ? maxConsumers : Runtime.getRuntime().availableProcessors();
+            int consumers = transcodeScheduler.suggestedConsumers(max);
+            resize(TranscodeConsumer.LISTENER_PRIORITY, consumers);
+            resize(TranscodeConsumer.LISTENER_NORMAL, consumers);
+            resize(TranscodeNodeConsumer.LISTENER_NODE, consumers);
+            resize(SubtitleTranscodeConsumer.LISTENER_SUBTITLE, consumers);
+        } catch (Exception e) {
+            log.error("调整转码队列消费者数量失败", e);
+        }
+    }
+
+    private void resize(String listenerId, int consumers) {
+        MessageListenerContainer container = rabbitListenerEndpointRegistry.getListenerContainer(listenerId);
+        // 未启动的监听（local-consumers=false）不调整
+        if (container instanceof SimpleMessageListenerContainer simple && simple.isRunning()
+                && simple.getActiveConsumerCount() != consumers) {
+            // 减少时空闲的消费者立即停止，正在处理消息的消费者处理完当前任务后停止
+            simple.setConcurrentConsumers(consumers);
+            log.debug("转码队列 [{}] 消费者数量调整为 {}", listenerId, consumers);
+        }
+    }
+}
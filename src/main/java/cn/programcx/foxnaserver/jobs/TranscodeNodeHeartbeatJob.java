@@ -0,0 +1,39 @@
+package cn.programcx.foxnaserver.jobs;
+
+import cn.programcx.foxnaserver.service.media.TranscodeNodeService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 运行转码消费者的节点定期在 Redis 中登记容量与占用，供提交任务的节点选择路由
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.media.transcode.local-consumers", havingValue = "true", matchIfMissing = true)
+public class TranscodeNodeHeartbeatJob {
+
+    @Autowired
+    private TranscodeNodeService transcodeNodeService;
+
+    @Scheduled(fixedDelayString = "${app.media.transcode.heartbeat-interval-ms:5000}")
+    public void heartbeat() {
+        try {
+            transcodeNodeService.heartbeat();
+        } catch (Exception e) {
+            log.error("转码节点心跳写入失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void unregister() {
+        try {
+            transcodeNodeService.unregister();
+        } catch (Exception e) {
+            log.warn("转码节点注销失败：{}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package cn.programcx.foxnaserver.jobs;
+
+import cn.programcx.foxnaserver.service.file.TrashService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定期清理回收站中超过保留期的条目
+ */
+@Slf4j
+@Component
+@Profile("!worker")
+public class TrashPurgeJob {
+
+    @Autowired
+    private TrashService trashService;
+
+    @Scheduled(initialDelayString = "${app.file.trash.purge-initial-delay-ms:600000}",
+            fixedDelayString = "${app.file.trash.purge-interval-ms:3600000}")
+    public void purge() {
+        try {
+            trashService.purgeExpired();
+        } catch (Exception e) {
+            log.error("回收站清理任务执行失败", e);
+        }
+    }
+}
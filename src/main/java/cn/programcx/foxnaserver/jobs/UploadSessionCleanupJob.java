@@ -0,0 +1,32 @@
+package cn.programcx.foxnaserver.jobs;
+
+import cn.programcx.foxnaserver.service.file.ChunkUploadService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * 清理过期分块上传会话遗留的临时文件
+ */
+@Slf4j
+@Component
+@Profile("!worker")
+public class UploadSessionCleanupJob {
+
+    @Autowired
+    private ChunkUploadService chunkUploadService;
+
+    @Scheduled(cron = "${app.file.upload.cleanup-cron:0 0/30 * * * ?}")
+    public void scheduled() {
+        try {
+            int cleaned = chunkUploadService.cleanupExpired();
+            if (cleaned > 0) {
+                log.info("已清理 {} 个过期上传会话", cleaned);
+            }
+        } catch (Exception e) {
+            log.error("清理过期上传会话失败", e);
+        }
+    }
+}
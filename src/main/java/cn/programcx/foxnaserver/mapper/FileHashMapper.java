@@ -0,0 +1,28 @@
+package cn.programcx.foxnaserver.mapper;
+
+import cn.programcx.foxnaserver.entity.FileHash;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * 文件哈希索引Mapper
+ */
+@Repository
+public interface FileHashMapper extends BaseMapper<FileHash> {
+
+    /**
+     * 根据内容哈希与大小查询候选文件
+     */
+    @Select("SELECT * FROM tb_file_hash WHERE sha256 = #{sha256} AND file_size = #{fileSize}")
+    List<FileHash> selectByContent(@Param("sha256") String sha256, @Param("fileSize") long fileSize);
+
+    /**
+     * 根据路径哈希查询
+     */
+    @Select("SELECT * FROM tb_file_hash WHERE path_hash = #{pathHash}")
+    FileHash selectByPathHash(@Param("pathHash") String pathHash);
+}
@@ -56,6 +56,12 @@ public interface TranscodeJobMapper extends BaseMapper<TranscodeJob> {
     @Update("UPDATE transcode_jobs SET progress = #{progress}, current_stage = #{currentStage}, updated_at = NOW() WHERE job_id = #{jobId}")
     int updateProgress(@Param("jobId") String jobId, @Param("progress") Double progress, @Param("currentStage") Integer currentStage);
 
+    /**
+     * 更新各清晰度档位进度（JSON）
+     */
+    @Update("UPDATE transcode_jobs SET renditions = #{renditions}, updated_at = NOW() WHERE job_id = #{jobId}")
+    int updateRenditions(@Param("jobId") String jobId, @Param("renditions") String renditions);
+
     /**
      * 更新任务为完成状态
      */
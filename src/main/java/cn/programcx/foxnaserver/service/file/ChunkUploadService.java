@@ -0,0 +1,401 @@
+package cn.programcx.foxnaserver.service.file;
+
+import cn.programcx.foxnaserver.dto.file.UploadSession;
+import cn.programcx.foxnaserver.event.FileChangeEvent;
+import cn.programcx.foxnaserver.exception.NoPermissionException;
+import cn.programcx.foxnaserver.util.AtomicRename;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分块断点续传上传服务
+ * <p>
+ * 流程：创建会话（预分配稀疏临时文件）→ 并行 PUT 各分块（FileChannel 按位置写入）→ 查询缺失分块 → 提交。
+ * 会话信息、已接收分块位图、分块 SHA-256 均保存在 Redis 中，服务重启后可以继续上传。
+ * 临时文件与目标文件位于同一目录，提交时校验分块与整体 SHA-256 后原子重命名。
+ * <p>
+ * Redis 键：
+ * <ul>
+ *     <li>upload:{id}          会话信息</li>
+ *     <li>upload:{id}:chunks   已接收分块位图</li>
+ *     <li>upload:{id}:digests  分块序号 → SHA-256</li>
+ *     <li>upload:sessions      会话 ID → 临时文件路径（用于清理过期会话遗留的临时文件）</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+public class ChunkUploadService {
+
+    private static final String SESSION_KEY_PREFIX = "upload:";
+    private static final String CHUNKS_KEY_SUFFIX = ":chunks";
+    private static final String DIGESTS_KEY_SUFFIX = ":digests";
+    private static final String SESSION_INDEX_KEY = "upload:sessions";
+
+    public static final String TEMP_FILE_PREFIX = ".foxnas-upload-";
+    public static final String TEMP_FILE_SUFFIX = ".part";
+
+    private static final long MIN_CHUNK_SIZE = 256 * 1024;
+    private static final long MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    private static final int VERIFY_BUFFER_SIZE = 1024 * 1024;
+    // 单个会话的分块数上限，更大的文件需要使用更大的分块
+    private static final int MAX_TOTAL_CHUNKS = 1 << 20;
+    // 查询进度时最多返回的缺失分块序号数，其余只计数
+    private static final int MISSING_CHUNKS_LIMIT = 1000;
+
+    /**
+     * 缺失分块
+     *
+     * @param count 缺失总数
+     * @param first 按序号升序的前若干个缺失分块
+     */
+    private record MissingChunks(int count, List<Integer> first) {
+    }
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private FileHashService fileHashService;
+
+    @Value("${app.file.upload.session-ttl-hours:24}")
+    private long sessionTtlHours;
+
+    /**
+     * 创建上传会话并预分配临时文件
+     */
+    public UploadSession create(String ownerUuid, String path, long fileSize, long chunkSize,
+                                String fileSha256, boolean overwrite) throws IOException {
+        if (fileSize < 0) {
+            throw new IllegalArgumentException("文件大小不能为负数");
+        }
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("分块大小必须在 " + MIN_CHUNK_SIZE + " 到 " + MAX_CHUNK_SIZE + " 字节之间");
+        }
+        if (fileSha256 != null && !fileSha256.isEmpty() && !fileSha256.matches("[0-9a-fA-F]{64}")) {
+            throw new IllegalArgumentException("SHA-256 格式不正确");
+        }
+
+        Path target = Paths.get(path);
+        if (target.getParent() == null || target.getFileName() == null) {
+            throw new IllegalArgumentException("目标路径不正确");
+        }
+        if (Files.exists(target) && !overwrite) {
+            throw new IllegalStateException("目标文件已存在");
+        }
+        long chunks = fileSize == 0 ? 1 : (fileSize + chunkSize - 1) / chunkSize;
+        if (chunks > MAX_TOTAL_CHUNKS) {
+            throw new IllegalArgumentException("分块数超过上限 " + MAX_TOTAL_CHUNKS + "，请增大分块大小");
+        }
+        int totalChunks = Math.toIntExact(chunks);
+
+        Files.createDirectories(target.getParent());
+        // 临时文件是稀疏的，创建时不占空间，必须提前拒绝放不下的文件
+        long usable = Files.getFileStore(target.getParent()).getUsableSpace();
+        if (fileSize > usable) {
+            throw new IllegalArgumentException("磁盘剩余空间不足，需要 " + fileSize + " 字节，可用 " + usable + " 字节");
+        }
+
+        String uploadId = UUID.randomUUID().toString().replace("-", "");
+        Path temp = target.getParent().resolve(TEMP_FILE_PREFIX + uploadId + TEMP_FILE_SUFFIX);
+
+        // setLength 在大多数文件系统上只修改元数据，得到一个稀疏文件，不会真正写入 fileSize 个零字节
+        try (RandomAccessFile raf = new RandomAccessFile(temp.toFile(), "rw")) {
+            raf.setLength(fileSize);
+        }
+
+        UploadSession session = new UploadSession();
+        session.setUploadId(uploadId);
+        session.setOwnerUuid(ownerUuid);
+        session.setTargetPath(target.toString());
+        session.setTempPath(temp.toString());
+        session.setFileSize(fileSize);
+        session.setChunkSize(chunkSize);
+        session.setTotalChunks(totalChunks);
+        session.setFileSha256(fileSha256 == null || fileSha256.isEmpty() ? null : fileSha256.toLowerCase());
+        session.setOverwrite(overwrite);
+        session.setCreatedAt(System.currentTimeMillis());
+
+        redisTemplate.opsForValue().set(SESSION_KEY_PREFIX + uploadId, session, sessionTtlHours, TimeUnit.HOURS);
+        stringRedisTemplate.opsForHash().put(SESSION_INDEX_KEY, uploadId, temp.toString());
+
+        log.info("[{}]创建分块上传会话: {}, 目标: {}, 大小: {}, 分块大小: {}, 分块数: {}",
+                ownerUuid, uploadId, target, fileSize, chunkSize, totalChunks);
+        return session;
+    }
+
+    /**
+     * 写入一个分块，可与其他分块并行调用
+     *
+     * @param expectedSha256 客户端声明的分块 SHA-256，可为空
+     * @return 写入的字节数
+     */
+    public long writeChunk(String ownerUuid, String uploadId, int index, String expectedSha256, InputStream in)
+            throws IOException, NoPermissionException {
+        UploadSession session = getOwnedSession(ownerUuid, uploadId);
+        if (index < 0 || index >= session.getTotalChunks()) {
+            throw new IllegalArgumentException("分块序号超出范围: " + index);
+        }
+
+        long position = index * session.getChunkSize();
+        long expectedLength = Math.min(session.getChunkSize(), session.getFileSize() - position);
+        MessageDigest digest = sha256();
+
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(Paths.get(session.getTempPath()), StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[IO_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (written + read > expectedLength) {
+                    throw new IllegalArgumentException("分块大小超出预期: " + index);
+                }
+                digest.update(buffer, 0, read);
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                long writePos = position + written;
+                while (byteBuffer.hasRemaining()) {
+                    writePos += channel.write(byteBuffer, writePos);
+                }
+                written += read;
+            }
+        } catch (java.nio.file.NoSuchFileException e) {
+            throw new FileNotFoundException("上传临时文件不存在，会话可能已被取消");
+        }
+
+        if (written != expectedLength) {
+            throw new IllegalArgumentException("分块大小不正确，期望 " + expectedLength + " 字节，实际 " + written + " 字节");
+        }
+
+        String actualSha256 = HexFormat.of().formatHex(digest.digest());
+        if (expectedSha256 != null && !expectedSha256.isEmpty() && !expectedSha256.equalsIgnoreCase(actualSha256)) {
+            throw new IllegalArgumentException("分块 " + index + " 校验失败");
+        }
+
+        String digestsKey = SESSION_KEY_PREFIX + uploadId + DIGESTS_KEY_SUFFIX;
+        String chunksKey = SESSION_KEY_PREFIX + uploadId + CHUNKS_KEY_SUFFIX;
+        stringRedisTemplate.opsForHash().put(digestsKey, String.valueOf(index), actualSha256);
+        stringRedisTemplate.opsForValue().setBit(chunksKey, index, true);
+        touch(uploadId);
+        return written;
+    }
+
+    /**
+     * 查询已接收与缺失的分块
+     */
+    public Map<String, Object> status(String ownerUuid, String uploadId) throws IOException, NoPermissionException {
+        UploadSession session = getOwnedSession(ownerUuid, uploadId);
+        MissingChunks missing = missingChunks(session);
+        return Map.of(
+                "session", session,
+                "receivedChunks", session.getTotalChunks() - missing.count(),
+                "missingCount", missing.count(),
+                "missingChunks", missing.first()
+        );
+    }
+
+    /**
+     * 校验并提交上传：逐块重新计算 SHA-256 与 PUT 时记录的值比对，同时计算整个文件的 SHA-256，最后原子重命名
+     *
+     * @return 最终文件路径
+     */
+    public Path commit(String ownerUuid, String uploadId, String fileSha256) throws IOException, NoPermissionException {
+        UploadSession session = getOwnedSession(ownerUuid, uploadId);
+        MissingChunks missing = missingChunks(session);
+        if (missing.count() > 0) {
+            throw new IllegalStateException("仍有 " + missing.count() + " 个分块未上传");
+        }
+
+        Map<Object, Object> digests = stringRedisTemplate.opsForHash().entries(SESSION_KEY_PREFIX + uploadId + DIGESTS_KEY_SUFFIX);
+        Path temp = Paths.get(session.getTempPath());
+        MessageDigest whole = sha256();
+        MessageDigest chunk = sha256();
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ)) {
+            if (channel.size() != session.getFileSize()) {
+                throw new IllegalStateException("临时文件大小与会话不一致");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(VERIFY_BUFFER_SIZE);
+            long position = 0;
+            int chunkIndex = 0;
+            long chunkEnd = Math.min(session.getChunkSize(), session.getFileSize());
+            while (position < session.getFileSize()) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), chunkEnd - position));
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    throw new IOException("读取临时文件失败");
+                }
+                whole.update(buffer.array(), 0, read);
+                chunk.update(buffer.array(), 0, read);
+                position += read;
+
+                if (position == chunkEnd) {
+                    verifyChunk(uploadId, chunkIndex, HexFormat.of().formatHex(chunk.digest()), digests);
+                    chunkIndex++;
+                    chunkEnd = Math.min(chunkEnd + session.getChunkSize(), session.getFileSize());
+                }
+            }
+            if (session.getFileSize() == 0) {
+                verifyChunk(uploadId, 0, HexFormat.of().formatHex(chunk.digest()), digests);
+            }
+        }
+
+        String expected = fileSha256 != null && !fileSha256.isEmpty() ? fileSha256 : session.getFileSha256();
+        String actual = HexFormat.of().formatHex(whole.digest());
+        if (expected != null && !expected.equalsIgnoreCase(actual)) {
+            throw new IllegalStateException("文件整体校验失败，期望 " + expected + "，实际 " + actual);
+        }
+
+        Path target = Paths.get(session.getTargetPath());
+        if (session.isOverwrite()) {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            // 先检查再 rename(2) 会覆盖期间出现的文件，必须由重命名本身拒绝已存在的目标
+            try {
+                AtomicRename.moveNoReplace(temp, target);
+            } catch (FileAlreadyExistsException e) {
+                throw new IllegalStateException("目标文件已存在");
+            }
+        }
+
+        deleteSessionKeys(uploadId);
+        // 整体哈希已经算过，直接写入秒传索引
+        fileHashService.record(target, actual);
+        eventPublisher.publishEvent(new FileChangeEvent(this, List.of(target.toString())));
+
+        log.info("[{}]分块上传完成: {}, 目标: {}, 大小: {}, SHA-256: {}", ownerUuid, uploadId, target, session.getFileSize(), actual);
+        return target;
+    }
+
+    /**
+     * 取消上传，删除临时文件与会话
+     */
+    public void abort(String ownerUuid, String uploadId) throws IOException, NoPermissionException {
+        UploadSession session = getOwnedSession(ownerUuid, uploadId);
+        Files.deleteIfExists(Paths.get(session.getTempPath()));
+        deleteSessionKeys(uploadId);
+        log.info("[{}]取消分块上传: {}", ownerUuid, uploadId);
+    }
+
+    /**
+     * 清理会话已过期但临时文件仍然存在的上传
+     *
+     * @return 清理的会话数量
+     */
+    public int cleanupExpired() {
+        Map<Object, Object> index = stringRedisTemplate.opsForHash().entries(SESSION_INDEX_KEY);
+        int cleaned = 0;
+        for (Map.Entry<Object, Object> entry : index.entrySet()) {
+            String uploadId = entry.getKey().toString();
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(SESSION_KEY_PREFIX + uploadId))) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(Paths.get(entry.getValue().toString()));
+            } catch (IOException e) {
+                log.warn("删除过期上传临时文件失败: {}, {}", entry.getValue(), e.getMessage());
+                continue;
+            }
+            deleteSessionKeys(uploadId);
+            cleaned++;
+        }
+        return cleaned;
+    }
+
+    private void verifyChunk(String uploadId, int index, String actual, Map<Object, Object> digests) {
+        Object recorded = digests.get(String.valueOf(index));
+        if (recorded == null || !recorded.toString().equalsIgnoreCase(actual)) {
+            // 标记为缺失，客户端重新上传该分块即可
+            stringRedisTemplate.opsForValue().setBit(SESSION_KEY_PREFIX + uploadId + CHUNKS_KEY_SUFFIX, index, false);
+            stringRedisTemplate.opsForHash().delete(SESSION_KEY_PREFIX + uploadId + DIGESTS_KEY_SUFFIX, String.valueOf(index));
+            throw new IllegalStateException("分块 " + index + " 校验失败，请重新上传该分块");
+        }
+    }
+
+    private MissingChunks missingChunks(UploadSession session) {
+        String chunksKey = SESSION_KEY_PREFIX + session.getUploadId() + CHUNKS_KEY_SUFFIX;
+        // 一次取回整个位图，避免逐位 GETBIT
+        byte[] bitmap = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(chunksKey.getBytes(StandardCharsets.UTF_8)));
+
+        List<Integer> first = new ArrayList<>();
+        int count = 0;
+        for (int i = 0; i < session.getTotalChunks(); i++) {
+            int byteIndex = i >>> 3;
+            // Redis 位图按字节高位在前
+            boolean received = bitmap != null && byteIndex < bitmap.length
+                    && (bitmap[byteIndex] & (0x80 >>> (i & 7))) != 0;
+            if (!received && count++ < MISSING_CHUNKS_LIMIT) {
+                first.add(i);
+            }
+        }
+        return new MissingChunks(count, first);
+    }
+
+    private UploadSession getOwnedSession(String ownerUuid, String uploadId) throws FileNotFoundException, NoPermissionException {
+        Object value = redisTemplate.opsForValue().get(SESSION_KEY_PREFIX + uploadId);
+        if (!(value instanceof UploadSession session)) {
+            throw new FileNotFoundException("上传会话不存在或已过期");
+        }
+        if (!session.getOwnerUuid().equals(ownerUuid)) {
+            throw new NoPermissionException("无权访问该上传会话");
+        }
+        return session;
+    }
+
+    private void touch(String uploadId) {
+        long ttl = TimeUnit.HOURS.toSeconds(sessionTtlHours);
+        redisTemplate.expire(SESSION_KEY_PREFIX + uploadId, ttl, TimeUnit.SECONDS);
+        redisTemplate.expire(SESSION_KEY_PREFIX + uploadId + CHUNKS_KEY_SUFFIX, ttl, TimeUnit.SECONDS);
+        redisTemplate.expire(SESSION_KEY_PREFIX + uploadId + DIGESTS_KEY_SUFFIX, ttl, TimeUnit.SECONDS);
+    }
+
+    private void deleteSessionKeys(String uploadId) {
+        redisTemplate.delete(List.of(
+                SESSION_KEY_PREFIX + uploadId,
+                SESSION_KEY_PREFIX + uploadId + CHUNKS_KEY_SUFFIX,
+                SESSION_KEY_PREFIX + uploadId + DIGESTS_KEY_SUFFIX));
+        stringRedisTemplate.opsForHash().delete(SESSION_INDEX_KEY, uploadId);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package cn.programcx.foxnaserver.service.file;
+
+import cn.programcx.foxnaserver.event.FileChangeEvent;
+import cn.programcx.foxnaserver.util.AtomicRename;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 增量同步（rsync 算法）
+ * <p>
+ * 1. 客户端获取服务器端文件的签名：按固定块大小切分，每块一个弱校验和（rsync 滚动校验和）与一个强哈希（SHA-256 前 16 字节），
+ * 签名通过内存映射读取计算，按 路径|大小|修改时间|块大小 缓存；<br>
+ * 2. 客户端用滚动校验和在本地新文件中查找与服务器相同的块，生成补丁：引用服务器已有的块 + 新数据；<br>
+ * 3. 服务器按补丁把引用的块与新数据写入同目录下的临时文件，校验整体 SHA-256 后原子重命名为目标文件。
+ * <p>
+ * 签名格式（大端）：int 魔数 FXDS, int 版本, long 文件大小, long 修改时间, int 块大小, int 块数,
+ * 之后每块 int 弱校验和 + 16 字节强哈希。<br>
+ * 补丁格式（大端）：int 魔数 FXDP, int 版本, long 基准文件大小, long 基准文件修改时间（-1 表示目标文件尚不存在）,
+ * int 块大小, long 结果文件大小, 32 字节结果 SHA-256，之后为指令序列：
+ * <ul>
+ *     <li>0：结束</li>
+ *     <li>1 int 起始块号 int 块数：复制基准文件中连续的块</li>
+ *     <li>2 int 长度 + 数据：新数据</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+public class DeltaSyncService {
+
+    private static final int SIGNATURE_MAGIC = 0x46584453;
+    private static final int PATCH_MAGIC = 0x46584450;
+    private static final int VERSION = 1;
+
+    public static final int MIN_BLOCK_SIZE = 1024;
+    public static final int MAX_BLOCK_SIZE = 8 * 1024 * 1024;
+    private static final int MAX_BLOCK_COUNT = 1 << 20;
+    private static final int STRONG_HASH_LENGTH = 16;
+    private static final int MAX_DATA_LENGTH = 16 * 1024 * 1024;
+    // 内存映射窗口大小
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+    private static final int OP_END = 0;
+    private static final int OP_COPY = 1;
+    private static final int OP_DATA = 2;
+
+    @Autowired
+    private FileHashService fileHashService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.file.delta.signature-cache-bytes:67108864}")
+    private long signatureCacheBytes;
+
+    // 签名缓存：路径|大小|修改时间|块大小 → 签名（访问顺序）
+    private final LinkedHashMap<String, byte[]> signatureCache = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedBytes;
+
+    /**
+     * 计算（或从缓存获取）文件签名
+     *
+     * @param blockSize 块大小，0 表示按文件大小自动选择（约为文件大小的平方根）
+     */
+    public byte[] signature(Path file, int blockSize) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        if (!attrs.isRegularFile()) {
+            throw new NoSuchFileException(file.toString());
+        }
+        long size = attrs.size();
+        long mtime = attrs.lastModifiedTime().toMillis();
+        int effectiveBlockSize = chooseBlockSize(size, blockSize);
+        String key = file.toAbsolutePath().normalize() + "|" + size + "|" + mtime + "|" + effectiveBlockSize;
+
+        synchronized (signatureCache) {
+            byte[] cached = signatureCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        byte[] signature = computeSignature(file, size, mtime, effectiveBlockSize);
+        log.info("计算文件签名: {}, 大小: {}, 块大小: {}, 耗时: {} ms", file, size, effectiveBlockSize, System.currentTimeMillis() - start);
+
+        synchronized (signatureCache) {
+            if (signatureCache.put(key, signature) == null) {
+                cachedBytes += signature.length;
+            }
+            var it = signatureCache.entrySet().iterator();
+            while (cachedBytes > signatureCacheBytes && it.hasNext()) {
+                cachedBytes -= it.next().getValue().length;
+                it.remove();
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * 应用补丁，生成新文件并原子替换目标文件
+     *
+     * @return 新文件的 SHA-256
+     * @throws IllegalArgumentException 补丁格式不正确
+     * @throws IllegalStateException    基准文件已变化（需要重新获取签名）或结果校验失败
+     */
+    public String apply(String ownerUuid, Path target, InputStream patch) throws IOException {
+        DataInputStream in = new DataInputStream(patch);
+        if (in.readInt() != PATCH_MAGIC || in.readInt() != VERSION) {
+            throw new IllegalArgumentException("补丁格式不正确");
+        }
+        long baseSize = in.readLong();
+        long baseMtime = in.readLong();
+        int blockSize = in.readInt();
+        long targetSize = in.readLong();
+        byte[] expectedSha256 = in.readNBytes(32);
+        if (blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE || targetSize < 0 || expectedSha256.length != 32) {
+            throw new IllegalArgumentException("补丁格式不正确");
+        }
+        boolean hasBase = baseMtime != -1;
+        checkBase(target, hasBase, baseSize, baseMtime);
+
+        Path temp = target.toAbsolutePath().getParent()
+                .resolve(ChunkUploadService.TEMP_FILE_PREFIX + "delta-" + UUID.randomUUID() + ChunkUploadService.TEMP_FILE_SUFFIX);
+        MessageDigest digest = sha256();
+        long written = 0;
+        long copied = 0;
+        try {
+            try (FileChannel base = hasBase ? FileChannel.open(target, StandardOpenOption.READ) : null;
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                byte[] data = new byte[0];
+                while (true) {
+                    int op = in.readUnsignedByte();
+                    if (op == OP_END) {
+                        break;
+                    }
+                    if (op == OP_COPY) {
+                        long startBlock = Integer.toUnsignedLong(in.readInt());
+                        long count = Integer.toUnsignedLong(in.readInt());
+                        long from = startBlock * blockSize;
+                        long to = Math.min((startBlock + count) * blockSize, baseSize);
+                        if (base == null || count == 0 || from >= baseSize) {
+                            throw new IllegalArgumentException("补丁引用的块超出基准文件范围");
+                        }
+                        copyRange(base, from, to, out, digest);
+                        copied += to - from;
+                        written += to - from;
+                    } else if (op == OP_DATA) {
+                        int length = in.readInt();
+                        if (length < 0 || length > MAX_DATA_LENGTH) {
+                            throw new IllegalArgumentException("补丁数据块过大");
+                        }
+                        if (data.length < length) {
+                            data = new byte[length];
+                        }
+                        in.readFully(data, 0, length);
+                        digest.update(data, 0, length);
+                        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+                        while (buffer.hasRemaining()) {
+                            out.write(buffer);
+                        }
+                        written += length;
+                    } else {
+                        throw new IllegalArgumentException("未知的补丁指令: " + op);
+                    }
+                    if (written > targetSize) {
+                        throw new IllegalArgumentException("补丁生成的文件超过声明的大小");
+                    }
+                }
+                out.force(false);
+            }
+
+            byte[] actual = digest.digest();
+            if (written != targetSize || !MessageDigest.isEqual(actual, expectedSha256)) {
+                throw new IllegalStateException("结果校验失败，期望 " + HexFormat.of().formatHex(expectedSha256)
+                        + "，实际 " + HexFormat.of().formatHex(actual) + "（" + written + " 字节）");
+            }
+            // 生成期间基准文件被其他请求修改时放弃，避免覆盖别人的修改
+            checkBase(target, hasBase, baseSize, baseMtime);
+            if (hasBase) {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                // 没有基准文件时不能覆盖检查之后由其他客户端创建的文件
+                try {
+                    AtomicRename.moveNoReplace(temp, target);
+                } catch (FileAlreadyExistsException e) {
+                    throw new IllegalStateException("目标文件已存在，请先获取签名");
+                }
+            }
+
+            String sha256 = HexFormat.of().formatHex(actual);
+            fileHashService.record(target, sha256);
+            eventPublisher.publishEvent(new FileChangeEvent(this, List.of(target.toString())));
+            log.info("[{}]增量同步完成: {}, 大小: {}, 复用基准数据: {} 字节, 新数据: {} 字节",
+                    ownerUuid, target, written, copied, written - copied);
+            return sha256;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void checkBase(Path target, boolean hasBase, long baseSize, long baseMtime) throws IOException {
+        if (!hasBase) {
+            if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+                throw new IllegalStateException("目标文件已存在，请先获取签名");
+            }
+            return;
+        }
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(target, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            throw new IllegalStateException("基准文件不存在");
+        }
+        if (!attrs.isRegularFile() || attrs.size() != baseSize || attrs.lastModifiedTime().toMillis() != baseMtime) {
+            throw new IllegalStateException("基准文件已变化，请重新获取签名");
+        }
+    }
+
+    /**
+     * 通过内存映射复制基准文件的一段，同时更新摘要
+     */
+    private static void copyRange(FileChannel base, long from, long to, FileChannel out, MessageDigest digest) throws IOException {
+        long position = from;
+        while (position < to) {
+            long length = Math.min(MAP_WINDOW, to - position);
+            MappedByteBuffer mapped = base.map(FileChannel.MapMode.READ_ONLY, position, length);
+            digest.update(mapped);
+            mapped.rewind();
+            while (mapped.hasRemaining()) {
+                out.write(mapped);
+            }
+            position += length;
+        }
+    }
+
+    private static byte[] computeSignature(Path file, long size, long mtime, int blockSize) throws IOException {
+        int blockCount = (int) ((size + blockSize - 1) / blockSize);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(28 + blockCount * (4 + STRONG_HASH_LENGTH));
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeInt(SIGNATURE_MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(size);
+        out.writeLong(mtime);
+        out.writeInt(blockSize);
+        out.writeInt(blockCount);
+
+        MessageDigest digest = sha256();
+        // 映射窗口取块大小的整数倍，块不会跨窗口
+        long window = Math.max(1, MAP_WINDOW / blockSize) * blockSize;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(window, size - position);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                while (mapped.hasRemaining()) {
+                    int blockLength = Math.min(blockSize, mapped.remaining());
+                    ByteBuffer block = mapped.slice(mapped.position(), blockLength);
+                    out.writeInt(weakChecksum(block));
+                    block.rewind();
+                    digest.update(block);
+                    out.write(digest.digest(), 0, STRONG_HASH_LENGTH);
+                    mapped.position(mapped.position() + blockLength);
+                }
+                position += length;
+            }
+        }
+        out.flush();
+        return bos.toByteArray();
+    }
+
+    /**
+     * rsync 弱校验和：a = Σx，b = Σ(n - i)·x，结果为 (b &lt;&lt; 16) | a（各取低 16 位，字节按无符号计算）
+     */
+    static int weakChecksum(ByteBuffer block) {
+        int n = block.remaining();
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < n; i++) {
+            int x = block.get() & 0xFF;
+            a += x;
+            b += (n - i) * x;
+        }
+        return ((b & 0xFFFF) << 16) | (a & 0xFFFF);
+    }
+
+    private static int chooseBlockSize(long size, int requested) {
+        int blockSize;
+        if (requested > 0) {
+            blockSize = Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, requested));
+        } else {
+            // 平方根向上取 2 的幂，在签名大小与匹配粒度之间折中
+            long root = (long) Math.sqrt((double) size);
+            blockSize = (int) Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, Long.highestOneBit(Math.max(1, root)) << 1));
+        }
+        // 块数过多时加大块大小，限制签名体积
+        while ((size + blockSize - 1) / blockSize > MAX_BLOCK_COUNT && blockSize < MAX_BLOCK_SIZE) {
+            blockSize <<= 1;
+        }
+        return blockSize;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package cn.programcx.foxnaserver.service.file;
+
+import cn.programcx.foxnaserver.dto.file.DirEntry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * 目录列表引擎
+ * <p>
+ * 目录项来自 {@link DirectorySnapshotCache}（基于 {@link java.nio.file.Files#newDirectoryStream}，每个目录项只读取一次属性），
+ * 通过有界的 Top-K 堆选出当前页，排序代价为 O(n log k)，不再对整个目录做全量排序。
+ * 子目录按后台统计的递归大小参与排序，请求路径上不遍历目录树。
+ * 支持两种分页方式：
+ * <ul>
+ *     <li>偏移分页：兼容原有的 page/pageSize 接口，k = offset + pageSize</li>
+ *     <li>游标分页：游标中记录上一页最后一项的排序键，k = pageSize，翻页代价与页码无关</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+public class DirectoryListingService {
+
+    private static final int CURSOR_VERSION = 1;
+
+    @Autowired
+    private DirectorySnapshotCache directorySnapshotCache;
+
+    @Autowired
+    private DirectorySizeService directorySizeService;
+
+    // 堆的初始容量上限，避免深分页时一次性申请过大的数组
+    private static final int MAX_INITIAL_HEAP_CAPACITY = 1024;
+
+    /**
+     * 偏移分页：返回排序后 [offset, offset + limit) 区间内的目录项
+     */
+    public ListingResult listPage(Path dir, String sortBy, String order, long offset, int limit) throws IOException {
+        Comparator<DirEntry> comparator = buildComparator(sortBy, order);
+        int k = (int) Math.min(offset + limit, Integer.MAX_VALUE - 8);
+
+        TopK topK = new TopK(comparator, k);
+        forEachEntry(dir, topK::offer);
+
+        List<DirEntry> sorted = topK.toSortedList();
+        int from = (int) Math.min(offset, sorted.size());
+        List<DirEntry> page = sorted.subList(from, sorted.size());
+        boolean hasMore = offset + page.size() < topK.getSeen();
+        return new ListingResult(page, topK.getSeen(), hasMore);
+    }
+
+    /**
+     * 游标分页：返回排在游标之后的前 limit 个目录项，cursor 为空时从头开始
+     */
+    public ListingResult listAfter(Path dir, String sortBy, String order, String cursor, int limit) throws IOException {
+        Comparator<DirEntry> comparator = buildComparator(sortBy, order);
+        DirEntry after = cursor == null || cursor.isEmpty() ? null : decodeCursor(dir, sortBy, order, cursor);
+
+        TopK topK = new TopK(comparator, limit);
+        long[] total = {0};
+        long[] remaining = {0};
+        forEachEntry(dir, entry -> {
+            total[0]++;
+            if (after == null || comparator.compare(entry, after) > 0) {
+                remaining[0]++;
+                topK.offer(entry);
+            }
+        });
+
+        List<DirEntry> page = topK.toSortedList();
+        return new ListingResult(page, total[0], remaining[0] > page.size());
+    }
+
+    /**
+     * 遍历目录项，数据来自目录快照缓存，未命中时才扫描磁盘；
+     * 子目录的大小替换为 {@link DirectorySizeService} 已统计的递归大小（尚未统计时保留原值）
+     */
+    public void forEachEntry(Path dir, Consumer<DirEntry> consumer) throws IOException {
+        for (DirEntry entry : directorySnapshotCache.get(dir).getEntries()) {
+            if (entry.isDirectory()) {
+                DirectorySizeService.DirSize size = directorySizeService.get(entry.getPath());
+                if (size != null) {
+                    entry = new DirEntry(entry.getPath(), entry.getName(), true, size.bytes(), entry.getLastModified(), entry.isSymlink());
+                }
+            }
+            consumer.accept(entry);
+        }
+    }
+
+    /**
+     * 将目录项编码为不透明游标（排序字段、排序方向以及该项的排序键）
+     */
+    public String encodeCursor(String sortBy, String order, DirEntry entry) {
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+             DataOutputStream out = new DataOutputStream(bos)) {
+            out.writeByte(CURSOR_VERSION);
+            out.writeUTF(normalizeSortBy(sortBy));
+            out.writeBoolean(isAsc(order));
+            out.writeBoolean(entry.isDirectory());
+            out.writeUTF(entry.getName());
+            out.writeLong(entry.getSize());
+            out.writeLong(entry.getLastModified());
+            out.flush();
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bos.toByteArray());
+        } catch (IOException e) {
+            // 内存流不会抛出 IOException
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private DirEntry decodeCursor(Path dir, String sortBy, String order, String cursor) {
+        byte[] raw;
+        try {
+            raw = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的游标", e);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw))) {
+            if (in.readByte() != CURSOR_VERSION) {
+                throw new IllegalArgumentException("游标版本不匹配");
+            }
+            String cursorSortBy = in.readUTF();
+            boolean cursorAsc = in.readBoolean();
+            if (!cursorSortBy.equals(normalizeSortBy(sortBy)) || cursorAsc != isAsc(order)) {
+                throw new IllegalArgumentException("游标与当前排序方式不匹配");
+            }
+            boolean directory = in.readBoolean();
+            String name = in.readUTF();
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            return new DirEntry(dir.resolve(name), name, directory, size, lastModified);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("无效的游标", e);
+        }
+    }
+
+    /**
+     * 排序规则与原 getList 一致：目录始终在前，再按排序字段比较，字符串忽略大小写；
+     * 最后以名称作为决胜字段，保证顺序全序，游标才能稳定定位
+     */
+    public Comparator<DirEntry> buildComparator(String sortBy, String order) {
+        Comparator<DirEntry> key = keyComparator(normalizeSortBy(sortBy));
+        if (!isAsc(order)) {
+            key = key.reversed();
+        }
+        Comparator<DirEntry> directoryFirst = (a, b) -> Boolean.compare(b.isDirectory(), a.isDirectory());
+        return directoryFirst.thenComparing(key).thenComparing(DirEntry::getName);
+    }
+
+    private Comparator<DirEntry> keyComparator(String sortBy) {
+        switch (sortBy) {
+            case "name":
+                return (a, b) -> a.getName().compareToIgnoreCase(b.getName());
+            case "path":
+                return (a, b) -> a.getPath().toString().compareToIgnoreCase(b.getPath().toString());
+            case "size":
+                return Comparator.comparingLong(DirEntry::getSize);
+            case "lastModified":
+                return Comparator.comparingLong(DirEntry::getLastModified);
+            default:
+                // type 以及未知字段：目录优先之外不再区分
+                return (a, b) -> 0;
+        }
+    }
+
+    private String normalizeSortBy(String sortBy) {
+        return sortBy == null ? "" : sortBy;
+    }
+
+    private boolean isAsc(String order) {
+        return "asc".equalsIgnoreCase(order);
+    }
+
+    /**
+     * 有界 Top-K 选择：使用按比较器反序的大顶堆，只保留最小的 k 个元素
+     */
+    private static class TopK {
+        private final Comparator<DirEntry> comparator;
+        private final int k;
+        private final PriorityQueue<DirEntry> heap;
+        @Getter
+        private long seen;
+
+        TopK(Comparator<DirEntry> comparator, int k) {
+            this.comparator = comparator;
+            this.k = Math.max(k, 0);
+            this.heap = new PriorityQueue<>(Math.max(1, Math.min(this.k, MAX_INITIAL_HEAP_CAPACITY)), comparator.reversed());
+        }
+
+        void offer(DirEntry entry) {
+            seen++;
+            if (k == 0) {
+                return;
+            }
+            if (heap.size() < k) {
+                heap.offer(entry);
+            } else if (comparator.compare(entry, heap.peek()) < 0) {
+                heap.poll();
+                heap.offer(entry);
+            }
+        }
+
+        List<DirEntry> toSortedList() {
+            if (heap.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<DirEntry> list = new ArrayList<>(heap);
+            list.sort(comparator);
+            return list;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class ListingResult {
+        // 当前页的目录项（已排序）
+        private final List<DirEntry> entries;
+        // 目录下的总项数
+        private final long total;
+        // 当前页之后是否还有数据
+        private final boolean hasMore;
+    }
+}
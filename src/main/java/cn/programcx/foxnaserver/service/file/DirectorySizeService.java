@@ -0,0 +1,355 @@
+package cn.programcx.foxnaserver.service.file;
+
+import cn.programcx.foxnaserver.event.FileChangeEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 目录大小统计（类似 du）
+ * <p>
+ * 后台并行统计每个目录的递归大小与文件数，结果保存在内存中并定期写入本地文件。
+ * 文件变更事件到来时只重新统计发生变化的子树与其父目录，再把差值逐级加到上级目录，不重扫整个共享目录。
+ * 不跟随符号链接，只统计普通文件。
+ */
+@Slf4j
+@Service
+public class DirectorySizeService {
+
+    private static final int STORE_MAGIC = 0x464E4453;
+    private static final int STORE_VERSION = 1;
+
+    /**
+     * 目录的递归统计结果
+     *
+     * @param bytes      所有普通文件大小之和
+     * @param files      普通文件数量
+     * @param computedAt 统计时间（毫秒时间戳）
+     */
+    public record DirSize(long bytes, long files, long computedAt) {
+    }
+
+    @Autowired
+    private FilePermissionService filePermissionService;
+
+    @Value("${app.file.dir-size.store-file:data/dir-sizes.bin}")
+    private String storeFile;
+
+    // 规范化的绝对路径 → 统计结果，有序以便按前缀删除整棵子树
+    private final ConcurrentSkipListMap<String, DirSize> sizes = new ConcurrentSkipListMap<>();
+
+    private final ForkJoinPool pool;
+
+    // 增量更新在单线程上串行执行，保证逐级累加差值时不互相覆盖
+    private final ExecutorService updater = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "dir-size-updater");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 已提交、尚未完成的按需统计，避免重复排队
+    private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean dirty;
+    private final AtomicBoolean scanning = new AtomicBoolean(false);
+
+    public DirectorySizeService(@Value("${app.file.dir-size.parallelism:2}") int parallelism) {
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+
+    @PostConstruct
+    public void init() {
+        load();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        updater.shutdownNow();
+        pool.shutdownNow();
+        saveIfDirty();
+    }
+
+    /**
+     * 查询目录的统计结果，尚未统计时返回 null
+     */
+    public DirSize get(Path dir) {
+        return sizes.get(key(dir));
+    }
+
+    /**
+     * 在后台统计指定目录（已在统计中的请求会排队执行）
+     */
+    public void requestCompute(Path dir) {
+        Path normalized = dir.toAbsolutePath().normalize();
+        if (!pending.add(normalized)) {
+            return;
+        }
+        updater.execute(() -> {
+            try {
+                pool.invoke(new SizeTask(normalized));
+            } finally {
+                pending.remove(normalized);
+            }
+        });
+    }
+
+    /**
+     * 在后台统计全部授权根目录，与增量更新在同一线程上串行执行
+     *
+     * @param onlyMissing 只统计尚无结果的根目录（启动时使用），否则全部重新统计以校正外部修改
+     */
+    public void computeAll(boolean onlyMissing) {
+        updater.execute(() -> computeAllNow(onlyMissing));
+    }
+
+    private void computeAllNow(boolean onlyMissing) {
+        if (!scanning.compareAndSet(false, true)) {
+            log.info("目录大小统计正在进行，跳过本次");
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            int count = 0;
+            for (Path root : filePermissionService.getShareRoots()) {
+                if (onlyMissing && sizes.containsKey(key(root))) {
+                    continue;
+                }
+                DirSize size = pool.invoke(new SizeTask(root));
+                log.info("目录大小统计完成: {}, {} 字节, {} 个文件", root, size.bytes(), size.files());
+                count++;
+            }
+            if (count > 0) {
+                log.info("目录大小统计完成，根目录 {} 个，耗时 {} ms", count, System.currentTimeMillis() - start);
+            }
+            saveIfDirty();
+        } finally {
+            scanning.set(false);
+        }
+    }
+
+    @EventListener
+    public void onFileChange(FileChangeEvent event) {
+        List<String> paths = List.copyOf(event.getPaths());
+        updater.execute(() -> {
+            for (String changed : paths) {
+                if (changed == null || changed.isEmpty()) {
+                    continue;
+                }
+                try {
+                    applyChange(Paths.get(changed).toAbsolutePath().normalize());
+                } catch (Exception e) {
+                    log.warn("更新目录大小失败: {}, {}", changed, e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * 定期写盘由后台任务调用
+     */
+    public void saveIfDirty() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        Path file = Paths.get(storeFile).toAbsolutePath();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            Map<String, DirSize> snapshot = Map.copyOf(sizes);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(STORE_MAGIC);
+                out.writeInt(STORE_VERSION);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, DirSize> entry : snapshot.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().bytes());
+                    out.writeLong(entry.getValue().files());
+                    out.writeLong(entry.getValue().computedAt());
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("目录大小已保存: {}, {} 个目录", file, snapshot.size());
+        } catch (IOException e) {
+            dirty = true;
+            log.warn("保存目录大小失败: {}, {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * 1. 变化的路径是目录则重新统计该子树，不存在则删除该子树的结果；
+     * 2. 父目录只重新列一层（子目录使用已有结果），得到新旧差值；
+     * 3. 差值逐级累加到已有结果的上级目录。
+     */
+    private void applyChange(Path path) {
+        Path parent = path.getParent();
+        DirSize old = parent == null ? null : sizes.get(key(parent));
+        if (old == null && !sizes.containsKey(key(path))) {
+            // 自身与父目录都从未统计过，说明不在统计范围内
+            return;
+        }
+
+        if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            pool.invoke(new SizeTask(path));
+        } else if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            removeTree(path);
+        }
+        if (old == null) {
+            return;
+        }
+        DirSize updated = shallow(parent);
+        long deltaBytes = updated.bytes() - old.bytes();
+        long deltaFiles = updated.files() - old.files();
+        if (deltaBytes == 0 && deltaFiles == 0) {
+            return;
+        }
+        for (Path ancestor = parent.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+            String ancestorKey = key(ancestor);
+            DirSize size = sizes.get(ancestorKey);
+            if (size == null) {
+                break;
+            }
+            sizes.put(ancestorKey, new DirSize(size.bytes() + deltaBytes, size.files() + deltaFiles, System.currentTimeMillis()));
+        }
+        dirty = true;
+    }
+
+    /**
+     * 只列出目录本身一层，子目录使用已有结果（没有时统计该子目录）
+     */
+    private DirSize shallow(Path dir) {
+        long bytes = 0;
+        long files = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
+                BasicFileAttributes attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (attrs.isDirectory()) {
+                    DirSize childSize = sizes.get(key(child));
+                    if (childSize == null) {
+                        childSize = pool.invoke(new SizeTask(child));
+                    }
+                    bytes += childSize.bytes();
+                    files += childSize.files();
+                } else if (attrs.isRegularFile()) {
+                    bytes += attrs.size();
+                    files++;
+                }
+            }
+        } catch (IOException e) {
+            log.debug("列出目录失败: {}, {}", dir, e.getMessage());
+        }
+        DirSize size = new DirSize(bytes, files, System.currentTimeMillis());
+        sizes.put(key(dir), size);
+        dirty = true;
+        return size;
+    }
+
+    private void removeTree(Path dir) {
+        String key = key(dir);
+        sizes.remove(key);
+        String prefix = key.endsWith(File.separator) ? key : key + File.separator;
+        sizes.subMap(prefix, true, prefix + Character.MAX_VALUE, false).clear();
+        dirty = true;
+    }
+
+    /**
+     * 递归统计：子目录拆分为子任务并行执行，每个目录的结果都会记录下来
+     */
+    private class SizeTask extends RecursiveTask<DirSize> {
+        private final Path dir;
+
+        SizeTask(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected DirSize compute() {
+            long bytes = 0;
+            long files = 0;
+            List<SizeTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path child : stream) {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        subtasks.add(new SizeTask(child));
+                    } else if (attrs.isRegularFile()) {
+                        bytes += attrs.size();
+                        files++;
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("列出目录失败: {}, {}", dir, e.getMessage());
+            }
+            invokeAll(subtasks);
+            for (SizeTask subtask : subtasks) {
+                DirSize size = subtask.join();
+                bytes += size.bytes();
+                files += size.files();
+            }
+            DirSize size = new DirSize(bytes, files, System.currentTimeMillis());
+            sizes.put(key(dir), size);
+            dirty = true;
+            return size;
+        }
+    }
+
+    private void load() {
+        Path file = Paths.get(storeFile).toAbsolutePath();
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != STORE_MAGIC || in.readInt() != STORE_VERSION) {
+                log.warn("目录大小文件格式不匹配，将重新统计: {}", file);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                sizes.put(path, new DirSize(in.readLong(), in.readLong(), in.readLong()));
+            }
+            log.info("已加载目录大小: {}, {} 个目录", file, count);
+        } catch (IOException e) {
+            sizes.clear();
+            log.warn("加载目录大小失败，将重新统计: {}, {}", file, e.getMessage());
+        }
+    }
+
+    private static String key(Path dir) {
+        return dir.toAbsolutePath().normalize().toString();
+    }
+}
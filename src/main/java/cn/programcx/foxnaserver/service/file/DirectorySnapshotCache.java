@@ -0,0 +1,439 @@
+package cn.programcx.foxnaserver.service.file;
+
+import cn.programcx.foxnaserver.dto.file.DirEntry;
+import cn.programcx.foxnaserver.event.FileChangeEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 目录快照缓存
+ * <p>
+ * 以规范化后的绝对路径为键，缓存目录下所有条目及其属性。容量按估算的内存字节数限制，超出时按 LRU 淘汰。
+ * 失效策略：
+ * <ul>
+ *     <li>对已缓存的目录注册 {@link WatchService}，目录内容变化时立即失效</li>
+ *     <li>每次命中都会比对目录 mtime，兜底处理 NFS/SMB 等无法可靠监听的文件系统</li>
+ *     <li>未能注册监听的目录额外设置最长存活时间，避免子文件大小变化（不改变目录 mtime）长期不可见</li>
+ *     <li>本服务自身的文件操作通过 {@link FileChangeEvent} 精确失效</li>
+ * </ul>
+ * 另外维护一份共享的子目录数缓存（同样按目录 mtime 校验），目录选择器、目录树统计子目录数时不必为每个子目录生成快照。
+ */
+@Slf4j
+@Service
+public class DirectorySnapshotCache {
+
+    // 估算的对象开销，用于按字节限制缓存容量
+    private static final long SNAPSHOT_OVERHEAD_BYTES = 256;
+    private static final long ENTRY_OVERHEAD_BYTES = 160;
+
+    @Value("${app.file.listing-cache.max-bytes:134217728}")
+    private long maxBytes;
+
+    // 单个快照的上限，默认约可容纳 20 万个条目（按每条名称加路径 160 个字符估算）
+    @Value("${app.file.listing-cache.max-snapshot-bytes:100663296}")
+    private long maxSnapshotBytes;
+
+    @Value("${app.file.listing-cache.watch-enabled:true}")
+    private boolean watchEnabled;
+
+    @Value("${app.file.listing-cache.unwatched-max-age-ms:30000}")
+    private long unwatchedMaxAgeMs;
+
+    @Value("${app.file.listing-cache.child-count-entries:100000}")
+    private int childCountMaxEntries;
+
+    // ext4 / xfs 等文件系统上目录的硬链接数 = 2 + 子目录数，一次 stat 即可得到子目录数
+    @Value("${app.file.listing-cache.nlink-subdir-count:true}")
+    private boolean nlinkSubdirCount;
+
+    // accessOrder = true，即 LRU 顺序；所有访问都在 this 上同步
+    private final LinkedHashMap<Path, Snapshot> snapshots = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<Path, WatchKey> watchKeys = new HashMap<>();
+    private long currentBytes = 0;
+
+    // 目录 -> {目录 mtime, 子目录数}，accessOrder = true，同样在 this 上同步
+    private final LinkedHashMap<Path, long[]> childCounts = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, long[]> eldest) {
+            return size() > childCountMaxEntries;
+        }
+    };
+
+    private WatchService watchService;
+    private Thread watchThread;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong watchInvalidations = new AtomicLong();
+    private final AtomicLong mtimeInvalidations = new AtomicLong();
+    private final AtomicLong eventInvalidations = new AtomicLong();
+    private final AtomicLong childCountHits = new AtomicLong();
+    private final AtomicLong childCountMisses = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (!watchEnabled) {
+            log.info("目录缓存未启用 WatchService，仅使用 mtime 校验");
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("创建 WatchService 失败，目录缓存仅使用 mtime 校验: {}", e.getMessage());
+            return;
+        }
+        watchThread = new Thread(this::watchLoop, "dir-cache-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 获取目录快照，缓存未命中或已失效时重新扫描磁盘
+     */
+    public Snapshot get(Path dir) throws IOException {
+        Path key = normalize(dir);
+        // 先读 mtime 再扫描：扫描期间发生的变化会使下次访问时 mtime 不一致从而重新加载
+        long dirMtime = Files.getLastModifiedTime(key).toMillis();
+
+        synchronized (this) {
+            Snapshot cached = snapshots.get(key);
+            if (cached != null) {
+                if (cached.getDirMtime() == dirMtime && !isExpired(key, cached)) {
+                    hits.incrementAndGet();
+                    return cached;
+                }
+                mtimeInvalidations.incrementAndGet();
+                removeLocked(key);
+            }
+        }
+
+        misses.incrementAndGet();
+        Snapshot loaded = load(key, dirMtime);
+        put(key, loaded);
+        return loaded;
+    }
+
+    /**
+     * 目录下的子目录数量
+     * <p>
+     * 已有有效快照时直接使用快照中的计数，否则读取共享的子目录数缓存；都未命中时优先使用目录硬链接数，
+     * 不支持时（btrfs、Windows 等）退回只判断类型的扫描。两种方式都不会为该目录生成快照。
+     */
+    public int getSubdirectoryCount(Path dir) {
+        Path key = normalize(dir);
+        try {
+            long dirMtime;
+            int nlink = -1;
+            try {
+                Map<String, Object> attrs = Files.readAttributes(key, "unix:lastModifiedTime,nlink");
+                dirMtime = ((FileTime) attrs.get("lastModifiedTime")).toMillis();
+                nlink = (Integer) attrs.get("nlink");
+            } catch (UnsupportedOperationException | IllegalArgumentException e) {
+                dirMtime = Files.getLastModifiedTime(key).toMillis();
+            }
+
+            synchronized (this) {
+                Snapshot cached = snapshots.get(key);
+                if (cached != null && cached.getDirMtime() == dirMtime && !isExpired(key, cached)) {
+                    childCountHits.incrementAndGet();
+                    return cached.getDirectoryCount();
+                }
+                long[] counted = childCounts.get(key);
+                if (counted != null && counted[0] == dirMtime) {
+                    childCountHits.incrementAndGet();
+                    return (int) counted[1];
+                }
+            }
+
+            childCountMisses.incrementAndGet();
+            int count;
+            if (nlinkSubdirCount && nlink >= 2) {
+                count = nlink - 2;
+                // 回收站目录对用户不可见
+                if (count > 0 && Files.isDirectory(key.resolve(TrashService.TRASH_DIR_NAME), LinkOption.NOFOLLOW_LINKS)) {
+                    count--;
+                }
+            } else {
+                // 例如 ext4 子目录超过 65000 个时硬链接数固定为 1
+                count = countSubdirectories(key);
+            }
+            synchronized (this) {
+                childCounts.put(key, new long[]{dirMtime, count});
+            }
+            return count;
+        } catch (IOException e) {
+            log.error("读取目录失败：{}", e.getMessage());
+            return 0;
+        }
+    }
+
+    public synchronized void invalidate(Path dir) {
+        removeLocked(normalize(dir));
+    }
+
+    /**
+     * 使目录自身及其所有已缓存的子孙目录失效（目录被删除或移动时）
+     */
+    public synchronized void invalidateTree(Path dir) {
+        Path root = normalize(dir);
+        List<Path> toRemove = new ArrayList<>();
+        for (Path key : snapshots.keySet()) {
+            if (key.startsWith(root)) {
+                toRemove.add(key);
+            }
+        }
+        toRemove.forEach(this::removeLocked);
+    }
+
+    @EventListener
+    public void onFileChange(FileChangeEvent event) {
+        for (String changed : event.getPaths()) {
+            if (changed == null || changed.isEmpty()) {
+                continue;
+            }
+            Path path = Paths.get(changed);
+            eventInvalidations.incrementAndGet();
+            invalidateTree(path);
+            if (path.getParent() != null) {
+                invalidate(path.getParent());
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.get());
+        stats.put("watchInvalidations", watchInvalidations.get());
+        stats.put("mtimeInvalidations", mtimeInvalidations.get());
+        stats.put("eventInvalidations", eventInvalidations.get());
+        stats.put("childCountHits", childCountHits.get());
+        stats.put("childCountMisses", childCountMisses.get());
+        stats.put("childCountEntries", childCounts.size());
+        stats.put("entries", snapshots.size());
+        stats.put("watchedDirectories", watchKeys.size());
+        stats.put("estimatedBytes", currentBytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("maxSnapshotBytes", maxSnapshotBytes);
+        return stats;
+    }
+
+    private boolean isExpired(Path key, Snapshot snapshot) {
+        return !watchKeys.containsKey(key)
+                && System.currentTimeMillis() - snapshot.getLoadedAt() > unwatchedMaxAgeMs;
+    }
+
+    private synchronized void put(Path key, Snapshot snapshot) {
+        // 单个快照超过上限时不缓存，避免一个超大目录把其他目录全部挤出
+        if (snapshot.getEstimatedBytes() > Math.min(maxSnapshotBytes, maxBytes)) {
+            return;
+        }
+        removeLocked(key);
+        snapshots.put(key, snapshot);
+        currentBytes += snapshot.getEstimatedBytes();
+        registerWatch(key);
+
+        Iterator<Map.Entry<Path, Snapshot>> it = snapshots.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Map.Entry<Path, Snapshot> eldest = it.next();
+            it.remove();
+            currentBytes -= eldest.getValue().getEstimatedBytes();
+            cancelWatch(eldest.getKey());
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void removeLocked(Path key) {
+        Snapshot removed = snapshots.remove(key);
+        if (removed != null) {
+            currentBytes -= removed.getEstimatedBytes();
+        }
+        cancelWatch(key);
+    }
+
+    private void registerWatch(Path key) {
+        if (watchService == null || watchKeys.containsKey(key)) {
+            return;
+        }
+        try {
+            WatchKey watchKey = key.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            watchKeys.put(key, watchKey);
+        } catch (IOException | UnsupportedOperationException e) {
+            // 例如 inotify 监听数量达到上限，退回 mtime 校验 + 最长存活时间
+            log.debug("注册目录监听失败: {}, {}", key, e.getMessage());
+        }
+    }
+
+    private void cancelWatch(Path key) {
+        WatchKey watchKey = watchKeys.remove(key);
+        if (watchKey != null) {
+            watchKey.cancel();
+        }
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey watchKey;
+            try {
+                watchKey = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = (Path) watchKey.watchable();
+            List<Path> changedChildren = new ArrayList<>();
+            for (WatchEvent<?> event : watchKey.pollEvents()) {
+                if (event.context() instanceof Path child) {
+                    changedChildren.add(dir.resolve(child));
+                }
+            }
+            synchronized (this) {
+                if (snapshots.containsKey(dir)) {
+                    watchInvalidations.incrementAndGet();
+                }
+                // 目录本身失效后取消监听，下次加载时重新注册
+                removeLocked(dir);
+                // 子目录被删除或替换时，其快照也一并失效
+                for (Path child : changedChildren) {
+                    removeLocked(child);
+                }
+            }
+        }
+    }
+
+    private Snapshot load(Path dir, long dirMtime) throws IOException {
+        List<DirEntry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                // 回收站只通过回收站接口访问
+                if (TrashService.TRASH_DIR_NAME.equals(path.getFileName().toString())) {
+                    continue;
+                }
+                entries.add(readEntry(path));
+            }
+        } catch (DirectoryIteratorException e) {
+            throw e.getCause();
+        }
+        return new Snapshot(dir, Collections.unmodifiableList(entries), dirMtime);
+    }
+
+    private int countSubdirectories(Path dir) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                // 不跟随符号链接，与 nlink 统计结果一致，目录树也不会展开链接
+                if (!TrashService.TRASH_DIR_NAME.equals(path.getFileName().toString())
+                        && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    count++;
+                }
+            }
+        } catch (DirectoryIteratorException e) {
+            throw e.getCause();
+        }
+        return count;
+    }
+
+    private DirEntry readEntry(Path path) {
+        String name = path.getFileName().toString();
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            log.debug("读取文件属性失败: {}, {}", path, e.getMessage());
+            return new DirEntry(path, name, false, 0L, 0L);
+        }
+        boolean symlink = attrs.isSymbolicLink();
+        if (symlink) {
+            // 列表按链接目标展示；失效的链接保留链接本身的属性
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException ignored) {
+                // 失效的符号链接
+            }
+        }
+        return new DirEntry(path, name, attrs.isDirectory(), attrs.size(), attrs.lastModifiedTime().toMillis(), symlink);
+    }
+
+    private Path normalize(Path dir) {
+        return dir.toAbsolutePath().normalize();
+    }
+
+    /**
+     * 目录快照，创建后不可变，可被多个请求并发读取
+     */
+    @Getter
+    public static class Snapshot {
+        private final Path dir;
+        private final List<DirEntry> entries;
+        private final long dirMtime;
+        private final long loadedAt;
+        private final int directoryCount;
+        private final long estimatedBytes;
+
+        Snapshot(Path dir, List<DirEntry> entries, long dirMtime) {
+            this.dir = dir;
+            this.entries = entries;
+            this.dirMtime = dirMtime;
+            this.loadedAt = System.currentTimeMillis();
+
+            int dirs = 0;
+            long bytes = SNAPSHOT_OVERHEAD_BYTES;
+            for (DirEntry entry : entries) {
+                // 与 nlink、countSubdirectories 一致，指向目录的符号链接不计入
+                if (entry.isDirectory() && !entry.isSymlink()) {
+                    dirs++;
+                }
+                // 名称与完整路径各一份字符串
+                bytes += ENTRY_OVERHEAD_BYTES + 2L * (entry.getName().length() + entry.getPath().toString().length());
+            }
+            this.directoryCount = dirs;
+            this.estimatedBytes = bytes;
+        }
+    }
+}
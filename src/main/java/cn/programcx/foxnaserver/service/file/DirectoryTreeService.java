@@ -0,0 +1,170 @@
+package cn.programcx.foxnaserver.service.file;
+
+import cn.programcx.foxnaserver.dto.file.DirEntry;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 目录树服务
+ * <p>
+ * 按层广度优先遍历：同一层的目录在固定大小的线程池中并行读取（通过目录快照缓存），
+ * 子目录数来自 {@link DirectorySnapshotCache#getSubdirectoryCount} 的共享缓存，不为叶子节点列出其子目录。
+ * 结果用 {@link JsonGenerator} 边遍历边写出，每完成一层刷新一次，客户端无需等待整棵树遍历完成。
+ * <p>
+ * 输出为扁平的节点数组（按层、同层按父目录顺序），每个节点带 parent，客户端据此组装成树：
+ * <pre>
+ * {"status":"success","root":"/data","depth":2,
+ *  "nodes":[{"name":"a","path":"/data/a","parent":"/data","depth":1,"childCount":3}, ...],
+ *  "count":42,"truncated":false}
+ * </pre>
+ */
+@Slf4j
+@Service
+public class DirectoryTreeService {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    @Autowired
+    private DirectorySnapshotCache directorySnapshotCache;
+
+    @Value("${app.file.tree.max-depth:8}")
+    private int maxDepth;
+
+    @Value("${app.file.tree.max-nodes:20000}")
+    private int maxNodes;
+
+    private final ExecutorService executor;
+
+    public DirectoryTreeService(@Value("${app.file.tree.threads:4}") int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "dir-tree-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 把请求的深度限制在 [1, max-depth]
+     */
+    public int clampDepth(int depth) {
+        return Math.max(1, Math.min(depth, maxDepth));
+    }
+
+    /**
+     * 遍历 root 下 depth 层以内的子目录并写出 JSON
+     */
+    public void writeTree(Path root, int depth, OutputStream out) throws IOException {
+        JsonGenerator gen = JSON_FACTORY.createGenerator(out);
+        gen.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        try (gen) {
+            gen.writeStartObject();
+            gen.writeStringField("status", "success");
+            gen.writeStringField("root", toApiPath(root));
+            gen.writeNumberField("depth", depth);
+            gen.writeArrayFieldStart("nodes");
+            gen.flush();
+
+            int written = 0;
+            boolean truncated = false;
+            List<Path> level = List.of(root);
+            for (int d = 1; d <= depth && !level.isEmpty() && !truncated; d++) {
+                List<Future<List<TreeNode>>> futures = new ArrayList<>(level.size());
+                for (Path dir : level) {
+                    futures.add(executor.submit(() -> listChildren(dir)));
+                }
+
+                List<Path> next = new ArrayList<>();
+                for (int i = 0; i < level.size() && !truncated; i++) {
+                    String parent = toApiPath(level.get(i));
+                    for (TreeNode node : await(futures.get(i), level.get(i))) {
+                        if (written >= maxNodes) {
+                            truncated = true;
+                            break;
+                        }
+                        gen.writeStartObject();
+                        gen.writeStringField("name", node.entry().getName());
+                        gen.writeStringField("path", toApiPath(node.entry().getPath()));
+                        gen.writeStringField("parent", parent);
+                        gen.writeNumberField("depth", d);
+                        gen.writeNumberField("childCount", node.childCount());
+                        gen.writeEndObject();
+                        written++;
+                        if (d < depth && node.childCount() > 0) {
+                            next.add(node.entry().getPath());
+                        }
+                    }
+                }
+                if (truncated) {
+                    futures.forEach(future -> future.cancel(true));
+                }
+                gen.flush();
+                level = next;
+            }
+
+            gen.writeEndArray();
+            gen.writeNumberField("count", written);
+            gen.writeBooleanField("truncated", truncated);
+            gen.writeEndObject();
+        }
+    }
+
+    /**
+     * 读取目录下的子目录及各自的子目录数，在线程池中执行
+     * <p>
+     * 快照中的条目属性跟随符号链接，指向目录的链接也标记为目录；权限只检查了根路径，
+     * 这里跳过符号链接，避免通过链接遍历到授权范围之外（例如链接到 / 或 /etc）
+     */
+    private List<TreeNode> listChildren(Path dir) throws IOException {
+        List<TreeNode> nodes = new ArrayList<>();
+        for (DirEntry entry : directorySnapshotCache.get(dir).getEntries()) {
+            if (entry.isDirectory() && !entry.isSymlink()) {
+                nodes.add(new TreeNode(entry, directorySnapshotCache.getSubdirectoryCount(entry.getPath())));
+            }
+        }
+        return nodes;
+    }
+
+    private List<TreeNode> await(Future<List<TreeNode>> future, Path dir) throws InterruptedIOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("遍历目录树时被中断");
+        } catch (ExecutionException e) {
+            // 无权限、遍历期间被删除等情况，该目录按空目录输出
+            log.debug("读取目录失败: {}, {}", dir, e.getCause().getMessage());
+            return List.of();
+        }
+    }
+
+    private static String toApiPath(Path path) {
+        return path.toString().replace(File.separatorChar, '/');
+    }
+
+    private record TreeNode(DirEntry entry, int childCount) {
+    }
+}
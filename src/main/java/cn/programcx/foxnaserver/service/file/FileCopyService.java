@@ -0,0 +1,328 @@
+package cn.programcx.foxnaserver.service.file;
+
+import cn.programcx.foxnaserver.util.SparseFiles;
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Platform;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * 文件克隆 / 复制服务
+ * <p>
+ * 复制普通文件时按以下顺序选择方式，并按（源文件存储, 目标文件存储）缓存首次探测的结果：
+ * <ol>
+ *     <li>reflink（Linux FICLONE ioctl，Btrfs / XFS 等写时复制文件系统上只复制元数据，仅限同一文件存储）</li>
+ *     <li>FileChannel.transferTo（Linux 上由内核 copy_file_range / sendfile 完成，数据不经过用户态）</li>
+ *     <li>直接缓冲区读写（transferTo 在部分 FUSE / 网络文件系统上不可用时）</li>
+ * </ol>
+ * 后两种方式只复制源文件的数据区间（{@link SparseFiles}），空洞部分跳过不写，目标文件同样保持稀疏。
+ */
+@Slf4j
+@Service
+public class FileCopyService {
+
+    public enum Method {
+        REFLINK,
+        HARDLINK,
+        COPY
+    }
+
+    /**
+     * 普通复制使用的数据传输方式
+     */
+    public enum Tier {
+        REFLINK,
+        TRANSFER,
+        BUFFER
+    }
+
+    // _IOW(0x94, 9, int)
+    private static final long FICLONE = 0x40049409L;
+    private static final int O_RDONLY = 0;
+    private static final int O_WRONLY = 01;
+    private static final int O_CREAT = 0100;
+    private static final int O_EXCL = 0200;
+    private static final int O_CLOEXEC = 02000000;
+    private static final int DEFAULT_MODE = 0644;
+
+    // 每次 transferTo 的最大长度，决定进度汇报与取消响应的粒度
+    private static final long TRANSFER_SLICE = 8L * 1024 * 1024;
+    // 直接缓冲区大小，线程内复用
+    private static final int BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private interface CLibrary extends Library {
+        int open(String path, int flags, int mode);
+
+        int ioctl(int fd, NativeLong request, int arg);
+
+        int close(int fd);
+    }
+
+    private final CLibrary libc = loadLibc();
+
+    private record StorePair(FileStore source, FileStore target) {
+    }
+
+    private final Map<StorePair, Tier> tierCache = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<ByteBuffer> directBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    /**
+     * 将 source 的内容放到尚不存在的 target 上
+     *
+     * @param allowHardlink 是否允许硬链接（两个路径共享同一 inode，修改其中一个会影响另一个）
+     * @return 实际使用的方式
+     */
+    public Method cloneOrCopy(Path source, Path target, boolean allowHardlink) throws IOException {
+        if (reflink(source, target)) {
+            return Method.REFLINK;
+        }
+        if (allowHardlink) {
+            try {
+                Files.createLink(target, source);
+                return Method.HARDLINK;
+            } catch (IOException | UnsupportedOperationException e) {
+                log.debug("硬链接失败，退回复制: {} -> {}, {}", source, target, e.getMessage());
+            }
+        }
+        copyFile(source, target, n -> {
+        }, () -> false);
+        return Method.COPY;
+    }
+
+    /**
+     * 复制单个普通文件（目标必须不存在），按分片传输以便汇报进度、响应取消；保留修改时间
+     *
+     * @param onProgress 每传输一段后回调本段字节数（退回较低层级重试时会回调负数撤销已汇报的部分）
+     * @param cancelled  返回 true 时中止复制并删除未完成的目标文件，抛出 CancellationException
+     */
+    public void copyFile(Path source, Path target, LongConsumer onProgress, BooleanSupplier cancelled) throws IOException {
+        copyFile(source, target, onProgress, n -> {
+        }, cancelled);
+    }
+
+    /**
+     * 同上，另外在每段实际读写后回调 onTransferred（不含空洞与 reflink），用于带宽限速
+     */
+    public void copyFile(Path source, Path target, LongConsumer onProgress, LongConsumer onTransferred,
+                         BooleanSupplier cancelled) throws IOException {
+        StorePair pair = storePair(source, target);
+        Tier cached = pair == null ? null : tierCache.get(pair);
+
+        if ((cached == null || cached == Tier.REFLINK) && pair != null && pair.source().equals(pair.target())
+                && reflink(source, target)) {
+            remember(pair, Tier.REFLINK);
+            Files.setLastModifiedTime(target, Files.getLastModifiedTime(source));
+            onProgress.accept(Files.size(target));
+            return;
+        }
+
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            try (out) {
+                long size = in.size();
+                List<SparseFiles.Extent> extents = SparseFiles.dataExtents(source, size);
+                if (extents == null) {
+                    extents = List.of(new SparseFiles.Extent(0, size));
+                } else {
+                    log.debug("稀疏复制: {}, 数据 {} / {} 字节, {} 个区间", source, SparseFiles.dataLength(extents), size, extents.size());
+                }
+
+                if (cached == Tier.BUFFER) {
+                    bufferCopy(in, out, extents, size, onProgress, onTransferred, cancelled);
+                } else if (cached == Tier.TRANSFER || cached == Tier.REFLINK) {
+                    transfer(in, out, extents, size, onProgress, onTransferred, cancelled);
+                } else {
+                    // 首次探测：transferTo 失败时清空目标，改用缓冲区复制，成功后记住结果
+                    long[] reported = new long[1];
+                    try {
+                        transfer(in, out, extents, size, n -> {
+                            reported[0] += n;
+                            onProgress.accept(n);
+                        }, onTransferred, cancelled);
+                        remember(pair, Tier.TRANSFER);
+                    } catch (IOException e) {
+                        log.debug("transferTo 失败，改用缓冲区复制: {} -> {}, {}", source, target, e.getMessage());
+                        onProgress.accept(-reported[0]);
+                        out.truncate(0);
+                        out.position(0);
+                        bufferCopy(in, out, extents, size, onProgress, onTransferred, cancelled);
+                        remember(pair, Tier.BUFFER);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // 只清理本次创建的目标文件
+                Files.deleteIfExists(target);
+                throw e;
+            }
+        }
+        Files.setLastModifiedTime(target, Files.getLastModifiedTime(source));
+    }
+
+    /**
+     * 逐个数据区间按位置 transferTo；空洞不读不写，只计入进度
+     */
+    private void transfer(FileChannel in, FileChannel out, List<SparseFiles.Extent> extents, long size,
+                          LongConsumer onProgress, LongConsumer onTransferred, BooleanSupplier cancelled) throws IOException {
+        long covered = 0;
+        for (SparseFiles.Extent extent : extents) {
+            skipHole(extent.offset() - covered, onProgress);
+            out.position(extent.offset());
+            long position = extent.offset();
+            while (position < extent.end()) {
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException("复制已取消");
+                }
+                long transferred = in.transferTo(position, Math.min(TRANSFER_SLICE, extent.end() - position), out);
+                if (transferred <= 0) {
+                    // 源文件在复制过程中被截断
+                    return;
+                }
+                position += transferred;
+                onProgress.accept(transferred);
+                onTransferred.accept(transferred);
+            }
+            covered = extent.end();
+        }
+        finishTrailingHole(out, size, covered, onProgress);
+    }
+
+    private void bufferCopy(FileChannel in, FileChannel out, List<SparseFiles.Extent> extents, long size,
+                            LongConsumer onProgress, LongConsumer onTransferred, BooleanSupplier cancelled) throws IOException {
+        ByteBuffer buffer = directBuffer.get();
+        long covered = 0;
+        for (SparseFiles.Extent extent : extents) {
+            skipHole(extent.offset() - covered, onProgress);
+            long position = extent.offset();
+            while (position < extent.end()) {
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException("复制已取消");
+                }
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), extent.end() - position));
+                int read = in.read(buffer, position);
+                if (read < 0) {
+                    // 源文件在复制过程中被截断
+                    return;
+                }
+                buffer.flip();
+                long writePosition = position;
+                while (buffer.hasRemaining()) {
+                    writePosition += out.write(buffer, writePosition);
+                }
+                position += read;
+                onProgress.accept(read);
+                onTransferred.accept(read);
+            }
+            covered = extent.end();
+        }
+        finishTrailingHole(out, size, covered, onProgress);
+    }
+
+    private static void skipHole(long length, LongConsumer onProgress) {
+        if (length > 0) {
+            onProgress.accept(length);
+        }
+    }
+
+    /**
+     * 文件以空洞结尾时只写最后一个字节，把目标文件扩展到原长度
+     */
+    private static void finishTrailingHole(FileChannel out, long size, long covered, LongConsumer onProgress) throws IOException {
+        if (covered >= size) {
+            return;
+        }
+        onProgress.accept(size - covered);
+        if (out.size() < size) {
+            out.write(ByteBuffer.wrap(new byte[1]), size - 1);
+        }
+    }
+
+    private StorePair storePair(Path source, Path target) {
+        try {
+            Path targetDir = target.toAbsolutePath().getParent();
+            return new StorePair(Files.getFileStore(source), Files.getFileStore(targetDir));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 指定两个路径所在文件存储之间的传输方式，跳过探测（基准测试用）
+     */
+    void useTier(Path source, Path target, Tier tier) {
+        StorePair pair = storePair(source, target);
+        if (pair != null) {
+            tierCache.put(pair, tier);
+        }
+    }
+
+    private void remember(StorePair pair, Tier tier) {
+        if (pair != null && tierCache.put(pair, tier) != tier) {
+            log.info("文件复制方式: {} -> {} 使用 {}", pair.source(), pair.target(), tier);
+        }
+    }
+
+    /**
+     * 尝试 reflink，失败（不支持、跨文件系统等）时不留下目标文件
+     */
+    public boolean reflink(Path source, Path target) {
+        if (libc == null) {
+            return false;
+        }
+        int srcFd = libc.open(source.toString(), O_RDONLY | O_CLOEXEC, 0);
+        if (srcFd < 0) {
+            return false;
+        }
+        try {
+            int dstFd = libc.open(target.toString(), O_WRONLY | O_CREAT | O_EXCL | O_CLOEXEC, DEFAULT_MODE);
+            if (dstFd < 0) {
+                return false;
+            }
+            int rc;
+            try {
+                rc = libc.ioctl(dstFd, new NativeLong(FICLONE), srcFd);
+            } finally {
+                libc.close(dstFd);
+            }
+            if (rc != 0) {
+                Files.deleteIfExists(target);
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            log.warn("reflink 失败后清理目标文件出错: {}, {}", target, e.getMessage());
+            return false;
+        } finally {
+            libc.close(srcFd);
+        }
+    }
+
+    private static CLibrary loadLibc() {
+        if (!Platform.isLinux()) {
+            return null;
+        }
+        try {
+            return Native.load("c", CLibrary.class);
+        } catch (Throwable e) {
+            log.warn("加载 libc 失败，reflink 不可用: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package cn.programcx.foxnaserver.service.file;
+
+import cn.programcx.foxnaserver.service.io.IoBandwidthScheduler;
+import cn.programcx.foxnaserver.util.SparseFiles;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 文件下载服务
+ * <p>
+ * 单段响应优先交给 Tomcat 的 sendfile（内核零拷贝），不支持时（如 HTTPS 连接器）退回到 FileChannel 按位置读取，
+ * 不再经过 BufferedInputStream + skip 的 8KB 堆内拷贝。
+ * 配置了读带宽限制时不使用 sendfile，改为逐块经过 {@link IoBandwidthScheduler} 限速（批量流量）。
+ * 需要在用户态拷贝的响应体以 StreamingResponseBody 返回，由 MVC 异步执行器写出，不占用 Tomcat 请求线程。
+ * 同时支持：
+ * <ul>
+ *     <li>多段 Range（bytes=0-99,200-299），以 multipart/byteranges 返回</li>
+ *     <li>强 ETag 与 Last-Modified 校验器，If-None-Match / If-Modified-Since 命中时返回 304</li>
+ *     <li>If-Range：校验器不一致时忽略 Range，返回完整内容</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+public class FileDownloadService {
+
+    // 与 Tomcat DefaultServlet 保持一致：小文件直接写出比 sendfile 更划算
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    // 单次请求允许的最大分段数，防止恶意构造大量小分段
+    private static final int MAX_RANGES = 32;
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private IoBandwidthScheduler ioBandwidthScheduler;
+
+    /**
+     * 处理条件请求与 Range，设置状态码和响应头
+     *
+     * @param file     要下载的普通文件
+     * @param inline   是否以 inline 方式返回
+     * @param request  请求
+     * @param response 响应
+     * @return 需要异步写出的响应体；null 表示响应已完成（304、416、空内容或交给 sendfile）
+     */
+    public StreamingResponseBody serve(Path file, boolean inline, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        long fileLength = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        String etag = buildETag(fileLength, lastModified);
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        // 条件请求：校验器未变化时不读取文件内容
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return null;
+        }
+
+        String encodedName = URLEncoder.encode(file.getFileName().toString(), StandardCharsets.UTF_8).replaceAll("\\+", "%20");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, (inline ? "inline" : "attachment") + "; filename=\"" + encodedName + "\"");
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && !isIfRangeSatisfied(request, etag, lastModified)) {
+            // If-Range 校验失败：文件已变化，返回完整内容
+            rangeHeader = null;
+        }
+
+        List<long[]> ranges = rangeHeader == null ? null : parseRanges(rangeHeader, fileLength);
+        if (ranges != null && ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileLength);
+            return null;
+        }
+
+        if (ranges == null) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            return writeSingle(file, 0, fileLength, request, response);
+        } else if (ranges.size() == 1) {
+            long start = ranges.get(0)[0];
+            long end = ranges.get(0)[1];
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + fileLength);
+            return writeSingle(file, start, end - start + 1, request, response);
+        } else {
+            return writeMultipart(file, ranges, fileLength, request, response);
+        }
+    }
+
+    /**
+     * 强校验 ETag：文件大小 + 修改时间
+     */
+    public String buildETag(long size, long lastModifiedMillis) {
+        return "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModifiedMillis) + "\"";
+    }
+
+    private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            // 存在 If-None-Match 时忽略 If-Modified-Since（RFC 9110 13.1.3）
+            return matchesWeakly(ifNoneMatch, etag);
+        }
+        long ifModifiedSince = getDateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    private boolean isIfRangeSatisfied(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range 只能使用强比较
+            return ifRange.equals(etag);
+        }
+        long date = getDateHeader(request, HttpHeaders.IF_RANGE);
+        return date != -1 && lastModified / 1000 == date / 1000;
+    }
+
+    private boolean matchesWeakly(String headerValue, String etag) {
+        for (String candidate : headerValue.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long getDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 解析 Range 头
+     *
+     * @return null 表示 Range 头语法无效或不支持（按规范忽略，返回完整内容）；空列表表示无法满足（416）
+     */
+    private List<long[]> parseRanges(String header, long fileLength) {
+        if (!header.startsWith("bytes=")) {
+            return null;
+        }
+        String[] specs = header.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<long[]> ranges = new ArrayList<>(specs.length);
+        for (String raw : specs) {
+            String spec = raw.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            long start;
+            long end;
+            try {
+                if (dash == 0) {
+                    // 后缀形式：-500 表示最后 500 字节
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix <= 0) {
+                        continue;
+                    }
+                    start = Math.max(0, fileLength - suffix);
+                    end = fileLength - 1;
+                } else {
+                    start = Long.parseLong(spec.substring(0, dash));
+                    String endPart = spec.substring(dash + 1);
+                    end = endPart.isEmpty() ? fileLength - 1 : Math.min(Long.parseLong(endPart), fileLength - 1);
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (start < 0 || start > end || start >= fileLength) {
+                // 该分段无法满足，其余分段仍可能有效
+                continue;
+            }
+            ranges.add(new long[]{start, end});
+        }
+        return ranges;
+    }
+
+    private StreamingResponseBody writeSingle(Path file, long start, long length, HttpServletRequest request, HttpServletResponse response) {
+        response.setContentLengthLong(length);
+        if (length == 0) {
+            return null;
+        }
+
+        String ioKey = IoBandwidthScheduler.keyOf(request);
+        if (length >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))
+                && !ioBandwidthScheduler.isLimited(IoBandwidthScheduler.Direction.READ)) {
+            // 交给 Tomcat 在请求结束后通过 sendfile 直接从页缓存发送到 socket；无法逐块限速，只计入吞吐统计
+            ioBandwidthScheduler.record(ioKey, IoBandwidthScheduler.Direction.READ, length);
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, start + length);
+            return null;
+        }
+
+        return out -> {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                copyRange(SparseFiles.reader(file, channel), start, length, throttled(out, ioKey));
+            }
+        };
+    }
+
+    private StreamingResponseBody writeMultipart(Path file, List<long[]> ranges, long fileLength,
+                                                 HttpServletRequest request, HttpServletResponse response) {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+
+        // 预先生成各分段头，以便计算准确的 Content-Length，保持长连接
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (long[] range : ranges) {
+            String header = "--" + boundary + "\r\n"
+                    + "Content-Type: " + MediaType.APPLICATION_OCTET_STREAM_VALUE + "\r\n"
+                    + "Content-Range: bytes " + range[0] + "-" + range[1] + "/" + fileLength + "\r\n"
+                    + "\r\n";
+            byte[] headerBytes = header.getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(headerBytes);
+            contentLength += headerBytes.length + (range[1] - range[0] + 1) + 2;
+        }
+        byte[] closing = ("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+
+        String ioKey = IoBandwidthScheduler.keyOf(request);
+        return body -> {
+            OutputStream out = throttled(body, ioKey);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                SparseFiles.Reader reader = SparseFiles.reader(file, channel);
+                for (int i = 0; i < ranges.size(); i++) {
+                    long[] range = ranges.get(i);
+                    out.write(partHeaders.get(i));
+                    copyRange(reader, range[0], range[1] - range[0] + 1, out);
+                    out.write('\r');
+                    out.write('\n');
+                }
+            }
+            out.write(closing);
+        };
+    }
+
+    private OutputStream throttled(OutputStream out, String ioKey) {
+        return ioBandwidthScheduler.throttle(out, ioKey, IoBandwidthScheduler.IoClass.BULK);
+    }
+
+    /**
+     * 按位置从 FileChannel 读取并写出，无需 skip，也不经过额外的缓冲流；稀疏文件的空洞直接补零
+     */
+    private void copyRange(SparseFiles.Reader reader, long position, long length, OutputStream out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(COPY_BUFFER_SIZE, length));
+        long remaining = length;
+        long pos = position;
+        while (remaining > 0) {
+            buffer.clear();
+            if (remaining < buffer.capacity()) {
+                buffer.limit((int) remaining);
+            }
+            int read = reader.read(buffer, pos);
+            if (read < 0) {
+                throw new IOException("文件在传输过程中被截断");
+            }
+            out.write(buffer.array(), 0, read);
+            pos += read;
+            remaining -= read;
+        }
+    }
+}
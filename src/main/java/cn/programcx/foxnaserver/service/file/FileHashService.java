@@ -0,0 +1,277 @@
+package cn.programcx.foxnaserver.service.file;
+
+import cn.programcx.foxnaserver.entity.FileHash;
+import cn.programcx.foxnaserver.mapper.FileHashMapper;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 文件内容哈希索引服务
+ * <p>
+ * 后台从 tb_resources 中的授权根目录增量构建 路径 → SHA-256 索引，供秒传查找相同内容的文件。
+ * 沿用 VideoFingerprintService 的思路：以 路径 + 大小 + 修改时间 作为廉价指纹，指纹未变化的文件不重新计算哈希。
+ * <p>
+ * 抽样块哈希：文件按 {@link #SAMPLE_COUNT} 个等距位置各取 {@link #SAMPLE_BLOCK_SIZE} 字节
+ * （首块从 0 开始，末块以文件末尾结束），分别计算 SHA-256；文件不超过 SAMPLE_COUNT * SAMPLE_BLOCK_SIZE 时只取整个文件一块。
+ * 客户端按同样规则计算，服务端用它在链接前以少量随机读确认源文件内容没有被原地修改。
+ */
+@Slf4j
+@Service
+public class FileHashService {
+
+    public static final int SAMPLE_BLOCK_SIZE = 64 * 1024;
+    public static final int SAMPLE_COUNT = 8;
+
+    private static final int HASH_BUFFER_SIZE = 1024 * 1024;
+
+    @Autowired
+    private FileHashMapper fileHashMapper;
+
+    @Autowired
+    private FilePermissionService filePermissionService;
+
+    @Value("${app.file.dedup.min-size:1048576}")
+    private long minSize;
+
+    private final AtomicBoolean indexing = new AtomicBoolean(false);
+
+    /**
+     * 增量索引全部授权根目录
+     */
+    public void indexAll() {
+        if (!indexing.compareAndSet(false, true)) {
+            log.info("文件哈希索引正在进行，跳过本次");
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            int[] counter = new int[2];
+            for (Path root : filePermissionService.getShareRoots()) {
+                indexRoot(root, counter);
+            }
+            log.info("文件哈希索引完成，新增/更新 {} 个，移除 {} 个，耗时 {} ms",
+                    counter[0], counter[1], System.currentTimeMillis() - start);
+        } finally {
+            indexing.set(false);
+        }
+    }
+
+    /**
+     * 记录已知哈希的文件（如分块上传提交时已经计算过整体 SHA-256），避免后台任务再读一遍
+     */
+    public void record(Path file, String sha256) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attrs.isRegularFile() || attrs.size() < minSize) {
+                return;
+            }
+            String sampleHash = digestSamples(computeSampleHashes(file, attrs.size()));
+            upsert(file, attrs, sha256.toLowerCase(), sampleHash, null);
+        } catch (IOException e) {
+            log.warn("记录文件哈希失败: {}, {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * 查找内容相同的候选文件
+     */
+    public List<FileHash> findByContent(String sha256, long fileSize) {
+        return fileHashMapper.selectByContent(sha256.toLowerCase(), fileSize);
+    }
+
+    /**
+     * 删除索引记录（源文件已变化或不存在）
+     */
+    public void remove(FileHash fileHash) {
+        fileHashMapper.deleteById(fileHash.getId());
+    }
+
+    /**
+     * 计算抽样块哈希，规则见类注释
+     */
+    public List<String> computeSampleHashes(Path file, long size) throws IOException {
+        List<String> hashes = new ArrayList<>(SAMPLE_COUNT);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (size <= (long) SAMPLE_COUNT * SAMPLE_BLOCK_SIZE) {
+                hashes.add(hashRange(channel, 0, size));
+                return hashes;
+            }
+            long span = size - SAMPLE_BLOCK_SIZE;
+            for (int i = 0; i < SAMPLE_COUNT; i++) {
+                long offset = span * i / (SAMPLE_COUNT - 1);
+                hashes.add(hashRange(channel, offset, SAMPLE_BLOCK_SIZE));
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * 将各抽样块哈希合并为一个摘要，便于存储与比较
+     */
+    public String digestSamples(List<String> sampleHashes) {
+        MessageDigest digest = sha256();
+        for (String hash : sampleHashes) {
+            digest.update(hash.toLowerCase().getBytes(StandardCharsets.US_ASCII));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private void indexRoot(Path root, int[] counter) {
+        // 一次取回该根目录下已有的索引，遍历时逐个核对，剩下的即为已不存在的文件
+        Map<String, FileHash> existing = new HashMap<>();
+        for (FileHash fileHash : fileHashMapper.selectList(
+                new LambdaQueryWrapper<FileHash>().likeRight(FileHash::getFilePath, root.toString()))) {
+            if (Paths.get(fileHash.getFilePath()).startsWith(root)) {
+                existing.put(fileHash.getFilePath(), fileHash);
+            }
+        }
+
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return isInternalName(dir) && !dir.equals(root) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (!attrs.isRegularFile() || attrs.size() < minSize || isInternalName(file)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    FileHash known = existing.remove(file.toString());
+                    if (known != null && known.getFileSize() == attrs.size()
+                            && known.getLastModified() == attrs.lastModifiedTime().toMillis()) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    try {
+                        indexFile(file, attrs, known);
+                        counter[0]++;
+                    } catch (IOException e) {
+                        log.warn("计算文件哈希失败: {}, {}", file, e.getMessage());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.warn("遍历目录失败: {}, {}", root, e.getMessage());
+            return;
+        }
+
+        if (!existing.isEmpty()) {
+            fileHashMapper.deleteBatchIds(existing.values().stream().map(FileHash::getId).toList());
+            counter[1] += existing.size();
+        }
+    }
+
+    private void indexFile(Path file, BasicFileAttributes attrs, FileHash known) throws IOException {
+        MessageDigest digest = sha256();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        String sampleHash = digestSamples(computeSampleHashes(file, attrs.size()));
+        upsert(file, attrs, sha256, sampleHash, known);
+    }
+
+    private void upsert(Path file, BasicFileAttributes attrs, String sha256, String sampleHash, FileHash known) {
+        String pathHash = pathHash(file.toString());
+        FileHash fileHash = known != null ? known : fileHashMapper.selectByPathHash(pathHash);
+        boolean insert = fileHash == null;
+        if (insert) {
+            fileHash = new FileHash();
+            fileHash.setPathHash(pathHash);
+            fileHash.setFilePath(file.toString());
+        }
+        fileHash.setFileSize(attrs.size());
+        fileHash.setLastModified(attrs.lastModifiedTime().toMillis());
+        fileHash.setSha256(sha256);
+        fileHash.setSampleHash(sampleHash);
+        fileHash.setIndexedAt(LocalDateTime.now());
+        if (insert) {
+            fileHashMapper.insert(fileHash);
+        } else {
+            fileHashMapper.updateById(fileHash);
+        }
+    }
+
+    private String hashRange(FileChannel channel, long offset, long length) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(SAMPLE_BLOCK_SIZE, Math.max(length, 1)));
+        long pos = offset;
+        long remaining = length;
+        while (remaining > 0) {
+            buffer.clear();
+            if (remaining < buffer.capacity()) {
+                buffer.limit((int) remaining);
+            }
+            int read = channel.read(buffer, pos);
+            if (read < 0) {
+                break;
+            }
+            buffer.flip();
+            digest.update(buffer);
+            pos += read;
+            remaining -= read;
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 上传临时文件、回收站等服务自身产生的条目不参与索引
+     */
+    private static boolean isInternalName(Path path) {
+        Path name = path.getFileName();
+        return name != null && name.toString().startsWith(".foxnas-");
+    }
+
+    private static String pathHash(String path) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            return HexFormat.of().formatHex(md.digest(path.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5算法不可用", e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
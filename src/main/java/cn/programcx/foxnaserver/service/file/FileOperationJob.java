@@ -0,0 +1,162 @@
+package cn.programcx.foxnaserver.service.file;
+
+import cn.programcx.foxnaserver.dto.file.FileOperationStatus;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 后台文件操作任务（复制 / 移动 / 删除），由 FileOperationService 调度执行
+ */
+public class FileOperationJob {
+
+    public enum Type {
+        COPY,
+        MOVE,
+        DELETE,     // 移入回收站（无法移入时记为失败）
+        PURGE       // 直接删除
+    }
+
+    public enum State {
+        PENDING,    // 排队中
+        SCANNING,   // 统计文件数量与大小
+        RUNNING,    // 执行中
+        COMPLETED,  // 全部成功
+        FAILED,     // 部分或全部失败
+        CANCELLED   // 已取消
+    }
+
+    @Getter
+    private final String jobId;
+    @Getter
+    private final String ownerUuid;
+    @Getter
+    private final Type type;
+    /**
+     * 顶层条目：复制/移动为 {oldPath, newPath}，删除为 {path}
+     */
+    @Getter
+    private final List<String[]> items;
+    @Getter
+    private final long createdAt = System.currentTimeMillis();
+
+    @Getter
+    private volatile State state = State.PENDING;
+    private volatile long startedAt;
+    @Getter
+    private volatile long finishedAt;
+    private volatile String message;
+
+    final AtomicLong totalFiles = new AtomicLong();
+    final AtomicLong totalBytes = new AtomicLong();
+    final AtomicLong filesDone = new AtomicLong();
+    final AtomicLong bytesDone = new AtomicLong();
+
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final List<Map<String, Object>> failedPaths = Collections.synchronizedList(new ArrayList<>());
+    private final Set<Integer> failedItems = ConcurrentHashMap.newKeySet();
+    private final CompletableFuture<FileOperationJob> done = new CompletableFuture<>();
+
+    FileOperationJob(String jobId, String ownerUuid, Type type, List<String[]> items) {
+        this.jobId = jobId;
+        this.ownerUuid = ownerUuid;
+        this.type = type;
+        this.items = items;
+    }
+
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    public boolean isFinished() {
+        return done.isDone();
+    }
+
+    public int getFailedCount() {
+        return failedItems.size();
+    }
+
+    public List<Map<String, Object>> getFailedPaths() {
+        synchronized (failedPaths) {
+            return new ArrayList<>(failedPaths);
+        }
+    }
+
+    void setState(State state) {
+        if (state == State.SCANNING || state == State.RUNNING) {
+            if (startedAt == 0) {
+                startedAt = System.currentTimeMillis();
+            }
+        }
+        this.state = state;
+    }
+
+    void setMessage(String message) {
+        this.message = message;
+    }
+
+    void addFailure(int itemIndex, Object path, String error) {
+        failedItems.add(itemIndex);
+        Map<String, Object> map = new HashMap<>();
+        map.put("path", path);
+        map.put("error", error);
+        failedPaths.add(map);
+    }
+
+    boolean isItemFailed(int itemIndex) {
+        return failedItems.contains(itemIndex);
+    }
+
+    void finish(State state) {
+        this.state = state;
+        this.finishedAt = System.currentTimeMillis();
+        done.complete(this);
+    }
+
+    public FileOperationStatus toStatus() {
+        FileOperationStatus status = new FileOperationStatus();
+        status.setJobId(jobId);
+        status.setType(type.name());
+        status.setState(state.name());
+        status.setTotalItems(items.size());
+        status.setTotalFiles(totalFiles.get());
+        status.setTotalBytes(totalBytes.get());
+        status.setFilesDone(filesDone.get());
+        status.setBytesDone(bytesDone.get());
+        status.setFailedCount(failedItems.size());
+        status.setFailedPaths(getFailedPaths());
+        status.setMessage(message);
+        status.setCreatedAt(createdAt);
+        status.setFinishedAt(finishedAt);
+
+        // 删除任务以文件数衡量进度，其余以字节数衡量
+        boolean byFiles = type == Type.DELETE;
+        long done = byFiles ? filesDone.get() : bytesDone.get();
+        long total = byFiles ? totalFiles.get() : totalBytes.get();
+        long end = finishedAt > 0 ? finishedAt : System.currentTimeMillis();
+        long elapsedMs = startedAt > 0 ? Math.max(1, end - startedAt) : 0;
+        long throughput = elapsedMs > 0 ? done * 1000 / elapsedMs : 0;
+        status.setThroughput(throughput);
+        if (finishedAt > 0) {
+            status.setEtaSeconds(0);
+        } else if (state == State.RUNNING && throughput > 0 && total >= done) {
+            status.setEtaSeconds((total - done) / throughput);
+        } else {
+            status.setEtaSeconds(-1);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,669 @@
+package cn.programcx.foxnaserver.service.file;
+
+import cn.programcx.foxnaserver.entity.Resource;
+import cn.programcx.foxnaserver.event.FileChangeEvent;
+import cn.programcx.foxnaserver.mapper.ResourceMapper;
+import cn.programcx.foxnaserver.service.io.IoBandwidthScheduler;
+import cn.programcx.foxnaserver.util.AtomicRename;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 后台文件操作引擎（复制 / 移动 / 删除）
+ * <p>
+ * <ul>
+ *     <li>任务异步执行（旧版同步接口在请求线程上直接执行，不占后台任务名额），可查询进度（文件数、字节数、吞吐量、预计剩余时间）并取消</li>
+ *     <li>目录树的复制与删除拆分为 ForkJoin 子任务，由工作窃取线程池并行处理</li>
+ *     <li>移动优先尝试不覆盖目标的原子重命名（同一文件存储时为 O(1)），跨文件存储时才退回复制 + 删除</li>
+ *     <li>删除默认移入所在授权根目录的回收站（{@link TrashService}，一次重命名），要求彻底删除时才逐个删除；
+ *     无法移入回收站的条目记为失败，不会自动改为彻底删除</li>
+ *     <li>被删除/移走目录上的资源授权在任务结束时一次查询、一次批量删除</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+public class FileOperationService {
+
+    @Autowired
+    private FileCopyService fileCopyService;
+
+    @Autowired
+    private TrashService trashService;
+
+    @Autowired
+    private IoBandwidthScheduler ioBandwidthScheduler;
+
+    @Autowired
+    private ResourceMapper resourceMapper;
+
+    @Autowired
+    private FilePermissionService filePermissionService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.file.op.job-retention-ms:3600000}")
+    private long jobRetentionMs;
+
+    private final Map<String, FileOperationJob> jobs = new ConcurrentHashMap<>();
+
+    private final ForkJoinPool workerPool;
+
+    // 任务协调线程：限制同时执行的任务数，其余任务排队
+    private final ExecutorService coordinator;
+
+    public FileOperationService(@Value("${app.file.op.parallelism:4}") int parallelism,
+                                @Value("${app.file.op.max-concurrent-jobs:2}") int maxConcurrentJobs) {
+        AtomicInteger counter = new AtomicInteger();
+        this.workerPool = new ForkJoinPool(Math.max(1, parallelism), pool -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("file-op-worker-" + counter.incrementAndGet());
+            return thread;
+        }, null, false);
+        this.coordinator = Executors.newFixedThreadPool(Math.max(1, maxConcurrentJobs), r -> {
+            Thread thread = new Thread(r, "file-op-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(FileOperationJob::cancel);
+        coordinator.shutdownNow();
+        workerPool.shutdownNow();
+    }
+
+    /**
+     * 提交复制任务
+     *
+     * @param pathsList 每项包含 oldPath、newPath
+     */
+    public FileOperationJob submitCopy(String uuid, List<Map<String, String>> pathsList) {
+        return submit(uuid, FileOperationJob.Type.COPY, toPairs(pathsList));
+    }
+
+    /**
+     * 提交移动任务
+     *
+     * @param pathsList 每项包含 oldPath、newPath
+     */
+    public FileOperationJob submitMove(String uuid, List<Map<String, String>> pathsList) {
+        return submit(uuid, FileOperationJob.Type.MOVE, toPairs(pathsList));
+    }
+
+    /**
+     * 提交删除任务
+     *
+     * @param permanent 是否彻底删除；为 false 时移入回收站
+     */
+    public FileOperationJob submitDelete(String uuid, List<String> paths, boolean permanent) {
+        List<String[]> items = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            items.add(new String[]{path});
+        }
+        return submit(uuid, permanent ? FileOperationJob.Type.PURGE : FileOperationJob.Type.DELETE, items);
+    }
+
+    /**
+     * 在调用线程上同步执行复制（旧版同步接口使用），不占用后台任务的并发名额，不会排在其他用户的长任务之后
+     *
+     * @return 已结束的任务
+     */
+    public FileOperationJob copyNow(String uuid, List<Map<String, String>> pathsList) {
+        return runNow(uuid, FileOperationJob.Type.COPY, toPairs(pathsList));
+    }
+
+    /**
+     * 在调用线程上同步执行移动，见 {@link #copyNow}
+     */
+    public FileOperationJob moveNow(String uuid, List<Map<String, String>> pathsList) {
+        return runNow(uuid, FileOperationJob.Type.MOVE, toPairs(pathsList));
+    }
+
+    /**
+     * 在调用线程上同步执行删除，见 {@link #copyNow}
+     */
+    public FileOperationJob deleteNow(String uuid, List<String> paths, boolean permanent) {
+        List<String[]> items = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            items.add(new String[]{path});
+        }
+        return runNow(uuid, permanent ? FileOperationJob.Type.PURGE : FileOperationJob.Type.DELETE, items);
+    }
+
+    /**
+     * 获取任务，非任务所有者返回 null
+     */
+    public FileOperationJob getJob(String uuid, String jobId) {
+        FileOperationJob job = jobs.get(jobId);
+        return job != null && job.getOwnerUuid().equals(uuid) ? job : null;
+    }
+
+    /**
+     * 列出当前用户的任务（按创建时间倒序）
+     */
+    public List<FileOperationJob> listJobs(String uuid) {
+        pruneFinishedJobs();
+        return jobs.values().stream()
+                .filter(job -> job.getOwnerUuid().equals(uuid))
+                .sorted(Comparator.comparingLong(FileOperationJob::getCreatedAt).reversed())
+                .toList();
+    }
+
+    /**
+     * 取消任务
+     *
+     * @return 任务是否存在且属于当前用户
+     */
+    public boolean cancel(String uuid, String jobId) {
+        FileOperationJob job = getJob(uuid, jobId);
+        if (job == null) {
+            return false;
+        }
+        job.cancel();
+        log.info("[{}]取消文件操作任务: {}", uuid, jobId);
+        return true;
+    }
+
+    private FileOperationJob submit(String uuid, FileOperationJob.Type type, List<String[]> items) {
+        FileOperationJob job = register(uuid, type, items);
+        coordinator.execute(() -> run(job));
+        log.info("[{}]提交文件操作任务: {}, 类型: {}, 条目数: {}", uuid, job.getJobId(), type, items.size());
+        return job;
+    }
+
+    private FileOperationJob runNow(String uuid, FileOperationJob.Type type, List<String[]> items) {
+        // 同样登记，执行期间可以查询进度与取消
+        FileOperationJob job = register(uuid, type, items);
+        log.info("[{}]执行文件操作任务: {}, 类型: {}, 条目数: {}", uuid, job.getJobId(), type, items.size());
+        run(job);
+        return job;
+    }
+
+    private FileOperationJob register(String uuid, FileOperationJob.Type type, List<String[]> items) {
+        pruneFinishedJobs();
+        FileOperationJob job = new FileOperationJob(UUID.randomUUID().toString().replace("-", ""), uuid, type, items);
+        jobs.put(job.getJobId(), job);
+        return job;
+    }
+
+    private void run(FileOperationJob job) {
+        List<Path> removedDirs = new ArrayList<>();
+        List<String> changedPaths = new ArrayList<>();
+        try {
+            switch (job.getType()) {
+                case COPY -> runCopy(job, changedPaths);
+                case MOVE -> runMove(job, removedDirs, changedPaths);
+                case DELETE -> runDelete(job, removedDirs, changedPaths, true);
+                case PURGE -> runDelete(job, removedDirs, changedPaths, false);
+            }
+        } catch (Exception e) {
+            log.error("文件操作任务 {} 执行失败", job.getJobId(), e);
+            job.setMessage(e.getMessage());
+        } finally {
+            try {
+                removeResourcesUnder(removedDirs);
+            } catch (Exception e) {
+                log.error("文件操作任务 {} 更新资源授权失败", job.getJobId(), e);
+            }
+            if (!changedPaths.isEmpty()) {
+                eventPublisher.publishEvent(new FileChangeEvent(this, changedPaths));
+            }
+            FileOperationJob.State state = job.isCancelled() ? FileOperationJob.State.CANCELLED
+                    : job.getFailedCount() > 0 ? FileOperationJob.State.FAILED
+                    : FileOperationJob.State.COMPLETED;
+            job.finish(state);
+            log.info("[{}]文件操作任务结束: {}, 类型: {}, 状态: {}, 文件: {}, 字节: {}, 失败: {}",
+                    job.getOwnerUuid(), job.getJobId(), job.getType(), state,
+                    job.filesDone.get(), job.bytesDone.get(), job.getFailedCount());
+        }
+    }
+
+    // ==================== 复制 ====================
+
+    private void runCopy(FileOperationJob job, List<String> changedPaths) {
+        List<String[]> items = job.getItems();
+        job.setState(FileOperationJob.State.SCANNING);
+        for (int i = 0; i < items.size() && !job.isCancelled(); i++) {
+            scan(job, Paths.get(items.get(i)[0]));
+        }
+
+        job.setState(FileOperationJob.State.RUNNING);
+        for (int i = 0; i < items.size() && !job.isCancelled(); i++) {
+            Path source = Paths.get(items.get(i)[0]);
+            Path target = Paths.get(items.get(i)[1]);
+            if (!Files.exists(source, LinkOption.NOFOLLOW_LINKS)) {
+                job.addFailure(i, List.of(items.get(i)[0], items.get(i)[1]), "源文件不存在！");
+                continue;
+            }
+            if (isSelfOrDescendant(source, target)) {
+                job.addFailure(i, List.of(items.get(i)[0], items.get(i)[1]), "不能将目录复制到其自身或子目录中");
+                continue;
+            }
+            copyItem(job, i, source, target);
+            changedPaths.add(target.toString());
+        }
+    }
+
+    private void copyItem(FileOperationJob job, int itemIndex, Path source, Path target) {
+        if (Files.isDirectory(source, LinkOption.NOFOLLOW_LINKS)) {
+            workerPool.invoke(new CopyTreeTask(job, itemIndex, source, target));
+        } else {
+            copyEntry(job, itemIndex, source, target);
+        }
+    }
+
+    /**
+     * 复制单个非目录条目（普通文件或符号链接本身）
+     */
+    private void copyEntry(FileOperationJob job, int itemIndex, Path source, Path target) {
+        try {
+            if (Files.isSymbolicLink(source)) {
+                Files.copy(source, target, LinkOption.NOFOLLOW_LINKS);
+            } else {
+                fileCopyService.copyFile(source, target, job.bytesDone::addAndGet,
+                        ioBandwidthScheduler.limiter(job.getOwnerUuid(), IoBandwidthScheduler.Direction.WRITE, IoBandwidthScheduler.IoClass.BULK),
+                        job::isCancelled);
+            }
+            job.filesDone.incrementAndGet();
+        } catch (CancellationException e) {
+            // 已取消，未完成的目标文件已被清理
+        } catch (IOException e) {
+            log.error("[{}]复制文件失败: {} -> {}, {}", job.getOwnerUuid(), source, target, e.getMessage());
+            job.addFailure(itemIndex, List.of(source.toString(), target.toString()), "复制失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 目录树复制：子目录与较大的文件拆为子任务，小文件在当前任务中直接复制
+     */
+    private class CopyTreeTask extends RecursiveAction {
+        private static final long FORK_FILE_SIZE = 4L * 1024 * 1024;
+
+        private final FileOperationJob job;
+        private final int itemIndex;
+        private final Path source;
+        private final Path target;
+
+        CopyTreeTask(FileOperationJob job, int itemIndex, Path source, Path target) {
+            this.job = job;
+            this.itemIndex = itemIndex;
+            this.source = source;
+            this.target = target;
+        }
+
+        @Override
+        protected void compute() {
+            if (job.isCancelled()) {
+                return;
+            }
+            try {
+                Files.createDirectories(target);
+            } catch (IOException e) {
+                job.addFailure(itemIndex, List.of(source.toString(), target.toString()), "创建目录失败：" + e.getMessage());
+                return;
+            }
+
+            List<RecursiveAction> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(source)) {
+                for (Path child : stream) {
+                    if (job.isCancelled()) {
+                        break;
+                    }
+                    Path childTarget = target.resolve(child.getFileName().toString());
+                    BasicFileAttributes attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isDirectory()) {
+                        subtasks.add(new CopyTreeTask(job, itemIndex, child, childTarget));
+                    } else if (attrs.isRegularFile() && attrs.size() >= FORK_FILE_SIZE) {
+                        subtasks.add(new CopyFileTask(job, itemIndex, child, childTarget));
+                    } else {
+                        copyEntry(job, itemIndex, child, childTarget);
+                    }
+                }
+            } catch (IOException e) {
+                job.addFailure(itemIndex, List.of(source.toString(), target.toString()), "遍历目录失败：" + e.getMessage());
+            }
+            invokeAll(subtasks);
+        }
+    }
+
+    private class CopyFileTask extends RecursiveAction {
+        private final FileOperationJob job;
+        private final int itemIndex;
+        private final Path source;
+        private final Path target;
+
+        CopyFileTask(FileOperationJob job, int itemIndex, Path source, Path target) {
+            this.job = job;
+            this.itemIndex = itemIndex;
+            this.source = source;
+            this.target = target;
+        }
+
+        @Override
+        protected void compute() {
+            if (!job.isCancelled()) {
+                copyEntry(job, itemIndex, source, target);
+            }
+        }
+    }
+
+    // ==================== 移动 ====================
+
+    private void runMove(FileOperationJob job, List<Path> removedDirs, List<String> changedPaths) {
+        List<String[]> items = job.getItems();
+        List<Integer> needCopy = new ArrayList<>();
+
+        // 第一轮：原子重命名，同一文件存储上无需统计与复制
+        job.setState(FileOperationJob.State.RUNNING);
+        for (int i = 0; i < items.size() && !job.isCancelled(); i++) {
+            Path source = Paths.get(items.get(i)[0]);
+            Path target = Paths.get(items.get(i)[1]);
+            if (!Files.exists(source, LinkOption.NOFOLLOW_LINKS)) {
+                job.addFailure(i, List.of(items.get(i)[0], items.get(i)[1]), "源文件不存在！");
+                continue;
+            }
+            if (isSelfOrDescendant(source, target)) {
+                job.addFailure(i, List.of(items.get(i)[0], items.get(i)[1]), "不能将目录移动到其自身或子目录中");
+                continue;
+            }
+            boolean directory = Files.isDirectory(source, LinkOption.NOFOLLOW_LINKS);
+            try {
+                // rename(2) 会直接覆盖已存在的文件或空目录，由不覆盖的重命名原子地拒绝
+                AtomicRename.moveNoReplace(source, target);
+                job.filesDone.incrementAndGet();
+                if (directory) {
+                    removedDirs.add(source);
+                }
+                changedPaths.add(source.toString());
+                changedPaths.add(target.toString());
+            } catch (AtomicMoveNotSupportedException e) {
+                needCopy.add(i);
+            } catch (FileAlreadyExistsException e) {
+                job.addFailure(i, List.of(items.get(i)[0], items.get(i)[1]), "移动失败：目标已存在");
+            } catch (IOException e) {
+                // 跨文件存储（EXDEV）已在上面处理，这里是权限不足、被占用等真实错误，复制 + 删除只会遇到同样的错误
+                job.addFailure(i, List.of(items.get(i)[0], items.get(i)[1]), "移动失败：" + e.getMessage());
+            }
+        }
+
+        if (needCopy.isEmpty() || job.isCancelled()) {
+            return;
+        }
+
+        // 第二轮：跨文件存储，复制后删除源
+        job.setState(FileOperationJob.State.SCANNING);
+        for (int i : needCopy) {
+            scan(job, Paths.get(items.get(i)[0]));
+        }
+        job.setState(FileOperationJob.State.RUNNING);
+        for (int i : needCopy) {
+            if (job.isCancelled()) {
+                break;
+            }
+            Path source = Paths.get(items.get(i)[0]);
+            Path target = Paths.get(items.get(i)[1]);
+            // 目标已存在时失败，不把源目录合并进已有目录
+            if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+                job.addFailure(i, List.of(items.get(i)[0], items.get(i)[1]), "移动失败：目标已存在");
+                continue;
+            }
+            copyItem(job, i, source, target);
+            changedPaths.add(target.toString());
+            if (job.isItemFailed(i) || job.isCancelled()) {
+                // 复制不完整时保留源文件
+                continue;
+            }
+            boolean directory = Files.isDirectory(source, LinkOption.NOFOLLOW_LINKS);
+            deleteItem(job, i, source, false);
+            if (directory) {
+                removedDirs.add(source);
+            }
+            changedPaths.add(source.toString());
+        }
+    }
+
+    // ==================== 删除 ====================
+
+    private void runDelete(FileOperationJob job, List<Path> removedDirs, List<String> changedPaths, boolean toTrash) {
+        List<String[]> items = job.getItems();
+        List<Integer> needDelete = new ArrayList<>();
+
+        // 第一轮：移入回收站，每个条目一次重命名，无需统计与遍历
+        job.setState(FileOperationJob.State.RUNNING);
+        List<Path> shareRoots = toTrash ? filePermissionService.getShareRoots() : List.of();
+        for (int i = 0; i < items.size() && !job.isCancelled(); i++) {
+            Path path = Paths.get(items.get(i)[0]);
+            if (!toTrash) {
+                needDelete.add(i);
+                continue;
+            }
+            if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+                job.addFailure(i, items.get(i)[0], "路径不存在");
+                continue;
+            }
+            boolean directory = Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS);
+            try {
+                trashService.moveToTrash(path, job.getOwnerUuid(), shareRoots);
+            } catch (IOException e) {
+                // 不自动改为彻底删除：数据将无法还原，由用户确认后以 permanent=true 重新提交
+                job.addFailure(i, items.get(i)[0], "无法移入回收站：" + e.getMessage());
+                continue;
+            }
+            job.totalFiles.incrementAndGet();
+            job.filesDone.incrementAndGet();
+            if (directory) {
+                removedDirs.add(path);
+            }
+            changedPaths.add(path.toString());
+        }
+
+        if (needDelete.isEmpty() || job.isCancelled()) {
+            return;
+        }
+
+        // 第二轮：逐个删除
+        job.setState(FileOperationJob.State.SCANNING);
+        for (int i : needDelete) {
+            if (job.isCancelled()) {
+                break;
+            }
+            scan(job, Paths.get(items.get(i)[0]));
+        }
+
+        job.setState(FileOperationJob.State.RUNNING);
+        for (int i : needDelete) {
+            if (job.isCancelled()) {
+                break;
+            }
+            Path path = Paths.get(items.get(i)[0]);
+            if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+                job.addFailure(i, items.get(i)[0], "路径不存在");
+                continue;
+            }
+            boolean directory = Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS);
+            deleteItem(job, i, path, true);
+            if (directory) {
+                removedDirs.add(path);
+            }
+            changedPaths.add(path.toString());
+        }
+    }
+
+    /**
+     * @param countFiles 是否计入已处理文件数（移动时复制阶段已经计过）
+     */
+    private void deleteItem(FileOperationJob job, int itemIndex, Path path, boolean countFiles) {
+        if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            workerPool.invoke(new DeleteTreeTask(job, itemIndex, path, countFiles));
+            return;
+        }
+        try {
+            Files.delete(path);
+            if (countFiles) {
+                job.filesDone.incrementAndGet();
+            }
+        } catch (IOException e) {
+            job.addFailure(itemIndex, path.toString(), "文件删除失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 目录树删除：子目录并行删除，全部子项删除成功后再删除目录本身
+     */
+    private class DeleteTreeTask extends RecursiveAction {
+        private final FileOperationJob job;
+        private final int itemIndex;
+        private final Path dir;
+        private final boolean countFiles;
+
+        DeleteTreeTask(FileOperationJob job, int itemIndex, Path dir, boolean countFiles) {
+            this.job = job;
+            this.itemIndex = itemIndex;
+            this.dir = dir;
+            this.countFiles = countFiles;
+        }
+
+        @Override
+        protected void compute() {
+            if (job.isCancelled()) {
+                return;
+            }
+            List<DeleteTreeTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path child : stream) {
+                    if (job.isCancelled()) {
+                        return;
+                    }
+                    if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                        subtasks.add(new DeleteTreeTask(job, itemIndex, child, countFiles));
+                        continue;
+                    }
+                    try {
+                        Files.delete(child);
+                        if (countFiles) {
+                            job.filesDone.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        job.addFailure(itemIndex, child.toString(), "文件删除失败：" + e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                job.addFailure(itemIndex, dir.toString(), "遍历目录失败：" + e.getMessage());
+                return;
+            }
+            invokeAll(subtasks);
+            if (job.isCancelled()) {
+                return;
+            }
+            try {
+                Files.delete(dir);
+            } catch (IOException e) {
+                job.addFailure(itemIndex, dir.toString(), "目录删除失败：" + e.getMessage());
+            }
+        }
+    }
+
+    // ==================== 公共 ====================
+
+    /**
+     * 统计文件数与字节数，用于计算进度与剩余时间
+     */
+    private void scan(FileOperationJob job, Path root) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return job.isCancelled() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    job.totalFiles.incrementAndGet();
+                    if (attrs.isRegularFile()) {
+                        job.totalBytes.addAndGet(attrs.size());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.warn("统计目录失败: {}, {}", root, e.getMessage());
+        }
+    }
+
+    /**
+     * 批量删除位于已删除/已移走目录下（含目录本身）的资源授权：一次查询，一次批量删除。
+     * 移入回收站的目录上的授权已保存在回收站条目中，还原时重新写入
+     */
+    private void removeResourcesUnder(List<Path> roots) {
+        if (roots.isEmpty()) {
+            return;
+        }
+        List<Long> ids = filePermissionService.findResourcesUnder(roots).stream()
+                .map(Resource::getResourceId)
+                .toList();
+        if (!ids.isEmpty()) {
+            resourceMapper.deleteBatchIds(ids);
+            filePermissionService.invalidateAll();
+            log.info("批量删除资源授权 {} 条", ids.size());
+        }
+    }
+
+    private void pruneFinishedJobs() {
+        long now = System.currentTimeMillis();
+        jobs.values().removeIf(job -> job.isFinished() && now - job.getFinishedAt() > jobRetentionMs);
+    }
+
+    private static boolean isSelfOrDescendant(Path source, Path target) {
+        Path normalizedSource = source.toAbsolutePath().normalize();
+        Path normalizedTarget = target.toAbsolutePath().normalize();
+        return Files.isDirectory(normalizedSource, LinkOption.NOFOLLOW_LINKS) && normalizedTarget.startsWith(normalizedSource);
+    }
+
+    private static List<String[]> toPairs(List<Map<String, String>> pathsList) {
+        List<String[]> items = new ArrayList<>(pathsList.size());
+        for (Map<String, String> pathMap : pathsList) {
+            String oldPath = pathMap.get("oldPath");
+            String newPath = pathMap.get("newPath");
+            if (oldPath == null || newPath == null) {
+                throw new IllegalArgumentException("oldPath 或 newPath 不能为空！");
+            }
+            items.add(new String[]{oldPath, newPath});
+        }
+        return items;
+    }
+}
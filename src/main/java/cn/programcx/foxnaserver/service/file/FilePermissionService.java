@@ -0,0 +1,356 @@
+package cn.programcx.foxnaserver.service.file;
+
+import cn.programcx.foxnaserver.entity.Resource;
+import cn.programcx.foxnaserver.mapper.ResourceMapper;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 文件路径权限判断
+ * <p>
+ * 每个用户的授权目录按权限类型构建成路径前缀树，首次访问时从 tb_resources 加载一次，
+ * 之后的判断只需按路径层级向下查找，不再访问数据库。
+ * 资源授权变化时调用 {@link #invalidate(String)} / {@link #invalidateAll()}，
+ * 并通过 Redis 发布订阅通知其他节点丢弃对应的缓存。
+ */
+@Slf4j
+@Service
+public class FilePermissionService implements MessageListener {
+
+    private static final String INVALIDATE_CHANNEL = "permission:invalidate";
+    private static final String ALL_USERS = "*";
+
+    @Autowired
+    private ResourceMapper resourceMapper;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    // 用户 UUID → 权限类型（小写）→ 前缀树
+    private final Map<String, Map<String, PathTrie>> userTries = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 检查用户是否有访问指定路径的权限
+     *
+     * @param uuid   用户 UUID
+     * @param path   文件或目录路径
+     * @param method 权限类型（如 "Read", "Write"，不区分大小写）
+     * @return 是否有权限
+     * @throws IOException 如果路径处理出错
+     */
+    public boolean hasPermission(String uuid, String path, String method) throws IOException {
+        if (path == null) {
+            return false;
+        }
+        return checkBatch(uuid, List.of(path), method).get(path);
+    }
+
+    /**
+     * 批量检查同一权限类型下的多个路径
+     * <p>
+     * 每个路径只规范化一次，并按命中的最深授权目录分组；
+     * 符号链接检查借助本次调用内的祖先目录缓存，每个不同的祖先目录只 lstat 一次。
+     *
+     * @return 原始路径 → 是否允许，顺序与传入一致
+     */
+    public Map<String, Boolean> checkBatch(String uuid, Collection<String> paths, String method) throws IOException {
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        PathTrie trie = uuid == null || uuid.isEmpty() || method == null
+                ? null : getTries(uuid).get(method.toLowerCase(Locale.ROOT));
+
+        // 授权目录 → 其下待检查的路径
+        Map<Path, List<Path>> groups = new LinkedHashMap<>();
+        Map<Path, List<String>> rawByPath = new HashMap<>();
+        for (String raw : paths) {
+            if (raw == null || result.containsKey(raw)) {
+                continue;
+            }
+            result.put(raw, false);
+            if (trie == null) {
+                continue;
+            }
+            Path normalizedPath = Paths.get(raw).normalize();
+            if (normalizedPath.toString().contains("..")) {
+                continue;
+            }
+            Path grant = trie.findDeepestGrant(normalizedPath);
+            if (grant == null) {
+                continue;
+            }
+            List<String> raws = rawByPath.computeIfAbsent(normalizedPath, k -> new ArrayList<>(1));
+            if (raws.isEmpty()) {
+                groups.computeIfAbsent(grant, k -> new ArrayList<>()).add(normalizedPath);
+            }
+            raws.add(raw);
+        }
+
+        Map<Path, Boolean> symlinkCache = new HashMap<>();
+        for (Map.Entry<Path, List<Path>> group : groups.entrySet()) {
+            // 授权目录本身及其上级只检查一次
+            if (containsSymlink(group.getKey(), symlinkCache)) {
+                continue;
+            }
+            for (Path normalizedPath : group.getValue()) {
+                if (!containsSymlink(normalizedPath, symlinkCache)) {
+                    for (String raw : rawByPath.get(normalizedPath)) {
+                        result.put(raw, true);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 只按授权前缀判断（不访问文件系统）的快速过滤器，用于在大量候选中预筛选；
+     * 最终结果仍需经过 {@link #checkBatch} 做符号链接检查
+     *
+     * @param normalized 传入的路径是否已规范化
+     */
+    public Predicate<Path> grantFilter(String uuid, String method, boolean normalized) {
+        PathTrie trie = uuid == null || uuid.isEmpty() || method == null
+                ? null : getTries(uuid).get(method.toLowerCase(Locale.ROOT));
+        if (trie == null) {
+            return path -> false;
+        }
+        return path -> {
+            Path p = normalized ? path : path.normalize();
+            return !p.toString().contains("..") && trie.findDeepestGrant(p) != null;
+        };
+    }
+
+    /**
+     * 路径自身或任一上级目录是否为符号链接
+     */
+    public boolean containsSymlink(Path path) throws IOException {
+        return containsSymlink(path, new HashMap<>());
+    }
+
+    /**
+     * 带祖先目录缓存的符号链接检查，缓存只在一次批量检查内有效，避免跨请求使用过期结果
+     */
+    private boolean containsSymlink(Path path, Map<Path, Boolean> cache) {
+        List<Path> unresolved = new ArrayList<>();
+        Path current = path;
+        boolean found = false;
+        while (current != null) {
+            Boolean cached = cache.get(current);
+            if (cached != null) {
+                found = cached;
+                break;
+            }
+            unresolved.add(current);
+            if (Files.isSymbolicLink(current)) {
+                found = true;
+                break;
+            }
+            current = current.getParent();
+        }
+        // 本次经过的路径都是命中点（或根）的后代，结果相同
+        for (Path p : unresolved) {
+            cache.put(p, found);
+        }
+        return found;
+    }
+
+    /**
+     * 所有授权根目录（tb_resources 中的目录去重，去掉嵌套在其他根目录下的，只保留存在的目录），
+     * 供后台索引、统计等任务遍历
+     */
+    public List<Path> getShareRoots() {
+        List<Resource> resources = resourceMapper.selectList(
+                new LambdaQueryWrapper<Resource>().select(Resource::getFolderName));
+        List<Path> roots = resources.stream()
+                .map(Resource::getFolderName)
+                .filter(name -> name != null && !name.isEmpty())
+                .map(name -> Paths.get(name).toAbsolutePath().normalize())
+                .distinct()
+                .sorted()
+                .toList();
+
+        // 去掉嵌套在其他根目录下的根目录，避免重复遍历
+        List<Path> result = new ArrayList<>();
+        for (Path root : roots) {
+            if (result.stream().noneMatch(root::startsWith) && Files.isDirectory(root)) {
+                result.add(root);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 位于给定目录下（含目录本身）的资源授权：一次查询，Java 侧按路径组成部分过滤（/data 不匹配 /data2）
+     */
+    public List<Resource> findResourcesUnder(Collection<Path> roots) {
+        if (roots.isEmpty()) {
+            return List.of();
+        }
+        List<Path> normalizedRoots = roots.stream().map(p -> p.toAbsolutePath().normalize()).distinct().toList();
+
+        LambdaQueryWrapper<Resource> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.and(q -> {
+            for (int i = 0; i < normalizedRoots.size(); i++) {
+                if (i > 0) {
+                    q.or();
+                }
+                q.likeRight(Resource::getFolderName, normalizedRoots.get(i).toString().replace(File.separatorChar, '/'));
+            }
+        });
+
+        List<Resource> result = new ArrayList<>();
+        for (Resource resource : resourceMapper.selectList(queryWrapper)) {
+            Path folder = Paths.get(resource.getFolderName()).toAbsolutePath().normalize();
+            if (normalizedRoots.stream().anyMatch(folder::startsWith)) {
+                result.add(resource);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 丢弃某个用户的权限缓存（本节点与其他节点）
+     */
+    public void invalidate(String uuid) {
+        if (uuid == null) {
+            return;
+        }
+        userTries.remove(uuid);
+        publish(uuid);
+    }
+
+    /**
+     * 丢弃所有用户的权限缓存，用于按路径批量修改资源（如重命名、删除授权目录）
+     */
+    public void invalidateAll() {
+        userTries.clear();
+        publish(ALL_USERS);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String uuid = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (ALL_USERS.equals(uuid)) {
+            userTries.clear();
+        } else {
+            userTries.remove(uuid);
+        }
+        log.debug("收到权限缓存失效通知: {}", uuid);
+    }
+
+    private void publish(String uuid) {
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, uuid);
+        } catch (Exception e) {
+            log.warn("发布权限缓存失效通知失败: {}", e.getMessage());
+        }
+    }
+
+    private Map<String, PathTrie> getTries(String uuid) {
+        return userTries.computeIfAbsent(uuid, this::loadTries);
+    }
+
+    private Map<String, PathTrie> loadTries(String uuid) {
+        LambdaQueryWrapper<Resource> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(Resource::getOwnerUuid, uuid);
+        List<Resource> resources = resourceMapper.selectList(queryWrapper);
+
+        Map<String, PathTrie> tries = new HashMap<>();
+        for (Resource resource : resources) {
+            if (resource.getFolderName() == null || resource.getPermissionType() == null) {
+                continue;
+            }
+            tries.computeIfAbsent(resource.getPermissionType().toLowerCase(Locale.ROOT), k -> new PathTrie())
+                    .add(Paths.get(resource.getFolderName()).normalize());
+        }
+        return tries;
+    }
+
+    /**
+     * 路径前缀树，按路径组成部分（而非字符串）匹配，与 Path#startsWith 语义一致。
+     * 构建完成后只读，可被多个线程并发查询。
+     */
+    static final class PathTrie {
+
+        private final Node root = new Node();
+
+        void add(Path path) {
+            Node node = root.children.computeIfAbsent(rootKey(path), k -> new Node());
+            for (Path name : path) {
+                node = node.children.computeIfAbsent(name.toString(), k -> new Node());
+            }
+            node.granted = true;
+        }
+
+        /**
+         * 返回覆盖该路径的最深授权目录，未授权时返回 null
+         */
+        Path findDeepestGrant(Path path) {
+            Node node = root.children.get(rootKey(path));
+            if (node == null) {
+                return null;
+            }
+            int grantedDepth = node.granted ? 0 : -1;
+            int depth = 0;
+            for (Path name : path) {
+                node = node.children.get(name.toString());
+                if (node == null) {
+                    break;
+                }
+                depth++;
+                if (node.granted) {
+                    grantedDepth = depth;
+                }
+            }
+            if (grantedDepth < 0) {
+                return null;
+            }
+            if (grantedDepth == 0) {
+                return path.getRoot() != null ? path.getRoot() : path.getFileSystem().getPath("");
+            }
+            Path sub = path.subpath(0, grantedDepth);
+            return path.getRoot() != null ? path.getRoot().resolve(sub) : sub;
+        }
+
+        private static String rootKey(Path path) {
+            Path root = path.getRoot();
+            return root == null ? "" : root.toString();
+        }
+
+        private static final class Node {
+            private final Map<String, Node> children = new HashMap<>();
+            private boolean granted;
+        }
+    }
+}
@@ -0,0 +1,598 @@
+package cn.programcx.foxnaserver.service.file;
+
+import cn.programcx.foxnaserver.dto.file.DirEntry;
+import cn.programcx.foxnaserver.dto.file.FileInfo;
+import cn.programcx.foxnaserver.dto.file.FileSearchQuery;
+import cn.programcx.foxnaserver.event.FileChangeEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * 文件名 / 元数据搜索索引
+ * <p>
+ * 内存中的倒排索引：文件名（小写）按相邻两个字符切分为 bigram，每个 bigram 对应包含它的条目 ID 列表，
+ * 中日韩文件名无需分词即可做子串匹配。查询时取关键字各 bigram 中最短的倒排列表作为候选，再逐条核对。
+ * <ul>
+ *     <li>覆盖 tb_resources 中的所有授权根目录，定时增量重扫（按 大小 + 修改时间 判断是否变化）</li>
+ *     <li>本服务自身的文件操作通过 {@link FileChangeEvent} 在后台线程中即时更新对应子树</li>
+ *     <li>索引条目定期持久化到本地文件，重启后先加载再增量校正</li>
+ *     <li>删除的条目先留下空位，倒排列表中的失效 ID 在查询时跳过，空位过多时整体重建</li>
+ * </ul>
+ * 所有索引维护（定时重扫与文件变化事件）都在同一个后台线程中串行执行，压缩重建只在一次维护结束时进行，
+ * 维护过程中按条目 ID 记录的遍历结果不会因为 ID 重新编号而失效。
+ */
+@Slf4j
+@Service
+public class FileSearchService {
+
+    private static final int INDEX_MAGIC = 0x464E5349;
+    private static final int INDEX_VERSION = 1;
+
+    // 每批做最终权限检查（含符号链接检查）的条目数
+    private static final int PERMISSION_BATCH = 256;
+    public static final int MAX_LIMIT = 1000;
+
+    @Autowired
+    private FilePermissionService filePermissionService;
+
+    @Value("${app.file.search.index-file:data/search-index.bin}")
+    private String indexFile;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 条目 ID → 条目，已删除的位置为 null
+    private final List<Entry> entries = new ArrayList<>();
+    // 路径 → 条目 ID，有序以便按前缀取出整棵子树
+    private final TreeMap<String, Integer> idsByPath = new TreeMap<>();
+    // bigram → 条目 ID 列表（递增）
+    private final Map<Integer, IntList> postings = new HashMap<>();
+    private int removedCount;
+    // 每次压缩重建后递增，跨批次查询据此判断游标是否仍然有效
+    private int generation;
+
+    private volatile boolean dirty;
+    private volatile boolean loaded;
+    private final AtomicBoolean indexing = new AtomicBoolean(false);
+
+    private final ExecutorService eventExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "file-search-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private record Entry(String path, String name, String nameLower, boolean directory, long size,
+                         long lastModified) {
+    }
+
+    /**
+     * 搜索结果
+     *
+     * @param truncated 是否还有更多结果未返回
+     */
+    public record SearchResult(List<FileInfo> results, boolean truncated) {
+    }
+
+    /**
+     * 首次调用时加载磁盘上的索引，然后增量重扫全部授权根目录
+     */
+    public void reindexAll() {
+        if (!indexing.compareAndSet(false, true)) {
+            log.info("搜索索引正在重建，跳过本次");
+            return;
+        }
+        try {
+            // 与文件变化事件在同一线程中串行执行，等待完成
+            eventExecutor.submit(this::doReindexAll).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("搜索索引重扫失败", e.getCause());
+        } finally {
+            indexing.set(false);
+        }
+    }
+
+    private void doReindexAll() {
+        if (!loaded) {
+            load();
+            loaded = true;
+        }
+        long start = System.currentTimeMillis();
+        List<Path> roots = filePermissionService.getShareRoots();
+        BitSet seen = new BitSet();
+        int[] counter = new int[2];
+        for (Path root : roots) {
+            refreshTree(root, seen, counter);
+        }
+
+        // 不在任何授权根目录下（授权已撤销或目录已不存在）的条目
+        lock.writeLock().lock();
+        try {
+            for (int id = 0; id < entries.size(); id++) {
+                if (entries.get(id) != null && !seen.get(id)) {
+                    removeLocked(id);
+                    counter[1]++;
+                }
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info("搜索索引重扫完成，根目录 {} 个，新增/更新 {} 个，移除 {} 个，当前 {} 个，耗时 {} ms",
+                roots.size(), counter[0], counter[1], size(), System.currentTimeMillis() - start);
+        saveIfDirty();
+    }
+
+    @EventListener
+    public void onFileChange(FileChangeEvent event) {
+        if (!loaded) {
+            return;
+        }
+        List<String> paths = List.copyOf(event.getPaths());
+        eventExecutor.execute(() -> {
+            for (String changed : paths) {
+                if (changed == null || changed.isEmpty()) {
+                    continue;
+                }
+                try {
+                    refreshTree(Paths.get(changed).toAbsolutePath().normalize(), new BitSet(), new int[2]);
+                } catch (Exception e) {
+                    log.warn("更新搜索索引失败: {}, {}", changed, e.getMessage());
+                }
+            }
+            lock.writeLock().lock();
+            try {
+                compactIfNeeded();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        eventExecutor.shutdownNow();
+        saveIfDirty();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return idsByPath.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按条件搜索，结果经过与 PermissionAspect 相同的读权限检查
+     */
+    public SearchResult search(String uuid, FileSearchQuery query) throws IOException {
+        int limit = Math.max(1, Math.min(query.getLimit(), MAX_LIMIT));
+        Predicate<Entry> matcher = buildMatcher(query);
+        Predicate<Path> granted = filePermissionService.grantFilter(uuid, "Read", true);
+        String needle = needleOf(query);
+        Path scope = query.getPath() == null || query.getPath().isEmpty()
+                ? null : Paths.get(query.getPath()).toAbsolutePath().normalize();
+
+        List<FileInfo> results = new ArrayList<>();
+        int cursor = 0;
+        int startGeneration = -1;
+        boolean exhausted = false;
+        while (results.size() < limit && !exhausted) {
+            // 持读锁收集一批候选（仅按授权前缀预筛），释放锁后再做涉及文件系统的最终检查
+            List<Entry> batch = new ArrayList<>(PERMISSION_BATCH);
+            lock.readLock().lock();
+            try {
+                if (startGeneration < 0) {
+                    startGeneration = generation;
+                } else if (startGeneration != generation) {
+                    // 索引在两批之间被重建，已返回的结果仍然有效，其余视为未返回
+                    return new SearchResult(results, true);
+                }
+                IntList candidates = candidatesLocked(needle);
+                int end = candidates == null ? entries.size() : candidates.size;
+                while (cursor < end && batch.size() < PERMISSION_BATCH) {
+                    int id = candidates == null ? cursor : candidates.data[cursor];
+                    cursor++;
+                    Entry entry = entries.get(id);
+                    if (entry == null || !matcher.test(entry)) {
+                        continue;
+                    }
+                    Path path = Paths.get(entry.path());
+                    if ((scope == null || path.startsWith(scope)) && granted.test(path)) {
+                        batch.add(entry);
+                    }
+                }
+                exhausted = cursor >= end;
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            if (batch.isEmpty()) {
+                continue;
+            }
+            Map<String, Boolean> allowed = filePermissionService.checkBatch(uuid,
+                    batch.stream().map(Entry::path).toList(), "Read");
+            for (int i = 0; i < batch.size(); i++) {
+                Entry entry = batch.get(i);
+                if (!allowed.getOrDefault(entry.path(), false)) {
+                    continue;
+                }
+                if (results.size() == limit) {
+                    return new SearchResult(results, true);
+                }
+                results.add(FileInfo.of(new DirEntry(Paths.get(entry.path()), entry.name(), entry.directory(),
+                        entry.size(), entry.lastModified())));
+            }
+        }
+        return new SearchResult(results, !exhausted);
+    }
+
+    // ==================== 索引维护 ====================
+
+    /**
+     * 增量刷新一棵子树：遍历现有文件插入或更新，子树中未被遍历到的旧条目删除
+     * <p>
+     * 只能在 eventExecutor 中调用；不做压缩重建，由调用方在整次维护结束后压缩，保证 seen 中的 ID 有效
+     *
+     * @param seen 记录遍历到的条目 ID
+     */
+    private void refreshTree(Path root, BitSet seen, int[] counter) {
+        if (!Files.exists(root, LinkOption.NOFOLLOW_LINKS) || isInternalName(root)) {
+            removeTree(root, counter);
+            return;
+        }
+        BitSet local = new BitSet();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (!dir.equals(root) && isInternalName(dir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    local.set(upsert(dir, attrs, counter));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (!isInternalName(file)) {
+                        local.set(upsert(file, attrs, counter));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.warn("遍历目录失败: {}, {}", root, e.getMessage());
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (int id : subtreeIdsLocked(root)) {
+                if (!local.get(id)) {
+                    removeLocked(id);
+                    counter[1]++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        seen.or(local);
+    }
+
+    private void removeTree(Path root, int[] counter) {
+        lock.writeLock().lock();
+        try {
+            for (int id : subtreeIdsLocked(root)) {
+                removeLocked(id);
+                counter[1]++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return 条目 ID
+     */
+    private int upsert(Path path, BasicFileAttributes attrs, int[] counter) {
+        String key = path.toString();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        lock.writeLock().lock();
+        try {
+            Integer id = idsByPath.get(key);
+            if (id != null) {
+                Entry old = entries.get(id);
+                if (old.size() == attrs.size() && old.lastModified() == lastModified
+                        && old.directory() == attrs.isDirectory()) {
+                    return id;
+                }
+                // 名称未变，倒排列表保持不动，只替换条目
+                entries.set(id, new Entry(old.path(), old.name(), old.nameLower(), attrs.isDirectory(),
+                        attrs.size(), lastModified));
+            } else {
+                id = addLocked(key, nameOf(path), attrs.isDirectory(), attrs.size(), lastModified);
+            }
+            counter[0]++;
+            dirty = true;
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int addLocked(String path, String name, boolean directory, long size, long lastModified) {
+        int id = entries.size();
+        String nameLower = name.toLowerCase(Locale.ROOT);
+        entries.add(new Entry(path, name, nameLower, directory, size, lastModified));
+        idsByPath.put(path, id);
+        for (int i = 0; i + 1 < nameLower.length(); i++) {
+            IntList list = postings.computeIfAbsent(bigram(nameLower.charAt(i), nameLower.charAt(i + 1)), k -> new IntList());
+            // 同一文件名中重复出现的 bigram 只记录一次
+            if (list.size == 0 || list.data[list.size - 1] != id) {
+                list.add(id);
+            }
+        }
+        return id;
+    }
+
+    private void removeLocked(int id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return;
+        }
+        entries.set(id, null);
+        idsByPath.remove(entry.path());
+        removedCount++;
+        dirty = true;
+    }
+
+    private List<Integer> subtreeIdsLocked(Path root) {
+        String key = root.toString();
+        List<Integer> ids = new ArrayList<>();
+        Integer self = idsByPath.get(key);
+        if (self != null) {
+            ids.add(self);
+        }
+        String prefix = key.endsWith(File.separator) ? key : key + File.separator;
+        ids.addAll(idsByPath.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values());
+        return ids;
+    }
+
+    /**
+     * 空位超过四分之一时重建，回收倒排列表中的失效 ID
+     */
+    private void compactIfNeeded() {
+        if (removedCount < 1024 || removedCount * 4 < entries.size()) {
+            return;
+        }
+        List<Entry> live = entries.stream().filter(e -> e != null).toList();
+        entries.clear();
+        idsByPath.clear();
+        postings.clear();
+        removedCount = 0;
+        generation++;
+        for (Entry entry : live) {
+            addLocked(entry.path(), entry.name(), entry.directory(), entry.size(), entry.lastModified());
+        }
+        log.debug("搜索索引已压缩，当前 {} 个条目", live.size());
+    }
+
+    // ==================== 查询 ====================
+
+    private static String needleOf(FileSearchQuery query) {
+        if (query.getKeyword() != null && !query.getKeyword().isEmpty()) {
+            return query.getKeyword().toLowerCase(Locale.ROOT);
+        }
+        if (query.getPrefix() != null && !query.getPrefix().isEmpty()) {
+            return query.getPrefix().toLowerCase(Locale.ROOT);
+        }
+        return null;
+    }
+
+    /**
+     * 关键字各 bigram 中最短的倒排列表；关键字不足两个字符时返回 null（全量扫描）
+     */
+    private IntList candidatesLocked(String needle) {
+        if (needle == null || needle.length() < 2) {
+            return null;
+        }
+        IntList shortest = null;
+        for (int i = 0; i + 1 < needle.length(); i++) {
+            IntList list = postings.get(bigram(needle.charAt(i), needle.charAt(i + 1)));
+            if (list == null) {
+                return new IntList();
+            }
+            if (shortest == null || list.size < shortest.size) {
+                shortest = list;
+            }
+        }
+        return shortest;
+    }
+
+    private static Predicate<Entry> buildMatcher(FileSearchQuery query) {
+        Predicate<Entry> matcher = entry -> true;
+        if (query.getKeyword() != null && !query.getKeyword().isEmpty()) {
+            String keyword = query.getKeyword().toLowerCase(Locale.ROOT);
+            matcher = matcher.and(entry -> entry.nameLower().contains(keyword));
+        }
+        if (query.getPrefix() != null && !query.getPrefix().isEmpty()) {
+            String prefix = query.getPrefix().toLowerCase(Locale.ROOT);
+            matcher = matcher.and(entry -> entry.nameLower().startsWith(prefix));
+        }
+        if (query.getExt() != null && !query.getExt().isEmpty()) {
+            String suffix = "." + stripDot(query.getExt()).toLowerCase(Locale.ROOT);
+            matcher = matcher.and(entry -> !entry.directory() && entry.nameLower().endsWith(suffix));
+        }
+        if (query.getType() != null && !query.getType().isEmpty()) {
+            boolean directory = "directory".equalsIgnoreCase(query.getType());
+            matcher = matcher.and(entry -> entry.directory() == directory);
+        }
+        if (query.getCategory() != null && !query.getCategory().isEmpty()) {
+            String category = query.getCategory();
+            matcher = matcher.and(entry -> !entry.directory() && category.equals(FileInfo.categoryOf(entry.name())));
+        }
+        if (query.getMinSize() != null) {
+            long minSize = query.getMinSize();
+            matcher = matcher.and(entry -> entry.size() >= minSize);
+        }
+        if (query.getMaxSize() != null) {
+            long maxSize = query.getMaxSize();
+            matcher = matcher.and(entry -> entry.size() <= maxSize);
+        }
+        if (query.getModifiedAfter() != null) {
+            long after = query.getModifiedAfter();
+            matcher = matcher.and(entry -> entry.lastModified() >= after);
+        }
+        if (query.getModifiedBefore() != null) {
+            long before = query.getModifiedBefore();
+            matcher = matcher.and(entry -> entry.lastModified() <= before);
+        }
+        return matcher;
+    }
+
+    // ==================== 持久化 ====================
+
+    private void saveIfDirty() {
+        if (!dirty || !loaded) {
+            return;
+        }
+        Path file = Paths.get(indexFile).toAbsolutePath();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try {
+            Files.createDirectories(file.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(INDEX_VERSION);
+                out.writeInt(idsByPath.size());
+                for (Entry entry : entries) {
+                    if (entry == null) {
+                        continue;
+                    }
+                    out.writeUTF(entry.path());
+                    out.writeBoolean(entry.directory());
+                    out.writeLong(entry.size());
+                    out.writeLong(entry.lastModified());
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+            log.info("搜索索引已保存: {}, {} 个条目", file, idsByPath.size());
+        } catch (IOException e) {
+            log.warn("保存搜索索引失败: {}, {}", file, e.getMessage());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void load() {
+        Path file = Paths.get(indexFile).toAbsolutePath();
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                log.warn("搜索索引文件格式不匹配，将重新构建: {}", file);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                boolean directory = in.readBoolean();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                if (!idsByPath.containsKey(path)) {
+                    addLocked(path, nameOf(Paths.get(path)), directory, size, lastModified);
+                }
+            }
+            log.info("已加载搜索索引: {}, {} 个条目", file, count);
+        } catch (IOException e) {
+            log.warn("加载搜索索引失败，将重新构建: {}, {}", file, e.getMessage());
+            entries.clear();
+            idsByPath.clear();
+            postings.clear();
+            removedCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ==================== 工具 ====================
+
+    private static String nameOf(Path path) {
+        Path name = path.getFileName();
+        return name == null ? path.toString() : name.toString();
+    }
+
+    /**
+     * 上传临时文件、回收站等服务自身产生的条目不参与索引
+     */
+    private static boolean isInternalName(Path path) {
+        Path name = path.getFileName();
+        return name != null && name.toString().startsWith(".foxnas-");
+    }
+
+    private static String stripDot(String ext) {
+        return ext.startsWith(".") ? ext.substring(1) : ext;
+    }
+
+    private static int bigram(char first, char second) {
+        return (first << 16) | second;
+    }
+
+    private static final class IntList {
+        private int[] data = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                int[] grown = new int[data.length + (data.length >> 1)];
+                System.arraycopy(data, 0, grown, 0, size);
+                data = grown;
+            }
+            data[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package cn.programcx.foxnaserver.service.file;
+
+import cn.programcx.foxnaserver.entity.FileHash;
+import cn.programcx.foxnaserver.event.FileChangeEvent;
+import cn.programcx.foxnaserver.util.AtomicRename;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 秒传（内容去重上传）
+ * <p>
+ * 客户端上传前先提交 SHA-256（可附带抽样块哈希），若索引中存在内容相同且当前用户可读的文件，
+ * 直接以 reflink / 硬链接 / 复制的方式在目标路径生成文件，无需再传输数据。
+ */
+@Slf4j
+@Service
+public class InstantUploadService {
+
+    @Autowired
+    private FileHashService fileHashService;
+
+    @Autowired
+    private FilePermissionService filePermissionService;
+
+    @Autowired
+    private FileCopyService fileCopyService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.file.dedup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.file.dedup.allow-hardlink:false}")
+    private boolean allowHardlink;
+
+    /**
+     * 尝试秒传
+     *
+     * @param sampleHashes 客户端计算的抽样块哈希，可为空
+     * @return instant=false 表示未命中，客户端应走普通分块上传
+     */
+    public Map<String, Object> tryInstant(String uuid, String path, long fileSize, String sha256,
+                                          List<String> sampleHashes, boolean overwrite) throws IOException {
+        if (sha256 == null || !sha256.matches("[0-9a-fA-F]{64}")) {
+            throw new IllegalArgumentException("SHA-256 格式不正确");
+        }
+        Path target = Paths.get(path);
+        if (target.getParent() == null || target.getFileName() == null) {
+            throw new IllegalArgumentException("目标路径不正确");
+        }
+        if (Files.exists(target) && !overwrite) {
+            throw new IllegalStateException("目标文件已存在");
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("status", "success");
+        result.put("instant", false);
+        if (!enabled) {
+            return result;
+        }
+
+        String clientSampleDigest = sampleHashes == null || sampleHashes.isEmpty()
+                ? null : fileHashService.digestSamples(sampleHashes);
+
+        Path source = findSource(uuid, sha256, fileSize, clientSampleDigest);
+        if (source == null) {
+            return result;
+        }
+
+        Files.createDirectories(target.getParent());
+        Path temp = target.getParent().resolve(ChunkUploadService.TEMP_FILE_PREFIX
+                + UUID.randomUUID().toString().replace("-", "") + ChunkUploadService.TEMP_FILE_SUFFIX);
+        FileCopyService.Method method;
+        try {
+            method = fileCopyService.cloneOrCopy(source, temp, allowHardlink);
+            if (overwrite) {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                // 目标可能在上面的检查之后才出现，由重命名本身拒绝覆盖
+                AtomicRename.moveNoReplace(temp, target);
+            }
+        } catch (FileAlreadyExistsException e) {
+            Files.deleteIfExists(temp);
+            throw new IllegalStateException("目标文件已存在");
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        fileHashService.record(target, sha256);
+        eventPublisher.publishEvent(new FileChangeEvent(this, List.of(target.toString())));
+        log.info("[{}]秒传成功，源文件: {}, 目标: {}, 方式: {}", uuid, source, target, method);
+
+        result.put("instant", true);
+        result.put("method", method.name());
+        result.put("path", target.toString());
+        return result;
+    }
+
+    /**
+     * 在候选文件中选出一个：当前用户可读、大小与修改时间与索引一致、抽样块哈希一致
+     */
+    private Path findSource(String uuid, String sha256, long fileSize, String clientSampleDigest) throws IOException {
+        for (FileHash candidate : fileHashService.findByContent(sha256, fileSize)) {
+            if (clientSampleDigest != null && !clientSampleDigest.equals(candidate.getSampleHash())) {
+                continue;
+            }
+            Path source = Paths.get(candidate.getFilePath());
+            if (!filePermissionService.hasPermission(uuid, source.toString(), "Read")) {
+                continue;
+            }
+
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(source, BasicFileAttributes.class);
+            } catch (IOException e) {
+                fileHashService.remove(candidate);
+                continue;
+            }
+            if (attrs.size() != candidate.getFileSize()
+                    || attrs.lastModifiedTime().toMillis() != candidate.getLastModified()) {
+                // 文件已变化，等待后台任务重新索引
+                fileHashService.remove(candidate);
+                continue;
+            }
+
+            // 少量随机读确认内容没有被原地修改（保留了修改时间的写入）
+            String liveSampleDigest = fileHashService.digestSamples(fileHashService.computeSampleHashes(source, attrs.size()));
+            if (!liveSampleDigest.equals(candidate.getSampleHash())) {
+                fileHashService.remove(candidate);
+                continue;
+            }
+            return source;
+        }
+        return null;
+    }
+}
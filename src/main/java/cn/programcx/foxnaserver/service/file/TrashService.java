@@ -0,0 +1,440 @@
+package cn.programcx.foxnaserver.service.file;
+
+import cn.programcx.foxnaserver.entity.Resource;
+import cn.programcx.foxnaserver.event.FileChangeEvent;
+import cn.programcx.foxnaserver.mapper.ResourceMapper;
+import cn.programcx.foxnaserver.util.AtomicRename;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 回收站
+ * <p>
+ * 每个授权根目录下有一个 {@value #TRASH_DIR_NAME} 目录，删除即把条目原子重命名到 {@code .foxnas-trash/<id>/data}，
+ * 与目录大小无关，是 O(1) 操作；元数据（原路径、删除时间、删除者）写在同一目录的 meta.properties 中。
+ * 还原是反向的一次重命名。超过保留期的条目由后台线程按每秒操作数限制逐步删除，不占满磁盘 IO。
+ * <p>
+ * 目录移入回收站后，其上的资源授权随即删除（避免同一路径上新建的目录继承授权），
+ * 授权记录保存在 meta.properties 中，还原时重新写入。
+ */
+@Slf4j
+@Service
+public class TrashService {
+
+    public static final String TRASH_DIR_NAME = ".foxnas-trash";
+
+    private static final String DATA_NAME = "data";
+    private static final String META_NAME = "meta.properties";
+    // 没有数据的条目（移入失败或进程中断）超过该时间才清理，避免与正在进行的移入冲突
+    private static final long INCOMPLETE_GRACE_MS = TimeUnit.HOURS.toMillis(1);
+    private static final Pattern ID_PATTERN = Pattern.compile("[0-9a-z]{1,16}-[0-9a-f]{8}");
+
+    /**
+     * 回收站条目
+     *
+     * @param size 文件大小；目录为已统计的递归大小，未统计时为 -1
+     */
+    public record TrashEntry(String id, String originalPath, String name, boolean directory,
+                             long size, long deletedAt, String deletedBy, Path location) {
+    }
+
+    @Autowired
+    private FilePermissionService filePermissionService;
+
+    @Autowired
+    private DirectorySizeService directorySizeService;
+
+    @Autowired
+    private ResourceMapper resourceMapper;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.file.trash.retention-days:30}")
+    private int retentionDays;
+
+    @Value("${app.file.trash.purge-ops-per-second:2000}")
+    private int purgeOpsPerSecond;
+
+    // 清理在单线程上执行，配合每秒操作数限制，避免与前台请求争抢磁盘
+    private final ExecutorService purger = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "trash-purger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        purger.shutdownNow();
+    }
+
+    /**
+     * 判断路径是否位于某个回收站目录内（含回收站目录本身）
+     */
+    public static boolean isInTrash(Path path) {
+        for (Path name : path) {
+            if (TRASH_DIR_NAME.equals(name.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 把条目移入所在授权根目录的回收站
+     *
+     * @param shareRoots 授权根目录，由调用方在一次批量删除中只查询一次
+     * @return 回收站条目
+     * @throws IOException 不在任何授权根目录下、本身是根目录或回收站内的路径、无法原子重命名（例如跨挂载点）时，条目保持原样
+     */
+    public TrashEntry moveToTrash(Path path, String uuid, List<Path> shareRoots) throws IOException {
+        Path normalized = path.toAbsolutePath().normalize();
+        if (isInTrash(normalized)) {
+            throw new IOException("已在回收站中");
+        }
+        if (shareRoots.contains(normalized)) {
+            throw new IOException("授权根目录本身不能移入回收站");
+        }
+        Path root = shareRoots.stream()
+                .filter(normalized::startsWith)
+                .findFirst()
+                .orElseThrow(() -> new IOException("不在任何授权目录下"));
+
+        BasicFileAttributes attrs = Files.readAttributes(normalized, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        long size = attrs.size();
+        if (attrs.isDirectory()) {
+            DirectorySizeService.DirSize dirSize = directorySizeService.get(normalized);
+            size = dirSize == null ? -1 : dirSize.bytes();
+        }
+
+        long now = System.currentTimeMillis();
+        String id = Long.toString(now, 36) + "-" + String.format("%08x", ThreadLocalRandom.current().nextInt());
+        Path location = root.resolve(TRASH_DIR_NAME).resolve(id);
+        TrashEntry entry = new TrashEntry(id, normalized.toString(), normalized.getFileName().toString(),
+                attrs.isDirectory(), size, now, uuid, location);
+        List<Resource> grants = attrs.isDirectory() ? filePermissionService.findResourcesUnder(List.of(normalized)) : List.of();
+        try {
+            Files.createDirectories(location);
+            writeMeta(entry, grants);
+            AtomicRename.moveNoReplace(normalized, location.resolve(DATA_NAME));
+            return entry;
+        } catch (IOException e) {
+            log.debug("移入回收站失败: {}, {}", normalized, e.getMessage());
+            try {
+                Files.deleteIfExists(location.resolve(META_NAME));
+                Files.deleteIfExists(location);
+            } catch (IOException ignored) {
+                // 残留的空条目会在清理时删除
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 列出所有授权根目录下的回收站条目（按删除时间倒序）
+     */
+    public List<TrashEntry> list() {
+        List<TrashEntry> entries = new ArrayList<>();
+        for (Path trashDir : trashDirs()) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(trashDir)) {
+                for (Path location : stream) {
+                    TrashEntry entry = readMeta(location);
+                    if (entry != null) {
+                        entries.add(entry);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("读取回收站失败: {}, {}", trashDir, e.getMessage());
+            }
+        }
+        entries.sort(Comparator.comparingLong(TrashEntry::deletedAt).reversed());
+        return entries;
+    }
+
+    /**
+     * 按 ID 查找条目，不存在时返回 null
+     */
+    public TrashEntry find(String id) {
+        if (id == null || !ID_PATTERN.matcher(id).matches()) {
+            return null;
+        }
+        for (Path trashDir : trashDirs()) {
+            Path location = trashDir.resolve(id);
+            if (Files.isDirectory(location, LinkOption.NOFOLLOW_LINKS)) {
+                return readMeta(location);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 还原到原路径（原路径已存在时失败，抛出 FileAlreadyExistsException），上级目录不存在时自动创建；
+     * 移入回收站时保存的资源授权一并还原
+     */
+    public void restore(TrashEntry entry) throws IOException {
+        Path target = Paths.get(entry.originalPath());
+        List<Resource> grants = readGrants(entry.location());
+        Files.createDirectories(target.getParent());
+        // 原路径可能在检查之后才出现，由重命名本身拒绝覆盖
+        AtomicRename.moveNoReplace(entry.location().resolve(DATA_NAME), target);
+        Files.deleteIfExists(entry.location().resolve(META_NAME));
+        Files.deleteIfExists(entry.location());
+        restoreGrants(grants);
+        eventPublisher.publishEvent(new FileChangeEvent(this, List.of(target.toString())));
+    }
+
+    /**
+     * 重新写入授权，已经存在的相同授权（同一用户、目录、权限类型）跳过
+     */
+    private void restoreGrants(List<Resource> grants) {
+        int restored = 0;
+        for (Resource grant : grants) {
+            boolean exists = resourceMapper.exists(new LambdaQueryWrapper<Resource>()
+                    .eq(Resource::getOwnerUuid, grant.getOwnerUuid())
+                    .eq(Resource::getFolderName, grant.getFolderName())
+                    .eq(Resource::getPermissionType, grant.getPermissionType()));
+            if (!exists) {
+                resourceMapper.insert(grant);
+                restored++;
+            }
+        }
+        if (restored > 0) {
+            filePermissionService.invalidateAll();
+            log.info("还原资源授权 {} 条", restored);
+        }
+    }
+
+    /**
+     * 在后台彻底删除条目
+     */
+    public void purge(TrashEntry entry) {
+        purger.execute(() -> purgeNow(entry.location(), new Budget()));
+    }
+
+    /**
+     * 在后台删除超过保留期的条目（以及写入一半的残留条目）
+     */
+    public void purgeExpired() {
+        purger.execute(() -> {
+            long now = System.currentTimeMillis();
+            long expireBefore = now - TimeUnit.DAYS.toMillis(Math.max(0, retentionDays));
+            Budget budget = new Budget();
+            int count = 0;
+            for (Path trashDir : trashDirs()) {
+                List<Path> expired = new ArrayList<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(trashDir)) {
+                    for (Path location : stream) {
+                        TrashEntry entry = readMeta(location);
+                        boolean incomplete = entry == null || !Files.exists(location.resolve(DATA_NAME), LinkOption.NOFOLLOW_LINKS);
+                        if (incomplete ? lastModified(location) < now - INCOMPLETE_GRACE_MS : entry.deletedAt() < expireBefore) {
+                            expired.add(location);
+                        }
+                    }
+                } catch (IOException e) {
+                    log.warn("读取回收站失败: {}, {}", trashDir, e.getMessage());
+                    continue;
+                }
+                for (Path location : expired) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                    purgeNow(location, budget);
+                    count++;
+                }
+            }
+            if (count > 0) {
+                log.info("回收站清理完成，删除过期条目 {} 个", count);
+            }
+        });
+    }
+
+    private void purgeNow(Path location, Budget budget) {
+        int[] failures = {0};
+        try {
+            Files.walkFileTree(location, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                    delete(dir);
+                    return Thread.currentThread().isInterrupted() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                }
+
+                private void delete(Path path) {
+                    budget.acquire();
+                    try {
+                        Files.deleteIfExists(path);
+                    } catch (IOException e) {
+                        failures[0]++;
+                    }
+                }
+            });
+        } catch (IOException e) {
+            log.warn("清理回收站条目失败: {}, {}", location, e.getMessage());
+            return;
+        }
+        // 失败只汇总记录一次，不逐个写入错误日志
+        if (failures[0] > 0) {
+            log.warn("清理回收站条目时有 {} 项删除失败: {}", failures[0], location);
+        }
+    }
+
+    private List<Path> trashDirs() {
+        List<Path> dirs = new ArrayList<>();
+        for (Path root : filePermissionService.getShareRoots()) {
+            Path trashDir = root.resolve(TRASH_DIR_NAME);
+            if (Files.isDirectory(trashDir, LinkOption.NOFOLLOW_LINKS)) {
+                dirs.add(trashDir);
+            }
+        }
+        return dirs;
+    }
+
+    private void writeMeta(TrashEntry entry, List<Resource> grants) throws IOException {
+        Properties meta = new Properties();
+        meta.setProperty("originalPath", entry.originalPath());
+        meta.setProperty("directory", Boolean.toString(entry.directory()));
+        meta.setProperty("size", Long.toString(entry.size()));
+        meta.setProperty("deletedAt", Long.toString(entry.deletedAt()));
+        meta.setProperty("deletedBy", entry.deletedBy() == null ? "" : entry.deletedBy());
+        int count = 0;
+        for (Resource grant : grants) {
+            if (grant.getOwnerUuid() == null || grant.getFolderName() == null || grant.getPermissionType() == null) {
+                continue;
+            }
+            meta.setProperty("grant." + count + ".ownerUuid", grant.getOwnerUuid());
+            meta.setProperty("grant." + count + ".folderName", grant.getFolderName());
+            meta.setProperty("grant." + count + ".permissionType", grant.getPermissionType());
+            count++;
+        }
+        meta.setProperty("grants", Integer.toString(count));
+        try (OutputStream out = Files.newOutputStream(entry.location().resolve(META_NAME))) {
+            meta.store(new OutputStreamWriter(out, StandardCharsets.UTF_8), null);
+        }
+    }
+
+    private TrashEntry readMeta(Path location) {
+        Path file = location.resolve(META_NAME);
+        if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+            return null;
+        }
+        Properties meta = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            meta.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String originalPath = meta.getProperty("originalPath");
+            Path original = Paths.get(originalPath);
+            return new TrashEntry(location.getFileName().toString(), originalPath,
+                    original.getFileName() == null ? originalPath : original.getFileName().toString(),
+                    Boolean.parseBoolean(meta.getProperty("directory")),
+                    Long.parseLong(meta.getProperty("size", "-1")),
+                    Long.parseLong(meta.getProperty("deletedAt", "0")),
+                    meta.getProperty("deletedBy"),
+                    location);
+        } catch (IOException | RuntimeException e) {
+            log.debug("读取回收站元数据失败: {}, {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 读取移入回收站时保存的资源授权（不含 ID，还原时重新插入）
+     */
+    private static List<Resource> readGrants(Path location) throws IOException {
+        Properties meta = new Properties();
+        try (InputStream in = Files.newInputStream(location.resolve(META_NAME))) {
+            meta.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+        List<Resource> grants = new ArrayList<>();
+        int count;
+        try {
+            count = Integer.parseInt(meta.getProperty("grants", "0"));
+        } catch (NumberFormatException e) {
+            count = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            Resource grant = new Resource();
+            grant.setOwnerUuid(meta.getProperty("grant." + i + ".ownerUuid"));
+            grant.setFolderName(meta.getProperty("grant." + i + ".folderName"));
+            grant.setPermissionType(meta.getProperty("grant." + i + ".permissionType"));
+            if (grant.getOwnerUuid() != null && grant.getFolderName() != null && grant.getPermissionType() != null) {
+                grants.add(grant);
+            }
+        }
+        return grants;
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path, LinkOption.NOFOLLOW_LINKS).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 每秒删除操作数限制（按秒划分窗口，用完后休眠到下一秒）
+     */
+    private class Budget {
+        private long windowStart = System.nanoTime();
+        private int used;
+
+        void acquire() {
+            if (purgeOpsPerSecond <= 0) {
+                return;
+            }
+            if (++used <= purgeOpsPerSecond) {
+                return;
+            }
+            long elapsed = System.nanoTime() - windowStart;
+            long remaining = TimeUnit.SECONDS.toNanos(1) - elapsed;
+            if (remaining > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            windowStart = System.nanoTime();
+            used = 1;
+        }
+    }
+}
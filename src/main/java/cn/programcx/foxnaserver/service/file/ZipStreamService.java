@@ -0,0 +1,410 @@
+package cn.programcx.foxnaserver.service.file;
+
+import cn.programcx.foxnaserver.dto.file.FileInfo;
+import cn.programcx.foxnaserver.util.SparseFiles;
+import cn.programcx.foxnaserver.util.ZipStreamWriter;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 目录打包下载服务
+ * <p>
+ * 条目按路径排序，归档布局只由（路径、大小、修改时间、压缩模式）决定，相同目录多次下载得到完全一致的字节流。
+ * <ul>
+ *     <li>图片、音视频、压缩包等已压缩内容使用 STORED，其余内容使用 DEFLATE；
+ *     含空洞的稀疏文件（磁盘镜像等）即使扩展名属于已压缩类别也使用 DEFLATE，连续的零压缩后几乎不占空间</li>
+ *     <li>读取稀疏文件时空洞直接补零，不读取磁盘</li>
+ *     <li>后台线程池预读后续条目：STORED 条目预先计算 CRC（按 路径|大小|修改时间 缓存在内存并持久化到 Redis），小文件预先并行压缩</li>
+ *     <li>纯 STORED 模式（compress=false）可预先计算总长度，支持 Range 断点续传</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+public class ZipStreamService {
+
+    // 这些类别的内容本身已压缩，再次 DEFLATE 只会浪费 CPU
+    private static final Set<String> STORED_CATEGORIES = Set.of("image", "video", "audio", "archive");
+
+    // 小于该大小的文件在后台线程中整体压缩，大文件在写出线程中流式压缩
+    private static final long PARALLEL_DEFLATE_MAX_SIZE = 1024 * 1024;
+
+    // 预读窗口大小（同时在后台处理的条目数）
+    private static final int LOOKAHEAD = 16;
+
+    private static final int CRC_CACHE_MAX_ENTRIES = 100_000;
+
+    private static final int DEFLATE_LEVEL = Deflater.DEFAULT_COMPRESSION;
+
+    private static final String CRC_KEY_PREFIX = "zip:crc:";
+
+    private final ExecutorService executor;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    // CRC 在 Redis 中的保留天数；断点续传时续传点之前的 STORED 条目不必重新读取，重启后同样有效
+    @Value("${app.file.zip.crc-ttl-days:30}")
+    private long crcTtlDays;
+
+    private final Map<String, Long> crcCache = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > CRC_CACHE_MAX_ENTRIES;
+        }
+    };
+
+    public ZipStreamService(@Value("${app.file.zip.threads:4}") int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "zip-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 遍历目录生成打包计划（只读取属性，不读取文件内容）
+     *
+     * @param folder   要打包的目录
+     * @param compress 是否对非媒体文件使用 DEFLATE；为 false 时整个归档为 STORED，长度可预先计算
+     */
+    public ArchivePlan plan(Path folder, boolean compress) throws IOException {
+        String rootName = folder.getFileName() == null ? "archive" : folder.getFileName().toString();
+        List<Item> items = new ArrayList<>();
+
+        Files.walkFileTree(folder, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(folder) && Files.isHidden(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                items.add(new Item(entryName(rootName, folder, dir) + "/", dir, true, 0, attrs.lastModifiedTime().toMillis(), true));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (Files.isHidden(file) || !attrs.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String name = file.getFileName().toString();
+                boolean stored = !compress
+                        || (STORED_CATEGORIES.contains(FileInfo.categoryOf(name)) && !isSparse(file, attrs.size()));
+                items.add(new Item(entryName(rootName, folder, file), file, false, attrs.size(), attrs.lastModifiedTime().toMillis(), stored));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                // 符号链接成环或无权限读取的条目直接跳过
+                if (exc instanceof FileSystemLoopException) {
+                    log.warn("打包时检测到符号链接循环，已跳过: {}", file);
+                } else {
+                    log.warn("打包时读取文件失败，已跳过: {}, {}", file, exc.getMessage());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        items.sort(Comparator.comparing(Item::getName));
+
+        long length = -1;
+        if (!compress) {
+            List<String> names = new ArrayList<>(items.size());
+            List<Long> sizes = new ArrayList<>(items.size());
+            for (Item item : items) {
+                names.add(item.getName());
+                sizes.add(item.getSize());
+            }
+            length = ZipStreamWriter.computeStoredLength(names, sizes);
+        }
+
+        return new ArchivePlan(rootName + ".zip", items, length, buildETag(items, compress));
+    }
+
+    /**
+     * 按计划写出归档
+     *
+     * @param skip  跳过的字节数（Range 起点）
+     * @param limit 最多写出的字节数
+     */
+    public void write(ArchivePlan plan, long skip, long limit, OutputStream out) throws IOException {
+        ZipStreamWriter.RangeSink sink = new ZipStreamWriter.RangeSink(out, skip, limit);
+        ZipStreamWriter writer = new ZipStreamWriter(sink);
+        List<Item> items = plan.getItems();
+        Deque<Future<Prepared>> window = new ArrayDeque<>();
+        int submitted = 0;
+
+        try {
+            for (int i = 0; i < items.size(); i++) {
+                while (submitted < items.size() && submitted < i + LOOKAHEAD) {
+                    window.addLast(prepare(items.get(submitted)));
+                    submitted++;
+                }
+                Item item = items.get(i);
+                Prepared prepared = await(window.removeFirst());
+
+                if (item.isDirectory()) {
+                    writer.putDirectory(item.getName(), item.getLastModified());
+                } else if (item.isStored()) {
+                    writer.putStored(item.getName(), item.getLastModified(), item.getSize(), prepared.crc, item.getPath());
+                } else if (prepared.compressed != null) {
+                    writer.putPrecompressed(item.getName(), item.getLastModified(), prepared.size, prepared.crc, prepared.compressed, prepared.compressedLength);
+                } else {
+                    writer.putDeflated(item.getName(), item.getLastModified(), item.getSize(), item.getPath(), DEFLATE_LEVEL);
+                }
+
+                if (sink.isDone()) {
+                    // Range 请求的区间已经写完
+                    return;
+                }
+            }
+            writer.finish();
+        } finally {
+            for (Future<Prepared> future : window) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private Future<Prepared> prepare(Item item) {
+        if (item.isDirectory()) {
+            return CompletableFuture.completedFuture(new Prepared(0, 0, null, 0));
+        }
+        if (item.isStored()) {
+            return executor.submit(() -> new Prepared(crcOf(item), item.getSize(), null, 0));
+        }
+        if (item.getSize() <= PARALLEL_DEFLATE_MAX_SIZE) {
+            return executor.submit(() -> deflate(item));
+        }
+        // 大文件在写出线程中边读边压缩
+        return CompletableFuture.completedFuture(new Prepared(0, item.getSize(), null, 0));
+    }
+
+    private Prepared await(Future<Prepared> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("打包被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private long crcOf(Item item) throws IOException {
+        String key = item.getPath() + "|" + item.getSize() + "|" + item.getLastModified();
+        synchronized (crcCache) {
+            Long cached = crcCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Long persisted = loadCrc(key);
+        if (persisted != null) {
+            synchronized (crcCache) {
+                crcCache.put(key, persisted);
+            }
+            return persisted;
+        }
+
+        CRC32 crc32 = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long total = 0;
+        try (FileChannel channel = FileChannel.open(item.getPath(), StandardOpenOption.READ)) {
+            SparseFiles.Reader reader = SparseFiles.reader(item.getPath(), channel);
+            int read;
+            while (total < item.getSize()) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), item.getSize() - total));
+                if ((read = reader.read(buffer, total)) == -1) {
+                    break;
+                }
+                crc32.update(buffer.array(), 0, read);
+                total += read;
+            }
+        }
+        if (total != item.getSize()) {
+            throw new IOException("文件在打包过程中被修改: " + item.getPath());
+        }
+
+        long crc = crc32.getValue();
+        synchronized (crcCache) {
+            crcCache.put(key, crc);
+        }
+        saveCrc(key, crc);
+        return crc;
+    }
+
+    private Long loadCrc(String key) {
+        try {
+            String value = stringRedisTemplate.opsForValue().get(CRC_KEY_PREFIX + key);
+            return value == null ? null : Long.parseLong(value);
+        } catch (Exception e) {
+            // Redis 不可用时只是需要重新读取文件
+            log.debug("读取 CRC 缓存失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveCrc(String key, long crc) {
+        try {
+            stringRedisTemplate.opsForValue().set(CRC_KEY_PREFIX + key, Long.toString(crc), crcTtlDays, TimeUnit.DAYS);
+        } catch (Exception e) {
+            log.debug("写入 CRC 缓存失败: {}", e.getMessage());
+        }
+    }
+
+    private Prepared deflate(Item item) throws IOException {
+        byte[] data = Files.readAllBytes(item.getPath());
+        CRC32 crc32 = new CRC32();
+        crc32.update(data);
+
+        Deflater deflater = new Deflater(DEFLATE_LEVEL, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            // deflate 最坏情况下会略微膨胀
+            byte[] output = new byte[data.length + data.length / 1000 + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                length += deflater.deflate(output, length, output.length - length);
+            }
+            return new Prepared(crc32.getValue(), data.length, output, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 空洞占一半以上才值得改用 DEFLATE（小文件不探测）
+     */
+    private static boolean isSparse(Path file, long size) {
+        List<SparseFiles.Extent> extents = SparseFiles.dataExtents(file, size);
+        return extents != null && SparseFiles.dataLength(extents) < size / 2;
+    }
+
+    private static String entryName(String rootName, Path root, Path path) {
+        String relative = root.relativize(path).toString().replace('\\', '/');
+        return relative.isEmpty() ? rootName : rootName + "/" + relative;
+    }
+
+    private static String buildETag(List<Item> items, boolean compress) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((compress ? "deflate:" + DEFLATE_LEVEL : "stored").getBytes(StandardCharsets.UTF_8));
+            for (Item item : items) {
+                digest.update((item.getName() + "|" + item.getSize() + "|" + item.getLastModified() + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Prepared {
+        final long crc;
+        final long size;
+        final byte[] compressed;
+        final int compressedLength;
+
+        Prepared(long crc, long size, byte[] compressed, int compressedLength) {
+            this.crc = crc;
+            this.size = size;
+            this.compressed = compressed;
+            this.compressedLength = compressedLength;
+        }
+    }
+
+    @Getter
+    public static class Item {
+        private final String name;
+        private final Path path;
+        private final boolean directory;
+        private final long size;
+        private final long lastModified;
+        private final boolean stored;
+
+        Item(String name, Path path, boolean directory, long size, long lastModified, boolean stored) {
+            this.name = name;
+            this.path = path;
+            this.directory = directory;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.stored = stored;
+        }
+    }
+
+    @Getter
+    public static class ArchivePlan {
+        private final String fileName;
+        private final List<Item> items;
+        // 归档总长度，-1 表示未知（包含 DEFLATE 条目）
+        private final long length;
+        private final String etag;
+
+        ArchivePlan(String fileName, List<Item> items, long length, String etag) {
+            this.fileName = fileName;
+            this.items = items;
+            this.length = length;
+            this.etag = etag;
+        }
+
+        public boolean isLengthKnown() {
+            return length >= 0;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package cn.programcx.foxnaserver.service.io;
+
+import cn.programcx.foxnaserver.util.JwtUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * 文件传输带宽调度（令牌桶）
+ * <p>
+ * 所有读写传输路径（下载、打包下载、媒体流、上传、复制任务）按字节向这里申请令牌：
+ * <ul>
+ *     <li>全局读 / 写各一个桶，每个用户（未登录的媒体流按客户端 IP）再各一个桶，配置为 0 表示不限制</li>
+ *     <li>采用"先扣后等"的方式：在锁内扣除令牌，欠账部分在锁外睡眠偿还，单次调用只睡一次</li>
+ *     <li>交互类流量（媒体播放）只受用户桶限制，不在全局桶上等待，但会把全局桶扣成欠账，由批量流量偿还；
+ *         最近有交互流量时，批量流量额外被限制在全局速率的 bulk-share 比例之内</li>
+ * </ul>
+ * 每个用户最近几秒的吞吐量通过 {@link #stats()} 暴露给监控接口。
+ */
+@Slf4j
+@Service
+public class IoBandwidthScheduler {
+
+    public enum Direction {
+        READ, WRITE
+    }
+
+    public enum IoClass {
+        /** 媒体播放等对延迟敏感的流量 */
+        INTERACTIVE,
+        /** 下载、打包下载、上传、复制任务 */
+        BULK
+    }
+
+    // 交互流量结束后，批量流量保持让路的时间
+    private static final long INTERACTIVE_HOLD_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    // 用户空闲超过该时间后移除其状态
+    private static final long USER_IDLE_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    // 流包装器单次申请的最大字节数，让大块写出也能平滑限速
+    private static final int STREAM_SLICE = 64 * 1024;
+
+    private final long[] globalLimits = new long[2];
+    private final long[] userLimits = new long[2];
+    private final double bulkShare;
+
+    private final Bucket[] globalBuckets = new Bucket[2];
+    private final Bucket[] bulkBuckets = new Bucket[2];
+    private final Meter[] globalMeters = {new Meter(), new Meter()};
+    private final long[] lastInteractiveNanos = new long[2];
+
+    private final Map<String, UserState> users = new ConcurrentHashMap<>();
+    private volatile long lastEvictNanos = System.nanoTime();
+
+    public IoBandwidthScheduler(@Value("${app.io.global-read-bytes-per-sec:0}") long globalRead,
+                                @Value("${app.io.global-write-bytes-per-sec:0}") long globalWrite,
+                                @Value("${app.io.user-read-bytes-per-sec:0}") long userRead,
+                                @Value("${app.io.user-write-bytes-per-sec:0}") long userWrite,
+                                @Value("${app.io.bulk-share:0.7}") double bulkShare) {
+        globalLimits[Direction.READ.ordinal()] = Math.max(0, globalRead);
+        globalLimits[Direction.WRITE.ordinal()] = Math.max(0, globalWrite);
+        userLimits[Direction.READ.ordinal()] = Math.max(0, userRead);
+        userLimits[Direction.WRITE.ordinal()] = Math.max(0, userWrite);
+        this.bulkShare = Math.min(1.0, Math.max(0.05, bulkShare));
+
+        for (Direction dir : Direction.values()) {
+            long limit = globalLimits[dir.ordinal()];
+            if (limit > 0) {
+                globalBuckets[dir.ordinal()] = new Bucket(limit);
+                bulkBuckets[dir.ordinal()] = new Bucket((long) Math.max(1, limit * this.bulkShare));
+            }
+            lastInteractiveNanos[dir.ordinal()] = System.nanoTime() - INTERACTIVE_HOLD_NANOS;
+        }
+        log.info("IO 带宽调度：全局读 {} B/s，全局写 {} B/s，用户读 {} B/s，用户写 {} B/s（0 表示不限制），批量流量占比 {}",
+                globalRead, globalWrite, userRead, userWrite, this.bulkShare);
+    }
+
+    /**
+     * 当前请求的限速键：已登录用户按 uuid，否则（媒体 token 访问）按客户端 IP
+     */
+    public static String keyOf(HttpServletRequest request) {
+        String uuid = JwtUtil.getCurrentUuid();
+        if (uuid != null) {
+            return uuid;
+        }
+        return "ip:" + (request == null ? "unknown" : request.getRemoteAddr());
+    }
+
+    /**
+     * 该方向是否配置了任何限速；未限速时零拷贝等绕过用户态的路径可以继续使用
+     */
+    public boolean isLimited(Direction dir) {
+        return globalLimits[dir.ordinal()] > 0 || userLimits[dir.ordinal()] > 0;
+    }
+
+    /**
+     * 只计入吞吐统计，不限速（用于 sendfile 等无法逐块拦截的传输）
+     */
+    public void record(String key, Direction dir, long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        globalMeters[dir.ordinal()].add(bytes);
+        user(key).meters[dir.ordinal()].add(bytes);
+    }
+
+    /**
+     * 申请传输 bytes 字节，必要时阻塞到令牌足够
+     *
+     * @throws InterruptedIOException 等待期间线程被中断（如客户端断开、任务取消）
+     */
+    public void acquire(String key, Direction dir, IoClass cls, long bytes) throws InterruptedIOException {
+        if (bytes <= 0) {
+            return;
+        }
+        int d = dir.ordinal();
+        long now = System.nanoTime();
+        UserState user = user(key);
+        user.lastActiveNanos = now;
+        user.meters[d].add(bytes);
+        globalMeters[d].add(bytes);
+
+        long waitNanos = 0;
+        if (user.buckets[d] != null) {
+            waitNanos = user.buckets[d].take(bytes, now, true);
+        }
+
+        Bucket global = globalBuckets[d];
+        if (global != null) {
+            if (cls == IoClass.INTERACTIVE) {
+                lastInteractiveNanos[d] = now;
+                global.take(bytes, now, false);
+            } else {
+                waitNanos = Math.max(waitNanos, global.take(bytes, now, true));
+                if (now - lastInteractiveNanos[d] < INTERACTIVE_HOLD_NANOS) {
+                    waitNanos = Math.max(waitNanos, bulkBuckets[d].take(bytes, now, true));
+                } else {
+                    bulkBuckets[d].take(bytes, now, false);
+                }
+            }
+        }
+
+        if (now - lastEvictNanos > USER_IDLE_NANOS) {
+            evictIdle(now);
+        }
+        if (waitNanos > 0) {
+            sleep(waitNanos);
+        }
+    }
+
+    /**
+     * 为复制任务等无法抛出受检异常的回调生成限速器；等待被中断时恢复中断标记并抛出 CancellationException
+     */
+    public LongConsumer limiter(String key, Direction dir, IoClass cls) {
+        return bytes -> {
+            try {
+                acquire(key, dir, cls, bytes);
+            } catch (InterruptedIOException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("传输已中断");
+            }
+        };
+    }
+
+    /**
+     * 包装输出流：写出前按读方向申请令牌（下载、媒体流）
+     */
+    public OutputStream throttle(OutputStream out, String key, IoClass cls) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                acquire(key, Direction.READ, cls, 1);
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                while (len > 0) {
+                    int n = Math.min(len, STREAM_SLICE);
+                    acquire(key, Direction.READ, cls, n);
+                    out.write(b, off, n);
+                    off += n;
+                    len -= n;
+                }
+            }
+        };
+    }
+
+    /**
+     * 包装输入流：读到数据后按写方向申请令牌（上传）
+     */
+    public InputStream throttle(InputStream in, String key, IoClass cls) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = in.read();
+                if (b >= 0) {
+                    acquire(key, Direction.WRITE, cls, 1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = in.read(b, off, Math.min(len, STREAM_SLICE));
+                if (n > 0) {
+                    acquire(key, Direction.WRITE, cls, n);
+                }
+                return n;
+            }
+        };
+    }
+
+    /**
+     * 当前吞吐量与限速配置，速率为最近几秒的平均值（字节/秒）
+     *
+     * @param allUsers 是否返回所有用户的统计
+     * @param key      allUsers 为 false 时只返回该用户（键）的统计
+     */
+    public Map<String, Object> stats(boolean allUsers, String key) {
+        long now = System.nanoTime();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("readBytesPerSec", globalMeters[Direction.READ.ordinal()].rate());
+        result.put("writeBytesPerSec", globalMeters[Direction.WRITE.ordinal()].rate());
+        result.put("readBytesTotal", globalMeters[Direction.READ.ordinal()].total());
+        result.put("writeBytesTotal", globalMeters[Direction.WRITE.ordinal()].total());
+        result.put("globalReadLimit", globalLimits[Direction.READ.ordinal()]);
+        result.put("globalWriteLimit", globalLimits[Direction.WRITE.ordinal()]);
+        result.put("userReadLimit", userLimits[Direction.READ.ordinal()]);
+        result.put("userWriteLimit", userLimits[Direction.WRITE.ordinal()]);
+        result.put("bulkShare", bulkShare);
+        result.put("interactiveActive", now - lastInteractiveNanos[Direction.READ.ordinal()] < INTERACTIVE_HOLD_NANOS);
+
+        List<Map<String, Object>> userStats = new ArrayList<>();
+        users.forEach((userKey, state) -> {
+            if (!allUsers && !userKey.equals(key)) {
+                return;
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("key", userKey);
+            item.put("readBytesPerSec", state.meters[Direction.READ.ordinal()].rate());
+            item.put("writeBytesPerSec", state.meters[Direction.WRITE.ordinal()].rate());
+            item.put("readBytesTotal", state.meters[Direction.READ.ordinal()].total());
+            item.put("writeBytesTotal", state.meters[Direction.WRITE.ordinal()].total());
+            userStats.add(item);
+        });
+        userStats.sort((a, b) -> Long.compare(
+                (long) b.get("readBytesPerSec") + (long) b.get("writeBytesPerSec"),
+                (long) a.get("readBytesPerSec") + (long) a.get("writeBytesPerSec")));
+        result.put("users", userStats);
+        return result;
+    }
+
+    private UserState user(String key) {
+        return users.computeIfAbsent(key == null ? "unknown" : key, k -> new UserState());
+    }
+
+    private void evictIdle(long now) {
+        lastEvictNanos = now;
+        users.values().removeIf(state -> now - state.lastActiveNanos > USER_IDLE_NANOS);
+    }
+
+    private static void sleep(long nanos) throws InterruptedIOException {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待传输带宽时被中断");
+        }
+    }
+
+    private class UserState {
+        final Bucket[] buckets = new Bucket[2];
+        final Meter[] meters = {new Meter(), new Meter()};
+        volatile long lastActiveNanos = System.nanoTime();
+
+        UserState() {
+            for (Direction dir : Direction.values()) {
+                long limit = userLimits[dir.ordinal()];
+                if (limit > 0) {
+                    buckets[dir.ordinal()] = new Bucket(limit);
+                }
+            }
+        }
+    }
+
+    /**
+     * 令牌桶：容量为 1/4 秒的流量（至少 256KB），允许欠账；不等待的扣除最多累积 2 秒欠账
+     */
+    private static final class Bucket {
+        private final double rate;
+        private final double capacity;
+        private final double maxDebt;
+        private double tokens;
+        private long lastNanos;
+
+        Bucket(long bytesPerSec) {
+            this.rate = bytesPerSec / 1e9;
+            this.capacity = Math.max(bytesPerSec / 4.0, 256 * 1024);
+            this.maxDebt = bytesPerSec * 2.0;
+            this.tokens = capacity;
+            this.lastNanos = System.nanoTime();
+        }
+
+        /**
+         * 扣除令牌并返回需要等待的纳秒数
+         *
+         * @param wait false 时只扣除（交互流量或仅记账），不返回等待时间
+         */
+        synchronized long take(long bytes, long now, boolean wait) {
+            if (now > lastNanos) {
+                tokens = Math.min(capacity, tokens + (now - lastNanos) * rate);
+                lastNanos = now;
+            }
+            if (!wait) {
+                // 不等待的一方最多把桶扣到 maxDebt，避免批量流量在交互流量结束后长时间停顿
+                tokens = tokens - bytes < -maxDebt ? Math.min(tokens, -maxDebt) : tokens - bytes;
+                return 0;
+            }
+            tokens -= bytes;
+            if (tokens >= 0) {
+                return 0;
+            }
+            return (long) (-tokens / rate);
+        }
+    }
+
+    /**
+     * 按秒分槽的吞吐计数，速率取最近 5 个完整秒的平均值
+     */
+    private static final class Meter {
+        private static final int SLOTS = 6;
+        private final long[] bytes = new long[SLOTS];
+        private final long[] seconds = new long[SLOTS];
+        private long total;
+
+        synchronized void add(long n) {
+            long second = System.nanoTime() / 1_000_000_000L;
+            int slot = (int) (second % SLOTS);
+            if (seconds[slot] != second) {
+                seconds[slot] = second;
+                bytes[slot] = 0;
+            }
+            bytes[slot] += n;
+            total += n;
+        }
+
+        synchronized long rate() {
+            long current = System.nanoTime() / 1_000_000_000L;
+            long sum = 0;
+            for (int i = 0; i < SLOTS; i++) {
+                long age = current - seconds[i];
+                if (age >= 1 && age < SLOTS) {
+                    sum += bytes[i];
+                }
+            }
+            return sum / (SLOTS - 1);
+        }
+
+        synchronized long total() {
+            return total;
+        }
+    }
+}
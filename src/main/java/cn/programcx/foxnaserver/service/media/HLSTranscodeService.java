@@ -2,16 +2,19 @@ package cn.programcx.foxnaserver.service.media;
 
 import cn.programcx.foxnaserver.dto.media.FFmpegProcessManager;
 import cn.programcx.foxnaserver.dto.media.JobStatus;
+import cn.programcx.foxnaserver.dto.media.RenditionStatus;
 import cn.programcx.foxnaserver.dto.media.SubtitleTranscodeTask;
 import cn.programcx.foxnaserver.dto.media.TranscodeTask;
 import cn.programcx.foxnaserver.mapper.TranscodeJobMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.channels.FileChannel;
@@ -22,8 +25,12 @@ import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Stream;
 
 @Service
@@ -33,26 +40,46 @@ public class HLSTranscodeService {
 
     private final FFmpegProcessManager processManager;
 
-    private final String tempDir =System.getProperty("user.dir") +
-            File.separator + "temp" +
-            File.separator + "foxnas" +
-            File.separator + "transcode";
+    // 输出目录，工作节点上为服务节点缓存目录的共享卷挂载点或待上传的本地目录
+    private final TranscodeNodeService transcodeNodeService;
 
     private final RedisTemplate<String, Object> redisTemplate;
     private final TranscodeJobMapper transcodeJobMapper;
 
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 自适应码率档位：高度:视频码率(kbps)，按需裁掉高于源分辨率的档位
+    @Value("${app.media.abr.ladder:1080:5000,720:2800,480:1200}")
+    private String abrLadder;
+
+    // 重新编码档位使用的 x264 预设
+    @Value("${app.media.abr.preset:veryfast}")
+    private String abrPreset;
+
+    // ABR 模式下档位进度写回数据库的最小间隔（毫秒）
+    private static final long RENDITION_PERSIST_INTERVAL_MS = 5000;
+
+    // 分片时长（秒），同时用作重新编码档位的关键帧间隔，保证各档位分片边界对齐
+    private static final int HLS_TIME = 3;
+
+    // 判断源关键帧是否与分片边界对齐时探测的时长（秒）与允许的误差（秒）
+    private static final int KEYFRAME_PROBE_SECONDS = 120;
+    private static final double KEYFRAME_TOLERANCE_SECONDS = 0.05;
+
+    // 单次转码：视频复制、音频重新编码与字幕提取在同一个 FFmpeg 进程中完成，失败时回退为分阶段转码
+    @Value("${app.media.transcode.fused:true}")
+    private boolean fusedPipeline;
+
     /**
      * 主方法：阻塞式转码流程
      * 1. 创建独立工作目录（UUID防并发冲突）
-     * 2. 提取音频（原子写入）
-     * 3. 提取字幕（可选）
-     * 4. 封装DASH
-     * 5. 清理临时文件（无论成功与否）
+     * 2. 单次转码：一个 FFmpeg 进程同时输出 HLS（含重新编码的音轨）与字幕，只读一遍源文件
+     * 3. 单次转码失败时回退为分阶段转码：提取音频（原子写入）→ 提取字幕（可选）→ 封装HLS
      */
     public void transcode(TranscodeTask transcodeTask, int secondsTimeout) throws Exception {
         // 使用UUID作为工作目录名
         String workId = transcodeTask.getJobId();
-        Path outputPath = Path.of(tempDir, workId);
+        Path outputPath = transcodeNodeService.getOutputDir().resolve(workId);
 
         long totalMills = getVideoDurationMillis(transcodeTask.getVideoPath());
         log.info("[HLSTranscodeService]Total mills to transcode to: {}", totalMills);
@@ -61,6 +88,27 @@ public class HLSTranscodeService {
             Files.createDirectories(outputPath);
             log.info("开始转码任务 [{}]，工作目录：{}", transcodeTask.getJobId(), outputPath);
 
+            if (fusedPipeline) {
+                try {
+                    if (transcodeTask.isAbr()) {
+                        createAbrHLS(transcodeTask, secondsTimeout, null, outputPath, totalMills, true);
+                    } else {
+                        createHLS(transcodeTask, secondsTimeout, null, outputPath, totalMills, true);
+                    }
+                    log.info("单次转码完成，输出目录：{}", outputPath);
+                    return;
+                } catch (TimeoutException e) {
+                    throw e;
+                } catch (Exception e) {
+                    if (Thread.currentThread().isInterrupted() || isCancelled(transcodeTask.getJobId())) {
+                        throw e;
+                    }
+                    // 例如图形字幕无法转为 WebVTT、个别封装格式的音轨映射失败等，分阶段转码可以逐项容错
+                    log.warn("转码任务 [{}] 单次转码失败，回退为分阶段转码：{}", transcodeTask.getJobId(), e.getMessage());
+                    clearDirectory(outputPath);
+                }
+            }
+
             Path audio = null;
             // 如果存在音轨，先提取（阻塞式，确保完成）
             if (transcodeTask.getAudioTrackIndex() >= 0) {
@@ -75,8 +123,13 @@ public class HLSTranscodeService {
                 log.info("字幕提取完成：{}", subtitle);
             }
 
-            createHLS(transcodeTask, secondsTimeout, audio, outputPath, totalMills);
-            log.info("DASH封装完成，输出目录：{}", outputPath);
+            if (transcodeTask.isAbr()) {
+                createAbrHLS(transcodeTask, secondsTimeout, audio, outputPath, totalMills, false);
+                log.info("自适应码率 HLS 生成完成，输出目录：{}", outputPath);
+            } else {
+                createHLS(transcodeTask, secondsTimeout, audio, outputPath, totalMills, false);
+                log.info("DASH封装完成，输出目录：{}", outputPath);
+            }
 
         } catch (Exception e) {
             log.error("转码任务 [{}] 失败：{}", transcodeTask.getJobId(), e.getMessage());
@@ -92,7 +145,7 @@ public class HLSTranscodeService {
      */
     public Path extractSubtitle(TranscodeTask transcodeTask) {
         String workId = transcodeTask.getJobId();
-        Path output = Path.of(tempDir, workId);
+        Path output = transcodeNodeService.getOutputDir().resolve(workId);
 
         String fileName = String.format("subtitle_%d.vtt", transcodeTask.getSubtitleTrackIndex());
         Path outFile = output.resolve(fileName);
@@ -104,7 +157,7 @@ public class HLSTranscodeService {
                 outFile.toString()
         );
         try {
-            processManager.execute(cmd, workId, 10 * 60, 0, null);
+            processManager.execute(cmd, workId, 10 * 60, 0, transcodeTask.isImmediate(), null);
         }catch (Exception e){
             log.error("字幕提取任务 [{}] 失败：{}", workId, e.getMessage());
             return null;
@@ -134,7 +187,8 @@ public class HLSTranscodeService {
         );
 
 
-        processManager.execute(cmd, task.getJobId(), 10 * 60, 0, null);
+        // 字幕随播放时切换，优先于后台转码
+        processManager.execute(cmd, task.getJobId(), 10 * 60, 0, true, null);
 
         // 验证文件是否存在
         if (!Files.exists(outFile)) {
@@ -178,7 +232,7 @@ public class HLSTranscodeService {
                     tmpFile.toString()
             );
 
-            processManager.execute(cmd, transcodeTask.getJobId(), secondsTimeout, totalMills, (total, current, progress) -> {
+            processManager.execute(cmd, transcodeTask.getJobId(), secondsTimeout, totalMills, transcodeTask.isImmediate(), (total, current, progress) -> {
                 status.setProgress(progress);
                 redisTemplate.opsForValue().set("job:" + transcodeTask.getJobId(), status);
                 log.info("音频提取进度：{}/{}（{}%）", current, total, progress);
@@ -204,8 +258,12 @@ public class HLSTranscodeService {
         }
     }
 
+    /**
+     * 封装 HLS：视频复制；audioPath 为空时在同一进程中把所选音轨重新编码为 AAC，
+     * withSubtitle 为 true 时同时输出所选字幕轨的 WebVTT 文件
+     */
     private void createHLS(TranscodeTask transcodeTask, int secondsTimeout,
-                           Path audioPath, Path output, long totalMills) throws Exception {
+                           Path audioPath, Path output, long totalMills, boolean withSubtitle) throws Exception {
         String m3u8Output = output.resolve("playlist.m3u8").toString();
 
         JobStatus statusTmp = (JobStatus) redisTemplate.opsForValue().get("job:" + transcodeTask.getJobId());
@@ -243,12 +301,14 @@ public class HLSTranscodeService {
             status.setCurrentStage(2);
             transcodeJobMapper.updateProgress(transcodeTask.getJobId(), 0.0, 2);
         } else {
-            cmd.addAll(Arrays.asList(
-                    "-map", "0:a:" + transcodeTask.getAudioTrackIndex(),
-                    "-c:a", "aac",
-                    "-b:a", "192k",
-                    "-ac", "2"        // 强制立体声
-            ));
+            if (transcodeTask.getAudioTrackIndex() >= 0) {
+                cmd.addAll(Arrays.asList(
+                        "-map", "0:a:" + transcodeTask.getAudioTrackIndex(),
+                        "-c:a", "aac",
+                        "-b:a", "192k",
+                        "-ac", "2"        // 强制立体声
+                ));
+            }
             status.setStages(1);
             status.setCurrentStage(1);
             transcodeJobMapper.updateProgress(transcodeTask.getJobId(), 0.0, 1);
@@ -265,8 +325,11 @@ public class HLSTranscodeService {
                 "-progress", "pipe:1",
                 m3u8Output
         ));
+        if (withSubtitle) {
+            appendSubtitleOutput(cmd, transcodeTask, output);
+        }
 
-        processManager.execute(cmd, transcodeTask.getJobId(), secondsTimeout, totalMills, (total, current, progress) -> {
+        processManager.execute(cmd, transcodeTask.getJobId(), secondsTimeout, totalMills, transcodeTask.isImmediate(), (total, current, progress) -> {
             status.setProgress(progress);
             redisTemplate.opsForValue().set("job:" + transcodeTask.getJobId(), status);
             log.info("HLS 转码进度：{}/{}（{}%）", current, total, progress);
@@ -274,6 +337,371 @@ public class HLSTranscodeService {
     }
 
 
+    /**
+     * 自适应码率 HLS：一次解码，用 filter_complex split 得到多个缩放后的画面分别编码为 H.264，
+     * 通过 var_stream_map 输出多个清晰度的子播放列表（stream_{name}.m3u8）和主播放列表 playlist.m3u8。
+     * 源视频是浏览器可直接解码的 8bit H.264 且关键帧与分片边界对齐时，最高档直接复制源视频流，只为更低的档位编码。
+     */
+    private void createAbrHLS(TranscodeTask transcodeTask, int secondsTimeout,
+                              Path audioPath, Path output, long totalMills, boolean withSubtitle) throws Exception {
+        VideoProbe probe = probeVideo(transcodeTask.getVideoPath());
+        // 复制的档位保留源视频的 GOP，只有源关键帧恰好落在每个分片边界上时各档位分片才能对齐
+        boolean copyTop = "h264".equals(probe.codec()) && "yuv420p".equals(probe.pixFmt());
+        if (copyTop && !keyframesAligned(probeKeyframeTimes(transcodeTask.getVideoPath()), HLS_TIME)) {
+            log.info("转码任务 [{}] 源视频关键帧间隔与分片时长 {}s 不对齐，最高档改为重新编码", transcodeTask.getJobId(), HLS_TIME);
+            copyTop = false;
+        }
+        List<RenditionStatus> renditions = planRenditions(probe, copyTop);
+        log.info("转码任务 [{}] 源视频 {} {}x{} {}，ABR 档位：{}", transcodeTask.getJobId(), probe.codec(),
+                probe.width(), probe.height(), probe.pixFmt(),
+                renditions.stream().map(RenditionStatus::getName).toList());
+
+        JobStatus statusTmp = (JobStatus) redisTemplate.opsForValue().get("job:" + transcodeTask.getJobId());
+        if (statusTmp == null) {
+            statusTmp = new JobStatus();
+            statusTmp.setState(JobStatus.State.PROCESSING);
+        }
+        final JobStatus status = statusTmp;
+        int stages = audioPath != null ? 2 : 1;
+        boolean hasAudio = audioPath != null || transcodeTask.getAudioTrackIndex() >= 0;
+        status.setStages(stages);
+        status.setCurrentStage(stages);
+        status.setRenditions(renditions);
+        redisTemplate.opsForValue().set("job:" + transcodeTask.getJobId(), status);
+        transcodeJobMapper.updateProgress(transcodeTask.getJobId(), 0.0, stages);
+        persistRenditions(transcodeTask.getJobId(), renditions);
+
+        List<String> cmd = new ArrayList<>(Arrays.asList("ffmpeg", "-hide_banner", "-y",
+                "-i", transcodeTask.getVideoPath()));
+        if (audioPath != null) {
+            cmd.addAll(Arrays.asList("-i", audioPath.toString()));
+        }
+
+        // 需要重新编码的档位共用一次解码：split 出多路画面后分别缩放
+        List<RenditionStatus> encoded = renditions.stream().filter(rendition -> !rendition.isCopy()).toList();
+        if (!encoded.isEmpty()) {
+            StringBuilder filter = new StringBuilder("[0:v:0]");
+            if (encoded.size() > 1) {
+                filter.append("split=").append(encoded.size());
+                for (int i = 0; i < encoded.size(); i++) {
+                    filter.append("[s").append(i).append(']');
+                }
+                for (int i = 0; i < encoded.size(); i++) {
+                    filter.append(";[s").append(i).append(']');
+                    appendScale(filter, encoded.get(i), i);
+                }
+            } else {
+                appendScale(filter, encoded.get(0), 0);
+            }
+            cmd.addAll(Arrays.asList("-filter_complex", filter.toString()));
+        }
+
+        // 输出流顺序与 renditions 一致：复制档位（若有）在前，其后是各编码档位；每个档位各带一路音频
+        String audioMap = audioPath != null ? "1:a:0" : "0:a:" + transcodeTask.getAudioTrackIndex();
+        int encodedIndex = 0;
+        for (RenditionStatus rendition : renditions) {
+            cmd.addAll(Arrays.asList("-map", rendition.isCopy() ? "0:v:0" : "[v" + encodedIndex++ + "]"));
+            if (hasAudio) {
+                cmd.addAll(Arrays.asList("-map", audioMap));
+            }
+        }
+
+        StringBuilder streamMap = new StringBuilder();
+        for (int i = 0; i < renditions.size(); i++) {
+            RenditionStatus rendition = renditions.get(i);
+            String v = ":v:" + i;
+            if (rendition.isCopy()) {
+                cmd.addAll(Arrays.asList("-c" + v, "copy"));
+            } else {
+                int kbps = rendition.getBitrateKbps();
+                cmd.addAll(Arrays.asList(
+                        "-c" + v, "libx264",
+                        "-preset" + v, abrPreset,
+                        "-profile" + v, "high",
+                        "-b" + v, kbps + "k",
+                        "-maxrate" + v, (kbps * 107 / 100) + "k",
+                        "-bufsize" + v, (kbps * 3 / 2) + "k",
+                        "-sc_threshold" + v, "0",
+                        "-force_key_frames" + v, "expr:gte(t,n_forced*" + HLS_TIME + ")"
+                ));
+            }
+            if (streamMap.length() > 0) {
+                streamMap.append(' ');
+            }
+            streamMap.append("v:").append(i);
+            if (hasAudio) {
+                streamMap.append(",a:").append(i);
+            }
+            streamMap.append(",name:").append(rendition.getName());
+        }
+        if (audioPath != null) {
+            cmd.addAll(Arrays.asList("-c:a", "copy"));
+        } else if (hasAudio) {
+            // 与普通模式一致：源音轨转为 AAC 立体声
+            cmd.addAll(Arrays.asList("-c:a", "aac", "-b:a", "192k", "-ac", "2"));
+        }
+
+        cmd.addAll(Arrays.asList(
+                "-f", "hls",
+                "-hls_time", String.valueOf(HLS_TIME),
+                "-hls_playlist_type", "event", // 边转码边播放
+                "-hls_flags", "independent_segments",
+                "-hls_segment_filename", output.resolve("stream_%v-%05d.ts").toString(),
+                "-master_pl_name", "playlist.m3u8",
+                "-var_stream_map", streamMap.toString(),
+                "-progress", "pipe:1",
+                output.resolve("stream_%v.m3u8").toString()
+        ));
+        if (withSubtitle) {
+            appendSubtitleOutput(cmd, transcodeTask, output);
+        }
+
+        long[] lastPersist = {0};
+        processManager.execute(cmd, transcodeTask.getJobId(), secondsTimeout, totalMills, transcodeTask.isImmediate(), (total, current, progress) -> {
+            for (RenditionStatus rendition : renditions) {
+                rendition.setProgress(progress >= 100 ? 100 : renditionProgress(output, rendition, totalMills));
+            }
+            status.setProgress(progress);
+            redisTemplate.opsForValue().set("job:" + transcodeTask.getJobId(), status);
+
+            long now = System.currentTimeMillis();
+            if (progress >= 100 || now - lastPersist[0] >= RENDITION_PERSIST_INTERVAL_MS) {
+                lastPersist[0] = now;
+                persistRenditions(transcodeTask.getJobId(), renditions);
+            }
+            log.info("ABR HLS 转码进度：{}/{}（{}%）", current, total, progress);
+        });
+    }
+
+    /**
+     * 在同一命令中追加第二个输出：所选字幕轨转为 WebVTT，文件名与 {@link #extractSubtitle} 一致
+     */
+    private static void appendSubtitleOutput(List<String> cmd, TranscodeTask transcodeTask, Path output) {
+        if (transcodeTask.getSubtitleTrackIndex() < 0) {
+            return;
+        }
+        cmd.addAll(Arrays.asList(
+                "-map", "0:s:" + transcodeTask.getSubtitleTrackIndex(),
+                "-c:s", "webvtt",
+                "-f", "webvtt",
+                output.resolve(String.format("subtitle_%d.vtt", transcodeTask.getSubtitleTrackIndex())).toString()
+        ));
+    }
+
+    private boolean isCancelled(String jobId) {
+        JobStatus status = (JobStatus) redisTemplate.opsForValue().get("job:" + jobId);
+        return status != null && status.getState() == JobStatus.State.CANCELLED;
+    }
+
+    /**
+     * 删除目录下的全部文件，保留目录本身（回退前清除单次转码留下的分片）
+     */
+    private void clearDirectory(Path dir) {
+        try (Stream<Path> children = Files.list(dir)) {
+            children.forEach(this::cleanupDirectory);
+        } catch (IOException e) {
+            log.warn("清理目录失败 {}：{}", dir, e.getMessage());
+        }
+    }
+
+    private static void appendScale(StringBuilder filter, RenditionStatus rendition, int index) {
+        // 宽度按比例取偶数；统一转为 8bit 4:2:0，10bit HEVC 源也能输出浏览器可播放的 H.264
+        filter.append("scale=-2:").append(rendition.getHeight())
+                .append(",format=yuv420p[v").append(index).append(']');
+    }
+
+    /**
+     * 按源视频生成档位：copyTop 时最高档直接复制源视频，其余档位只保留低于源高度的；
+     * 源分辨率低于所有档位时按源高度编码一档
+     */
+    private List<RenditionStatus> planRenditions(VideoProbe probe, boolean copyTop) {
+        List<RenditionStatus> renditions = new ArrayList<>();
+        if (copyTop) {
+            int sourceKbps = probe.bitRate() > 0 ? (int) (probe.bitRate() / 1000) : 0;
+            renditions.add(new RenditionStatus("src", probe.height(), sourceKbps, true, 0));
+        }
+
+        List<int[]> ladder = new ArrayList<>();
+        for (String rung : abrLadder.split(",")) {
+            String[] parts = rung.trim().split(":");
+            if (parts.length == 2) {
+                ladder.add(new int[]{Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim())});
+            }
+        }
+        ladder.sort((a, b) -> Integer.compare(b[0], a[0]));
+
+        for (int[] rung : ladder) {
+            boolean fits = copyTop ? rung[0] < probe.height() : rung[0] <= probe.height();
+            if (fits || probe.height() <= 0) {
+                renditions.add(new RenditionStatus(rung[0] + "p", rung[0], rung[1], false, 0));
+            }
+        }
+        if (renditions.isEmpty() && !ladder.isEmpty()) {
+            int[] lowest = ladder.get(ladder.size() - 1);
+            int height = probe.height() - probe.height() % 2;
+            renditions.add(new RenditionStatus(height + "p", height, lowest[1], false, 0));
+        }
+        return renditions;
+    }
+
+    /**
+     * 根据子播放列表中已写出分片的总时长估算单个档位的进度
+     */
+    private double renditionProgress(Path output, RenditionStatus rendition, long totalMills) {
+        if (totalMills <= 0) {
+            return 0;
+        }
+        Path playlist = output.resolve("stream_" + rendition.getName() + ".m3u8");
+        double seconds = 0;
+        try (Stream<String> lines = Files.lines(playlist)) {
+            seconds = lines.filter(line -> line.startsWith("#EXTINF:"))
+                    .mapToDouble(line -> {
+                        int comma = line.indexOf(',');
+                        String value = comma > 0 ? line.substring(8, comma) : line.substring(8);
+                        try {
+                            return Double.parseDouble(value);
+                        } catch (NumberFormatException e) {
+                            return 0;
+                        }
+                    })
+                    .sum();
+        } catch (IOException e) {
+            // 第一个分片写出前子播放列表还不存在
+        }
+        return Math.min(100, Math.floor(seconds * 1000 * 100 / totalMills));
+    }
+
+    private void persistRenditions(String jobId, List<RenditionStatus> renditions) {
+        try {
+            transcodeJobMapper.updateRenditions(jobId, objectMapper.writeValueAsString(renditions));
+        } catch (JsonProcessingException e) {
+            log.warn("序列化档位进度失败：{}", e.getMessage());
+        } catch (Exception e) {
+            log.warn("保存档位进度失败 [{}]：{}", jobId, e.getMessage());
+        }
+    }
+
+    /**
+     * 读取第一路视频流的编码、分辨率、像素格式与码率
+     */
+    private VideoProbe probeVideo(String videoPath) throws Exception {
+        ProcessBuilder pb = new ProcessBuilder(
+                "ffprobe",
+                "-v", "error",
+                "-select_streams", "v:0",
+                "-show_entries", "stream=codec_name,width,height,pix_fmt,bit_rate:format=bit_rate",
+                "-of", "default=noprint_wrappers=1",
+                videoPath
+        );
+        pb.redirectErrorStream(true);
+
+        Process process = pb.start();
+        Map<String, String> values = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int eq = line.indexOf('=');
+                if (eq > 0) {
+                    // 流的 bit_rate 在前，MKV 等容器中通常为 N/A，此时使用容器码率
+                    String value = line.substring(eq + 1).trim();
+                    values.merge(line.substring(0, eq).trim(), value, (old, v) -> "N/A".equals(old) ? v : old);
+                }
+            }
+        }
+        process.waitFor();
+
+        return new VideoProbe(
+                values.getOrDefault("codec_name", ""),
+                parseIntOrZero(values.get("width")),
+                parseIntOrZero(values.get("height")),
+                values.getOrDefault("pix_fmt", ""),
+                parseLongOrZero(values.get("bit_rate")));
+    }
+
+    /**
+     * 读取源视频开头一段（KEYFRAME_PROBE_SECONDS）的关键帧时间，失败时返回空数组
+     */
+    private double[] probeKeyframeTimes(String videoPath) {
+        ProcessBuilder pb = new ProcessBuilder(
+                "ffprobe",
+                "-v", "error",
+                "-select_streams", "v:0",
+                "-read_intervals", "%+" + KEYFRAME_PROBE_SECONDS,
+                "-skip_frame", "nokey",
+                "-show_entries", "frame=pts_time",
+                "-of", "csv=p=0",
+                videoPath
+        );
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        List<Double> times = new ArrayList<>();
+        try {
+            Process process = pb.start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        times.add(Double.parseDouble(line.trim().replace(",", "")));
+                    } catch (NumberFormatException ignored) {
+                        // 没有时间戳的帧
+                    }
+                }
+            }
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return new double[0];
+            }
+        } catch (IOException e) {
+            log.warn("读取关键帧失败：{}", e.getMessage());
+            return new double[0];
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new double[0];
+        }
+        return times.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    /**
+     * 判断关键帧是否落在每个分片边界上：HLS 复制视频流时在边界之后的第一个关键帧处切分，
+     * 重新编码的档位在 segmentSeconds 的整数倍处强制关键帧，两者相同才能对齐。
+     * 只检查探测到的范围，关键帧少于两个（无法判断）时视为不对齐
+     */
+    static boolean keyframesAligned(double[] keyframeTimes, double segmentSeconds) {
+        if (keyframeTimes.length < 2) {
+            return false;
+        }
+        double[] times = keyframeTimes.clone();
+        Arrays.sort(times);
+        double first = times[0];
+        double last = times[times.length - 1] - first;
+        int index = 0;
+        for (int k = 1; k * segmentSeconds <= last; k++) {
+            double boundary = k * segmentSeconds;
+            while (index < times.length && times[index] - first < boundary - KEYFRAME_TOLERANCE_SECONDS) {
+                index++;
+            }
+            if (index >= times.length || Math.abs(times[index] - first - boundary) > KEYFRAME_TOLERANCE_SECONDS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int parseIntOrZero(String value) {
+        return (int) parseLongOrZero(value);
+    }
+
+    private static long parseLongOrZero(String value) {
+        try {
+            return value == null ? 0 : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private record VideoProbe(String codec, int width, int height, String pixFmt, long bitRate) {
+    }
+
     /**
      * 清理临时目录（递归删除）
      */
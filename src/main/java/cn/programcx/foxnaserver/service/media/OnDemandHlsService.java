@@ -0,0 +1,669 @@
+package cn.programcx.foxnaserver.service.media;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+/**
+ * 按需 HLS 转码（边播边转）
+ * <p>
+ * 创建会话时只探测时长与关键帧，立即生成完整的 VOD 播放列表，不等待音频提取或整片转码：
+ * <ul>
+ *     <li>源视频为浏览器可直接解码的 8bit H.264 时直接复制视频流，分片边界取自关键帧索引</li>
+ *     <li>其他编码按固定时长切片重新编码为 H.264，并在分片边界强制关键帧</li>
+ * </ul>
+ * 分片在被请求时才由 FFmpeg 从对应位置开始生成，只在播放位置之后保持少量预读分片；
+ * 请求的分片超出当前进程的生成范围（拖动进度条）时终止该进程，从新位置重新启动。
+ * 每次启动的进程写入独立的子目录，已完成的分片不会被后续进程覆盖。
+ */
+@Slf4j
+@Service
+public class OnDemandHlsService {
+
+    private final Path rootDir = Path.of(System.getProperty("user.dir"), "temp", "foxnas", "transcode", "ondemand");
+
+    @Autowired
+    private TranscodeScheduler transcodeScheduler;
+
+    // 目标分片时长（秒）；复制视频流时分片从关键帧切开，实际时长不小于该值
+    @Value("${app.media.ondemand.segment-seconds:4}")
+    private int segmentSeconds;
+
+    // 播放位置之后最多预先生成的分片数，超出后暂停（终止）转码进程
+    @Value("${app.media.ondemand.look-ahead-segments:8}")
+    private int lookAheadSegments;
+
+    // 请求的分片在当前进程生成位置之后多少个分片以内时等待，超出则视为拖动并从新位置重启
+    @Value("${app.media.ondemand.seek-threshold-segments:2}")
+    private int seekThresholdSegments;
+
+    // 同时存在的会话上限
+    @Value("${app.media.ondemand.max-sessions:4}")
+    private int maxSessions;
+
+    // 会话超过该时间无请求后关闭并删除分片
+    @Value("${app.media.ondemand.idle-timeout-seconds:120}")
+    private long idleTimeoutSeconds;
+
+    // 单个分片请求的最长等待时间
+    @Value("${app.media.ondemand.segment-wait-seconds:30}")
+    private long segmentWaitSeconds;
+
+    // 源视频可直接播放时是否复制视频流（false 时始终重新编码）
+    @Value("${app.media.ondemand.copy-video:true}")
+    private boolean copyVideo;
+
+    // 关键帧索引探测超时（秒），超时则改为重新编码，避免超大文件起播过慢
+    @Value("${app.media.ondemand.keyframe-probe-timeout-seconds:15}")
+    private long keyframeProbeTimeoutSeconds;
+
+    @Value("${app.media.ondemand.preset:veryfast}")
+    private String preset;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    // 关键帧索引缓存，键为 路径|大小|修改时间
+    private final Map<String, double[]> keyframeCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, double[]> eldest) {
+            return size() > 32;
+        }
+    };
+
+    @PostConstruct
+    public void init() {
+        // 上次运行遗留的会话目录已无对应会话
+        deleteRecursively(rootDir);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        sessions.keySet().forEach(this::closeSession);
+    }
+
+    /**
+     * 创建播放会话：探测源视频并生成分片边界，此时不启动转码
+     *
+     * @return 会话 ID
+     * @throws IllegalStateException 会话数已达上限
+     */
+    public String createSession(String ownerUuid, String videoPath, int audioTrackIndex) throws IOException {
+        Path source = Path.of(videoPath);
+        BasicFileAttributes attrs = Files.readAttributes(source, BasicFileAttributes.class);
+
+        // 同一用户重新打开同一视频时替换旧会话
+        sessions.values().stream()
+                .filter(s -> s.ownerUuid.equals(ownerUuid) && s.videoPath.equals(videoPath))
+                .map(s -> s.id)
+                .toList()
+                .forEach(this::closeSession);
+        if (sessions.size() >= maxSessions) {
+            throw new IllegalStateException("当前播放会话过多，请稍后再试");
+        }
+
+        Map<String, String> probe = probe(videoPath);
+        double duration = parseDouble(probe.get("duration"));
+        if (duration <= 0) {
+            throw new IOException("无法获取视频时长");
+        }
+
+        boolean copy = copyVideo && "h264".equals(probe.get("codec_name")) && "yuv420p".equals(probe.get("pix_fmt"));
+        double[] boundaries = null;
+        if (copy) {
+            String cacheKey = videoPath + "|" + attrs.size() + "|" + attrs.lastModifiedTime().toMillis();
+            double[] keyframes;
+            synchronized (keyframeCache) {
+                keyframes = keyframeCache.get(cacheKey);
+            }
+            if (keyframes == null) {
+                keyframes = probeKeyframes(videoPath);
+                if (keyframes != null) {
+                    synchronized (keyframeCache) {
+                        keyframeCache.put(cacheKey, keyframes);
+                    }
+                }
+            }
+            boundaries = keyframes != null ? keyframeBoundaries(keyframes, duration) : null;
+            copy = boundaries != null;
+        }
+        if (boundaries == null) {
+            boundaries = fixedBoundaries(duration);
+        }
+
+        String id = UUID.randomUUID().toString();
+        Session session = new Session(id, ownerUuid, videoPath, audioTrackIndex, copy, boundaries, rootDir.resolve(id));
+        Files.createDirectories(session.dir);
+        sessions.put(id, session);
+        log.info("[{}]创建按需 HLS 会话 [{}]：{}，时长 {}s，{} 个分片，{}", ownerUuid, id, videoPath,
+                duration, session.segmentCount(), copy ? "复制视频流" : "重新编码");
+        return id;
+    }
+
+    /**
+     * 生成完整的 VOD 播放列表，会话不存在时返回 null
+     */
+    public String playlist(String sessionId) {
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            return null;
+        }
+        session.lastAccess = System.currentTimeMillis();
+
+        double maxDuration = 0;
+        for (int i = 0; i < session.segmentCount(); i++) {
+            maxDuration = Math.max(maxDuration, session.segmentDuration(i));
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("#EXTM3U\n");
+        sb.append("#EXT-X-VERSION:3\n");
+        sb.append("#EXT-X-TARGETDURATION:").append((int) Math.ceil(maxDuration)).append('\n');
+        sb.append("#EXT-X-MEDIA-SEQUENCE:0\n");
+        sb.append("#EXT-X-PLAYLIST-TYPE:VOD\n");
+        for (int i = 0; i < session.segmentCount(); i++) {
+            sb.append(String.format(Locale.ROOT, "#EXTINF:%.6f,\n", session.segmentDuration(i)));
+            sb.append(i).append(".ts\n");
+        }
+        sb.append("#EXT-X-ENDLIST\n");
+        return sb.toString();
+    }
+
+    /**
+     * 等待分片生成完成并返回其路径；会话或分片不存在时返回 null
+     *
+     * @throws TimeoutException 超过 segment-wait-seconds 仍未生成
+     * @throws IOException      转码进程未能生成该分片
+     */
+    public Path awaitSegment(String sessionId, int index) throws IOException, InterruptedException, TimeoutException {
+        Session session = sessions.get(sessionId);
+        if (session == null || index < 0 || index >= session.segmentCount()) {
+            return null;
+        }
+        session.lastAccess = System.currentTimeMillis();
+        session.playhead = index;
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(segmentWaitSeconds);
+        Producer started = null;
+        while (true) {
+            synchronized (session) {
+                if (session.closed) {
+                    return null;
+                }
+                Path ready = session.completed.get(index);
+                if (ready != null) {
+                    prefetch(session, index);
+                    return ready;
+                }
+                Producer producer = session.producer;
+                boolean covered = producer != null && producer.running
+                        && index >= producer.start && index <= producer.next + seekThresholdSegments;
+                if (!covered) {
+                    if (started != null && producer == started && !started.stopped) {
+                        throw new IOException("转码进程已退出，未生成分片 " + index);
+                    }
+                    if (producer != null && producer.running) {
+                        log.info("按需 HLS 会话 [{}] 跳转到分片 {}（当前进程从 {} 开始，已生成到 {}）",
+                                session.id, index, producer.start, producer.next);
+                    }
+                    started = startProducer(session, index);
+                }
+            }
+            if (System.nanoTime() > deadline) {
+                throw new TimeoutException("等待分片 " + index + " 超时");
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    /**
+     * 关闭会话：终止转码进程并删除分片，ownerUuid 不为空时只允许会话创建者关闭
+     *
+     * @return 会话是否存在并已关闭
+     */
+    public boolean closeSession(String sessionId, String ownerUuid) {
+        Session session = sessions.get(sessionId);
+        if (session == null || (ownerUuid != null && !ownerUuid.equals(session.ownerUuid))) {
+            return false;
+        }
+        closeSession(sessionId);
+        return true;
+    }
+
+    /**
+     * 关闭空闲超时的会话，由定时任务调用
+     */
+    public void expireIdle() {
+        long threshold = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(idleTimeoutSeconds);
+        sessions.values().stream()
+                .filter(s -> s.lastAccess < threshold)
+                .map(s -> s.id)
+                .toList()
+                .forEach(id -> {
+                    log.info("按需 HLS 会话 [{}] 空闲超时，关闭", id);
+                    closeSession(id);
+                });
+    }
+
+    private void closeSession(String sessionId) {
+        Session session = sessions.remove(sessionId);
+        if (session == null) {
+            return;
+        }
+        synchronized (session) {
+            session.closed = true;
+            if (session.producer != null) {
+                session.producer.stop();
+            }
+        }
+        deleteRecursively(session.dir);
+    }
+
+    /**
+     * 进程因预读上限停止后，播放位置接近已生成的末尾时从第一个缺失的分片继续生成
+     */
+    private void prefetch(Session session, int index) throws IOException {
+        if (session.producer != null && session.producer.running) {
+            return;
+        }
+        int limit = Math.min(session.segmentCount() - 1, index + Math.max(1, lookAheadSegments / 2));
+        for (int i = index + 1; i <= limit; i++) {
+            if (!session.completed.containsKey(i)) {
+                startProducer(session, i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 从第 start 个分片开始启动转码进程，替换会话中正在运行的进程
+     */
+    private Producer startProducer(Session session, int start) throws IOException {
+        if (session.producer != null) {
+            session.producer.stop();
+        }
+        int generation = ++session.generation;
+        Path dir = session.dir.resolve("g" + generation);
+        Files.createDirectories(dir);
+
+        double offset = session.boundaries[start];
+        // 剩余分片边界（相对于起点），同时用作切片时间点与强制关键帧时间点
+        StringBuilder times = new StringBuilder();
+        for (int i = start + 1; i < session.segmentCount(); i++) {
+            if (times.length() > 0) {
+                times.append(',');
+            }
+            times.append(String.format(Locale.ROOT, "%.6f", session.boundaries[i] - offset));
+        }
+
+        List<String> cmd = new ArrayList<>(Arrays.asList("ffmpeg", "-hide_banner", "-nostdin", "-y", "-v", "error"));
+        if (start > 0) {
+            // 复制视频流时向后偏移 1ms，确保定位到边界上的关键帧而不是因舍入落到前一个关键帧
+            double seek = session.copy ? offset + 0.001 : offset;
+            cmd.addAll(Arrays.asList("-ss", String.format(Locale.ROOT, "%.6f", seek)));
+        }
+        cmd.addAll(Arrays.asList(
+                "-i", session.videoPath,
+                "-map", "0:v:0",
+                "-map", "0:a:" + session.audioTrackIndex + "?"
+        ));
+        if (session.copy) {
+            cmd.addAll(Arrays.asList("-c:v", "copy"));
+        } else {
+            cmd.addAll(Arrays.asList(
+                    "-c:v", "libx264",
+                    "-preset", preset,
+                    "-pix_fmt", "yuv420p",
+                    "-sc_threshold", "0"
+            ));
+            if (times.length() > 0) {
+                cmd.addAll(Arrays.asList("-force_key_frames", times.toString()));
+            }
+        }
+        cmd.addAll(Arrays.asList(
+                "-c:a", "aac",
+                "-b:a", "192k",
+                "-ac", "2",
+                "-f", "segment",
+                "-segment_format", "mpegts",
+                "-segment_start_number", String.valueOf(start),
+                "-segment_time_delta", "0.05",
+                "-segment_list", dir.resolve("segments.csv").toString(),
+                "-segment_list_type", "csv",
+                // 时间戳与原视频一致，不同进程生成的分片可以连续播放
+                "-output_ts_offset", String.format(Locale.ROOT, "%.6f", offset),
+                "-progress", "pipe:1"
+        ));
+        if (times.length() > 0) {
+            cmd.addAll(Arrays.asList("-segment_times", times.toString()));
+        } else {
+            // 只剩最后一个分片，不再切分
+            cmd.addAll(Arrays.asList("-segment_time", String.valueOf(Integer.MAX_VALUE)));
+        }
+        cmd.add(dir.resolve("%d.ts").toString());
+
+        ProcessBuilder pb = new ProcessBuilder(cmd);
+        pb.redirectErrorStream(true);
+        // 观众正在等待，不排队，但占用槽位，调度器不会在此期间再放行后台转码占满 CPU
+        TranscodeScheduler.Slot slot = transcodeScheduler.acquireInteractive(
+                "ondemand-" + session.id, TranscodeScheduler.CostClass.of(cmd));
+        Process process;
+        try {
+            process = pb.start();
+        } catch (IOException e) {
+            slot.close();
+            throw e;
+        }
+
+        Producer producer = new Producer(process, start, dir, slot);
+        session.producer = producer;
+        Thread monitor = new Thread(() -> monitor(session, producer), "ondemand-hls-" + session.id.substring(0, 8));
+        monitor.setDaemon(true);
+        monitor.start();
+        log.debug("按需 HLS 会话 [{}] 从分片 {}（{}s）启动 FFmpeg", session.id, start, offset);
+        return producer;
+    }
+
+    /**
+     * 读取进程输出，每次进度更新时登记已完成的分片，并在超出预读范围时停止进程
+     */
+    private void monitor(Session session, Producer producer) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(producer.process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("progress=")) {
+                    collectSegments(session, producer);
+                    synchronized (session) {
+                        if (shouldPause(session, producer)) {
+                            producer.stop();
+                        }
+                    }
+                } else if (!line.contains("=")) {
+                    log.warn("[FFmpeg] 按需 HLS 会话 [{}]：{}", session.id, line);
+                }
+            }
+            int exitCode = producer.process.waitFor();
+            collectSegments(session, producer);
+            if (exitCode != 0 && !producer.stopped) {
+                log.warn("按需 HLS 会话 [{}] 的 FFmpeg 进程异常退出，退出码：{}", session.id, exitCode);
+            }
+        } catch (IOException e) {
+            // 进程被终止时输出流关闭
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            producer.running = false;
+            producer.slot.close();
+        }
+    }
+
+    private boolean shouldPause(Session session, Producer producer) {
+        if (session.closed || session.producer != producer) {
+            return false;
+        }
+        if (producer.next - session.playhead > lookAheadSegments) {
+            return true;
+        }
+        // 接下来的分片已由之前的进程生成，继续生成只是重复劳动
+        Path next = session.completed.get(producer.next);
+        return next != null && !next.startsWith(producer.dir);
+    }
+
+    /**
+     * 读取分片列表文件，FFmpeg 在每个分片写完后追加一行：文件名,开始时间,结束时间
+     */
+    private void collectSegments(Session session, Producer producer) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(producer.dir.resolve("segments.csv"));
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            log.debug("读取分片列表失败：{}", e.getMessage());
+            return;
+        }
+        for (String line : lines) {
+            int comma = line.indexOf(',');
+            if (comma <= 0) {
+                continue;
+            }
+            String name = Path.of(line.substring(0, comma)).getFileName().toString();
+            try {
+                int index = Integer.parseInt(name.substring(0, name.length() - 3));
+                session.completed.putIfAbsent(index, producer.dir.resolve(name));
+                producer.next = Math.max(producer.next, index + 1);
+            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                log.debug("无法识别的分片：{}", line);
+            }
+        }
+    }
+
+    /**
+     * 复制视频流时的分片边界：从关键帧中挑选，相邻边界至少间隔 segment-seconds
+     */
+    private double[] keyframeBoundaries(double[] keyframes, double duration) {
+        List<Double> boundaries = new ArrayList<>();
+        boundaries.add(0.0);
+        for (double keyframe : keyframes) {
+            if (keyframe - boundaries.get(boundaries.size() - 1) >= segmentSeconds && keyframe < duration) {
+                boundaries.add(keyframe);
+            }
+        }
+        // 末尾不足 1 秒的分片并入前一个
+        if (boundaries.size() > 1 && duration - boundaries.get(boundaries.size() - 1) < 1) {
+            boundaries.remove(boundaries.size() - 1);
+        }
+        boundaries.add(duration);
+        return boundaries.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    private double[] fixedBoundaries(double duration) {
+        int count = Math.max(1, (int) Math.ceil(duration / segmentSeconds - 0.25));
+        double[] boundaries = new double[count + 1];
+        for (int i = 0; i < count; i++) {
+            boundaries[i] = (double) i * segmentSeconds;
+        }
+        boundaries[count] = duration;
+        return boundaries;
+    }
+
+    /**
+     * 探测第一路视频流的编码、像素格式与容器时长
+     */
+    private Map<String, String> probe(String videoPath) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(
+                "ffprobe",
+                "-v", "error",
+                "-select_streams", "v:0",
+                "-show_entries", "stream=codec_name,pix_fmt:format=duration",
+                "-of", "default=noprint_wrappers=1",
+                videoPath
+        );
+        pb.redirectErrorStream(true);
+        Process process = pb.start();
+        Map<String, String> values = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int eq = line.indexOf('=');
+                if (eq > 0) {
+                    values.put(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+                }
+            }
+        }
+        try {
+            process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("探测视频信息时被中断");
+        }
+        return values;
+    }
+
+    /**
+     * 读取视频流关键帧时间（只解封装，不解码），超时或失败返回 null
+     */
+    private double[] probeKeyframes(String videoPath) {
+        ProcessBuilder pb = new ProcessBuilder(
+                "ffprobe",
+                "-v", "error",
+                "-select_streams", "v:0",
+                "-show_entries", "packet=pts_time,flags",
+                "-of", "csv=p=0",
+                videoPath
+        );
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        long begin = System.currentTimeMillis();
+        Process process;
+        try {
+            process = pb.start();
+        } catch (IOException e) {
+            log.warn("启动 ffprobe 失败：{}", e.getMessage());
+            return null;
+        }
+        CompletableFuture<Void> watchdog = CompletableFuture.runAsync(process::destroyForcibly,
+                CompletableFuture.delayedExecutor(keyframeProbeTimeoutSeconds, TimeUnit.SECONDS));
+
+        List<Double> keyframes = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comma = line.indexOf(',');
+                if (comma > 0 && comma + 1 < line.length() && line.charAt(comma + 1) == 'K') {
+                    double time = parseDouble(line.substring(0, comma));
+                    if (time >= 0) {
+                        keyframes.add(time);
+                    }
+                }
+            }
+            if (process.waitFor() != 0) {
+                log.warn("读取关键帧索引失败或超时（{}s），改为重新编码：{}", keyframeProbeTimeoutSeconds, videoPath);
+                return null;
+            }
+        } catch (IOException e) {
+            log.warn("读取关键帧索引失败：{}", e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroyForcibly();
+            return null;
+        } finally {
+            watchdog.cancel(false);
+        }
+        log.info("读取关键帧索引完成：{}，{} 个关键帧，耗时 {}ms", videoPath, keyframes.size(),
+                System.currentTimeMillis() - begin);
+        return keyframes.isEmpty() ? null : keyframes.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return value == null ? -1 : Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void deleteRecursively(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(dir)) {
+            walk.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            log.warn("删除按需 HLS 目录失败：{}，{}", dir, e.getMessage());
+        }
+    }
+
+    private static final class Session {
+        final String id;
+        final String ownerUuid;
+        final String videoPath;
+        final int audioTrackIndex;
+        final boolean copy;
+        // 分片边界（秒），长度为分片数 + 1，最后一个为视频时长
+        final double[] boundaries;
+        final Path dir;
+        // 分片序号 -> 已完成的分片文件
+        final Map<Integer, Path> completed = new ConcurrentHashMap<>();
+
+        volatile long lastAccess = System.currentTimeMillis();
+        volatile int playhead;
+        volatile boolean closed;
+        Producer producer;
+        int generation;
+
+        Session(String id, String ownerUuid, String videoPath, int audioTrackIndex,
+                boolean copy, double[] boundaries, Path dir) {
+            this.id = id;
+            this.ownerUuid = ownerUuid;
+            this.videoPath = videoPath;
+            this.audioTrackIndex = audioTrackIndex;
+            this.copy = copy;
+            this.boundaries = boundaries;
+            this.dir = dir;
+        }
+
+        int segmentCount() {
+            return boundaries.length - 1;
+        }
+
+        double segmentDuration(int index) {
+            return boundaries[index + 1] - boundaries[index];
+        }
+    }
+
+    private static final class Producer {
+        final Process process;
+        // 起始分片序号
+        final int start;
+        final Path dir;
+        // 进程占用的转码调度槽位，进程结束后由监视线程释放
+        final TranscodeScheduler.Slot slot;
+        // 下一个待生成的分片序号
+        volatile int next;
+        volatile boolean running = true;
+        volatile boolean stopped;
+
+        Producer(Process process, int start, Path dir, TranscodeScheduler.Slot slot) {
+            this.process = process;
+            this.start = start;
+            this.dir = dir;
+            this.slot = slot;
+            this.next = start;
+        }
+
+        void stop() {
+            stopped = true;
+            running = false;
+            process.destroyForcibly();
+        }
+    }
+}
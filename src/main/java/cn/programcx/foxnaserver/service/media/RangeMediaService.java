@@ -1,19 +1,28 @@
 package cn.programcx.foxnaserver.service.media;
 
-import jakarta.servlet.ServletOutputStream;
-import jakarta.servlet.http.HttpServletResponse;
+import cn.programcx.foxnaserver.service.io.IoBandwidthScheduler;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 
 @Service
 public class RangeMediaService {
 
-    public void getRangeMediaData(long start, long end, File file, ServletOutputStream out){
+    @Autowired
+    private IoBandwidthScheduler ioBandwidthScheduler;
+
+    /**
+     * 输出媒体文件的指定区间；按交互流量计入带宽调度，优先于批量下载与复制任务
+     *
+     * @param ioKey 带宽调度的限速键，见 {@link IoBandwidthScheduler#keyOf}
+     */
+    public void getRangeMediaData(long start, long end, File file, OutputStream target, String ioKey) throws IOException {
         long contentLength = end - start + 1;
+        OutputStream out = ioBandwidthScheduler.throttle(target, ioKey, IoBandwidthScheduler.IoClass.INTERACTIVE);
         try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
             raf.seek(start);
             byte[] buffer = new byte[8192];
@@ -23,8 +32,6 @@ public class RangeMediaService {
                 out.write(buffer, 0, len);
                 bytesLeft -= len;
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
         }
     }
 }
@@ -0,0 +1,225 @@
+package cn.programcx.foxnaserver.service.media;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 把工作节点上的转码结果发布到服务节点的缓存目录
+ * <ul>
+ *     <li>shared：输出目录就是服务节点缓存目录的共享卷挂载点，无需额外操作</li>
+ *     <li>upload：转码过程中定期把已写入播放列表的分片上传到服务节点，边转边播；
+ *     播放列表在其引用的分片之后上传，master 播放列表最后上传，服务节点上不会出现引用缺失分片的列表</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+public class SegmentPublisher {
+
+    @Autowired
+    private TranscodeNodeService transcodeNodeService;
+
+    @Value("${app.worker.publish:shared}")
+    private String publishMode;
+
+    @Value("${app.worker.server-url:}")
+    private String serverUrl;
+
+    @Value("${app.worker.token:}")
+    private String token;
+
+    // 转码过程中上传分片的间隔（毫秒）
+    @Value("${app.worker.upload-interval-ms:2000}")
+    private long uploadIntervalMs;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2, r -> {
+        Thread t = new Thread(r, "segment-publisher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Map<String, ScheduledFuture<?>> syncTasks = new ConcurrentHashMap<>();
+
+    // 各任务已上传文件的大小与修改时间，未变化的文件不重复上传
+    private final Map<String, Map<String, String>> uploaded = new ConcurrentHashMap<>();
+
+    public boolean isUploadMode() {
+        return "upload".equalsIgnoreCase(publishMode) && transcodeNodeService.isWorker();
+    }
+
+    /**
+     * 开始转码时调用：上传模式下定期同步已完成的分片
+     */
+    public void start(String jobId) {
+        if (!isUploadMode()) {
+            return;
+        }
+        uploaded.put(jobId, new ConcurrentHashMap<>());
+        syncTasks.put(jobId, executor.scheduleWithFixedDelay(() -> {
+            try {
+                sync(jobId, false);
+            } catch (Exception e) {
+                log.warn("任务 [{}] 同步分片失败，稍后重试：{}", jobId, e.getMessage());
+            }
+        }, uploadIntervalMs, uploadIntervalMs, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 转码成功后调用：上传剩余文件并删除本地目录，上传失败时抛出异常由调用方重试任务
+     */
+    public synchronized void finish(String jobId) throws IOException, InterruptedException {
+        if (!isUploadMode()) {
+            return;
+        }
+        cancel(jobId);
+        sync(jobId, true);
+        deleteRecursively(transcodeNodeService.getOutputDir().resolve(jobId));
+        log.info("任务 [{}] 的转码结果已全部上传到服务节点", jobId);
+    }
+
+    /**
+     * 转码结束（无论成功与否）后调用，停止定期同步
+     */
+    public void stop(String jobId) {
+        cancel(jobId);
+        uploaded.remove(jobId);
+    }
+
+    /**
+     * 上传单个文件到服务节点缓存目录下的 jobId 子目录（jobId 为空时为缓存目录本身）
+     */
+    public void publishFile(String jobId, Path file) throws IOException, InterruptedException {
+        if (isUploadMode()) {
+            upload(jobId, file);
+        }
+    }
+
+    private void cancel(String jobId) {
+        ScheduledFuture<?> task = syncTasks.remove(jobId);
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * 同步任务目录
+     *
+     * @param all true 时上传全部文件（转码已结束）；false 时只上传已被播放列表引用的分片，以及在其之后的播放列表
+     */
+    private synchronized void sync(String jobId, boolean all) throws IOException, InterruptedException {
+        Path dir = transcodeNodeService.getOutputDir().resolve(jobId);
+        Map<String, String> done = uploaded.computeIfAbsent(jobId, k -> new ConcurrentHashMap<>());
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+
+        List<Path> playlists = new ArrayList<>();
+        List<Path> others = new ArrayList<>();
+        List<String> referenced = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.sorted().toList()) {
+                String name = file.getFileName().toString();
+                // 临时文件与分阶段转码的中间音频不需要发布
+                if (name.endsWith(".tmp") || name.endsWith(".aac")) {
+                    continue;
+                }
+                if (name.endsWith(".m3u8")) {
+                    playlists.add(file);
+                    referenced.addAll(Files.readAllLines(file).stream()
+                            .filter(line -> !line.isBlank() && !line.startsWith("#"))
+                            .toList());
+                } else {
+                    others.add(file);
+                }
+            }
+        }
+
+        for (Path file : others) {
+            if (all || referenced.contains(file.getFileName().toString())) {
+                uploadIfChanged(jobId, file, done);
+            }
+        }
+        // master 播放列表引用各档位的播放列表，最后上传
+        playlists.sort(Comparator.comparing((Path p) -> p.getFileName().toString().equals("playlist.m3u8")));
+        for (Path playlist : playlists) {
+            uploadIfChanged(jobId, playlist, done);
+        }
+    }
+
+    private void uploadIfChanged(String jobId, Path file, Map<String, String> done) throws IOException, InterruptedException {
+        String name = file.getFileName().toString();
+        String version = Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis();
+        if (version.equals(done.get(name))) {
+            return;
+        }
+        upload(jobId, file);
+        done.put(name, version);
+    }
+
+    private void upload(String jobId, Path file) throws IOException, InterruptedException {
+        if (serverUrl == null || serverUrl.isBlank()) {
+            throw new IOException("未配置 app.worker.server-url，无法上传转码结果");
+        }
+        String uri = serverUrl.replaceAll("/+$", "") + "/api/worker/transcode/files"
+                + "?jobId=" + URLEncoder.encode(jobId == null ? "" : jobId, StandardCharsets.UTF_8)
+                + "&name=" + URLEncoder.encode(file.getFileName().toString(), StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(uri))
+                .timeout(Duration.ofMinutes(2))
+                .header("X-Worker-Token", token)
+                .PUT(HttpRequest.BodyPublishers.ofFile(file))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("上传 " + file.getFileName() + " 失败，状态码 " + response.statusCode());
+        }
+    }
+
+    private void deleteRecursively(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(dir)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("删除本地文件失败：{}", path);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("删除本地目录失败：{}", dir);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,438 @@
+package cn.programcx.foxnaserver.service.media;
+
+import cn.programcx.foxnaserver.dto.file.FileInfo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.Java2DFrameConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 缩略图服务
+ * <p>
+ * <ul>
+ *     <li>图片与视频封面统一用 FFmpeg（javacv）解码，一次解码同时生成所有固定尺寸</li>
+ *     <li>两级缓存：内存（按字节数的 LRU）+ 磁盘（按 路径 + 大小 + 修改时间 + 尺寸 的哈希命名，按总字节数 LRU 淘汰）</li>
+ *     <li>有界工作线程池，队列按优先级出队：当前可见的缩略图优先于预取</li>
+ *     <li>同一缩略图的并发请求合并为一次生成</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+public class ThumbnailService {
+
+    /**
+     * 固定尺寸（最长边像素）
+     */
+    public enum Size {
+        SMALL(128),
+        MEDIUM(256),
+        LARGE(512);
+
+        private final int edge;
+
+        Size(int edge) {
+            this.edge = edge;
+        }
+
+        public static Size of(String name) {
+            return name == null ? SMALL : valueOf(name.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    public enum Priority {
+        HIGH,
+        LOW
+    }
+
+    private static final String CACHE_SUFFIX = ".jpg";
+    private static final float JPEG_QUALITY = 0.8f;
+
+    @Value("${app.media.thumbnail.cache-dir:cache/thumbnails}")
+    private String cacheDir;
+
+    @Value("${app.media.thumbnail.disk-max-bytes:1073741824}")
+    private long diskMaxBytes;
+
+    @Value("${app.media.thumbnail.memory-max-bytes:67108864}")
+    private long memoryMaxBytes;
+
+    @Value("${app.media.thumbnail.max-queue:2000}")
+    private int maxQueue;
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong sequence = new AtomicLong();
+
+    // 生成中的缩略图：缓存键 → 结果
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    // 已有高优先级任务排队的缓存键
+    private final Set<String> highQueued = ConcurrentHashMap.newKeySet();
+
+    // 内存层：缓存键 → 图片数据（访问顺序）
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private long memoryBytes;
+
+    // 磁盘层索引：缓存键 → 文件大小（访问顺序）
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(1024, 0.75f, true);
+    private long diskBytes;
+
+    public ThumbnailService(@Value("${app.media.thumbnail.workers:2}") int workers) {
+        AtomicInteger counter = new AtomicInteger();
+        int threads = Math.max(1, workers);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "thumbnail-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 启动时按文件修改时间（写入或上次命中时间）重建磁盘层 LRU 顺序
+     */
+    @PostConstruct
+    public void init() {
+        Path root = Paths.get(cacheDir).toAbsolutePath();
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        record Cached(String key, long size, long lastModified) {
+        }
+        List<Cached> cached = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(root, 2)) {
+            stream.filter(p -> p.getFileName().toString().endsWith(CACHE_SUFFIX)).forEach(p -> {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                    String name = p.getFileName().toString();
+                    cached.add(new Cached(name.substring(0, name.length() - CACHE_SUFFIX.length()),
+                            attrs.size(), attrs.lastModifiedTime().toMillis()));
+                } catch (IOException ignored) {
+                }
+            });
+        } catch (IOException e) {
+            log.warn("扫描缩略图缓存目录失败: {}, {}", root, e.getMessage());
+        }
+        cached.sort((a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        synchronized (disk) {
+            for (Cached c : cached) {
+                disk.put(c.key(), c.size());
+                diskBytes += c.size();
+            }
+            evictDiskLocked();
+        }
+        log.info("缩略图磁盘缓存: {} 个, {} 字节", disk.size(), diskBytes);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 是否支持为该文件生成缩略图（按扩展名判断）
+     */
+    public boolean isSupported(String path) {
+        Path name = Paths.get(path).getFileName();
+        if (name == null) {
+            return false;
+        }
+        String category = FileInfo.categoryOf(name.toString());
+        return "image".equals(category) || "video".equals(category);
+    }
+
+    /**
+     * 只查缓存，不触发生成
+     *
+     * @return 缩略图数据，未缓存时返回 null
+     */
+    public byte[] getCached(Path file, Size size) throws IOException {
+        return lookup(cacheKey(file, size));
+    }
+
+    /**
+     * 获取缩略图，未缓存时按优先级排队生成
+     */
+    public CompletableFuture<byte[]> get(Path file, Size size, Priority priority) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        if (!attrs.isRegularFile()) {
+            throw new IOException("不是普通文件: " + file);
+        }
+        String key = cacheKey(file, attrs, size);
+        byte[] cached = lookup(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            // 以低优先级排队中：可见请求再以高优先级提交一次，先执行的那个完成生成，另一个直接跳过
+            if (priority == Priority.HIGH && highQueued.add(key)) {
+                submit(file, attrs, key, existing, priority);
+            }
+            return existing;
+        }
+        if (priority == Priority.HIGH) {
+            highQueued.add(key);
+        }
+        future.whenComplete((data, e) -> {
+            inFlight.remove(key, future);
+            highQueued.remove(key);
+        });
+        submit(file, attrs, key, future, priority);
+        return future;
+    }
+
+    private void submit(Path file, BasicFileAttributes attrs, String key, CompletableFuture<byte[]> future, Priority priority) {
+        if (executor.getQueue().size() >= maxQueue) {
+            if (priority == Priority.LOW) {
+                future.completeExceptionally(new RejectedExecutionException("缩略图队列已满"));
+                return;
+            }
+        }
+        executor.execute(new Task(priority, sequence.incrementAndGet(), () -> {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(generate(file, attrs, key));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }));
+    }
+
+    /**
+     * 解码一次，生成所有尺寸并写入缓存，返回请求的那个尺寸
+     */
+    private byte[] generate(Path file, BasicFileAttributes attrs, String requestedKey) throws Exception {
+        BufferedImage source = decode(file);
+        if (source == null) {
+            throw new IOException("无法解码: " + file);
+        }
+        byte[] requested = null;
+        for (Size size : Size.values()) {
+            String key = cacheKey(file, attrs, size);
+            byte[] data = encodeJpeg(scale(source, size.edge));
+            store(key, data);
+            if (key.equals(requestedKey)) {
+                requested = data;
+            }
+        }
+        return requested;
+    }
+
+    private BufferedImage decode(Path file) throws Exception {
+        boolean video = "video".equals(FileInfo.categoryOf(file.getFileName().toString()));
+        try (FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(file.toFile())) {
+            grabber.start();
+            if (video) {
+                // 跳过片头黑屏：取时长 10% 处（最多 30 秒）的关键帧
+                long duration = grabber.getLengthInTime();
+                if (duration > 0) {
+                    grabber.setTimestamp(Math.min(duration / 10, 30_000_000L));
+                }
+            }
+            Frame frame = grabber.grabImage();
+            if (frame == null) {
+                return null;
+            }
+            // 转换出的图像引用帧缓冲区，需要在关闭 grabber 前复制出来
+            BufferedImage image = new Java2DFrameConverter().convert(frame);
+            return image == null ? null : copy(image);
+        }
+    }
+
+    private static BufferedImage copy(BufferedImage image) {
+        BufferedImage result = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = result.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return result;
+    }
+
+    private static BufferedImage scale(BufferedImage source, int edge) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double ratio = Math.min(1.0, (double) edge / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+
+        BufferedImage result = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = result.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(source, 0, 0, targetWidth, targetHeight, null);
+        g.dispose();
+        return result;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(16 * 1024);
+        try (MemoryCacheImageOutputStream out = new MemoryCacheImageOutputStream(bos)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bos.toByteArray();
+    }
+
+    // ==================== 缓存 ====================
+
+    private byte[] lookup(String key) {
+        synchronized (memory) {
+            byte[] data = memory.get(key);
+            if (data != null) {
+                return data;
+            }
+        }
+        boolean onDisk;
+        synchronized (disk) {
+            onDisk = disk.get(key) != null;
+        }
+        if (!onDisk) {
+            return null;
+        }
+        try {
+            byte[] data = Files.readAllBytes(cachePath(key));
+            putMemory(key, data);
+            return data;
+        } catch (IOException e) {
+            synchronized (disk) {
+                Long size = disk.remove(key);
+                if (size != null) {
+                    diskBytes -= size;
+                }
+            }
+            return null;
+        }
+    }
+
+    private void store(String key, byte[] data) {
+        putMemory(key, data);
+        Path path = cachePath(key);
+        try {
+            Files.createDirectories(path.getParent());
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.write(temp, data);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("写入缩略图缓存失败: {}, {}", path, e.getMessage());
+            return;
+        }
+        synchronized (disk) {
+            Long old = disk.put(key, (long) data.length);
+            diskBytes += data.length - (old == null ? 0 : old);
+            evictDiskLocked();
+        }
+    }
+
+    private void putMemory(String key, byte[] data) {
+        synchronized (memory) {
+            byte[] old = memory.put(key, data);
+            memoryBytes += data.length - (old == null ? 0 : old.length);
+            Iterator<Map.Entry<String, byte[]>> it = memory.entrySet().iterator();
+            while (memoryBytes > memoryMaxBytes && it.hasNext()) {
+                Map.Entry<String, byte[]> eldest = it.next();
+                memoryBytes -= eldest.getValue().length;
+                it.remove();
+            }
+        }
+    }
+
+    private void evictDiskLocked() {
+        Iterator<Map.Entry<String, Long>> it = disk.entrySet().iterator();
+        while (diskBytes > diskMaxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            diskBytes -= eldest.getValue();
+            it.remove();
+            try {
+                Files.deleteIfExists(cachePath(eldest.getKey()));
+            } catch (IOException e) {
+                log.debug("删除缩略图缓存失败: {}, {}", eldest.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private Path cachePath(String key) {
+        return Paths.get(cacheDir).toAbsolutePath().resolve(key.substring(0, 2)).resolve(key + CACHE_SUFFIX);
+    }
+
+    private String cacheKey(Path file, Size size) throws IOException {
+        return cacheKey(file, Files.readAttributes(file, BasicFileAttributes.class), size);
+    }
+
+    /**
+     * 缓存键：路径 + 文件大小 + 修改时间 + 尺寸 的 SHA-256，源文件变化后自然失效
+     */
+    private static String cacheKey(Path file, BasicFileAttributes attrs, Size size) {
+        String raw = file.toAbsolutePath().normalize() + "\0" + attrs.size() + "\0"
+                + attrs.lastModifiedTime().toMillis() + "\0" + size.name();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(raw.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 按优先级、再按提交顺序出队
+     */
+    private record Task(Priority priority, long sequence, Runnable body) implements Runnable, Comparable<Task> {
+        @Override
+        public void run() {
+            body.run();
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
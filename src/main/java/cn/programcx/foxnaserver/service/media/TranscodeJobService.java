@@ -44,6 +44,7 @@ public class TranscodeJobService {
             File.separator + "foxnas" +
             File.separator + "transcode";
     private final FFmpegProcessManager fFmpegProcessManager;
+    private final TranscodeNodeService transcodeNodeService;
 
     // 内存中存储正在运行的进程（用于停止任务）
 //    private final Map<String, Process> runningProcesses = new ConcurrentHashMap<>();
@@ -62,7 +63,7 @@ public class TranscodeJobService {
     @Transactional
     public TranscodeJob createVideoJob(String creatorId, String videoPath, 
                                        Integer audioTrackIndex, Integer subtitleTrackIndex,
-                                       boolean immediate, String fingerprint, Long expireSecs) {
+                                       boolean immediate, String fingerprint, Long expireSecs, boolean abr) {
         // 如果没有提供指纹，生成一个
         if (fingerprint == null || fingerprint.isEmpty()) {
             fingerprint = fingerprintService.generateFingerprint(videoPath);
@@ -101,6 +102,7 @@ public class TranscodeJobService {
         job.setOutputPath(outputDir);
         job.setRetryCount(0);
         job.setImmediate(immediate);
+        job.setAbr(abr);
         job.setCreatedAt(LocalDateTime.now());
         job.setUpdatedAt(LocalDateTime.now());
 
@@ -128,9 +130,11 @@ public class TranscodeJobService {
                 .isImmediate(immediate)
                 .retryCount(0)
                 .fingerprint(fingerprint)
+                .abr(abr)
                 .build();
 
-        String routingKey = immediate ? "task.priority" : "task.normal";
+        // 有空闲槽位的转码节点时直接投递到该节点的队列
+        String routingKey = transcodeNodeService.routingKeyFor(immediate, abr);
         rabbitTemplate.convertAndSend(
                 TranscodeRabbitMQConfig.EXCHANGE_TRANSCODE,
                 routingKey,
@@ -319,9 +323,10 @@ public class TranscodeJobService {
                 .isImmediate(job.getImmediate() != null ? job.getImmediate() : false)
                 .retryCount(job.getRetryCount() + 1)
                 .fingerprint(job.getFingerprint())
+                .abr(Boolean.TRUE.equals(job.getAbr()))
                 .build();
 
-        String routingKey = job.getImmediate() != null && job.getImmediate() ? "task.priority" : "task.normal";
+        String routingKey = transcodeNodeService.routingKeyFor(task.isImmediate(), task.isAbr());
         rabbitTemplate.convertAndSend(
                 TranscodeRabbitMQConfig.EXCHANGE_TRANSCODE,
                 routingKey,
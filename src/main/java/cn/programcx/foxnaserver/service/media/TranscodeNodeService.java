@@ -0,0 +1,267 @@
+package cn.programcx.foxnaserver.service.media;
+
+import cn.programcx.foxnaserver.dto.media.FFmpegProcessManager;
+import cn.programcx.foxnaserver.entity.TranscodeJob;
+import cn.programcx.foxnaserver.mapper.TranscodeJobMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 转码节点
+ * <p>
+ * 服务节点与独立的转码工作节点（worker profile）共用同一个 jar。运行转码消费者的节点定期把
+ * 槽位容量与占用写入 Redis（transcode:node:{nodeId}，带过期时间），提交任务时据此把任务路由到
+ * 有空闲槽位的节点专属队列；没有合适节点时仍投递到共享队列，由任一节点消费。
+ * <p>
+ * 工作节点通过 path-mapping 把服务节点上的源文件路径换成本机可访问的路径（例如 NFS/SMB 挂载点），
+ * 转码结果写入 output-dir：共享卷方式下该目录即服务节点缓存目录的挂载点，上传方式见 {@link SegmentPublisher}。
+ */
+@Slf4j
+@Service
+public class TranscodeNodeService {
+
+    public static final String NODE_KEY_PREFIX = "transcode:node:";
+    public static final String NODES_KEY = "transcode:nodes";
+    public static final String NODE_ROUTING_PREFIX = "task.node.";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private TranscodeScheduler transcodeScheduler;
+
+    @Autowired
+    private FFmpegProcessManager processManager;
+
+    @Autowired
+    private TranscodeJobMapper transcodeJobMapper;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${app.node.id:}")
+    private String configuredNodeId;
+
+    // 源路径映射：服务节点路径前缀=>本机路径前缀，多条用分号分隔
+    @Value("${app.worker.path-mapping:}")
+    private String pathMapping;
+
+    // 转码结果输出目录，为空时为服务节点的默认缓存目录
+    @Value("${app.media.transcode.output-dir:}")
+    private String configuredOutputDir;
+
+    // 心跳过期时间（秒），超过该时间未更新的节点不再参与路由
+    @Value("${app.media.transcode.heartbeat-ttl-seconds:15}")
+    private long heartbeatTtlSeconds;
+
+    // 是否按节点空闲槽位路由任务
+    @Value("${app.media.transcode.routing:true}")
+    private boolean routingEnabled;
+
+    private String nodeId;
+    private Path outputDir;
+    private final List<String[]> mappings = new ArrayList<>();
+
+    // 本节点在各节点两次心跳之间已路由出去的任务数，避免同一心跳周期内的任务全部涌向同一节点
+    private final Map<String, long[]> reservations = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        nodeId = configuredNodeId;
+        if (nodeId == null || nodeId.isBlank()) {
+            String host;
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (Exception e) {
+                host = UUID.randomUUID().toString().substring(0, 8);
+            }
+            // 同一主机上的服务节点与工作节点（或多个工作节点）不能共用心跳键、节点队列与取消检查
+            nodeId = host + "-" + ProcessHandle.current().pid();
+        }
+        outputDir = configuredOutputDir == null || configuredOutputDir.isBlank()
+                ? Path.of(System.getProperty("user.dir"), "temp", "foxnas", "transcode")
+                : Path.of(configuredOutputDir);
+
+        for (String entry : pathMapping.split(";")) {
+            int arrow = entry.indexOf("=>");
+            if (arrow > 0) {
+                mappings.add(new String[]{entry.substring(0, arrow).trim(), entry.substring(arrow + 2).trim()});
+            }
+        }
+        // 最长前缀优先
+        mappings.sort(Comparator.comparingInt((String[] m) -> m[0].length()).reversed());
+        log.info("转码节点 [{}]，输出目录：{}，路径映射 {} 条", nodeId, outputDir, mappings.size());
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public Path getOutputDir() {
+        return outputDir;
+    }
+
+    public boolean isWorker() {
+        return environment.acceptsProfiles(Profiles.of("worker"));
+    }
+
+    /**
+     * 把服务节点上的源文件路径换成本机路径，未配置映射时原样返回
+     */
+    public String toLocalPath(String sourcePath) {
+        for (String[] mapping : mappings) {
+            if (matchesPrefix(sourcePath, mapping[0])) {
+                String rest = sourcePath.substring(mapping[0].length());
+                // 服务节点与工作节点可能是不同的操作系统
+                rest = File.separatorChar == '/' ? rest.replace('\\', '/') : rest.replace('/', '\\');
+                return mapping[1] + rest;
+            }
+        }
+        return sourcePath;
+    }
+
+    /**
+     * 按路径层级匹配前缀：/data 匹配 /data 与 /data/a，不匹配 /data2/a
+     */
+    static boolean matchesPrefix(String path, String prefix) {
+        if (!path.startsWith(prefix)) {
+            return false;
+        }
+        if (path.length() == prefix.length() || prefix.endsWith("/") || prefix.endsWith("\\")) {
+            return true;
+        }
+        char next = path.charAt(prefix.length());
+        return next == '/' || next == '\\';
+    }
+
+    /**
+     * 服务节点指定的输出文件（例如字幕任务的 outputPath）在本机输出目录中的位置
+     */
+    public Path toLocalOutput(String serverPath) {
+        return outputDir.resolve(Path.of(serverPath).getFileName());
+    }
+
+    /**
+     * 写入心跳：节点容量、占用与排队情况；同时终止在其他节点上被取消的任务的本地进程
+     */
+    public void heartbeat() {
+        Map<String, Object> stats = transcodeScheduler.stats();
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("nodeId", nodeId);
+        node.put("role", isWorker() ? "worker" : "server");
+        node.put("capacity", stats.get("capacity"));
+        node.put("used", stats.get("used"));
+        node.put("queueDepth", stats.get("queueDepth"));
+        Map<String, Integer> costs = new HashMap<>();
+        ((Map<?, ?>) stats.get("costs")).forEach((k, v) -> costs.put(k.toString(), (Integer) v));
+        node.put("costs", costs);
+        node.put("cpuPercent", stats.get("cpuPercent"));
+        node.put("throttled", stats.get("throttled"));
+        node.put("runningJobs", ((List<?>) stats.get("running")).size());
+        node.put("updatedAt", System.currentTimeMillis());
+
+        redisTemplate.opsForValue().set(NODE_KEY_PREFIX + nodeId, node, heartbeatTtlSeconds, TimeUnit.SECONDS);
+        redisTemplate.opsForSet().add(NODES_KEY, nodeId);
+
+        // 取消操作可能发生在另一个节点上，只能通过数据库中的任务状态得知
+        for (String jobId : Set.copyOf(processManager.runningProcesses.keySet())) {
+            TranscodeJob job = transcodeJobMapper.selectByJobId(jobId);
+            if (job != null && TranscodeJob.Status.CANCELLED.name().equals(job.getStatus())) {
+                log.info("任务 [{}] 已被取消，终止本节点上的转码进程", jobId);
+                processManager.terminateIfExists(jobId);
+            }
+        }
+    }
+
+    public void unregister() {
+        redisTemplate.delete(NODE_KEY_PREFIX + nodeId);
+        redisTemplate.opsForSet().remove(NODES_KEY, nodeId);
+    }
+
+    /**
+     * 心跳未过期的节点
+     */
+    @SuppressWarnings("unchecked")
+    public List<Map<String, Object>> liveNodes() {
+        Set<Object> ids = redisTemplate.opsForSet().members(NODES_KEY);
+        List<Map<String, Object>> nodes = new ArrayList<>();
+        if (ids == null) {
+            return nodes;
+        }
+        for (Object id : ids) {
+            Object node = redisTemplate.opsForValue().get(NODE_KEY_PREFIX + id);
+            if (node instanceof Map<?, ?> map) {
+                nodes.add((Map<String, Object>) map);
+            } else {
+                redisTemplate.opsForSet().remove(NODES_KEY, id);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * 选择任务的路由键：优先发往空闲槽位足够且最多的节点专属队列，没有时发往共享队列
+     *
+     * @param abr 自适应码率任务需要重新编码视频，按视频编码的开销计算
+     */
+    public String routingKeyFor(boolean immediate, boolean abr) {
+        String shared = immediate ? "task.priority" : "task.normal";
+        if (!routingEnabled) {
+            return shared;
+        }
+        try {
+            String best = null;
+            long bestUpdatedAt = 0;
+            int bestFree = 0;
+            for (Map<String, Object> node : liveNodes()) {
+                if (Boolean.TRUE.equals(node.get("throttled"))) {
+                    continue;
+                }
+                String id = String.valueOf(node.get("nodeId"));
+                long updatedAt = ((Number) node.get("updatedAt")).longValue();
+                Map<?, ?> costs = (Map<?, ?>) node.get("costs");
+                Object costValue = costs.get(abr ? "VIDEO" : "AUDIO");
+                int cost = costValue instanceof Number n ? n.intValue() : 1;
+                long[] reserved = reservations.get(id);
+                int pending = ((Number) node.get("queueDepth")).intValue()
+                        + (reserved != null && reserved[0] == updatedAt ? (int) reserved[1] : 0);
+                int free = ((Number) node.get("capacity")).intValue() - ((Number) node.get("used")).intValue() - pending * cost;
+                if (free >= cost && free > bestFree) {
+                    best = id;
+                    bestFree = free;
+                    bestUpdatedAt = updatedAt;
+                }
+            }
+            if (best == null) {
+                return shared;
+            }
+            long updatedAt = bestUpdatedAt;
+            reservations.compute(best, (id, r) -> r == null || r[0] != updatedAt
+                    ? new long[]{updatedAt, 1} : new long[]{updatedAt, r[1] + 1});
+            return NODE_ROUTING_PREFIX + best;
+        } catch (Exception e) {
+            log.warn("读取转码节点信息失败，投递到共享队列：{}", e.getMessage());
+            return shared;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package cn.programcx.foxnaserver.service.media;
+
+import cn.programcx.foxnaserver.service.status.StatusService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 转码任务调度器
+ * <p>
+ * 总容量（槽位）默认等于 CPU 核数，每个 FFmpeg 进程按开销类别占用若干槽位：
+ * <ul>
+ *     <li>REMUX：只复制流（封装 HLS、提取字幕），主要是磁盘读写</li>
+ *     <li>AUDIO：重新编码音频</li>
+ *     <li>VIDEO：重新编码视频，x264 会占满多个核心</li>
+ * </ul>
+ * 槽位不足时任务排队等待（立即观看的任务排在前面），不再因等待超时而失败；
+ * 系统 CPU 使用率超过阈值时暂停放行新任务，但至少保证一个任务在运行。
+ * 按需 HLS 等交互式转码通过 {@link #acquireInteractive} 立即占用槽位，同样计入占用与统计。
+ */
+@Slf4j
+@Service
+public class TranscodeScheduler {
+
+    public enum CostClass {
+        REMUX, AUDIO, VIDEO;
+
+        /**
+         * 根据 FFmpeg 参数判断开销类别：存在非 copy 的视频编码器或滤镜图为 VIDEO，
+         * 存在非 copy 的音频编码器为 AUDIO，其余为 REMUX
+         */
+        public static CostClass of(List<String> command) {
+            CostClass cost = REMUX;
+            for (int i = 0; i < command.size(); i++) {
+                String arg = command.get(i);
+                String value = i + 1 < command.size() ? command.get(i + 1) : "";
+                if (arg.equals("-filter_complex") || arg.equals("-vf")
+                        || (arg.startsWith("-c:v") && !value.equals("copy"))) {
+                    return VIDEO;
+                }
+                if (arg.startsWith("-c:a") && !value.equals("copy")) {
+                    cost = AUDIO;
+                }
+            }
+            return cost;
+        }
+    }
+
+    @Autowired
+    private StatusService statusService;
+
+    private final int capacity;
+    private final Map<CostClass, Integer> costs = new EnumMap<>(CostClass.class);
+
+    // CPU 使用率（百分比）超过该值时不再放行新任务
+    @Value("${app.media.transcode.cpu-high-percent:85}")
+    private double cpuHighPercent;
+
+    // 队首任务等待超过该时间后，不再允许后面开销更小的任务插队
+    @Value("${app.media.transcode.max-bypass-ms:60000}")
+    private long maxBypassMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final List<Waiter> waiters = new ArrayList<>();
+    private final Map<String, Slot> running = new LinkedHashMap<>();
+    private int used;
+    private long completed;
+
+    // CPU 采样（两次采样之间的平均使用率），由等待中的线程按需刷新
+    private long[] prevCpuTicks;
+    private long lastCpuSample;
+    private volatile double cpuPercent;
+
+    public TranscodeScheduler(@Value("${app.media.transcode.slots:0}") int slots,
+                              @Value("${app.media.transcode.cost.remux:1}") int remuxCost,
+                              @Value("${app.media.transcode.cost.audio:2}") int audioCost,
+                              @Value("${app.media.transcode.cost.video:0}") int videoCost) {
+        this.capacity = slots > 0 ? slots : Runtime.getRuntime().availableProcessors();
+        // 开销不超过总容量，保证任何任务在空闲时都能运行
+        costs.put(CostClass.REMUX, clamp(remuxCost));
+        costs.put(CostClass.AUDIO, clamp(audioCost));
+        costs.put(CostClass.VIDEO, clamp(videoCost > 0 ? videoCost : Math.max(2, capacity / 2)));
+        log.info("转码调度器：容量 {} 槽位，开销 {}", capacity, costs);
+    }
+
+    private int clamp(int cost) {
+        return Math.max(1, Math.min(cost, capacity));
+    }
+
+    /**
+     * 阻塞直到获得槽位
+     *
+     * @param priority 立即观看的任务优先于普通任务
+     * @return 槽位，FFmpeg 进程结束后必须调用 {@link Slot#close()} 释放
+     */
+    public Slot acquire(String jobId, CostClass costClass, boolean priority) throws InterruptedException {
+        Waiter waiter = new Waiter(jobId, costClass, costs.get(costClass), priority);
+        lock.lock();
+        try {
+            // 优先级高的排在所有普通任务之前，同优先级先到先得
+            int position = waiters.size();
+            if (priority) {
+                position = 0;
+                while (position < waiters.size() && waiters.get(position).priority) {
+                    position++;
+                }
+            }
+            waiters.add(position, waiter);
+            if (waiters.size() > 1 || used > 0) {
+                log.info("转码任务 [{}]（{}）等待槽位，已用 {}/{}，排队 {}", jobId, costClass, used, capacity, waiters.size());
+            }
+
+            while (!admissible(waiter)) {
+                changed.await(1, TimeUnit.SECONDS);
+            }
+
+            waiters.remove(waiter);
+            used += waiter.cost;
+            Slot slot = new Slot(waiter);
+            running.put(slot.key, slot);
+            changed.signalAll();
+            return slot;
+        } catch (InterruptedException e) {
+            waiters.remove(waiter);
+            changed.signalAll();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 交互式任务（按需 HLS 等观众正在等待的转码）立即占用槽位，不排队也不受 CPU 限流；
+     * 占用计入已用槽位，可以超过总容量，排队中的后台任务要等这些进程结束后才能放行
+     *
+     * @return 槽位，进程结束后必须调用 {@link Slot#close()} 释放
+     */
+    public Slot acquireInteractive(String jobId, CostClass costClass) {
+        Waiter waiter = new Waiter(jobId, costClass, costs.get(costClass), true);
+        lock.lock();
+        try {
+            used += waiter.cost;
+            Slot slot = new Slot(waiter);
+            running.put(slot.key, slot);
+            changed.signalAll();
+            return slot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 在持有锁时判断等待者现在能否运行
+     */
+    private boolean admissible(Waiter waiter) {
+        if (used == 0) {
+            // 空闲时队首任务总能运行，避免 CPU 被其他程序占满时转码永远无法开始
+            return waiters.get(0) == waiter;
+        }
+        if (used + waiter.cost > capacity || sampleCpu() >= cpuHighPercent) {
+            return false;
+        }
+        // 前面有放不下的任务时，只有在队首等待时间不长时才允许后面更小的任务先运行
+        for (Waiter ahead : waiters) {
+            if (ahead == waiter) {
+                return true;
+            }
+            if (ahead.priority && !waiter.priority) {
+                return false;
+            }
+            if (System.currentTimeMillis() - ahead.since > maxBypassMs) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private double sampleCpu() {
+        long now = System.currentTimeMillis();
+        if (prevCpuTicks == null || now - lastCpuSample >= 1000) {
+            long[] ticks = statusService.getCpuTicks();
+            if (prevCpuTicks != null) {
+                cpuPercent = statusService.getCpuUsageSince(prevCpuTicks);
+            }
+            prevCpuTicks = ticks;
+            lastCpuSample = now;
+        }
+        return cpuPercent;
+    }
+
+    private void release(Slot slot) {
+        lock.lock();
+        try {
+            if (running.remove(slot.key) != null) {
+                used -= slot.cost;
+                completed++;
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 建议的消息监听并发数：运行中的任务数加上按最小开销还能放行的任务数；CPU 繁忙时不再增加
+     */
+    public int suggestedConsumers(int max) {
+        lock.lock();
+        try {
+            int free = Math.max(0, capacity - used);
+            int extra = sampleCpu() >= cpuHighPercent ? 0 : free / costs.get(CostClass.REMUX);
+            return Math.max(1, Math.min(max, running.size() + extra));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        lock.lock();
+        try {
+            Map<CostClass, Integer> queued = new EnumMap<>(CostClass.class);
+            for (Waiter waiter : waiters) {
+                queued.merge(waiter.costClass, 1, Integer::sum);
+            }
+            List<Map<String, Object>> jobs = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            for (Slot slot : running.values()) {
+                jobs.add(Map.of(
+                        "jobId", slot.jobId,
+                        "costClass", slot.costClass.name(),
+                        "cost", slot.cost,
+                        "priority", slot.priority,
+                        "runningMs", now - slot.startTime
+                ));
+            }
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("capacity", capacity);
+            stats.put("used", used);
+            stats.put("costs", costs);
+            stats.put("queueDepth", waiters.size());
+            stats.put("queued", queued);
+            stats.put("running", jobs);
+            stats.put("completed", completed);
+            stats.put("cpuPercent", cpuPercent);
+            stats.put("cpuHighPercent", cpuHighPercent);
+            stats.put("throttled", cpuPercent >= cpuHighPercent);
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 按对象标识区分等待者，同一任务的多次请求互不影响
+    private static final class Waiter {
+        final String jobId;
+        final CostClass costClass;
+        final int cost;
+        final boolean priority;
+        final long since = System.currentTimeMillis();
+
+        Waiter(String jobId, CostClass costClass, int cost, boolean priority) {
+            this.jobId = jobId;
+            this.costClass = costClass;
+            this.cost = cost;
+            this.priority = priority;
+        }
+    }
+
+    public final class Slot implements AutoCloseable {
+        private final String key;
+        private final String jobId;
+        private final CostClass costClass;
+        private final int cost;
+        private final boolean priority;
+        private final long startTime = System.currentTimeMillis();
+
+        private Slot(Waiter waiter) {
+            // 同一任务可能依次启动多个进程，以对象标识区分
+            this.key = waiter.jobId + "#" + System.identityHashCode(this);
+            this.jobId = waiter.jobId;
+            this.costClass = waiter.costClass;
+            this.cost = waiter.cost;
+            this.priority = waiter.priority;
+        }
+
+        public CostClass getCostClass() {
+            return costClass;
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+}
@@ -106,6 +106,18 @@ public class StatusService {
         return cpuLoad * 100;
     }
 
+    /**
+     * 当前 CPU 时钟计数，配合 {@link #getCpuUsageSince} 由调用方自行维护采样区间，不影响监控推送的采样
+     */
+    public long[] getCpuTicks() {
+        return cpu.getSystemCpuLoadTicks();
+    }
+
+    // 获取自 prevTicks 以来的 CPU 使用率（百分比）
+    public double getCpuUsageSince(long[] prevTicks) {
+        return cpu.getSystemCpuLoadBetweenTicks(prevTicks) * 100;
+    }
+
     // 获取内存信息
     public Map<String,Object> getMemoryInfo() {
         double total = memory.getTotal();
@@ -1,6 +1,7 @@
 package cn.programcx.foxnaserver.service.user;
 
 import cn.programcx.foxnaserver.api.auth.TokenStorageService;
+import cn.programcx.foxnaserver.dto.file.DirEntry;
 import cn.programcx.foxnaserver.dto.user.ResourceDTO;
 import cn.programcx.foxnaserver.entity.Permission;
 import cn.programcx.foxnaserver.entity.Resource;
@@ -8,6 +9,8 @@ import cn.programcx.foxnaserver.entity.User;
 import cn.programcx.foxnaserver.mapper.PermissionMapper;
 import cn.programcx.foxnaserver.mapper.ResourceMapper;
 import cn.programcx.foxnaserver.mapper.UserMapper;
+import cn.programcx.foxnaserver.service.file.DirectorySnapshotCache;
+import cn.programcx.foxnaserver.service.file.FilePermissionService;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import lombok.AllArgsConstructor;
@@ -40,6 +43,10 @@ public class UserManagementService {
     private PasswordEncoder passwordEncoder;
     @Autowired
     private TokenStorageService tokenStorageService;
+    @Autowired
+    private DirectorySnapshotCache directorySnapshotCache;
+    @Autowired
+    private FilePermissionService filePermissionService;
 
     private final List<String> permissionList = List.of("SSH", "USER", "EMAIL", "STREAM", "FILE", "DDNS", "LOG", "TRANSCODE MANAGEMENT");
     private final List<Map<String, String>> permissionDescriptions = List.of(
@@ -82,6 +89,7 @@ public class UserManagementService {
             resourceMapper.insert(resource);
         });
 
+        filePermissionService.invalidate(user.getId());
     }
 
     // ==================== 基于 UUID 的方法 ====================
@@ -111,6 +119,7 @@ public class UserManagementService {
         LambdaQueryWrapper<Resource> resQueryWrapper = new LambdaQueryWrapper<>();
         resQueryWrapper.eq(Resource::getOwnerUuid, uuid);
         resourceMapper.delete(resQueryWrapper);
+        filePermissionService.invalidate(uuid);
     }
 
     public void blockUserByUuid(String uuid) throws Exception {
@@ -204,6 +213,7 @@ public class UserManagementService {
         }
 
         resourceMapper.insert(resource);
+        filePermissionService.invalidate(uuid);
     }
 
     public void revokeResourceByUuid(String uuid, String resourcePath, String type) throws Exception {
@@ -227,6 +237,7 @@ public class UserManagementService {
             throw new Exception("用户不拥有该资源权限！");
         }
         resourceMapper.delete(queryWrapper);
+        filePermissionService.invalidate(uuid);
     }
 
     public void modifyResourceByUuid(String uuid, String oldResourcePath, String newResourcePath, List<String> typeList) throws Exception {
@@ -240,6 +251,8 @@ public class UserManagementService {
         deleteWrapper.eq(Resource::getOwnerUuid, uuid)
                 .eq(Resource::getFolderName, oldResourcePath);
         resourceMapper.delete(deleteWrapper);
+        // 后续插入可能因类型错误中断，先让旧授权失效
+        filePermissionService.invalidate(uuid);
 
         // 添加新的资源权限
         for (String type : typeList) {
@@ -256,6 +269,7 @@ public class UserManagementService {
             resource.setPermissionType(type);
             resourceMapper.insert(resource);
         }
+        filePermissionService.invalidate(uuid);
     }
 
     public void createResourceByUuid(String uuid, String resourcePath, List<String> typeList) throws Exception {
@@ -278,6 +292,7 @@ public class UserManagementService {
             resource.setPermissionType(type);
             resourceMapper.insert(resource);
         }
+        filePermissionService.invalidate(uuid);
     }
 
     public void deleteResourceByUuid(String uuid, String resourcePath) throws Exception {
@@ -290,6 +305,7 @@ public class UserManagementService {
         queryWrapper.eq(Resource::getOwnerUuid, uuid)
                 .eq(Resource::getFolderName, resourcePath);
         resourceMapper.delete(queryWrapper);
+        filePermissionService.invalidate(uuid);
     }
 
     public List<ResourceDTO> allResourcesByUuid(String uuid) throws Exception {
@@ -373,6 +389,7 @@ public class UserManagementService {
         LambdaQueryWrapper<Resource> resQueryWrapper = new LambdaQueryWrapper<>();
         resQueryWrapper.eq(Resource::getOwnerUuid, userUuid);
         resourceMapper.delete(resQueryWrapper);
+        filePermissionService.invalidate(userUuid);
     }
 
     @Deprecated
@@ -476,6 +493,7 @@ public class UserManagementService {
         }
 
         resourceMapper.insert(resource);
+        filePermissionService.invalidate(userUuid);
     }
 
     @Deprecated
@@ -500,6 +518,7 @@ public class UserManagementService {
             throw new Exception("用户不拥有该资源权限！");
         }
         resourceMapper.delete(queryWrapper);
+        filePermissionService.invalidate(userUuid);
     }
 
     @Deprecated
@@ -514,6 +533,8 @@ public class UserManagementService {
         deleteWrapper.eq(Resource::getOwnerUuid, userUuid)
                 .eq(Resource::getFolderName, oldResourcePath);
         resourceMapper.delete(deleteWrapper);
+        // 后续插入可能因类型错误中断，先让旧授权失效
+        filePermissionService.invalidate(userUuid);
 
         // 添加新的资源权限
         for (String type : typeList) {
@@ -530,6 +551,7 @@ public class UserManagementService {
             resource.setPermissionType(type);
             resourceMapper.insert(resource);
         }
+        filePermissionService.invalidate(userUuid);
     }
 
     @Deprecated
@@ -553,6 +575,7 @@ public class UserManagementService {
             resource.setPermissionType(type);
             resourceMapper.insert(resource);
         }
+        filePermissionService.invalidate(userUuid);
     }
 
     @Deprecated
@@ -566,6 +589,7 @@ public class UserManagementService {
         queryWrapper.eq(Resource::getOwnerUuid, userUuid)
                 .eq(Resource::getFolderName, resourcePath);
         resourceMapper.delete(queryWrapper);
+        filePermissionService.invalidate(userUuid);
     }
 
     @Deprecated
@@ -612,8 +636,6 @@ public class UserManagementService {
     public List<DirectoryDTO> listDirectories(String path) {
         List<DirectoryDTO> directories = new ArrayList<>();
 
-        File dir = new java.io.File(path);
-
         // 如果 path 为空，列出所有根目录
         if (path.isEmpty()) {
             FileSystem fs = FileSystems.getDefault();
@@ -624,64 +646,32 @@ public class UserManagementService {
             return directories;
         }
 
-        if (!dir.exists() || !dir.isDirectory()) {
+        Path dir = Paths.get(path);
+        if (!Files.isDirectory(dir)) {
             return directories;
         }
 
-        File[] files = dir.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    directories.add(new DirectoryDTO(file.getName(), file.toString().replace(File.separatorChar,'/'),getSubdirectoryCount(file)));
-                }
-            }
-        }
-        return directories;
-    }
-
-    private int getSubdirectoryCount(Path path) {
-        // 检查路径是否有效且为目录
-        if (Files.notExists(path) || !Files.isDirectory(path)) {
-            System.out.println("目录不存在或路径不是一个目录");
-            return 0;
-        }
-
-        // 统计子目录个数
-        int subDirCount = 0;
-
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
-            for (Path entry : stream) {
-                // 检查是否是子目录
-                if (Files.isDirectory(entry)) {
-                    subDirCount++;
+        try {
+            for (DirEntry entry : directorySnapshotCache.get(dir).getEntries()) {
+                if (entry.isDirectory()) {
+                    directories.add(new DirectoryDTO(entry.getName(), entry.getPath().toString().replace(File.separatorChar,'/'),getSubdirectoryCount(entry.getPath())));
                 }
             }
         } catch (IOException e) {
             log.error("读取目录失败：{}", e.getMessage());
-            return 0;
         }
-
-        return subDirCount;
+        return directories;
     }
 
-    private int getSubdirectoryCount(File dir) {
+    private int getSubdirectoryCount(Path path) {
         // 检查路径是否有效且为目录
-        if (!dir.exists() || !dir.isDirectory()) {
-            System.out.println("目录不存在或路径不是一个目录");
+        if (!Files.isDirectory(path)) {
+            log.debug("目录不存在或路径不是一个目录: {}", path);
             return 0;
         }
 
-        // 统计子目录个数
-        int subDirCount = 0;
-        File[] files = dir.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    subDirCount++;
-                }
-            }
-        }
-        return subDirCount;
+        // 统计子目录个数（通过目录快照缓存）
+        return directorySnapshotCache.getSubdirectoryCount(path);
     }
 
     @Getter
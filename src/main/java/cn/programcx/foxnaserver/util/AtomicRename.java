@@ -0,0 +1,162 @@
+package cn.programcx.foxnaserver.util;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.Platform;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * 不覆盖目标的原子重命名
+ * <p>
+ * {@code Files.move(source, target, ATOMIC_MOVE)} 底层是 rename(2)，目标已存在时会被直接替换，
+ * 先 {@code Files.exists(target)} 再重命名之间总有竞争窗口。这里优先使用 Linux 的 renameat2(RENAME_NOREPLACE)，
+ * 目标已存在时由内核原子地拒绝；内核、C 库或文件系统不支持时，普通文件改为创建硬链接后删除源
+ * （link(2) 同样在目标存在时失败），其余情况先用 createFile / createDirectory 原子地占住目标，再重命名覆盖自己的占位。
+ */
+@Slf4j
+public final class AtomicRename {
+
+    private static final int AT_FDCWD = -100;
+    private static final int RENAME_NOREPLACE = 1;
+
+    private static final int ENOENT = 2;
+    private static final int EEXIST = 17;
+    private static final int EXDEV = 18;
+    private static final int EINVAL = 22;
+    private static final int ENOSYS = 38;
+    private static final int EOPNOTSUPP = 95;
+
+    private interface CLibrary extends Library {
+        int renameat2(int oldDirFd, String oldPath, int newDirFd, String newPath, int flags);
+    }
+
+    private static final CLibrary LIBC = loadLibc();
+
+    // C 库没有 renameat2（glibc 2.28 之前）或内核不支持时置为 false，之后直接走兼容方式
+    private static volatile boolean renameat2Available = LIBC != null;
+
+    private AtomicRename() {
+    }
+
+    /**
+     * 把 source 原子地重命名为 target，target 已存在时失败且不做任何修改
+     *
+     * @throws FileAlreadyExistsException      目标已存在
+     * @throws AtomicMoveNotSupportedException 源与目标不在同一文件存储上
+     */
+    public static void moveNoReplace(Path source, Path target) throws IOException {
+        if (renameat2Available && renameat2(source, target)) {
+            return;
+        }
+        moveCompat(source, target);
+    }
+
+    /**
+     * 不依赖 renameat2 的实现：普通文件用硬链接，其余先占位再重命名
+     */
+    static void moveCompat(Path source, Path target) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(source, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (attrs.isRegularFile() && link(source, target)) {
+            return;
+        }
+
+        // 占位只可能被本次重命名替换：rename(2) 可以覆盖普通文件与空目录
+        if (attrs.isDirectory()) {
+            Files.createDirectory(target);
+        } else {
+            Files.createFile(target);
+        }
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            removePlaceholder(target, attrs.isDirectory());
+            throw e;
+        }
+    }
+
+    /**
+     * @return 是否已完成重命名；返回 false 表示当前环境不支持，需要改用兼容方式
+     */
+    private static boolean renameat2(Path source, Path target) throws IOException {
+        int rc;
+        try {
+            rc = LIBC.renameat2(AT_FDCWD, source.toString(), AT_FDCWD, target.toString(), RENAME_NOREPLACE);
+        } catch (UnsatisfiedLinkError e) {
+            renameat2Available = false;
+            log.info("C 库不支持 renameat2，改用硬链接或占位方式实现不覆盖重命名");
+            return false;
+        }
+        if (rc == 0) {
+            return true;
+        }
+        int errno = Native.getLastError();
+        switch (errno) {
+            case EEXIST -> throw new FileAlreadyExistsException(target.toString());
+            case ENOENT -> throw new NoSuchFileException(source.toString(), target.toString(), null);
+            case EXDEV -> throw new AtomicMoveNotSupportedException(source.toString(), target.toString(), "不在同一文件存储上");
+            case ENOSYS -> {
+                renameat2Available = false;
+                return false;
+            }
+            // 文件系统不支持 RENAME_NOREPLACE（部分网络文件系统、FUSE）
+            case EINVAL, EOPNOTSUPP -> {
+                return false;
+            }
+            default -> throw new FileSystemException(source.toString(), target.toString(), "重命名失败，errno=" + errno);
+        }
+    }
+
+    /**
+     * @return 是否已通过硬链接完成；文件系统不支持硬链接时返回 false
+     */
+    private static boolean link(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | IOException e) {
+            return false;
+        }
+        try {
+            Files.delete(source);
+        } catch (IOException e) {
+            // 目标已经生效，源只是同一数据的另一个链接
+            log.warn("重命名后删除源链接失败: {}, {}", source, e.getMessage());
+        }
+        return true;
+    }
+
+    private static void removePlaceholder(Path target, boolean directory) {
+        try {
+            // 只删除仍为空的占位，不删除别人写入的内容
+            if (directory || Files.size(target) == 0) {
+                Files.deleteIfExists(target);
+            }
+        } catch (IOException ignored) {
+            // 非空目录或已被删除
+        }
+    }
+
+    private static CLibrary loadLibc() {
+        if (!Platform.isLinux()) {
+            return null;
+        }
+        try {
+            return Native.load("c", CLibrary.class);
+        } catch (Throwable e) {
+            log.warn("加载 libc 失败，不覆盖重命名改用兼容方式: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package cn.programcx.foxnaserver.util;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.Platform;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 稀疏文件支持
+ * <p>
+ * 通过 lseek(SEEK_DATA / SEEK_HOLE) 找出文件中实际分配了数据的区间（Linux 64 位），
+ * 读取时空洞部分直接补零，不再从磁盘读取。
+ * 不支持的平台或文件系统（内核的通用实现会把整个文件视为一个数据区间）按普通文件处理。
+ */
+@Slf4j
+public final class SparseFiles {
+
+    /**
+     * 数据区间 [offset, offset + length)
+     */
+    public record Extent(long offset, long length) {
+        public long end() {
+            return offset + length;
+        }
+    }
+
+    // 小于该大小的文件不值得探测
+    public static final long MIN_SPARSE_SIZE = 1024 * 1024;
+
+    // 区间过多（碎片严重）时按普通文件处理，避免区间表本身占用过多内存
+    private static final int MAX_EXTENTS = 65536;
+
+    private static final int O_RDONLY = 0;
+    private static final int O_CLOEXEC = 02000000;
+    private static final int SEEK_DATA = 3;
+    private static final int SEEK_HOLE = 4;
+
+    private interface CLibrary extends Library {
+        int open(String path, int flags, int mode);
+
+        long lseek(int fd, long offset, int whence);
+
+        int close(int fd);
+    }
+
+    private static final CLibrary LIBC = loadLibc();
+
+    // 向直接缓冲区填零时使用的只读零块
+    private static final ByteBuffer ZEROS = ByteBuffer.allocateDirect(64 * 1024).asReadOnlyBuffer();
+
+    private SparseFiles() {
+    }
+
+    /**
+     * 返回文件的数据区间（按偏移升序，只覆盖 [0, size)）
+     *
+     * @return 文件不含空洞、过小或无法探测时返回 null
+     */
+    public static List<Extent> dataExtents(Path file, long size) {
+        if (LIBC == null || size < MIN_SPARSE_SIZE) {
+            return null;
+        }
+        int fd = LIBC.open(file.toString(), O_RDONLY | O_CLOEXEC, 0);
+        if (fd < 0) {
+            return null;
+        }
+        try {
+            long firstHole = LIBC.lseek(fd, 0, SEEK_HOLE);
+            if (firstHole < 0 || firstHole >= size) {
+                return null;
+            }
+            List<Extent> extents = new ArrayList<>();
+            long position = 0;
+            while (position < size) {
+                long data = LIBC.lseek(fd, position, SEEK_DATA);
+                if (data < 0 || data >= size) {
+                    // ENXIO：之后全是空洞
+                    break;
+                }
+                long hole = LIBC.lseek(fd, data, SEEK_HOLE);
+                long end = hole < 0 ? size : Math.min(hole, size);
+                if (end <= data) {
+                    break;
+                }
+                extents.add(new Extent(data, end - data));
+                if (extents.size() > MAX_EXTENTS) {
+                    return null;
+                }
+                position = end;
+            }
+            return extents;
+        } finally {
+            LIBC.close(fd);
+        }
+    }
+
+    /**
+     * 数据区间之和，即实际需要读取的字节数
+     */
+    public static long dataLength(List<Extent> extents) {
+        long total = 0;
+        for (Extent extent : extents) {
+            total += extent.length();
+        }
+        return total;
+    }
+
+    /**
+     * 为已打开的文件创建读取器，文件不是稀疏文件时直接读取通道
+     */
+    public static Reader reader(Path file, FileChannel channel) throws IOException {
+        long size = channel.size();
+        return new Reader(channel, dataExtents(file, size), size);
+    }
+
+    /**
+     * 按位置读取，语义与 {@link FileChannel#read(ByteBuffer, long)} 相同；位于空洞中的部分填零而不访问磁盘
+     */
+    public static final class Reader {
+        private final FileChannel channel;
+        private final List<Extent> extents;
+        private final long size;
+        private int cursor;
+
+        Reader(FileChannel channel, List<Extent> extents, long size) {
+            this.channel = channel;
+            this.extents = extents;
+            this.size = size;
+        }
+
+        public boolean isSparse() {
+            return extents != null;
+        }
+
+        public int read(ByteBuffer dst, long position) throws IOException {
+            if (extents == null || position >= size) {
+                return channel.read(dst, position);
+            }
+            Extent extent = locate(position);
+            if (extent != null && position >= extent.offset()) {
+                int limit = dst.limit();
+                long available = extent.end() - position;
+                if (dst.remaining() > available) {
+                    dst.limit(dst.position() + (int) available);
+                }
+                try {
+                    return channel.read(dst, position);
+                } finally {
+                    dst.limit(limit);
+                }
+            }
+            long holeEnd = extent == null ? size : extent.offset();
+            int n = (int) Math.min(dst.remaining(), holeEnd - position);
+            fillZero(dst, n);
+            return n;
+        }
+
+        /**
+         * 找到包含 position 的区间，或 position 之后的第一个区间；顺序读取时只需向后移动游标
+         */
+        private Extent locate(long position) {
+            if (cursor > 0 && extents.get(cursor - 1).end() > position) {
+                // 向前读取，从头查找
+                cursor = 0;
+            }
+            while (cursor < extents.size() && extents.get(cursor).end() <= position) {
+                cursor++;
+            }
+            return cursor < extents.size() ? extents.get(cursor) : null;
+        }
+
+        private static void fillZero(ByteBuffer dst, int n) {
+            if (dst.hasArray()) {
+                int from = dst.arrayOffset() + dst.position();
+                Arrays.fill(dst.array(), from, from + n, (byte) 0);
+                dst.position(dst.position() + n);
+            } else {
+                int remaining = n;
+                while (remaining > 0) {
+                    int chunk = Math.min(remaining, ZEROS.capacity());
+                    dst.put(ZEROS.duplicate().limit(chunk));
+                    remaining -= chunk;
+                }
+            }
+        }
+    }
+
+    private static CLibrary loadLibc() {
+        if (!Platform.isLinux() || !Platform.is64Bit()) {
+            return null;
+        }
+        try {
+            return Native.load("c", CLibrary.class);
+        } catch (Throwable e) {
+            log.warn("加载 libc 失败，稀疏文件探测不可用: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package cn.programcx.foxnaserver.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 流式 ZIP 写出器
+ * <p>
+ * 与 {@link java.util.zip.ZipOutputStream} 不同，本类：
+ * <ul>
+ *     <li>可以直接写入已在其他线程压缩好的数据（并行压缩）</li>
+ *     <li>输出布局只由条目列表决定，纯 STORED 归档的总长度可以预先计算，从而支持 Range 断点续传</li>
+ *     <li>通过 {@link RangeSink} 跳过已经发送过的字节，被完整跳过的 STORED 数据不会读取磁盘</li>
+ *     <li>稀疏文件的空洞直接补零（{@link SparseFiles}），不读取磁盘</li>
+ * </ul>
+ * 文件名使用 UTF-8（通用标志位 11），条目或偏移超过 4GB、条目数超过 65535 时自动使用 ZIP64。
+ */
+public class ZipStreamWriter {
+
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIG = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int ZIP64_END_SIG = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int END_SIG = 0x06054b50;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+    private static final int FLAG_UTF8 = 0x0800;
+
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    private static final long ZIP32_MAX = 0xFFFFFFFFL;
+    // 流式压缩时无法预知压缩后大小，原始大小超过该阈值即使用 ZIP64（为压缩膨胀预留余量）
+    private static final long ZIP64_STREAMING_THRESHOLD = 0xF0000000L;
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final RangeSink out;
+    private final List<CentralEntry> entries = new ArrayList<>();
+    private final byte[] scratch = new byte[64];
+
+    public ZipStreamWriter(RangeSink out) {
+        this.out = out;
+    }
+
+    /**
+     * 计算只包含目录与 STORED 条目的归档总长度（不读取任何文件内容）
+     */
+    public static long computeStoredLength(List<String> names, List<Long> sizes) throws IOException {
+        RangeSink sink = new RangeSink(OutputStream.nullOutputStream(), Long.MAX_VALUE, Long.MAX_VALUE);
+        ZipStreamWriter writer = new ZipStreamWriter(sink);
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            if (name.endsWith("/")) {
+                writer.putDirectory(name, 0);
+            } else {
+                writer.putStored(name, 0, sizes.get(i), 0, null);
+            }
+        }
+        writer.finish();
+        return sink.getPosition();
+    }
+
+    public void putDirectory(String name, long lastModified) throws IOException {
+        long offset = out.getPosition();
+        writeLocalHeader(name, lastModified, METHOD_STORED, 0, 0, 0, 0, false);
+        entries.add(new CentralEntry(name, lastModified, METHOD_STORED, 0, 0, 0, 0, offset, true));
+    }
+
+    /**
+     * 写入 STORED 条目，CRC 需要预先计算好
+     */
+    public void putStored(String name, long lastModified, long size, long crc, Path file) throws IOException {
+        long offset = out.getPosition();
+        boolean zip64 = size >= ZIP32_MAX;
+        writeLocalHeader(name, lastModified, METHOD_STORED, 0, crc, size, size, zip64);
+        writeFileRange(file, size);
+        entries.add(new CentralEntry(name, lastModified, METHOD_STORED, 0, crc, size, size, offset, false));
+    }
+
+    /**
+     * 写入已经压缩好的 DEFLATE 数据（原始 deflate 流，不含 zlib 头）
+     */
+    public void putPrecompressed(String name, long lastModified, long size, long crc, byte[] compressed, int compressedLength) throws IOException {
+        long offset = out.getPosition();
+        boolean zip64 = size >= ZIP32_MAX || compressedLength >= ZIP32_MAX;
+        writeLocalHeader(name, lastModified, METHOD_DEFLATED, 0, crc, compressedLength, size, zip64);
+        out.write(compressed, 0, compressedLength);
+        entries.add(new CentralEntry(name, lastModified, METHOD_DEFLATED, 0, crc, compressedLength, size, offset, false));
+    }
+
+    /**
+     * 边读边压缩写入，压缩后大小与 CRC 写在数据描述符中
+     */
+    public void putDeflated(String name, long lastModified, long expectedSize, Path file, int level) throws IOException {
+        long offset = out.getPosition();
+        boolean zip64 = expectedSize >= ZIP64_STREAMING_THRESHOLD;
+        writeLocalHeader(name, lastModified, METHOD_DEFLATED, FLAG_DATA_DESCRIPTOR, 0, 0, 0, zip64);
+
+        long dataStart = out.getPosition();
+        CRC32 crc32 = new CRC32();
+        Deflater deflater = new Deflater(level, true);
+        byte[] input = new byte[COPY_BUFFER_SIZE];
+        byte[] output = new byte[COPY_BUFFER_SIZE];
+        ByteBuffer inputBuffer = ByteBuffer.wrap(input);
+        long size = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            SparseFiles.Reader reader = SparseFiles.reader(file, channel);
+            int read;
+            while ((read = reader.read(inputBuffer.clear(), size)) != -1) {
+                crc32.update(input, 0, read);
+                size += read;
+                deflater.setInput(input, 0, read);
+                while (!deflater.needsInput()) {
+                    int n = deflater.deflate(output);
+                    out.write(output, 0, n);
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                int n = deflater.deflate(output);
+                out.write(output, 0, n);
+            }
+        } finally {
+            deflater.end();
+        }
+        long compressedSize = out.getPosition() - dataStart;
+        long crc = crc32.getValue();
+        if (!zip64 && (size >= ZIP32_MAX || compressedSize >= ZIP32_MAX)) {
+            throw new IOException("文件在打包过程中变大，超出 ZIP32 限制: " + name);
+        }
+
+        putInt(0, DATA_DESCRIPTOR_SIG);
+        putInt(4, (int) crc);
+        if (zip64) {
+            putLong(8, compressedSize);
+            putLong(16, size);
+            out.write(scratch, 0, 24);
+        } else {
+            putInt(8, (int) compressedSize);
+            putInt(12, (int) size);
+            out.write(scratch, 0, 16);
+        }
+        entries.add(new CentralEntry(name, lastModified, METHOD_DEFLATED, FLAG_DATA_DESCRIPTOR, crc, compressedSize, size, offset, false));
+    }
+
+    /**
+     * 写出中央目录与结束记录
+     */
+    public void finish() throws IOException {
+        long centralStart = out.getPosition();
+        for (CentralEntry entry : entries) {
+            writeCentralHeader(entry);
+        }
+        long centralSize = out.getPosition() - centralStart;
+        long centralEnd = out.getPosition();
+
+        boolean zip64 = entries.size() >= 0xFFFF || centralStart >= ZIP32_MAX || centralSize >= ZIP32_MAX;
+        if (zip64) {
+            putInt(0, ZIP64_END_SIG);
+            putLong(4, 44);
+            putShort(12, 45);
+            putShort(14, 45);
+            putInt(16, 0);
+            putInt(20, 0);
+            putLong(24, entries.size());
+            putLong(32, entries.size());
+            putLong(40, centralSize);
+            putLong(48, centralStart);
+            out.write(scratch, 0, 56);
+
+            putInt(0, ZIP64_LOCATOR_SIG);
+            putInt(4, 0);
+            putLong(8, centralEnd);
+            putInt(16, 1);
+            out.write(scratch, 0, 20);
+        }
+
+        putInt(0, END_SIG);
+        putShort(4, 0);
+        putShort(6, 0);
+        putShort(8, zip64 ? 0xFFFF : entries.size());
+        putShort(10, zip64 ? 0xFFFF : entries.size());
+        putInt(12, (int) (zip64 ? ZIP32_MAX : centralSize));
+        putInt(16, (int) (zip64 ? ZIP32_MAX : centralStart));
+        putShort(20, 0);
+        out.write(scratch, 0, 22);
+        out.flush();
+    }
+
+    public long getPosition() {
+        return out.getPosition();
+    }
+
+    private void writeLocalHeader(String name, long lastModified, int method, int extraFlags,
+                                  long crc, long compressedSize, long size, boolean zip64) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        boolean descriptor = (extraFlags & FLAG_DATA_DESCRIPTOR) != 0;
+        long dosTime = toDosTime(lastModified);
+
+        putInt(0, LOCAL_HEADER_SIG);
+        putShort(4, zip64 ? 45 : 20);
+        putShort(6, FLAG_UTF8 | extraFlags);
+        putShort(8, method);
+        putInt(10, (int) dosTime);
+        putInt(14, descriptor ? 0 : (int) crc);
+        if (zip64) {
+            putInt(18, (int) ZIP32_MAX);
+            putInt(22, (int) ZIP32_MAX);
+        } else {
+            putInt(18, descriptor ? 0 : (int) compressedSize);
+            putInt(22, descriptor ? 0 : (int) size);
+        }
+        putShort(26, nameBytes.length);
+        putShort(28, zip64 ? 20 : 0);
+        out.write(scratch, 0, 30);
+        out.write(nameBytes);
+        if (zip64) {
+            // ZIP64 扩展字段：原始大小、压缩后大小（使用数据描述符时为 0）
+            putShort(0, 0x0001);
+            putShort(2, 16);
+            putLong(4, descriptor ? 0 : size);
+            putLong(12, descriptor ? 0 : compressedSize);
+            out.write(scratch, 0, 20);
+        }
+    }
+
+    private void writeCentralHeader(CentralEntry entry) throws IOException {
+        byte[] nameBytes = entry.name.getBytes(StandardCharsets.UTF_8);
+        boolean sizeZip64 = entry.size >= ZIP32_MAX || entry.compressedSize >= ZIP32_MAX;
+        boolean offsetZip64 = entry.offset >= ZIP32_MAX;
+        int extraLength = (sizeZip64 ? 16 : 0) + (offsetZip64 ? 8 : 0);
+        boolean zip64 = extraLength > 0;
+
+        putInt(0, CENTRAL_HEADER_SIG);
+        putShort(4, zip64 ? 45 : 20);
+        putShort(6, zip64 ? 45 : 20);
+        putShort(8, FLAG_UTF8 | entry.flags);
+        putShort(10, entry.method);
+        putInt(12, (int) toDosTime(entry.lastModified));
+        putInt(16, (int) entry.crc);
+        putInt(20, (int) (sizeZip64 ? ZIP32_MAX : entry.compressedSize));
+        putInt(24, (int) (sizeZip64 ? ZIP32_MAX : entry.size));
+        putShort(28, nameBytes.length);
+        putShort(30, zip64 ? extraLength + 4 : 0);
+        putShort(32, 0);
+        putShort(34, 0);
+        putShort(36, 0);
+        putInt(38, entry.directory ? 0x10 : 0);
+        putInt(42, (int) (offsetZip64 ? ZIP32_MAX : entry.offset));
+        out.write(scratch, 0, 46);
+        out.write(nameBytes);
+        if (zip64) {
+            putShort(0, 0x0001);
+            putShort(2, extraLength);
+            int pos = 4;
+            if (sizeZip64) {
+                putLong(pos, entry.size);
+                putLong(pos + 8, entry.compressedSize);
+                pos += 16;
+            }
+            if (offsetZip64) {
+                putLong(pos, entry.offset);
+                pos += 8;
+            }
+            out.write(scratch, 0, pos);
+        }
+    }
+
+    /**
+     * 写入文件的前 size 个字节；完全处于跳过区间的部分不读取磁盘
+     */
+    private void writeFileRange(Path file, long size) throws IOException {
+        long skippable = Math.min(out.getRemainingSkip(), size);
+        out.advance(skippable);
+        long position = skippable;
+        if (position >= size || out.isDone()) {
+            out.advance(size - position);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            SparseFiles.Reader reader = SparseFiles.reader(file, channel);
+            ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+            while (position < size && !out.isDone()) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), size - position));
+                int read = reader.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("文件在打包过程中被截断: " + file);
+                }
+                out.write(buffer.array(), 0, read);
+                position += read;
+            }
+        }
+        out.advance(size - position);
+    }
+
+    private static long toDosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(java.time.Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        int year = time.getYear();
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (year - 1980) << 25)
+                | ((long) time.getMonthValue() << 21)
+                | ((long) time.getDayOfMonth() << 16)
+                | ((long) time.getHour() << 11)
+                | ((long) time.getMinute() << 5)
+                | ((long) time.getSecond() >> 1);
+    }
+
+    private void putShort(int pos, int value) {
+        scratch[pos] = (byte) value;
+        scratch[pos + 1] = (byte) (value >>> 8);
+    }
+
+    private void putInt(int pos, int value) {
+        scratch[pos] = (byte) value;
+        scratch[pos + 1] = (byte) (value >>> 8);
+        scratch[pos + 2] = (byte) (value >>> 16);
+        scratch[pos + 3] = (byte) (value >>> 24);
+    }
+
+    private void putLong(int pos, long value) {
+        putInt(pos, (int) value);
+        putInt(pos + 4, (int) (value >>> 32));
+    }
+
+    private static class CentralEntry {
+        final String name;
+        final long lastModified;
+        final int method;
+        final int flags;
+        final long crc;
+        final long compressedSize;
+        final long size;
+        final long offset;
+        final boolean directory;
+
+        CentralEntry(String name, long lastModified, int method, int flags, long crc,
+                     long compressedSize, long size, long offset, boolean directory) {
+            this.name = name;
+            this.lastModified = lastModified;
+            this.method = method;
+            this.flags = flags;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+            this.directory = directory;
+        }
+    }
+
+    /**
+     * 带跳过与截断的输出：丢弃前 skip 个字节，最多输出 limit 个字节，同时记录归档内的逻辑位置
+     */
+    public static class RangeSink extends OutputStream {
+        private final OutputStream out;
+        private long skip;
+        private long limit;
+        private long position;
+        private final byte[] single = new byte[1];
+
+        public RangeSink(OutputStream out, long skip, long limit) {
+            this.out = out;
+            this.skip = skip;
+            this.limit = limit;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        public long getRemainingSkip() {
+            return skip;
+        }
+
+        public boolean isDone() {
+            return skip == 0 && limit == 0;
+        }
+
+        /**
+         * 逻辑上前进 n 个字节但不输出（仅用于跳过区间或已截断之后）
+         */
+        void advance(long n) {
+            position += n;
+            long skipped = Math.min(skip, n);
+            skip -= skipped;
+            limit -= Math.min(limit, n - skipped);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            single[0] = (byte) b;
+            write(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            position += len;
+            if (skip > 0) {
+                int skipped = (int) Math.min(skip, len);
+                skip -= skipped;
+                off += skipped;
+                len -= skipped;
+            }
+            if (len > 0 && limit > 0) {
+                int n = (int) Math.min(limit, len);
+                out.write(b, off, n);
+                limit -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package cn.programcx.foxnaserver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 并发慢速下载负载测试：大量低速客户端同时下载大文件，期间持续请求 /api/status/status，
+ * 统计成功建立的下载流数量与状态接口的响应时间。
+ * <p>
+ * 需要一台正在运行的服务器，只在指定 foxnas.loadtest.url 时运行。分别以
+ * app.threads.virtual=false 与 true 启动服务器各运行一次，对比改动前后的并发能力：
+ * <pre>
+ * mvn test -Dtest=ConcurrentStreamLoadTest \
+ *     -Dfoxnas.loadtest.url='http://127.0.0.1:8080/api/file/op/get?path=/data/big.mkv' \
+ *     -Dfoxnas.loadtest.token=&lt;JWT&gt; -Dfoxnas.loadtest.clients=600
+ * </pre>
+ * 其他参数：foxnas.loadtest.seconds（每个客户端持续下载的时间，默认 60）、
+ * foxnas.loadtest.rate-kbps（每个客户端的读取速度，默认 256，模拟移动网络）、
+ * foxnas.loadtest.status-max-ms（状态接口允许的最长响应时间，默认 2000）。
+ */
+@Slf4j
+@Tag("load")
+@EnabledIfSystemProperty(named = "foxnas.loadtest.url", matches = ".+")
+class ConcurrentStreamLoadTest {
+
+    private static final int READ_CHUNK = 8 * 1024;
+
+    @Test
+    void slowClientsDoNotStarveStatusEndpoint() throws Exception {
+        URI target = URI.create(System.getProperty("foxnas.loadtest.url"));
+        URI status = target.resolve("/api/status/status");
+        String token = System.getProperty("foxnas.loadtest.token", "");
+        int clients = Integer.getInteger("foxnas.loadtest.clients", 400);
+        long seconds = Long.getLong("foxnas.loadtest.seconds", 60);
+        long rateKbps = Long.getLong("foxnas.loadtest.rate-kbps", 256);
+        long statusMaxMs = Long.getLong("foxnas.loadtest.status-max-ms", 2000);
+
+        // 每个下载单独一个 HTTP/1.1 连接，与浏览器、播放器的行为一致
+        HttpClient streamClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        HttpClient statusClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        AtomicInteger started = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+        List<Long> firstByteMs = Collections.synchronizedList(new ArrayList<>());
+        List<Long> statusMs = Collections.synchronizedList(new ArrayList<>());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                executor.submit(() -> {
+                    HttpRequest.Builder request = HttpRequest.newBuilder(target).timeout(Duration.ofSeconds(seconds)).GET();
+                    if (!token.isEmpty()) {
+                        request.header("Authorization", "Bearer " + token);
+                    }
+                    long begin = System.nanoTime();
+                    try {
+                        HttpResponse<InputStream> response = streamClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+                        try (InputStream in = response.body()) {
+                            if (response.statusCode() != 200 && response.statusCode() != 206) {
+                                failed.incrementAndGet();
+                                log.warn("下载请求失败，状态码 {}", response.statusCode());
+                                return;
+                            }
+                            readSlowly(in, rateKbps, deadline, begin, started, firstByteMs, bytes);
+                        }
+                    } catch (IOException e) {
+                        failed.incrementAndGet();
+                        log.warn("下载中断：{}", e.getMessage());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+
+            // 下载进行期间持续探测状态接口
+            while (System.nanoTime() < deadline) {
+                long begin = System.nanoTime();
+                HttpRequest.Builder request = HttpRequest.newBuilder(status).timeout(Duration.ofSeconds(30)).GET();
+                if (!token.isEmpty()) {
+                    request.header("Authorization", "Bearer " + token);
+                }
+                try {
+                    HttpResponse<String> response = statusClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+                    if (response.statusCode() == 200) {
+                        statusMs.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+                    } else {
+                        statusMs.add(Long.MAX_VALUE);
+                    }
+                } catch (IOException e) {
+                    statusMs.add(Long.MAX_VALUE);
+                }
+                Thread.sleep(200);
+            }
+            // 截止后仍未返回的请求与读取视为未能建立
+            executor.shutdownNow();
+        }
+
+        log.info("并发下载 {} 个：建立 {}，失败 {}，共读取 {} MB；首字节 p50 {} ms，p99 {} ms",
+                clients, started.get(), failed.get(), bytes.get() / (1024 * 1024),
+                percentile(firstByteMs, 50), percentile(firstByteMs, 99));
+        log.info("状态接口 {} 次：p50 {} ms，p99 {} ms，最长 {} ms",
+                statusMs.size(), percentile(statusMs, 50), percentile(statusMs, 99), percentile(statusMs, 100));
+
+        assertEquals(0, failed.get(), "部分下载失败");
+        assertEquals(clients, started.get(), "部分下载未能在测试时间内开始");
+        assertTrue(percentile(statusMs, 100) <= statusMaxMs, "状态接口响应过慢");
+    }
+
+    /**
+     * 按指定速度读取直到截止时间或文件结束
+     */
+    private static void readSlowly(InputStream in, long rateKbps, long deadline, long begin, AtomicInteger started,
+                                   List<Long> firstByteMs, AtomicLong bytes) throws IOException, InterruptedException {
+        byte[] buffer = new byte[READ_CHUNK];
+        long bytesPerSecond = Math.max(1, rateKbps * 1000 / 8);
+        long read = 0;
+        long readStart = 0;
+        int n;
+        while (System.nanoTime() < deadline && (n = in.read(buffer)) != -1) {
+            if (read == 0) {
+                readStart = System.nanoTime();
+                started.incrementAndGet();
+                firstByteMs.add(TimeUnit.NANOSECONDS.toMillis(readStart - begin));
+            }
+            read += n;
+            bytes.addAndGet(n);
+            long expectedNanos = read * 1_000_000_000L / bytesPerSecond;
+            long aheadNanos = expectedNanos - (System.nanoTime() - readStart);
+            if (aheadNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(Math.min(aheadNanos, Math.max(0, deadline - System.nanoTime())));
+            }
+        }
+    }
+
+    private static long percentile(List<Long> values, int percent) {
+        List<Long> sorted;
+        synchronized (values) {
+            sorted = new ArrayList<>(values);
+        }
+        if (sorted.isEmpty()) {
+            return -1;
+        }
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percent / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+}
@@ -0,0 +1,94 @@
+package cn.programcx.foxnaserver.api.worker;
+
+import cn.programcx.foxnaserver.service.media.TranscodeNodeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TranscodeWorkerControllerTest {
+
+    private static final byte[] BODY = "#EXTM3U\n".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path outputDir;
+
+    private TranscodeWorkerController controller;
+
+    @BeforeEach
+    void setUp() {
+        TranscodeNodeService nodeService = mock(TranscodeNodeService.class);
+        when(nodeService.getOutputDir()).thenReturn(outputDir);
+        controller = new TranscodeWorkerController();
+        ReflectionTestUtils.setField(controller, "transcodeNodeService", nodeService);
+        ReflectionTestUtils.setField(controller, "token", "secret");
+    }
+
+    private ResponseEntity<?> put(String jobId, String name, String workerToken) {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/worker/transcode/files");
+        request.setContent(BODY);
+        return controller.putFile(jobId, name, workerToken, request);
+    }
+
+    private List<Path> written() throws IOException {
+        try (Stream<Path> files = Files.walk(outputDir)) {
+            return files.filter(Files::isRegularFile).toList();
+        }
+    }
+
+    @Test
+    void writesIntoJobDirectory() throws IOException {
+        assertEquals(HttpStatus.OK, put("3f2a-job-1", "index.m3u8", "secret").getStatusCode());
+        assertArrayEquals(BODY, Files.readAllBytes(outputDir.resolve("3f2a-job-1").resolve("index.m3u8")));
+
+        // jobId 为空时写入缓存目录本身
+        assertEquals(HttpStatus.OK, put("", "sub_0.vtt", "secret").getStatusCode());
+        assertArrayEquals(BODY, Files.readAllBytes(outputDir.resolve("sub_0.vtt")));
+        // 不残留临时文件
+        assertEquals(2, written().size());
+    }
+
+    @Test
+    void rejectsUnsafeNames() throws IOException {
+        for (String name : List.of("", ".", "..", "../index.m3u8", "a/b.ts", "a\\b.ts", "/etc/passwd",
+                ".hidden", "..ts", "段.ts", "a b.ts", "a\0.ts")) {
+            assertEquals(HttpStatus.BAD_REQUEST, put("job-1", name, "secret").getStatusCode(), name);
+        }
+        assertTrue(written().isEmpty());
+    }
+
+    @Test
+    void rejectsUnsafeJobIds() throws IOException {
+        for (String jobId : List.of(".", "..", "../job", "a/b", "a\\b", "a.b", "a_b", "job 1")) {
+            assertEquals(HttpStatus.BAD_REQUEST, put(jobId, "index.m3u8", "secret").getStatusCode(), jobId);
+        }
+        assertTrue(written().isEmpty());
+    }
+
+    @Test
+    void requiresMatchingToken() throws IOException {
+        assertEquals(HttpStatus.FORBIDDEN, put("job-1", "index.m3u8", null).getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, put("job-1", "index.m3u8", "").getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, put("job-1", "index.m3u8", "secret2").getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, put("job-1", "index.m3u8", "Secret").getStatusCode());
+
+        // 未配置令牌时接口不可用
+        ReflectionTestUtils.setField(controller, "token", "");
+        assertEquals(HttpStatus.NOT_FOUND, put("job-1", "index.m3u8", "").getStatusCode());
+        assertTrue(written().isEmpty());
+    }
+}
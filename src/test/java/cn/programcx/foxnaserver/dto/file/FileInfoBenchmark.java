@@ -0,0 +1,180 @@
+package cn.programcx.foxnaserver.dto.file;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * FileInfo 单个条目的构建开销（结果为每个条目的纳秒数）
+ * <ul>
+ *     <li>ofAttributes：10 万个合成文件名，属性已读取，只计内容类型解析与对象构建</li>
+ *     <li>categoryOf：同一批文件名，只解析类别</li>
+ *     <li>ofFile：临时目录中 1 万个真实文件，包含读取文件属性</li>
+ * </ul>
+ * ofFile 只使用 FileInfo.of(File)，引入扩展名表之前的版本同样可以运行，用于对比改动前后的开销：
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) \
+ *     org.openjdk.jmh.Main FileInfoBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileInfoBenchmark {
+
+    private static final int NAMES = 100_000;
+    private static final int FILES = 10_000;
+
+    // 目录列表中常见的扩展名（含大写）
+    private static final List<String> KNOWN = List.of(
+            "mp4", "mkv", "avi", "mov", "webm", "jpg", "JPG", "jpeg", "png", "gif", "heic",
+            "mp3", "flac", "m4a", "txt", "md", "pdf", "docx", "xlsx", "zip", "7z", "json", "srt", "ass");
+
+    private String[] names;
+    private Path[] paths;
+    private File[] files;
+    private Path dir;
+
+    private final BasicFileAttributes attributes = new BasicFileAttributes() {
+        private final FileTime time = FileTime.fromMillis(1_700_000_000_000L);
+
+        @Override
+        public FileTime lastModifiedTime() {
+            return time;
+        }
+
+        @Override
+        public FileTime lastAccessTime() {
+            return time;
+        }
+
+        @Override
+        public FileTime creationTime() {
+            return time;
+        }
+
+        @Override
+        public boolean isRegularFile() {
+            return true;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return false;
+        }
+
+        @Override
+        public boolean isSymbolicLink() {
+            return false;
+        }
+
+        @Override
+        public boolean isOther() {
+            return false;
+        }
+
+        @Override
+        public long size() {
+            return 123_456_789L;
+        }
+
+        @Override
+        public Object fileKey() {
+            return null;
+        }
+    };
+
+    /**
+     * 70% 常见扩展名，20% 不在表中的扩展名（200 种），10% 无扩展名（50 种）
+     */
+    private static String syntheticName(Random random, int i) {
+        int kind = random.nextInt(10);
+        if (kind < 7) {
+            return "文件_" + i + "." + KNOWN.get(random.nextInt(KNOWN.size()));
+        }
+        if (kind < 9) {
+            return "file-" + i + ".x" + random.nextInt(200);
+        }
+        return "NOEXT" + random.nextInt(50);
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(11);
+        Path base = Path.of("/srv/share/media");
+        names = new String[NAMES];
+        paths = new Path[NAMES];
+        for (int i = 0; i < NAMES; i++) {
+            names[i] = syntheticName(random, i);
+            paths[i] = base.resolve(names[i]);
+        }
+
+        dir = Files.createTempDirectory("foxnas-fileinfo-bench-");
+        files = new File[FILES];
+        for (int i = 0; i < FILES; i++) {
+            // 无扩展名的名称在目录中需要唯一
+            Path file = dir.resolve(i + "-" + names[i]);
+            Files.createFile(file);
+            files[i] = file.toFile();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NAMES)
+    public void ofAttributes(Blackhole blackhole) {
+        for (Path path : paths) {
+            blackhole.consume(FileInfo.of(path, attributes));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NAMES)
+    public void categoryOf(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(FileInfo.categoryOf(name));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILES)
+    public void ofFile(Blackhole blackhole) {
+        for (File file : files) {
+            blackhole.consume(FileInfo.of(file));
+        }
+    }
+}
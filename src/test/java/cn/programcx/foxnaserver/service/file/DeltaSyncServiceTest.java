@@ -0,0 +1,229 @@
+package cn.programcx.foxnaserver.service.file;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class DeltaSyncServiceTest {
+
+    private static final int BLOCK = 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private DeltaSyncService service;
+    private final List<Object> events = new ArrayList<>();
+    private Path target;
+    private byte[] base;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        service = new DeltaSyncService();
+        ReflectionTestUtils.setField(service, "fileHashService", mock(FileHashService.class));
+        ReflectionTestUtils.setField(service, "eventPublisher", (ApplicationEventPublisher) events::add);
+        ReflectionTestUtils.setField(service, "signatureCacheBytes", 1L << 20);
+
+        // 3 个完整块加一个 100 字节的尾块
+        base = new byte[3 * BLOCK + 100];
+        new Random(7).nextBytes(base);
+        target = tempDir.resolve("target.bin");
+        Files.write(target, base);
+        Files.setLastModifiedTime(target, FileTime.fromMillis(1_700_000_000_000L));
+    }
+
+    /**
+     * 按补丁格式写出补丁头，指令由调用方继续写入
+     */
+    private static DataOutputStream header(ByteArrayOutputStream bos, long baseSize, long baseMtime,
+                                           int blockSize, byte[] result) throws Exception {
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeInt(0x46584450);
+        out.writeInt(1);
+        out.writeLong(baseSize);
+        out.writeLong(baseMtime);
+        out.writeInt(blockSize);
+        out.writeLong(result.length);
+        out.write(MessageDigest.getInstance("SHA-256").digest(result));
+        return out;
+    }
+
+    private static void copy(DataOutputStream out, int startBlock, int count) throws IOException {
+        out.writeByte(1);
+        out.writeInt(startBlock);
+        out.writeInt(count);
+    }
+
+    private static void data(DataOutputStream out, byte[] data) throws IOException {
+        out.writeByte(2);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    private long baseMtime() throws IOException {
+        return Files.getLastModifiedTime(target).toMillis();
+    }
+
+    private List<Path> leftovers() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(p -> !p.equals(target)).toList();
+        }
+    }
+
+    @Test
+    void weakChecksumMatchesRsyncDefinition() {
+        // a = 1 + 2 + 3，b = 3·1 + 2·2 + 1·3
+        assertEquals((10 << 16) | 6, DeltaSyncService.weakChecksum(ByteBuffer.wrap(new byte[]{1, 2, 3})));
+        // 字节按无符号计算
+        assertEquals((0xFF << 16) | 0xFF, DeltaSyncService.weakChecksum(ByteBuffer.wrap(new byte[]{(byte) 0xFF})));
+    }
+
+    @Test
+    void signatureListsEveryBlock() throws Exception {
+        byte[] signature = service.signature(target, BLOCK);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(signature));
+        assertEquals(0x46584453, in.readInt());
+        assertEquals(1, in.readInt());
+        assertEquals(base.length, in.readLong());
+        assertEquals(baseMtime(), in.readLong());
+        assertEquals(BLOCK, in.readInt());
+        assertEquals(4, in.readInt());
+        assertEquals(DeltaSyncService.weakChecksum(ByteBuffer.wrap(base, 0, BLOCK)), in.readInt());
+        byte[] strong = in.readNBytes(16);
+        byte[] sha = MessageDigest.getInstance("SHA-256").digest(Arrays.copyOf(base, BLOCK));
+        assertArrayEquals(Arrays.copyOf(sha, 16), strong);
+        assertEquals(32 + 4 * 20, signature.length);
+
+        // 文件未变化时返回缓存
+        assertSame(signature, service.signature(target, BLOCK));
+    }
+
+    @Test
+    void applyCombinesCopiedBlocksAndNewData() throws Exception {
+        byte[] inserted = "inserted".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(base, 0, 2 * BLOCK);
+        expected.write(inserted);
+        // 尾块只复制到基准文件末尾
+        expected.write(base, 3 * BLOCK, 100);
+        byte[] result = expected.toByteArray();
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = header(bos, base.length, baseMtime(), BLOCK, result);
+        copy(out, 0, 2);
+        data(out, inserted);
+        copy(out, 3, 1);
+        out.writeByte(0);
+
+        String sha256 = service.apply("user", target, new ByteArrayInputStream(bos.toByteArray()));
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(result)), sha256);
+        assertArrayEquals(result, Files.readAllBytes(target));
+        assertEquals(1, events.size());
+        assertTrue(leftovers().isEmpty());
+    }
+
+    @Test
+    void applyCreatesNewFile() throws Exception {
+        Path created = tempDir.resolve("new.bin");
+        byte[] result = "hello".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = header(bos, 0, -1, BLOCK, result);
+        data(out, result);
+        out.writeByte(0);
+
+        service.apply("user", created, new ByteArrayInputStream(bos.toByteArray()));
+        assertArrayEquals(result, Files.readAllBytes(created));
+    }
+
+    @Test
+    void rejectsMalformedPatches() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new DataOutputStream(bos).writeInt(0x12345678);
+        assertThrows(IllegalArgumentException.class,
+                () -> service.apply("user", target, new ByteArrayInputStream(bos.toByteArray())));
+
+        // 块大小超出范围
+        ByteArrayOutputStream small = new ByteArrayOutputStream();
+        header(small, base.length, baseMtime(), 512, base).writeByte(0);
+        assertThrows(IllegalArgumentException.class,
+                () -> service.apply("user", target, new ByteArrayInputStream(small.toByteArray())));
+
+        // 引用基准文件之外的块
+        ByteArrayOutputStream outOfRange = new ByteArrayOutputStream();
+        copy(header(outOfRange, base.length, baseMtime(), BLOCK, base), 4, 1);
+        assertThrows(IllegalArgumentException.class,
+                () -> service.apply("user", target, new ByteArrayInputStream(outOfRange.toByteArray())));
+
+        // 未知指令
+        ByteArrayOutputStream unknown = new ByteArrayOutputStream();
+        header(unknown, base.length, baseMtime(), BLOCK, base).writeByte(9);
+        assertThrows(IllegalArgumentException.class,
+                () -> service.apply("user", target, new ByteArrayInputStream(unknown.toByteArray())));
+
+        // 生成的数据超过声明的大小
+        ByteArrayOutputStream oversized = new ByteArrayOutputStream();
+        DataOutputStream out = header(oversized, base.length, baseMtime(), BLOCK, new byte[10]);
+        data(out, new byte[11]);
+        assertThrows(IllegalArgumentException.class,
+                () -> service.apply("user", target, new ByteArrayInputStream(oversized.toByteArray())));
+
+        assertArrayEquals(base, Files.readAllBytes(target));
+        assertTrue(leftovers().isEmpty());
+    }
+
+    @Test
+    void rejectsChecksumMismatch() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        // 声明的结果与实际生成的内容不同
+        DataOutputStream out = header(bos, base.length, baseMtime(), BLOCK, Arrays.copyOf(base, BLOCK));
+        data(out, new byte[BLOCK]);
+        out.writeByte(0);
+
+        assertThrows(IllegalStateException.class,
+                () -> service.apply("user", target, new ByteArrayInputStream(bos.toByteArray())));
+        assertArrayEquals(base, Files.readAllBytes(target));
+        assertTrue(leftovers().isEmpty());
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void rejectsChangedBase() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = header(bos, base.length, baseMtime() - 1000, BLOCK, base);
+        copy(out, 0, 4);
+        out.writeByte(0);
+        assertThrows(IllegalStateException.class,
+                () -> service.apply("user", target, new ByteArrayInputStream(bos.toByteArray())));
+
+        // 目标文件已存在时不能按新文件上传
+        ByteArrayOutputStream create = new ByteArrayOutputStream();
+        out = header(create, 0, -1, BLOCK, base);
+        data(out, base);
+        out.writeByte(0);
+        assertThrows(IllegalStateException.class,
+                () -> service.apply("user", target, new ByteArrayInputStream(create.toByteArray())));
+        assertArrayEquals(base, Files.readAllBytes(target));
+    }
+}
@@ -0,0 +1,70 @@
+package cn.programcx.foxnaserver.service.file;
+
+import cn.programcx.foxnaserver.dto.file.DirEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectorySnapshotCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createDirectory(tempDir.resolve("dir"));
+        Path sub = Files.createDirectory(dir.resolve("sub"));
+        Files.writeString(dir.resolve("file.txt"), "data");
+        Files.createSymbolicLink(dir.resolve("link-to-dir"), sub);
+        Files.createSymbolicLink(dir.resolve("link-to-file"), dir.resolve("file.txt"));
+        Files.createSymbolicLink(dir.resolve("dangling"), tempDir.resolve("missing"));
+    }
+
+    private static DirectorySnapshotCache cache(boolean nlink) {
+        DirectorySnapshotCache cache = new DirectorySnapshotCache();
+        ReflectionTestUtils.setField(cache, "maxBytes", 1L << 20);
+        ReflectionTestUtils.setField(cache, "maxSnapshotBytes", 1L << 20);
+        ReflectionTestUtils.setField(cache, "unwatchedMaxAgeMs", 60_000L);
+        ReflectionTestUtils.setField(cache, "childCountMaxEntries", 100);
+        ReflectionTestUtils.setField(cache, "nlinkSubdirCount", nlink);
+        return cache;
+    }
+
+    @Test
+    void entriesDescribeLinkTargetsAndFlagLinks() throws IOException {
+        Map<String, DirEntry> entries = cache(true).get(dir).getEntries().stream()
+                .collect(Collectors.toMap(DirEntry::getName, e -> e));
+
+        assertTrue(entries.get("sub").isDirectory());
+        assertFalse(entries.get("sub").isSymlink());
+        assertTrue(entries.get("link-to-dir").isDirectory());
+        assertTrue(entries.get("link-to-dir").isSymlink());
+        assertEquals(4, entries.get("link-to-file").getSize());
+        assertTrue(entries.get("link-to-file").isSymlink());
+        assertFalse(entries.get("dangling").isDirectory());
+        assertTrue(entries.get("dangling").isSymlink());
+    }
+
+    @Test
+    void subdirectoryCountIgnoresLinksWithAndWithoutSnapshot() throws IOException {
+        for (boolean nlink : new boolean[]{true, false}) {
+            DirectorySnapshotCache cache = cache(nlink);
+            assertEquals(1, cache.getSubdirectoryCount(dir), "cold, nlink=" + nlink);
+
+            cache.get(dir);
+            assertEquals(1, cache.get(dir).getDirectoryCount());
+            assertEquals(1, cache.getSubdirectoryCount(dir), "warm, nlink=" + nlink);
+        }
+    }
+}
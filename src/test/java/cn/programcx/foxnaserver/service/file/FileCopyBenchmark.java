@@ -0,0 +1,115 @@
+package cn.programcx.foxnaserver.service.file;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件复制各层级与 Files.copy 的对比
+ * <p>
+ * dir 为测试目录，可传入多个挂载点比较不同文件系统，例如 tmpfs 与 ext4 回环镜像：
+ * <pre>
+ * truncate -s 4G /var/tmp/ext4.img && mkfs.ext4 -q /var/tmp/ext4.img
+ * sudo mount -o loop /var/tmp/ext4.img /mnt/ext4 && sudo chown $USER /mnt/ext4
+ *
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) \
+ *     org.openjdk.jmh.Main FileCopyBenchmark -p dir=/dev/shm,/mnt/ext4
+ * </pre>
+ * 不支持 reflink 的文件系统（tmpfs、ext4）上 REFLINK 在准备阶段失败，JMH 跳过该组合继续其余测试。
+ * 源文件在页缓存中，结果不包含写回磁盘的时间。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileCopyBenchmark {
+
+    @Param({"/dev/shm"})
+    public String dir;
+
+    @Param({"268435456"})
+    public long size;
+
+    @Param({"FILES_COPY", "REFLINK", "TRANSFER", "BUFFER"})
+    public String method;
+
+    private FileCopyService copyService;
+    private Path workDir;
+    private Path source;
+    private Path target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory(Path.of(dir), "foxnas-copy-bench-");
+        source = workDir.resolve("source.bin");
+        target = workDir.resolve("target.bin");
+
+        // 随机内容，避免被当作稀疏文件或被文件系统压缩
+        Random random = new Random(1);
+        byte[] chunk = new byte[1024 * 1024];
+        try (OutputStream out = Files.newOutputStream(source)) {
+            for (long written = 0; written < size; written += chunk.length) {
+                random.nextBytes(chunk);
+                out.write(chunk, 0, (int) Math.min(chunk.length, size - written));
+            }
+        }
+
+        copyService = new FileCopyService();
+        switch (method) {
+            case "REFLINK" -> {
+                if (!copyService.reflink(source, target)) {
+                    // 准备阶段失败时 JMH 不会调用 tearDown
+                    tearDown();
+                    throw new IllegalStateException(dir + " 不支持 reflink");
+                }
+                Files.delete(target);
+            }
+            case "TRANSFER" -> copyService.useTier(source, target, FileCopyService.Tier.TRANSFER);
+            case "BUFFER" -> copyService.useTier(source, target, FileCopyService.Tier.BUFFER);
+            default -> {
+            }
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteTarget() throws IOException {
+        Files.deleteIfExists(target);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(target);
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(workDir);
+    }
+
+    @Benchmark
+    public void copy() throws IOException {
+        switch (method) {
+            case "FILES_COPY" -> Files.copy(source, target);
+            case "REFLINK" -> copyService.reflink(source, target);
+            default -> copyService.copyFile(source, target, n -> {
+            }, () -> false);
+        }
+    }
+}
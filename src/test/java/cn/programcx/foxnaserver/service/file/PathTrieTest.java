@@ -0,0 +1,79 @@
+package cn.programcx.foxnaserver.service.file;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PathTrieTest {
+
+    private static FilePermissionService.PathTrie trie(String... grants) {
+        FilePermissionService.PathTrie trie = new FilePermissionService.PathTrie();
+        for (String grant : grants) {
+            trie.add(Paths.get(grant).normalize());
+        }
+        return trie;
+    }
+
+    @Test
+    void returnsDeepestGrantCoveringPath() {
+        FilePermissionService.PathTrie trie = trie("/data/a", "/data/a/b/c", "/media");
+        assertEquals(Path.of("/data/a"), trie.findDeepestGrant(Path.of("/data/a")));
+        assertEquals(Path.of("/data/a"), trie.findDeepestGrant(Path.of("/data/a/x.txt")));
+        assertEquals(Path.of("/data/a"), trie.findDeepestGrant(Path.of("/data/a/b")));
+        assertEquals(Path.of("/data/a/b/c"), trie.findDeepestGrant(Path.of("/data/a/b/c")));
+        assertEquals(Path.of("/data/a/b/c"), trie.findDeepestGrant(Path.of("/data/a/b/c/d/e")));
+        assertEquals(Path.of("/media"), trie.findDeepestGrant(Path.of("/media/movie.mkv")));
+    }
+
+    @Test
+    void matchesWholeComponentsOnly() {
+        FilePermissionService.PathTrie trie = trie("/data/a");
+        // 字符串前缀相同但不是同一目录
+        assertNull(trie.findDeepestGrant(Path.of("/data/ab")));
+        assertNull(trie.findDeepestGrant(Path.of("/data/ab/c")));
+        // 授权目录的上级不在授权范围内
+        assertNull(trie.findDeepestGrant(Path.of("/data")));
+        assertNull(trie.findDeepestGrant(Path.of("/")));
+        assertNull(trie.findDeepestGrant(Path.of("/other/a")));
+    }
+
+    @Test
+    void rootAndRelativeGrants() {
+        assertEquals(Path.of("/"), trie("/").findDeepestGrant(Path.of("/any/where")));
+        assertEquals(Path.of("/"), trie("/").findDeepestGrant(Path.of("/")));
+
+        FilePermissionService.PathTrie relative = trie("rel/dir");
+        assertEquals(Path.of("rel/dir"), relative.findDeepestGrant(Path.of("rel/dir/file")));
+        // 相对路径与绝对路径互不匹配
+        assertNull(relative.findDeepestGrant(Path.of("/rel/dir/file")));
+        assertNull(trie("/rel/dir").findDeepestGrant(Path.of("rel/dir/file")));
+    }
+
+    @Test
+    void emptyTrieGrantsNothing() {
+        assertNull(trie().findDeepestGrant(Path.of("/data")));
+    }
+
+    @Test
+    void agreesWithPathStartsWith() {
+        List<String> grants = List.of("/srv", "/srv/share/a", "/srv/share/ab", "/home/u1", "/home/u1/docs/x");
+        FilePermissionService.PathTrie trie = trie(grants.toArray(String[]::new));
+        List<String> candidates = List.of("/", "/srv", "/srv2", "/srv/share", "/srv/share/a", "/srv/share/a/1",
+                "/srv/share/ab/2", "/srv/share/abc", "/home", "/home/u1/docs", "/home/u1/docs/x/y", "/home/u10");
+        for (String candidate : candidates) {
+            Path path = Path.of(candidate);
+            Path expected = null;
+            for (String grant : grants) {
+                Path g = Path.of(grant);
+                if (path.startsWith(g) && (expected == null || g.getNameCount() > expected.getNameCount())) {
+                    expected = g;
+                }
+            }
+            assertEquals(expected, trie.findDeepestGrant(path), candidate);
+        }
+    }
+}
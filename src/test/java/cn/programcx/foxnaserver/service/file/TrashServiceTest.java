@@ -0,0 +1,104 @@
+package cn.programcx.foxnaserver.service.file;
+
+import cn.programcx.foxnaserver.entity.Resource;
+import cn.programcx.foxnaserver.mapper.ResourceMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TrashServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TrashService service;
+    private FilePermissionService filePermissionService;
+    private ResourceMapper resourceMapper;
+    private final List<Object> events = new ArrayList<>();
+    private Path root;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = Files.createDirectory(tempDir.resolve("share")).toAbsolutePath().normalize();
+        filePermissionService = mock(FilePermissionService.class);
+        when(filePermissionService.getShareRoots()).thenReturn(List.of(root));
+        resourceMapper = mock(ResourceMapper.class);
+
+        service = new TrashService();
+        ReflectionTestUtils.setField(service, "filePermissionService", filePermissionService);
+        ReflectionTestUtils.setField(service, "directorySizeService", mock(DirectorySizeService.class));
+        ReflectionTestUtils.setField(service, "resourceMapper", resourceMapper);
+        ReflectionTestUtils.setField(service, "eventPublisher", (ApplicationEventPublisher) events::add);
+    }
+
+    private static Resource grant(String owner, Path folder, String type) {
+        Resource resource = new Resource();
+        resource.setResourceId(42L);
+        resource.setOwnerUuid(owner);
+        resource.setFolderName(folder.toString());
+        resource.setPermissionType(type);
+        return resource;
+    }
+
+    @Test
+    void restoreBringsBackDataAndGrants() throws IOException {
+        Path dir = Files.createDirectories(root.resolve("docs").resolve("sub"));
+        Files.writeString(dir.resolve("a.txt"), "hello");
+        Path docs = root.resolve("docs");
+        when(filePermissionService.findResourcesUnder(any())).thenReturn(List.of(grant("u1", dir, "Read")));
+
+        TrashService.TrashEntry entry = service.moveToTrash(docs, "owner", List.of(root));
+        assertFalse(Files.exists(docs));
+        assertTrue(entry.directory());
+        assertEquals(entry.id(), service.find(entry.id()).id());
+
+        service.restore(entry);
+        assertEquals("hello", Files.readString(dir.resolve("a.txt")));
+        assertNull(service.find(entry.id()));
+
+        ArgumentCaptor<Resource> inserted = ArgumentCaptor.forClass(Resource.class);
+        verify(resourceMapper).insert(inserted.capture());
+        assertNull(inserted.getValue().getResourceId());
+        assertEquals("u1", inserted.getValue().getOwnerUuid());
+        assertEquals(dir.toString(), inserted.getValue().getFolderName());
+        assertEquals("Read", inserted.getValue().getPermissionType());
+        verify(filePermissionService).invalidateAll();
+    }
+
+    @Test
+    void refusesPathsItCannotTrash() throws IOException {
+        Path outside = Files.writeString(tempDir.resolve("outside.txt"), "data");
+
+        assertThrows(IOException.class, () -> service.moveToTrash(outside, "owner", List.of(root)));
+        assertThrows(IOException.class, () -> service.moveToTrash(root, "owner", List.of(root)));
+        assertEquals("data", Files.readString(outside));
+        assertTrue(Files.isDirectory(root));
+        assertTrue(service.list().isEmpty());
+    }
+
+    @Test
+    void restoreDoesNotReplaceExistingPath() throws IOException {
+        Path file = Files.writeString(root.resolve("a.txt"), "old");
+        TrashService.TrashEntry entry = service.moveToTrash(file, "owner", List.of(root));
+        Files.writeString(file, "new");
+
+        assertThrows(FileAlreadyExistsException.class, () -> service.restore(entry));
+        assertEquals("new", Files.readString(file));
+        assertNotNull(service.find(entry.id()));
+        verify(resourceMapper, never()).insert(any(Resource.class));
+    }
+}
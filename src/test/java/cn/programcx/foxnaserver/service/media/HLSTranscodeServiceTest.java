@@ -0,0 +1,57 @@
+package cn.programcx.foxnaserver.service.media;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HLSTranscodeServiceTest {
+
+    private static double[] keyframes(double start, double gop, int count) {
+        double[] times = new double[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = start + i * gop;
+        }
+        return times;
+    }
+
+    @Test
+    void alignedWhenEverySegmentBoundaryHasKeyframe() {
+        assertTrue(HLSTranscodeService.keyframesAligned(keyframes(0, 1, 60), 3));
+        assertTrue(HLSTranscodeService.keyframesAligned(keyframes(0, 3, 20), 3));
+        assertTrue(HLSTranscodeService.keyframesAligned(keyframes(0, 1.5, 40), 3));
+        // 相对第一个关键帧计算（源文件起始时间戳不为 0）
+        assertTrue(HLSTranscodeService.keyframesAligned(keyframes(1.4, 3, 20), 3));
+    }
+
+    @Test
+    void notAlignedWhenGopDoesNotDivideSegment() {
+        assertFalse(HLSTranscodeService.keyframesAligned(keyframes(0, 2, 30), 3));
+        assertFalse(HLSTranscodeService.keyframesAligned(keyframes(0, 5, 12), 3));
+        // 23.976fps 下 72 帧的 GOP 约为 3.003 秒，累积漂移超出容差
+        assertFalse(HLSTranscodeService.keyframesAligned(keyframes(0, 72 / 23.976, 60), 3));
+    }
+
+    @Test
+    void toleratesTimestampJitter() {
+        double[] times = keyframes(0, 3, 20);
+        for (int i = 1; i < times.length; i += 2) {
+            times[i] += 0.03;
+        }
+        assertTrue(HLSTranscodeService.keyframesAligned(times, 3));
+        times[5] += 0.1;
+        assertFalse(HLSTranscodeService.keyframesAligned(times, 3));
+    }
+
+    @Test
+    void acceptsUnsortedInputWithoutModifyingIt() {
+        double[] times = {6, 0, 3, 9, 12};
+        assertTrue(HLSTranscodeService.keyframesAligned(times, 3));
+        assertArrayEquals(new double[]{6, 0, 3, 9, 12}, times);
+    }
+
+    @Test
+    void tooFewKeyframesAreNotAligned() {
+        assertFalse(HLSTranscodeService.keyframesAligned(new double[0], 3));
+        assertFalse(HLSTranscodeService.keyframesAligned(new double[]{0}, 3));
+    }
+}
@@ -0,0 +1,60 @@
+package cn.programcx.foxnaserver.service.media;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class TranscodeNodeServiceTest {
+
+    private static TranscodeNodeService service(String nodeId, String pathMapping) {
+        TranscodeNodeService service = new TranscodeNodeService();
+        ReflectionTestUtils.setField(service, "configuredNodeId", nodeId);
+        ReflectionTestUtils.setField(service, "pathMapping", pathMapping);
+        ReflectionTestUtils.setField(service, "configuredOutputDir", "");
+        service.init();
+        return service;
+    }
+
+    @Test
+    void prefixMatchesOnPathBoundary() {
+        assertTrue(TranscodeNodeService.matchesPrefix("/data", "/data"));
+        assertTrue(TranscodeNodeService.matchesPrefix("/data/a.mkv", "/data"));
+        assertTrue(TranscodeNodeService.matchesPrefix("/data/a.mkv", "/data/"));
+        assertTrue(TranscodeNodeService.matchesPrefix("D:\\Videos\\a.mkv", "D:\\Videos"));
+        assertTrue(TranscodeNodeService.matchesPrefix("D:\\Videos\\a.mkv", "D:\\"));
+        assertFalse(TranscodeNodeService.matchesPrefix("/data2/a.mkv", "/data"));
+        assertFalse(TranscodeNodeService.matchesPrefix("/database", "/data"));
+        assertFalse(TranscodeNodeService.matchesPrefix("/dat", "/data"));
+        assertFalse(TranscodeNodeService.matchesPrefix("/other/data/a.mkv", "/data"));
+    }
+
+    @Test
+    void longestMappingWins() {
+        TranscodeNodeService service = service("worker-1", "/mnt/media=>/data/media; /mnt/media/tv => /tv ;invalid");
+        assertEquals("/data/media/movie.mkv", service.toLocalPath("/mnt/media/movie.mkv"));
+        assertEquals("/tv/show/e01.mkv", service.toLocalPath("/mnt/media/tv/show/e01.mkv"));
+        // 只有字符串前缀相同的目录不做映射
+        assertEquals("/mnt/media2/movie.mkv", service.toLocalPath("/mnt/media2/movie.mkv"));
+        assertEquals("/srv/movie.mkv", service.toLocalPath("/srv/movie.mkv"));
+    }
+
+    @Test
+    void mapsWindowsSourcePaths() {
+        assumeTrue(File.separatorChar == '/');
+        TranscodeNodeService service = service("worker-1", "D:\\Videos=>/mnt/videos");
+        assertEquals("/mnt/videos/a/b.mkv", service.toLocalPath("D:\\Videos\\a\\b.mkv"));
+        assertEquals("D:\\Videos2\\b.mkv", service.toLocalPath("D:\\Videos2\\b.mkv"));
+    }
+
+    @Test
+    void defaultNodeIdIsUniquePerProcess() {
+        assertEquals("worker-1", service("worker-1", "").getNodeId());
+        // 同一主机上的服务节点与工作节点不能使用相同的默认 ID
+        String nodeId = service("", "").getNodeId();
+        assertTrue(nodeId.endsWith("-" + ProcessHandle.current().pid()), nodeId);
+    }
+}
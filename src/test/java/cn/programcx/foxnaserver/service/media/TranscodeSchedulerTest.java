@@ -0,0 +1,242 @@
+package cn.programcx.foxnaserver.service.media;
+
+import cn.programcx.foxnaserver.service.media.TranscodeScheduler.CostClass;
+import cn.programcx.foxnaserver.service.status.StatusService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TranscodeSchedulerTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 4 个槽位：REMUX 1，AUDIO 2，VIDEO 3
+     */
+    private static TranscodeScheduler scheduler(long maxBypassMs) {
+        return scheduler(maxBypassMs, 0);
+    }
+
+    private static TranscodeScheduler scheduler(long maxBypassMs, double cpuPercent) {
+        StatusService statusService = mock(StatusService.class);
+        when(statusService.getCpuTicks()).thenReturn(new long[8]);
+        when(statusService.getCpuUsageSince(any())).thenReturn(cpuPercent);
+        TranscodeScheduler scheduler = new TranscodeScheduler(4, 1, 2, 3);
+        ReflectionTestUtils.setField(scheduler, "statusService", statusService);
+        ReflectionTestUtils.setField(scheduler, "cpuHighPercent", 85.0);
+        ReflectionTestUtils.setField(scheduler, "maxBypassMs", maxBypassMs);
+        // 首次采样只记录时钟计数，直接给出初始使用率
+        ReflectionTestUtils.setField(scheduler, "cpuPercent", cpuPercent);
+        return scheduler;
+    }
+
+    private Future<TranscodeScheduler.Slot> acquireAsync(TranscodeScheduler scheduler, String jobId,
+                                                         CostClass costClass, boolean priority) {
+        return executor.submit(() -> scheduler.acquire(jobId, costClass, priority));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+    private static int used(TranscodeScheduler scheduler) {
+        return (Integer) scheduler.stats().get("used");
+    }
+
+    private static int queueDepth(TranscodeScheduler scheduler) {
+        return (Integer) scheduler.stats().get("queueDepth");
+    }
+
+    @Test
+    void costClassFromCommand() {
+        assertEquals(CostClass.REMUX, CostClass.of(List.of("-i", "in.mkv", "-c", "copy", "-f", "hls", "out.m3u8")));
+        assertEquals(CostClass.REMUX, CostClass.of(List.of("-i", "in.mkv", "-c:v", "copy", "-c:a", "copy")));
+        assertEquals(CostClass.AUDIO, CostClass.of(List.of("-i", "in.mkv", "-c:v", "copy", "-c:a", "aac")));
+        assertEquals(CostClass.VIDEO, CostClass.of(List.of("-i", "in.mkv", "-c:a", "aac", "-c:v", "libx264")));
+        assertEquals(CostClass.VIDEO, CostClass.of(List.of("-i", "in.mkv", "-c:v:0", "libx264", "-c:v:1", "copy")));
+        assertEquals(CostClass.VIDEO, CostClass.of(List.of("-i", "in.mkv", "-vf", "scale=-2:720", "-c:v", "copy")));
+        assertEquals(CostClass.VIDEO, CostClass.of(List.of("-i", "in.mkv", "-filter_complex", "[0:v]split=2[a][b]")));
+        // 提取字幕
+        assertEquals(CostClass.REMUX, CostClass.of(List.of("-i", "in.mkv", "-map", "0:s:0", "out.vtt")));
+        assertEquals(CostClass.REMUX, CostClass.of(List.of()));
+    }
+
+    @Test
+    void costsAreClampedToCapacity() {
+        TranscodeScheduler scheduler = new TranscodeScheduler(2, 0, 5, 0);
+        Map<?, ?> costs = (Map<?, ?>) scheduler.stats().get("costs");
+        assertEquals(1, costs.get(CostClass.REMUX));
+        assertEquals(2, costs.get(CostClass.AUDIO));
+        // 未配置视频开销时取容量的一半，至少为 2
+        assertEquals(2, costs.get(CostClass.VIDEO));
+        assertEquals(2, scheduler.stats().get("capacity"));
+    }
+
+    @Test
+    void waitsUntilEnoughSlotsAreFree() throws Exception {
+        TranscodeScheduler scheduler = scheduler(60_000);
+        TranscodeScheduler.Slot video = scheduler.acquire("v1", CostClass.VIDEO, false);
+        assertEquals(3, used(scheduler));
+
+        Future<TranscodeScheduler.Slot> audio = acquireAsync(scheduler, "a1", CostClass.AUDIO, false);
+        await(() -> queueDepth(scheduler) == 1);
+        Thread.sleep(100);
+        assertFalse(audio.isDone());
+
+        video.close();
+        TranscodeScheduler.Slot slot = audio.get(5, TimeUnit.SECONDS);
+        assertEquals(2, used(scheduler));
+        assertEquals(CostClass.AUDIO, slot.getCostClass());
+        slot.close();
+        // 重复释放不会再次减少占用
+        slot.close();
+        assertEquals(0, used(scheduler));
+        assertEquals(2L, scheduler.stats().get("completed"));
+    }
+
+    @Test
+    void smallerJobsBypassBlockedHeadWithinLimit() throws Exception {
+        TranscodeScheduler scheduler = scheduler(60_000);
+        TranscodeScheduler.Slot audio = scheduler.acquire("a1", CostClass.AUDIO, false);
+
+        Future<TranscodeScheduler.Slot> video = acquireAsync(scheduler, "v1", CostClass.VIDEO, false);
+        await(() -> queueDepth(scheduler) == 1);
+        // 队首的视频任务放不下，后面的 REMUX 可以先运行
+        TranscodeScheduler.Slot remux = acquireAsync(scheduler, "r1", CostClass.REMUX, false).get(5, TimeUnit.SECONDS);
+        assertEquals(3, used(scheduler));
+        assertFalse(video.isDone());
+
+        audio.close();
+        remux.close();
+        video.get(5, TimeUnit.SECONDS).close();
+        assertEquals(0, used(scheduler));
+    }
+
+    @Test
+    void noBypassAfterHeadWaitedTooLong() throws Exception {
+        TranscodeScheduler scheduler = scheduler(0);
+        TranscodeScheduler.Slot audio = scheduler.acquire("a1", CostClass.AUDIO, false);
+
+        Future<TranscodeScheduler.Slot> video = acquireAsync(scheduler, "v1", CostClass.VIDEO, false);
+        await(() -> queueDepth(scheduler) == 1);
+        Thread.sleep(20);
+        Future<TranscodeScheduler.Slot> remux = acquireAsync(scheduler, "r1", CostClass.REMUX, false);
+        await(() -> queueDepth(scheduler) == 2);
+        Thread.sleep(100);
+        assertFalse(remux.isDone());
+
+        audio.close();
+        TranscodeScheduler.Slot videoSlot = video.get(5, TimeUnit.SECONDS);
+        TranscodeScheduler.Slot remuxSlot = remux.get(5, TimeUnit.SECONDS);
+        assertEquals(4, used(scheduler));
+        videoSlot.close();
+        remuxSlot.close();
+    }
+
+    @Test
+    void priorityJobsGoFirst() throws Exception {
+        TranscodeScheduler scheduler = scheduler(60_000);
+        TranscodeScheduler.Slot running = scheduler.acquire("v0", CostClass.VIDEO, false);
+
+        Future<TranscodeScheduler.Slot> normal = acquireAsync(scheduler, "normal", CostClass.VIDEO, false);
+        await(() -> queueDepth(scheduler) == 1);
+        Future<TranscodeScheduler.Slot> priority = acquireAsync(scheduler, "priority", CostClass.VIDEO, true);
+        await(() -> queueDepth(scheduler) == 2);
+        // 普通任务不能越过排队中的立即观看任务
+        Future<TranscodeScheduler.Slot> remux = acquireAsync(scheduler, "remux", CostClass.REMUX, false);
+        await(() -> queueDepth(scheduler) == 3);
+        Thread.sleep(100);
+        assertFalse(remux.isDone());
+
+        running.close();
+        TranscodeScheduler.Slot first = priority.get(5, TimeUnit.SECONDS);
+        Thread.sleep(100);
+        assertFalse(normal.isDone());
+        first.close();
+        normal.get(5, TimeUnit.SECONDS).close();
+        remux.get(5, TimeUnit.SECONDS).close();
+    }
+
+    @Test
+    void cpuThrottleKeepsOneJobRunning() throws Exception {
+        TranscodeScheduler scheduler = scheduler(60_000, 95);
+        assertEquals(true, scheduler.stats().get("throttled"));
+
+        // 空闲时队首任务不受 CPU 限制
+        TranscodeScheduler.Slot first = acquireAsync(scheduler, "r1", CostClass.REMUX, false).get(5, TimeUnit.SECONDS);
+        Future<TranscodeScheduler.Slot> second = acquireAsync(scheduler, "r2", CostClass.REMUX, false);
+        await(() -> queueDepth(scheduler) == 1);
+        Thread.sleep(100);
+        assertFalse(second.isDone());
+        assertEquals(1, scheduler.suggestedConsumers(8));
+
+        first.close();
+        second.get(5, TimeUnit.SECONDS).close();
+    }
+
+    @Test
+    void interactiveSlotsMayExceedCapacity() throws Exception {
+        TranscodeScheduler scheduler = scheduler(60_000);
+        TranscodeScheduler.Slot video = scheduler.acquire("v1", CostClass.VIDEO, false);
+        TranscodeScheduler.Slot live = scheduler.acquireInteractive("ondemand-1", CostClass.VIDEO);
+        assertEquals(6, used(scheduler));
+        assertEquals(2, ((List<?>) scheduler.stats().get("running")).size());
+
+        Future<TranscodeScheduler.Slot> queued = acquireAsync(scheduler, "r1", CostClass.REMUX, false);
+        await(() -> queueDepth(scheduler) == 1);
+        video.close();
+        Thread.sleep(100);
+        // 交互式任务仍占用 3 个槽位，只剩 1 个
+        TranscodeScheduler.Slot remux = queued.get(5, TimeUnit.SECONDS);
+        assertEquals(4, used(scheduler));
+        remux.close();
+        live.close();
+        assertEquals(0, used(scheduler));
+    }
+
+    @Test
+    void interruptedWaiterLeavesQueue() throws Exception {
+        TranscodeScheduler scheduler = scheduler(60_000);
+        TranscodeScheduler.Slot video = scheduler.acquire("v1", CostClass.VIDEO, false);
+        Future<TranscodeScheduler.Slot> waiting = acquireAsync(scheduler, "v2", CostClass.VIDEO, false);
+        await(() -> queueDepth(scheduler) == 1);
+
+        waiting.cancel(true);
+        await(() -> queueDepth(scheduler) == 0);
+        video.close();
+        assertEquals(0, used(scheduler));
+    }
+
+    @Test
+    void suggestedConsumersFollowFreeSlots() throws Exception {
+        TranscodeScheduler scheduler = scheduler(60_000);
+        assertEquals(4, scheduler.suggestedConsumers(8));
+        assertEquals(2, scheduler.suggestedConsumers(2));
+        TranscodeScheduler.Slot video = scheduler.acquire("v1", CostClass.VIDEO, false);
+        // 1 个运行中 + 剩余 1 个槽位
+        assertEquals(2, scheduler.suggestedConsumers(8));
+        video.close();
+    }
+}
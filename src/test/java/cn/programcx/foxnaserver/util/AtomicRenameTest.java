@@ -0,0 +1,64 @@
+package cn.programcx.foxnaserver.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AtomicRenameTest {
+
+    @TempDir
+    Path tempDir;
+
+    @FunctionalInterface
+    private interface Mover {
+        void move(Path source, Path target) throws IOException;
+    }
+
+    private static final Mover[] MOVERS = {AtomicRename::moveNoReplace, AtomicRename::moveCompat};
+
+    @Test
+    void movesFilesAndDirectories() throws IOException {
+        for (int i = 0; i < MOVERS.length; i++) {
+            Path file = Files.writeString(tempDir.resolve("file" + i), "data" + i);
+            Path dir = Files.createDirectory(tempDir.resolve("dir" + i));
+            Files.writeString(dir.resolve("child"), "child");
+
+            MOVERS[i].move(file, tempDir.resolve("file" + i + ".moved"));
+            MOVERS[i].move(dir, tempDir.resolve("dir" + i + ".moved"));
+
+            assertFalse(Files.exists(file));
+            assertFalse(Files.exists(dir));
+            assertEquals("data" + i, Files.readString(tempDir.resolve("file" + i + ".moved")));
+            assertEquals("child", Files.readString(tempDir.resolve("dir" + i + ".moved").resolve("child")));
+        }
+    }
+
+    @Test
+    void refusesExistingTargets() throws IOException {
+        for (int i = 0; i < MOVERS.length; i++) {
+            Path file = Files.writeString(tempDir.resolve("file" + i), "new");
+            Path dir = Files.createDirectory(tempDir.resolve("dir" + i));
+            Path existingFile = Files.writeString(tempDir.resolve("existing" + i), "old");
+            // rename(2) 会用目录替换空目录，必须同样拒绝
+            Path emptyDir = Files.createDirectory(tempDir.resolve("empty" + i));
+            Mover mover = MOVERS[i];
+
+            assertThrows(FileAlreadyExistsException.class, () -> mover.move(file, existingFile));
+            assertThrows(FileAlreadyExistsException.class, () -> mover.move(dir, emptyDir));
+            assertThrows(FileAlreadyExistsException.class, () -> mover.move(file, emptyDir));
+
+            assertEquals("new", Files.readString(file));
+            assertEquals("old", Files.readString(existingFile));
+            assertTrue(Files.isDirectory(dir));
+            try (var children = Files.list(emptyDir)) {
+                assertEquals(0, children.count());
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package cn.programcx.foxnaserver.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class SparseFilesTest {
+
+    private static final int SIZE = 300;
+    // [0, 10) 与 [100, 150) 为数据，其余为空洞（包括文件末尾 [150, 300)）
+    private static final List<SparseFiles.Extent> EXTENTS = List.of(
+            new SparseFiles.Extent(0, 10),
+            new SparseFiles.Extent(100, 50));
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * 文件中每个字节都不为零，读到零即说明来自空洞补零而非磁盘
+     */
+    private Path nonZeroFile() throws IOException {
+        byte[] data = new byte[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            data[i] = (byte) (i % 255 + 1);
+        }
+        Path file = tempDir.resolve("data.bin");
+        Files.write(file, data);
+        return file;
+    }
+
+    private static byte[] expected() {
+        byte[] data = new byte[SIZE];
+        for (SparseFiles.Extent extent : EXTENTS) {
+            for (long i = extent.offset(); i < extent.end(); i++) {
+                data[(int) i] = (byte) (i % 255 + 1);
+            }
+        }
+        return data;
+    }
+
+    private static byte[] readAll(SparseFiles.Reader reader, ByteBuffer buffer) throws IOException {
+        byte[] result = new byte[SIZE];
+        long position = 0;
+        int read;
+        while ((read = reader.read(buffer.clear(), position)) != -1) {
+            assertTrue(read > 0, "position " + position);
+            // 一次读取不会跨越数据区间与空洞的边界
+            for (SparseFiles.Extent extent : EXTENTS) {
+                for (long boundary : new long[]{extent.offset(), extent.end()}) {
+                    assertFalse(position < boundary && position + read > boundary,
+                            "read [" + position + ", " + (position + read) + ") crosses " + boundary);
+                }
+            }
+            buffer.flip();
+            buffer.get(result, (int) position, read);
+            position += read;
+        }
+        assertEquals(SIZE, position);
+        return result;
+    }
+
+    @Test
+    void extentEndAndDataLength() {
+        assertEquals(150, EXTENTS.get(1).end());
+        assertEquals(60, SparseFiles.dataLength(EXTENTS));
+        assertEquals(0, SparseFiles.dataLength(List.of()));
+    }
+
+    @Test
+    void readerFillsHolesWithZeros() throws IOException {
+        try (FileChannel channel = FileChannel.open(nonZeroFile(), StandardOpenOption.READ)) {
+            SparseFiles.Reader reader = new SparseFiles.Reader(channel, EXTENTS, SIZE);
+            assertTrue(reader.isSparse());
+            assertArrayEquals(expected(), readAll(reader, ByteBuffer.allocate(32)));
+            assertArrayEquals(expected(), readAll(reader, ByteBuffer.allocateDirect(32)));
+        }
+    }
+
+    @Test
+    void readerSeeksBackwards() throws IOException {
+        try (FileChannel channel = FileChannel.open(nonZeroFile(), StandardOpenOption.READ)) {
+            SparseFiles.Reader reader = new SparseFiles.Reader(channel, EXTENTS, SIZE);
+            ByteBuffer buffer = ByteBuffer.allocate(8);
+            assertEquals(8, reader.read(buffer, 120));
+            assertEquals(121, buffer.array()[0]);
+
+            // 游标已越过第一个区间，向前读取仍要读到数据而不是补零
+            buffer.clear();
+            assertEquals(8, reader.read(buffer, 2));
+            assertEquals(3, buffer.array()[0]);
+
+            // 空洞中读取，长度截止到下一个区间的起点
+            buffer = ByteBuffer.allocate(200);
+            assertEquals(90, reader.read(buffer, 10));
+            assertArrayEquals(new byte[90], Arrays.copyOf(buffer.array(), 90));
+
+            buffer.clear();
+            assertEquals(-1, reader.read(buffer, SIZE));
+        }
+    }
+
+    @Test
+    void readerWithoutExtentsReadsChannel() throws IOException {
+        Path file = nonZeroFile();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            SparseFiles.Reader reader = new SparseFiles.Reader(channel, null, SIZE);
+            assertFalse(reader.isSparse());
+            ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+            assertEquals(SIZE, reader.read(buffer, 0));
+            assertArrayEquals(Files.readAllBytes(file), buffer.array());
+        }
+    }
+
+    @Test
+    void smallFilesAreNotProbed() throws IOException {
+        Path file = nonZeroFile();
+        assertNull(SparseFiles.dataExtents(file, Files.size(file)));
+    }
+
+    @Test
+    void dataExtentsOfSparseFile() throws IOException {
+        long size = 16L * 1024 * 1024;
+        long secondOffset = 8L * 1024 * 1024;
+        Path file = tempDir.resolve("sparse.bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}), 0);
+            channel.write(ByteBuffer.wrap(new byte[]{5, 6, 7, 8}), secondOffset);
+            channel.truncate(size);
+            channel.write(ByteBuffer.allocate(1), size - 1);
+        }
+
+        List<SparseFiles.Extent> extents = SparseFiles.dataExtents(file, size);
+        // 平台或文件系统不支持 SEEK_HOLE 时按普通文件处理
+        assumeTrue(extents != null, "文件系统不报告空洞");
+
+        long previousEnd = 0;
+        for (SparseFiles.Extent extent : extents) {
+            assertTrue(extent.length() > 0);
+            assertTrue(extent.offset() >= previousEnd, "区间应按偏移升序且不重叠");
+            assertTrue(extent.end() <= size);
+            previousEnd = extent.end();
+        }
+        assertTrue(SparseFiles.dataLength(extents) < size);
+        for (long written : new long[]{0, secondOffset, size - 1}) {
+            assertTrue(extents.stream().anyMatch(e -> e.offset() <= written && written < e.end()),
+                    "偏移 " + written + " 应位于数据区间内");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            SparseFiles.Reader reader = SparseFiles.reader(file, channel);
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            reader.read(buffer, secondOffset);
+            assertArrayEquals(new byte[]{5, 6, 7, 8}, buffer.array());
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package cn.programcx.foxnaserver.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZipStreamWriterTest {
+
+    private static final long MTIME = 1_700_000_000_000L;
+
+    @TempDir
+    Path tempDir;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Long> sizes = new ArrayList<>();
+    private final List<Path> files = new ArrayList<>();
+    private final List<Long> crcs = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Random random = new Random(42);
+        addDirectory("目录/");
+        // 跨越多个 64KB 复制缓冲区的文件、空文件与 UTF-8 文件名
+        addFile("目录/a.bin", random, 200_000);
+        addFile("目录/empty.txt", random, 0);
+        addFile("b.txt", random, 1234);
+        addDirectory("目录/子目录/");
+        addFile("目录/子目录/c.bin", random, 70_000);
+    }
+
+    private void addDirectory(String name) {
+        names.add(name);
+        sizes.add(0L);
+        files.add(null);
+        crcs.add(0L);
+    }
+
+    private void addFile(String name, Random random, int size) throws IOException {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        Path file = tempDir.resolve("src-" + files.size());
+        Files.write(file, data);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        names.add(name);
+        sizes.add((long) size);
+        files.add(file);
+        crcs.add(crc.getValue());
+    }
+
+    private byte[] writeStored(long skip, long limit) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ZipStreamWriter.RangeSink sink = new ZipStreamWriter.RangeSink(bos, skip, limit);
+        ZipStreamWriter writer = new ZipStreamWriter(sink);
+        for (int i = 0; i < names.size(); i++) {
+            if (files.get(i) == null) {
+                writer.putDirectory(names.get(i), MTIME);
+            } else {
+                writer.putStored(names.get(i), MTIME, sizes.get(i), crcs.get(i), files.get(i));
+            }
+        }
+        writer.finish();
+        return bos.toByteArray();
+    }
+
+    @Test
+    void storedArchiveIsReadableAndMatchesComputedLength() throws IOException {
+        byte[] archive = writeStored(0, Long.MAX_VALUE);
+        assertEquals(ZipStreamWriter.computeStoredLength(names, sizes), archive.length);
+
+        Path zip = tempDir.resolve("out.zip");
+        Files.write(zip, archive);
+        // ZipFile 按中央目录中的偏移定位本地文件头，偏移错误时读不出内容或 CRC 校验失败
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            assertEquals(names.size(), zipFile.size());
+            for (int i = 0; i < names.size(); i++) {
+                ZipEntry entry = zipFile.getEntry(names.get(i));
+                assertNotNull(entry, names.get(i));
+                assertEquals(ZipEntry.STORED, entry.getMethod());
+                assertEquals(files.get(i) == null, entry.isDirectory());
+                if (files.get(i) != null) {
+                    try (InputStream in = zipFile.getInputStream(entry)) {
+                        assertArrayEquals(Files.readAllBytes(files.get(i)), in.readAllBytes(), names.get(i));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void rangeOutputIsSliceOfFullArchive() throws IOException {
+        byte[] full = writeStored(0, Long.MAX_VALUE);
+        long[][] ranges = {
+                {0, 10},
+                {0, full.length},
+                {1, 29},
+                // 从第一个文件数据中间开始
+                {5_000, 100_000},
+                // 跨越多个条目直到结尾
+                {150_000, Long.MAX_VALUE},
+                // 只取中央目录
+                {full.length - 200, Long.MAX_VALUE},
+                {full.length - 1, 1},
+        };
+        for (long[] range : ranges) {
+            long skip = range[0];
+            long end = range[1] == Long.MAX_VALUE ? full.length : Math.min(full.length, skip + range[1]);
+            byte[] expected = Arrays.copyOfRange(full, (int) skip, (int) end);
+            assertArrayEquals(expected, writeStored(skip, range[1]), "range " + skip + "+" + range[1]);
+        }
+    }
+
+    @Test
+    void skippedStoredDataIsNotRead() throws IOException {
+        byte[] full = writeStored(0, Long.MAX_VALUE);
+        // 删除第一个文件后从其数据之后续传，不应再打开该文件
+        Path first = files.get(1);
+        Files.delete(first);
+        long skip = 30 + names.get(1).getBytes(StandardCharsets.UTF_8).length
+                + 30 + names.get(0).getBytes(StandardCharsets.UTF_8).length
+                + sizes.get(1);
+        byte[] tail = writeStored(skip, Long.MAX_VALUE);
+        assertArrayEquals(Arrays.copyOfRange(full, (int) skip, full.length), tail);
+    }
+
+    @Test
+    void deflatedAndPrecompressedEntriesAreReadable() throws IOException {
+        byte[] text = "FoxNAS ".repeat(50_000).getBytes(StandardCharsets.UTF_8);
+        Path file = tempDir.resolve("text.txt");
+        Files.write(file, text);
+        CRC32 crc = new CRC32();
+        crc.update(text);
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        deflater.setInput(text);
+        deflater.finish();
+        byte[] compressed = new byte[text.length];
+        int compressedLength = deflater.deflate(compressed);
+        assertTrue(deflater.finished());
+        deflater.end();
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ZipStreamWriter writer = new ZipStreamWriter(new ZipStreamWriter.RangeSink(bos, 0, Long.MAX_VALUE));
+        writer.putDeflated("streamed.txt", MTIME, text.length, file, Deflater.BEST_SPEED);
+        writer.putPrecompressed("parallel.txt", MTIME, text.length, crc.getValue(), compressed, compressedLength);
+        writer.putStored("stored.txt", MTIME, text.length, crc.getValue(), file);
+        writer.finish();
+        assertEquals(bos.size(), writer.getPosition());
+
+        Path zip = tempDir.resolve("mixed.zip");
+        Files.write(zip, bos.toByteArray());
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            for (String name : List.of("streamed.txt", "parallel.txt", "stored.txt")) {
+                ZipEntry entry = zipFile.getEntry(name);
+                assertEquals(text.length, entry.getSize(), name);
+                assertEquals(crc.getValue(), entry.getCrc(), name);
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    assertArrayEquals(text, in.readAllBytes(), name);
+                }
+            }
+        }
+    }
+}